@@ -0,0 +1,46 @@
+plugins {
+    java
+    id("com.github.johnrengelman.shadow") version "8.1.1"
+}
+
+group = "com.deadlock.detector"
+version = "1.0-SNAPSHOT"
+
+repositories {
+    mavenCentral()
+}
+
+// 被测服务可能还在旧版本JDK上运行，Agent按Java 8编译
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    implementation("org.ow2.asm:asm:9.8")
+    testImplementation("junit:junit:4.13.2")
+}
+
+tasks {
+    withType<JavaCompile> {
+        options.encoding = "UTF-8"
+    }
+
+    // ASM重定位到Agent自己的包下，避免与被测应用中的ASM版本冲突
+    shadowJar {
+        archiveBaseName.set("deadlock-agent")
+        archiveClassifier.set("")
+        relocate("org.objectweb.asm", "com.deadlock.detector.agent.shaded.asm")
+        manifest {
+            attributes(
+                "Premain-Class" to "com.deadlock.detector.agent.DeadlockAgent",
+                "Agent-Class" to "com.deadlock.detector.agent.DeadlockAgent",
+                "Can-Retransform-Classes" to "true"
+            )
+        }
+    }
+
+    build {
+        dependsOn(shadowJar)
+    }
+}
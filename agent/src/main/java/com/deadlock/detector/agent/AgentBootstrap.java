@@ -0,0 +1,66 @@
+package com.deadlock.detector.agent;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 由启动类加载器加载，完成Agent的安装
+ */
+public final class AgentBootstrap {
+
+    private AgentBootstrap() {
+    }
+
+    public static void install(String args, Instrumentation instrumentation, boolean attached) {
+        AgentOptions options = AgentOptions.parse(args);
+        LockRecorder.install(new EdgeSet(options.capacity));
+        // 必须在任何线程状态创建之前设置，状态按它决定是否分配草图
+        Sampler.enabled = options.budgetPercent > 0;
+        EventLogWriter log = options.logFile != null ? openLog(options) : null;
+        if (log != null && !Sampler.enabled) {
+            LockRecorder.installLog(log);
+            Runtime.getRuntime().addShutdownHook(new Thread(log::close, "deadlock-agent-log"));
+        }
+        instrumentation.addTransformer(new LockTransformer(options), true);
+        if (attached) {
+            retransformLoadedClasses(instrumentation, options);
+        }
+        CycleMonitor.start(options, Sampler.enabled ? log : null);
+        System.err.println("[deadlock-agent] 已启动，每 " + options.intervalMillis + " ms 检测一次加锁顺序"
+                + (Sampler.enabled ? "，采样模式，CPU预算 " + options.budgetPercent + "%" : ""));
+    }
+
+    /**
+     * 事件日志要在插桩之前打开，插桩时登记的加锁位置才会写入定义
+     */
+    private static EventLogWriter openLog(AgentOptions options) {
+        try {
+            EventLogWriter writer = new EventLogWriter(options.logFile, options.logSizeMegabytes);
+            System.err.println("[deadlock-agent] 加锁事件写入 " + options.logFile);
+            return writer;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[deadlock-agent] 无法创建事件日志 " + options.logFile + "：" + e);
+            options.logFile = null;
+            return null;
+        }
+    }
+
+    private static void retransformLoadedClasses(Instrumentation instrumentation, AgentOptions options) {
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> loaded : instrumentation.getAllLoadedClasses()) {
+            if (loaded.getClassLoader() != null && !loaded.isArray()
+                    && instrumentation.isModifiableClass(loaded)
+                    && options.shouldInstrument(loaded.getName().replace('.', '/'))) {
+                classes.add(loaded);
+            }
+        }
+        try {
+            instrumentation.retransformClasses(classes.toArray(new Class<?>[0]));
+        } catch (UnmodifiableClassException | RuntimeException e) {
+            System.err.println("[deadlock-agent] 无法转换已加载的类：" + e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.deadlock.detector.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Agent参数：-javaagent:deadlock-agent.jar=interval=5000,capacity=65536,include=com.example;org.acme,report=/tmp/locks.txt
+ * include/exclude是以分号分隔的包名前缀；未指定include时插桩除JDK和Agent自身以外的所有类
+ * log=/tmp/locks.dlev 另外把每次加锁/释放写入二进制事件日志，logSize为日志文件的上限（MB，最大2047）
+ * budget=1 开启采样模式，插桩开销控制在一个CPU的1%以内（可以是小数）；采样模式下日志只记录采到的加锁顺序边
+ */
+final class AgentOptions {
+    private static final String[] ALWAYS_EXCLUDED = {
+            "java/", "javax/", "jdk/", "sun/", "com/sun/", "com/deadlock/detector/agent/"
+    };
+
+    long intervalMillis = 5000;
+    int capacity = 65536;
+    String reportFile;
+    String logFile;
+    int logSizeMegabytes = 256;
+    // 采样模式的CPU预算（一个CPU的百分比），0为完整跟踪
+    double budgetPercent;
+    final List<String> includes = new ArrayList<>();
+    final List<String> excludes = new ArrayList<>();
+
+    static AgentOptions parse(String args) {
+        AgentOptions options = new AgentOptions();
+        if (args == null || args.trim().isEmpty()) {
+            return options;
+        }
+        for (String option : args.split(",")) {
+            int equals = option.indexOf('=');
+            String key = equals >= 0 ? option.substring(0, equals).trim() : option.trim();
+            String value = equals >= 0 ? option.substring(equals + 1).trim() : "";
+            switch (key) {
+                case "interval":
+                    options.intervalMillis = Math.max(100, Long.parseLong(value));
+                    break;
+                case "capacity":
+                    options.capacity = Integer.parseInt(value);
+                    break;
+                case "report":
+                    options.reportFile = value;
+                    break;
+                case "log":
+                    options.logFile = value;
+                    break;
+                case "logSize":
+                    options.logSizeMegabytes = Math.max(1, Math.min(2047, Integer.parseInt(value)));
+                    break;
+                case "budget":
+                    options.budgetPercent = Math.max(0, Math.min(100, Double.parseDouble(value)));
+                    break;
+                case "include":
+                    addPrefixes(options.includes, value);
+                    break;
+                case "exclude":
+                    addPrefixes(options.excludes, value);
+                    break;
+                default:
+                    System.err.println("[deadlock-agent] 未知参数：" + key);
+            }
+        }
+        return options;
+    }
+
+    private static void addPrefixes(List<String> target, String value) {
+        for (String prefix : value.split(";")) {
+            if (!prefix.trim().isEmpty()) {
+                target.add(prefix.trim().replace('.', '/'));
+            }
+        }
+    }
+
+    /**
+     * className为内部名（com/example/Foo）
+     */
+    boolean shouldInstrument(String className) {
+        for (String prefix : ALWAYS_EXCLUDED) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+        for (String prefix : excludes) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : includes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,374 @@
+package com.deadlock.detector.agent;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 后台检测线程：定期取走各线程缓冲中的边，边集合有变化（新边或边变为多线程）时
+ * 在加锁顺序图（锁→锁）上做Tarjan强连通分量，每个分量中取一个经过多个线程的最短环报告。
+ * 环上所有边都只被同一个线程记录过时不会死锁，不报告；同一个环只报告一次。
+ * 采样模式下每个周期还按估算的开销调整采样率，并把新出现的边（以及变为多线程的边）写入事件日志。
+ */
+final class CycleMonitor implements Runnable {
+    // 每个分量中最多枚举的简单环数
+    private static final int MAX_CYCLES_PER_COMPONENT = 10000;
+
+    private final AgentOptions options;
+    private final Set<String> reported = new HashSet<>();
+    private int checkedVersion = -1;
+    private final Sampler sampler;
+
+    // 采样模式的边日志：写入用的块游标，每个槽位已写出的线程，已写出定义的锁、位置和线程
+    private final EventLogWriter edgeLog;
+    private ThreadLockState logCursor;
+    private long[] loggedThreads;
+    private final Set<Integer> definedLocks = new HashSet<>();
+    private final Set<Integer> definedSites = new HashSet<>();
+    private final Set<Long> definedThreads = new HashSet<>();
+
+    CycleMonitor(AgentOptions options, EventLogWriter edgeLog) {
+        this.options = options;
+        this.sampler = Sampler.enabled ? new Sampler(options.budgetPercent) : null;
+        this.edgeLog = edgeLog;
+    }
+
+    /**
+     * @param edgeLog 采样模式下写出加锁顺序边的日志，没有时为null
+     */
+    static void start(AgentOptions options, EventLogWriter edgeLog) {
+        CycleMonitor monitor = new CycleMonitor(options, edgeLog);
+        Thread thread = new Thread(monitor, "deadlock-agent-monitor");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            monitor.check();
+            if (edgeLog != null) {
+                edgeLog.close();
+            }
+        }, "deadlock-agent-shutdown"));
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(options.intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            check();
+        }
+    }
+
+    synchronized void check() {
+        EdgeSet edges = LockRecorder.edges();
+        for (ThreadLockState state : LockRecorder.threads()) {
+            boolean terminated = state.isTerminated();
+            state.drainTo(edges);
+            if (sampler != null) {
+                sampler.account(state);
+            }
+            if (terminated) {
+                LockRecorder.forget(state);
+            }
+        }
+        if (sampler != null) {
+            sampler.adjust();
+        }
+        if (edgeLog != null) {
+            logEdges(edges);
+        }
+        if (edges.version() == checkedVersion) {
+            return;
+        }
+        checkedVersion = edges.version();
+        Map<Integer, Map<Integer, Integer>> graph = snapshot(edges);
+        for (List<Integer> cycle : findCycles(edges, graph)) {
+            report(edges, graph, cycle);
+        }
+        if (edges.getDropped() > 0) {
+            System.err.println("[deadlock-agent] 边集合已满，丢弃 " + edges.getDropped() + " 条边，可增大capacity参数");
+        }
+    }
+
+    /**
+     * 写出新出现的边；之前由单个线程记录、现在变为多线程的边再写一次，回放时据此标记
+     */
+    private void logEdges(EdgeSet edges) {
+        if (logCursor == null) {
+            logCursor = new ThreadLockState(Thread.currentThread());
+            loggedThreads = new long[edges.capacity()];
+        }
+        for (int i = 0; i < edges.capacity(); i++) {
+            long edge = edges.keyAt(i);
+            long thread = edges.threadAt(i);
+            if (edge == 0 || thread == 0 || loggedThreads[i] == thread) {
+                continue;
+            }
+            long sites = edges.siteAt(i);
+            defineLock(edges, EdgeSet.held(edge));
+            defineLock(edges, EdgeSet.acquired(edge));
+            defineSite((int) (sites >>> 32));
+            defineSite((int) sites);
+            if (thread != EdgeSet.SHARED && definedThreads.add(thread)) {
+                logCursor.define(edgeLog, EventLogWriter.DEFINE_THREAD, (int) thread, LockRecorder.threadName(thread));
+            }
+            logCursor.logEdge(edgeLog, edge, sites, thread == EdgeSet.SHARED ? -1 : (int) thread);
+            loggedThreads[i] = thread;
+        }
+    }
+
+    private void defineLock(EdgeSet edges, int lockId) {
+        if (definedLocks.add(lockId)) {
+            Class<?> type = edges.typeOf(lockId);
+            String typeName = type != null ? type.getName() : "Object";
+            logCursor.define(edgeLog, EventLogWriter.DEFINE_LOCK, lockId,
+                    typeName.substring(typeName.lastIndexOf('.') + 1) + "@0x" + Integer.toHexString(lockId));
+        }
+    }
+
+    private void defineSite(int site) {
+        if (definedSites.add(site)) {
+            logCursor.define(edgeLog, EventLogWriter.DEFINE_SITE, site, LockRecorder.site(site));
+        }
+    }
+
+    /**
+     * 边集合的邻接表快照：锁ID → (后继锁ID → 槽位)
+     */
+    static Map<Integer, Map<Integer, Integer>> snapshot(EdgeSet edges) {
+        Map<Integer, Map<Integer, Integer>> graph = new HashMap<>();
+        for (int i = 0; i < edges.capacity(); i++) {
+            long edge = edges.keyAt(i);
+            if (edge != 0 && EdgeSet.held(edge) != EdgeSet.acquired(edge)) {
+                graph.computeIfAbsent(EdgeSet.held(edge), k -> new HashMap<>()).put(EdgeSet.acquired(edge), i);
+            }
+        }
+        return graph;
+    }
+
+    static List<List<Integer>> findCycles(EdgeSet edges, Map<Integer, Map<Integer, Integer>> graph) {
+        List<List<Integer>> cycles = new ArrayList<>();
+        for (Set<Integer> component : stronglyConnectedComponents(graph)) {
+            if (component.size() < 2) {
+                continue;
+            }
+            List<Integer> cycle = shortestMultiThreadCycle(edges, graph, component);
+            if (cycle != null) {
+                cycles.add(cycle);
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * 迭代版Tarjan，避免大图上递归过深
+     */
+    private static List<Set<Integer>> stronglyConnectedComponents(Map<Integer, Map<Integer, Integer>> graph) {
+        Map<Integer, Integer> index = new HashMap<>();
+        Map<Integer, Integer> lowLink = new HashMap<>();
+        Set<Integer> onStack = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        List<Set<Integer>> components = new ArrayList<>();
+        int counter = 0;
+        for (Integer root : graph.keySet()) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            Deque<Object[]> work = new ArrayDeque<>();
+            work.push(new Object[]{root, successors(graph, root).iterator()});
+            index.put(root, counter);
+            lowLink.put(root, counter++);
+            stack.push(root);
+            onStack.add(root);
+            while (!work.isEmpty()) {
+                Object[] frame = work.peek();
+                Integer node = (Integer) frame[0];
+                @SuppressWarnings("unchecked")
+                Iterator<Integer> next = (Iterator<Integer>) frame[1];
+                if (next.hasNext()) {
+                    Integer successor = next.next();
+                    if (!index.containsKey(successor)) {
+                        index.put(successor, counter);
+                        lowLink.put(successor, counter++);
+                        stack.push(successor);
+                        onStack.add(successor);
+                        work.push(new Object[]{successor, successors(graph, successor).iterator()});
+                    } else if (onStack.contains(successor)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(successor)));
+                    }
+                    continue;
+                }
+                work.pop();
+                if (!work.isEmpty()) {
+                    Integer parent = (Integer) work.peek()[0];
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                }
+                if (lowLink.get(node).equals(index.get(node))) {
+                    Set<Integer> component = new HashSet<>();
+                    Integer member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(node));
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    private static Set<Integer> successors(Map<Integer, Map<Integer, Integer>> graph, Integer node) {
+        Map<Integer, Integer> next = graph.get(node);
+        return next != null ? next.keySet() : new HashSet<>();
+    }
+
+    /**
+     * 分量内经过多个线程的最短简单环：按Johnson算法（迭代版）依次以每把锁为起点枚举简单环，
+     * 只由一个线程记录的环跳过，所以单线程的短环不会挡住同一分量中的多线程环。
+     * 枚举数量有上限，找到两把锁的多线程环时提前结束。
+     */
+    private static List<Integer> shortestMultiThreadCycle(EdgeSet edges, Map<Integer, Map<Integer, Integer>> graph,
+                                                          Set<Integer> component) {
+        List<Integer> order = new ArrayList<>(component);
+        Collections.sort(order);
+        Map<Integer, Integer> rank = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            rank.put(order.get(i), i);
+        }
+        List<Integer> best = null;
+        int enumerated = 0;
+        for (int s = 0; s < order.size() && enumerated < MAX_CYCLES_PER_COMPONENT; s++) {
+            Integer start = order.get(s);
+            Set<Integer> blocked = new HashSet<>();
+            Map<Integer, Set<Integer>> blockedBy = new HashMap<>();
+            // 栈帧：锁，未访问的后继，是否经它回到了起点
+            Deque<Object[]> work = new ArrayDeque<>();
+            work.push(new Object[]{start, successors(graph, start).iterator(), false});
+            blocked.add(start);
+            while (!work.isEmpty()) {
+                Object[] frame = work.peek();
+                Integer node = (Integer) frame[0];
+                @SuppressWarnings("unchecked")
+                Iterator<Integer> next = (Iterator<Integer>) frame[1];
+                if (next.hasNext() && enumerated < MAX_CYCLES_PER_COMPONENT) {
+                    Integer successor = next.next();
+                    Integer successorRank = rank.get(successor);
+                    if (successorRank == null || successorRank < s) {
+                        continue;
+                    }
+                    if (successor.equals(start)) {
+                        enumerated++;
+                        frame[2] = true;
+                        if (best == null || work.size() < best.size()) {
+                            List<Integer> cycle = new ArrayList<>();
+                            for (Iterator<Object[]> path = work.descendingIterator(); path.hasNext(); ) {
+                                cycle.add((Integer) path.next()[0]);
+                            }
+                            if (involvesSeveralThreads(edges, graph, cycle)) {
+                                best = cycle;
+                                if (best.size() == 2) {
+                                    return best;
+                                }
+                            }
+                        }
+                    } else if (!blocked.contains(successor)) {
+                        blocked.add(successor);
+                        work.push(new Object[]{successor, successors(graph, successor).iterator(), false});
+                    }
+                    continue;
+                }
+                work.pop();
+                if ((Boolean) frame[2]) {
+                    unblock(node, blocked, blockedBy);
+                } else {
+                    for (Integer successor : successors(graph, node)) {
+                        Integer successorRank = rank.get(successor);
+                        if (successorRank != null && successorRank >= s) {
+                            blockedBy.computeIfAbsent(successor, k -> new HashSet<>()).add(node);
+                        }
+                    }
+                }
+                if (!work.isEmpty() && (Boolean) frame[2]) {
+                    work.peek()[2] = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static void unblock(Integer node, Set<Integer> blocked, Map<Integer, Set<Integer>> blockedBy) {
+        Deque<Integer> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Integer current = pending.pop();
+            if (blocked.remove(current)) {
+                Set<Integer> waiting = blockedBy.remove(current);
+                if (waiting != null) {
+                    pending.addAll(waiting);
+                }
+            }
+        }
+    }
+
+    private static boolean involvesSeveralThreads(EdgeSet edges, Map<Integer, Map<Integer, Integer>> graph,
+                                                  List<Integer> cycle) {
+        long firstThread = 0;
+        for (int i = 0; i < cycle.size(); i++) {
+            long thread = edges.threadAt(graph.get(cycle.get(i)).get(cycle.get((i + 1) % cycle.size())));
+            if (thread == EdgeSet.SHARED || firstThread != 0 && thread != firstThread) {
+                return true;
+            }
+            firstThread = thread;
+        }
+        return false;
+    }
+
+    private void report(EdgeSet edges, Map<Integer, Map<Integer, Integer>> graph, List<Integer> cycle) {
+        Integer[] signature = cycle.toArray(new Integer[0]);
+        Arrays.sort(signature);
+        if (!reported.add(Arrays.toString(signature))) {
+            return;
+        }
+        StringBuilder text = new StringBuilder("[deadlock-agent] 潜在死锁：")
+                .append(cycle.size()).append(" 把锁的加锁顺序成环\n");
+        for (int i = 0; i < cycle.size(); i++) {
+            int held = cycle.get(i);
+            int acquired = cycle.get((i + 1) % cycle.size());
+            int slot = graph.get(held).get(acquired);
+            long sites = edges.siteAt(slot);
+            long thread = edges.threadAt(slot);
+            text.append(String.format("  持有 %s（%s）时获取 %s（%s），线程 %s\n",
+                    describe(edges, held), LockRecorder.site((int) (sites >>> 32)),
+                    describe(edges, acquired), LockRecorder.site((int) sites),
+                    thread == EdgeSet.SHARED ? "多个线程" : LockRecorder.threadName(thread)));
+        }
+        System.err.print(text);
+        if (options.reportFile != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(options.reportFile, true))) {
+                writer.print(text);
+            } catch (IOException e) {
+                System.err.println("[deadlock-agent] 无法写入报告：" + e.getMessage());
+            }
+        }
+    }
+
+    private static String describe(EdgeSet edges, int lockId) {
+        Class<?> type = edges.typeOf(lockId);
+        String typeName = type != null ? type.getName() : "Object";
+        return typeName.substring(typeName.lastIndexOf('.') + 1) + "@" + Integer.toHexString(lockId);
+    }
+}
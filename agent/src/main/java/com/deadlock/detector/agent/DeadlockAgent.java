@@ -0,0 +1,37 @@
+package com.deadlock.detector.agent;
+
+import java.io.File;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+import java.util.jar.JarFile;
+
+/**
+ * -javaagent入口
+ * 插桩后的代码可能由任意类加载器加载，LockRecorder必须对所有类可见：
+ * 先把Agent的jar追加到启动类路径，再通过启动类加载器加载AgentBootstrap，
+ * 这个类里不能直接引用Agent的其他类，否则它们会先被系统类加载器加载。
+ */
+public final class DeadlockAgent {
+
+    private DeadlockAgent() {
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) throws Exception {
+        start(args, instrumentation, false);
+    }
+
+    /**
+     * 运行中挂载：已加载的类会被重新转换
+     */
+    public static void agentmain(String args, Instrumentation instrumentation) throws Exception {
+        start(args, instrumentation, true);
+    }
+
+    private static void start(String args, Instrumentation instrumentation, boolean attached) throws Exception {
+        File jar = new File(DeadlockAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        instrumentation.appendToBootstrapClassLoaderSearch(new JarFile(jar));
+        Class<?> bootstrap = Class.forName("com.deadlock.detector.agent.AgentBootstrap", true, null);
+        Method install = bootstrap.getMethod("install", String.class, Instrumentation.class, boolean.class);
+        install.invoke(null, args, instrumentation, attached);
+    }
+}
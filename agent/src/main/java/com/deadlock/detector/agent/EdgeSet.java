@@ -0,0 +1,162 @@
+package com.deadlock.detector.agent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 全局的加锁顺序边集合，开放寻址的无锁哈希表
+ * 边编码为long：高32位是已持有的锁，低32位是正在获取的锁，0保留为空槽；
+ * 插入只对空槽做一次CAS，已有的边只读比较，不会阻塞任何线程。
+ * 每条边记录第一次出现时的两个加锁位置和线程，之后由其他线程再次记录时标记为多线程，
+ * 只在同一个线程里出现过的环不会死锁。
+ * 新增边和边变为多线程都会递增版本号，检测线程据此判断是否需要重新找环。
+ * 另有一张同样结构的表记录锁ID对应的类型，供报告使用。
+ */
+final class EdgeSet {
+    // 边被两个以上的线程记录过
+    static final long SHARED = -1;
+
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray sites;
+    private final AtomicLongArray threads;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger version = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicIntegerArray lockIds;
+    private final AtomicReferenceArray<Class<?>> lockTypes;
+
+    EdgeSet(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(1024, capacity - 1)) << 1;
+        mask = tableSize - 1;
+        keys = new AtomicLongArray(tableSize);
+        sites = new AtomicLongArray(tableSize);
+        threads = new AtomicLongArray(tableSize);
+        lockIds = new AtomicIntegerArray(tableSize);
+        lockTypes = new AtomicReferenceArray<>(tableSize);
+    }
+
+    static long edge(int held, int acquired) {
+        return ((long) held << 32) | (acquired & 0xffffffffL);
+    }
+
+    static int held(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    static int acquired(long edge) {
+        return (int) edge;
+    }
+
+    /**
+     * 加入一条边，返回是否是新边；表满时丢弃并计数
+     */
+    boolean add(long edge, long site, long threadId) {
+        int index = (int) mix(edge) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long current = keys.get(index);
+            if (current == 0) {
+                if (keys.compareAndSet(index, 0, edge)) {
+                    sites.set(index, site);
+                    threads.set(index, threadId);
+                    size.incrementAndGet();
+                    version.incrementAndGet();
+                    return true;
+                }
+                current = keys.get(index);
+            }
+            if (current == edge) {
+                long first = threads.get(index);
+                if (first != 0 && first != threadId && first != SHARED
+                        && threads.compareAndSet(index, first, SHARED)) {
+                    version.incrementAndGet();
+                }
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 记录锁ID对应的类型，只在一条边第一次被某个线程记录时调用
+     */
+    void registerLock(int lockId, Class<?> type) {
+        int index = (int) mix(lockId) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            int current = lockIds.get(index);
+            if (current == lockId) {
+                return;
+            }
+            if (current == 0 && lockIds.compareAndSet(index, 0, lockId)) {
+                lockTypes.set(index, type);
+                return;
+            }
+            if (lockIds.get(index) == lockId) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    Class<?> typeOf(int lockId) {
+        int index = (int) mix(lockId) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            int current = lockIds.get(index);
+            if (current == lockId) {
+                return lockTypes.get(index);
+            }
+            if (current == 0) {
+                return null;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * 边的状态版本：每次新增边或边变为多线程时递增
+     */
+    int version() {
+        return version.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 槽位访问，供检测线程遍历；空槽的key为0
+     */
+    long keyAt(int index) {
+        return keys.get(index);
+    }
+
+    long siteAt(int index) {
+        return sites.get(index);
+    }
+
+    long threadAt(int index) {
+        return threads.get(index);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,89 @@
+package com.deadlock.detector.agent;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 加锁事件日志（.dlev）的多线程写入端，格式与插件中的LockEventLog一致：
+ * 文件头占第一块，之后是固定4KB的块；每块只由一个线程写入，记录32字节、小端，类型字节最后写。
+ * 启动时按logSize预先映射整个文件，线程用一次getAndAdd领取一整块，之后在块内顺序写入，
+ * 写满才领取下一块，事件之间没有共享写。文件写满后停止记录。
+ * 采样模式下插桩方法不写日志，由检测线程写出采到的加锁顺序边。
+ */
+final class EventLogWriter {
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+    static final int BLOCK_SIZE = 4096;
+    static final int MAX_NAME_BYTES = BLOCK_SIZE - RECORD_SIZE;
+
+    static final byte ACQUIRE = 1;
+    static final byte ACQUIRED = 2;
+    static final byte RELEASE = 3;
+    static final byte ORDER_EDGE = 5;
+    static final byte DEFINE_THREAD = 16;
+    static final byte DEFINE_LOCK = 17;
+    static final byte DEFINE_SITE = 18;
+
+    private static final int MAGIC = 0x56454C44; // "DLEV"
+    private static final int VERSION = 1;
+    private static final int END_POSITION_OFFSET = 32;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final AtomicLong next = new AtomicLong(BLOCK_SIZE);
+    private volatile boolean full;
+
+    EventLogWriter(String path, int sizeMegabytes) throws IOException {
+        long size = Math.min((long) sizeMegabytes << 20, Integer.MAX_VALUE) / BLOCK_SIZE * BLOCK_SIZE;
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putLong(16, System.currentTimeMillis());
+        buffer.putLong(24, System.nanoTime());
+    }
+
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    boolean isFull() {
+        return full;
+    }
+
+    /**
+     * 领取一块，返回块的起始位置；文件已满返回-1
+     */
+    int reserveBlock() {
+        long position = next.getAndAdd(BLOCK_SIZE);
+        if (position + BLOCK_SIZE > buffer.capacity()) {
+            if (!full) {
+                full = true;
+                System.err.println("[deadlock-agent] 事件日志已写满，停止记录，可增大logSize参数");
+            }
+            return -1;
+        }
+        return (int) position;
+    }
+
+    /**
+     * 写入结束位置并刷盘，JVM退出时调用
+     */
+    void close() {
+        long end = Math.min(next.get(), buffer.capacity());
+        buffer.putLong(END_POSITION_OFFSET, end);
+        buffer.force();
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("[deadlock-agent] 无法关闭事件日志：" + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.deadlock.detector.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 插桩代码调用的入口
+ * monitorenter之前调用monitorEnter，monitorexit之前调用monitorExit；
+ * Lock.lock()/lockInterruptibly()/tryLock()/unlock()的调用点被替换为这里的同名静态方法，
+ * 由它们转调原来的锁并记录。锁用System.identityHashCode识别。
+ * 限时或非阻塞的tryLock不会永久等待，不记录加锁顺序边，获取成功后仍计入持有栈。
+ * 开启事件日志时，阻塞获取前写ACQUIRE，取得后写ACQUIRED（monitorenter之后另有monitorEntered），
+ * 真正释放之前写RELEASE，保证回放时的先后关系与实际一致。
+ * 采样模式超出预算暂停跟踪时，各方法只读一次Sampler.paused就直接转调原来的锁。
+ */
+public final class LockRecorder {
+    private static final ThreadLocal<ThreadLockState> STATE = new ThreadLocal<ThreadLockState>() {
+        @Override
+        protected ThreadLockState initialValue() {
+            ThreadLockState state = new ThreadLockState(Thread.currentThread());
+            THREADS.add(state);
+            THREAD_NAMES.put(state.threadId, state.threadName);
+            EventLogWriter writer = log;
+            if (writer != null) {
+                state.define(writer, EventLogWriter.DEFINE_THREAD, (int) state.threadId, state.threadName);
+            }
+            return state;
+        }
+    };
+    private static final List<ThreadLockState> THREADS = new CopyOnWriteArrayList<>();
+    private static final Map<Long, String> THREAD_NAMES = new ConcurrentHashMap<>();
+    private static final List<String> SITES = new ArrayList<>();
+
+    private static volatile EdgeSet edges = new EdgeSet(1024);
+    private static volatile EventLogWriter log;
+
+    private LockRecorder() {
+    }
+
+    static void install(EdgeSet edgeSet) {
+        edges = edgeSet;
+    }
+
+    static EdgeSet edges() {
+        return edges;
+    }
+
+    static void installLog(EventLogWriter writer) {
+        log = writer;
+    }
+
+    static EventLogWriter log() {
+        return log;
+    }
+
+    static List<ThreadLockState> threads() {
+        return THREADS;
+    }
+
+    static void forget(ThreadLockState state) {
+        THREADS.remove(state);
+    }
+
+    static String threadName(long threadId) {
+        String name = THREAD_NAMES.get(threadId);
+        return name != null ? name : "#" + threadId;
+    }
+
+    /**
+     * 登记一个加锁位置（类.方法:行号），插桩时调用
+     */
+    static int registerSite(String site) {
+        int id;
+        synchronized (SITES) {
+            SITES.add(site);
+            id = SITES.size() - 1;
+        }
+        EventLogWriter writer = log;
+        if (writer != null) {
+            STATE.get().define(writer, EventLogWriter.DEFINE_SITE, id, site);
+        }
+        return id;
+    }
+
+    static String site(int site) {
+        synchronized (SITES) {
+            return site >= 0 && site < SITES.size() ? SITES.get(site) : "?";
+        }
+    }
+
+    /**
+     * 当前线程的状态，暂停跟踪之后先丢弃失效的持有栈
+     */
+    private static ThreadLockState state() {
+        ThreadLockState state = STATE.get();
+        state.syncEpoch();
+        return state;
+    }
+
+    public static void monitorEnter(Object monitor, int site) {
+        if (monitor == null || Sampler.paused) {
+            return;
+        }
+        ThreadLockState state = state();
+        int id = state.lockId(monitor);
+        EventLogWriter writer = log;
+        if (writer != null) {
+            state.log(writer, EventLogWriter.ACQUIRE, id, site);
+        }
+        state.acquiring(monitor, id, site, edges);
+        state.acquired(monitor, id, site);
+    }
+
+    /**
+     * 只在开启事件日志时插入到monitorenter之后
+     */
+    public static void monitorEntered(Object monitor, int site) {
+        EventLogWriter writer = log;
+        if (writer != null && !Sampler.paused) {
+            ThreadLockState state = state();
+            state.log(writer, EventLogWriter.ACQUIRED, state.lockId(monitor), site);
+        }
+    }
+
+    public static void monitorExit(Object monitor) {
+        if (monitor != null && !Sampler.paused) {
+            ThreadLockState state = state();
+            logRelease(state, monitor);
+            state.released(monitor);
+        }
+    }
+
+    public static void lock(Lock lock, int site) {
+        if (Sampler.paused) {
+            lock.lock();
+            return;
+        }
+        ThreadLockState state = state();
+        int id = state.lockId(lock);
+        EventLogWriter writer = log;
+        if (writer != null) {
+            state.log(writer, EventLogWriter.ACQUIRE, id, site);
+        }
+        state.acquiring(lock, id, site, edges);
+        lock.lock();
+        state.acquired(lock, id, site);
+        if (writer != null) {
+            state.log(writer, EventLogWriter.ACQUIRED, id, site);
+        }
+    }
+
+    public static void lockInterruptibly(Lock lock, int site) throws InterruptedException {
+        if (Sampler.paused) {
+            lock.lockInterruptibly();
+            return;
+        }
+        ThreadLockState state = state();
+        int id = state.lockId(lock);
+        EventLogWriter writer = log;
+        if (writer != null) {
+            state.log(writer, EventLogWriter.ACQUIRE, id, site);
+        }
+        state.acquiring(lock, id, site, edges);
+        lock.lockInterruptibly();
+        state.acquired(lock, id, site);
+        if (writer != null) {
+            state.log(writer, EventLogWriter.ACQUIRED, id, site);
+        }
+    }
+
+    public static boolean tryLock(Lock lock, int site) {
+        boolean locked = lock.tryLock();
+        if (locked) {
+            tryLocked(lock, site);
+        }
+        return locked;
+    }
+
+    public static boolean tryLock(Lock lock, long time, TimeUnit unit, int site) throws InterruptedException {
+        boolean locked = lock.tryLock(time, unit);
+        if (locked) {
+            tryLocked(lock, site);
+        }
+        return locked;
+    }
+
+    /**
+     * 先记录释放再真正解锁；没有持有时unlock会抛出IllegalMonitorStateException，持有栈里本来也没有它
+     */
+    public static void unlock(Lock lock) {
+        if (!Sampler.paused) {
+            ThreadLockState state = state();
+            logRelease(state, lock);
+            state.released(lock);
+        }
+        lock.unlock();
+    }
+
+    private static void tryLocked(Lock lock, int site) {
+        if (Sampler.paused) {
+            return;
+        }
+        ThreadLockState state = state();
+        int id = state.lockId(lock);
+        state.acquired(lock, id, site);
+        EventLogWriter writer = log;
+        if (writer != null) {
+            state.log(writer, EventLogWriter.ACQUIRED, id, site);
+        }
+    }
+
+    private static void logRelease(ThreadLockState state, Object lock) {
+        EventLogWriter writer = log;
+        if (writer != null) {
+            state.log(writer, EventLogWriter.RELEASE, state.lockId(lock), -1);
+        }
+    }
+}
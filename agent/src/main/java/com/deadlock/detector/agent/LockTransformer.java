@@ -0,0 +1,320 @@
+package com.deadlock.detector.agent;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 插桩monitorenter/monitorexit、synchronized方法以及Lock的加锁解锁调用点
+ * 只改写应用类的方法体，不插桩JDK：Lock调用在调用点被替换为LockRecorder中的静态方法。
+ * synchronized方法在进入时记录（JVM已经取得锁，因此阻塞在方法入口的那次获取不会被记录），
+ * 在每个return前以及包住整个方法体的catch-all处理器中释放。
+ * 只有插入了异常处理器的类需要重新计算栈帧，其他改动不改变分支处的栈和局部变量。
+ * 开启事件日志时在monitorenter之后再调用monitorEntered，记录真正取得监视器的时刻。
+ */
+final class LockTransformer implements ClassFileTransformer {
+    private static final String RECORDER = Type.getInternalName(LockRecorder.class);
+    private static final String LOCK = "java/util/concurrent/locks/Lock";
+    private static final Set<String> LOCK_OWNERS = new HashSet<>();
+
+    static {
+        LOCK_OWNERS.add(LOCK);
+        LOCK_OWNERS.add("java/util/concurrent/locks/ReentrantLock");
+        LOCK_OWNERS.add("java/util/concurrent/locks/ReentrantReadWriteLock$ReadLock");
+        LOCK_OWNERS.add("java/util/concurrent/locks/ReentrantReadWriteLock$WriteLock");
+    }
+
+    private final AgentOptions options;
+    private volatile boolean failureReported;
+
+    LockTransformer(AgentOptions options) {
+        this.options = options;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (loader == null || className == null || !options.shouldInstrument(className)) {
+            return null;
+        }
+        try {
+            ClassReader reader = new ClassReader(classfileBuffer);
+            boolean computeFrames = hasSynchronizedMethods(reader) && reader.readShort(6) >= Opcodes.V1_6;
+            ClassWriter writer = new LoaderClassWriter(loader,
+                    computeFrames ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS);
+            InstrumentingClassVisitor visitor = new InstrumentingClassVisitor(writer,
+                    options.logFile != null && options.budgetPercent == 0);
+            reader.accept(visitor, computeFrames ? ClassReader.SKIP_FRAMES : 0);
+            return visitor.changed ? writer.toByteArray() : null;
+        } catch (Throwable t) {
+            if (!failureReported) {
+                failureReported = true;
+                System.err.println("[deadlock-agent] 无法插桩 " + className + "：" + t);
+            }
+            return null;
+        }
+    }
+
+    private static boolean hasSynchronizedMethods(ClassReader reader) {
+        boolean[] found = new boolean[1];
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                if ((access & Opcodes.ACC_SYNCHRONIZED) != 0 && (access & Opcodes.ACC_ABSTRACT) == 0) {
+                    found[0] = true;
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return found[0];
+    }
+
+    private static class InstrumentingClassVisitor extends ClassVisitor {
+        private final boolean logging;
+        private String className;
+        private int version;
+        private boolean changed;
+
+        InstrumentingClassVisitor(ClassVisitor next, boolean logging) {
+            super(Opcodes.ASM9, next);
+            this.logging = logging;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            this.className = name;
+            this.version = version;
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                         String[] exceptions) {
+            MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+            boolean synchronizedMethod = (access & Opcodes.ACC_SYNCHRONIZED) != 0
+                    && ((access & Opcodes.ACC_STATIC) == 0 || (version & 0xffff) >= Opcodes.V1_5);
+            return new InstrumentingMethodVisitor(next, this, name, synchronizedMethod,
+                    (access & Opcodes.ACC_STATIC) != 0);
+        }
+    }
+
+    private static class InstrumentingMethodVisitor extends MethodVisitor {
+        private final InstrumentingClassVisitor owner;
+        private final String methodName;
+        private final boolean synchronizedMethod;
+        private final boolean staticMethod;
+        private final Label start = new Label();
+        private int line = -1;
+        private boolean hasCode;
+
+        InstrumentingMethodVisitor(MethodVisitor next, InstrumentingClassVisitor owner, String methodName,
+                                   boolean synchronizedMethod, boolean staticMethod) {
+            super(Opcodes.ASM9, next);
+            this.owner = owner;
+            this.methodName = methodName;
+            this.synchronizedMethod = synchronizedMethod;
+            this.staticMethod = staticMethod;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            hasCode = true;
+            if (synchronizedMethod) {
+                super.visitLabel(start);
+                int site = site();
+                pushMethodMonitor();
+                pushInt(site);
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "monitorEnter", "(Ljava/lang/Object;I)V", false);
+                if (owner.logging) {
+                    pushMethodMonitor();
+                    pushInt(site);
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "monitorEntered", "(Ljava/lang/Object;I)V", false);
+                }
+                owner.changed = true;
+            }
+        }
+
+        @Override
+        public void visitLineNumber(int line, Label startLabel) {
+            this.line = line;
+            super.visitLineNumber(line, startLabel);
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            if (opcode == Opcodes.MONITORENTER) {
+                int site = site();
+                super.visitInsn(Opcodes.DUP);
+                pushInt(site);
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "monitorEnter", "(Ljava/lang/Object;I)V", false);
+                owner.changed = true;
+                if (owner.logging) {
+                    super.visitInsn(Opcodes.DUP);
+                    super.visitInsn(Opcodes.MONITORENTER);
+                    pushInt(site);
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "monitorEntered", "(Ljava/lang/Object;I)V", false);
+                    return;
+                }
+            } else if (opcode == Opcodes.MONITOREXIT) {
+                super.visitInsn(Opcodes.DUP);
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "monitorExit", "(Ljava/lang/Object;)V", false);
+                owner.changed = true;
+            } else if (synchronizedMethod && opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+                releaseMethodMonitor();
+            }
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if ((opcode == Opcodes.INVOKEINTERFACE || opcode == Opcodes.INVOKEVIRTUAL) && LOCK_OWNERS.contains(owner)) {
+                String replacement = replacementDescriptor(name, descriptor);
+                if (replacement != null) {
+                    if (!"unlock".equals(name)) {
+                        pushInt(site());
+                    }
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, name, replacement, false);
+                    this.owner.changed = true;
+                    return;
+                }
+            }
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            if (synchronizedMethod && hasCode) {
+                // 异常退出时释放：catch-all处理器覆盖整个方法体
+                Label handler = new Label();
+                super.visitLabel(handler);
+                releaseMethodMonitor();
+                super.visitInsn(Opcodes.ATHROW);
+                super.visitTryCatchBlock(start, handler, handler, null);
+            }
+            super.visitMaxs(maxStack, maxLocals);
+        }
+
+        private void releaseMethodMonitor() {
+            pushMethodMonitor();
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "monitorExit", "(Ljava/lang/Object;)V", false);
+        }
+
+        private void pushMethodMonitor() {
+            if (staticMethod) {
+                super.visitLdcInsn(Type.getObjectType(owner.className));
+            } else {
+                super.visitVarInsn(Opcodes.ALOAD, 0);
+            }
+        }
+
+        private int site() {
+            String simpleName = owner.className.substring(owner.className.lastIndexOf('/') + 1);
+            return LockRecorder.registerSite(simpleName + "." + methodName + (line >= 0 ? ":" + line : ""));
+        }
+
+        private void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                super.visitInsn(Opcodes.ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                super.visitIntInsn(Opcodes.BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                super.visitIntInsn(Opcodes.SIPUSH, value);
+            } else {
+                super.visitLdcInsn(value);
+            }
+        }
+    }
+
+    /**
+     * 调用点替换后的静态方法描述符：接收者作为第一个参数，加锁方法追加加锁位置
+     */
+    private static String replacementDescriptor(String name, String descriptor) {
+        switch (name + descriptor) {
+            case "lock()V":
+                return "(L" + LOCK + ";I)V";
+            case "lockInterruptibly()V":
+                return "(L" + LOCK + ";I)V";
+            case "tryLock()Z":
+                return "(L" + LOCK + ";I)Z";
+            case "tryLock(JLjava/util/concurrent/TimeUnit;)Z":
+                return "(L" + LOCK + ";JLjava/util/concurrent/TimeUnit;I)Z";
+            case "unlock()V":
+                return "(L" + LOCK + ";)V";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 计算栈帧时需要公共父类：从类加载器读取class文件解析父类，不触发类加载
+     */
+    private static class LoaderClassWriter extends ClassWriter {
+        private final ClassLoader loader;
+
+        LoaderClassWriter(ClassLoader loader, int flags) {
+            super(flags);
+            this.loader = loader;
+        }
+
+        @Override
+        protected String getCommonSuperClass(String type1, String type2) {
+            Set<String> ancestors = new HashSet<>();
+            for (String type = type1; type != null; type = superClassOf(type)) {
+                if (isInterface(type)) {
+                    return "java/lang/Object";
+                }
+                ancestors.add(type);
+            }
+            for (String type = type2; type != null; type = superClassOf(type)) {
+                if (ancestors.contains(type)) {
+                    return type;
+                }
+            }
+            return "java/lang/Object";
+        }
+
+        private String superClassOf(String type) {
+            ClassReader reader = read(type);
+            return reader != null ? reader.getSuperName() : null;
+        }
+
+        private boolean isInterface(String type) {
+            ClassReader reader = read(type);
+            return reader != null && (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0;
+        }
+
+        private ClassReader read(String type) {
+            if ("java/lang/Object".equals(type)) {
+                return null;
+            }
+            try (InputStream in = loader.getResourceAsStream(type + ".class")) {
+                if (in == null) {
+                    return null;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                for (int n; (n = in.read(chunk)) > 0; ) {
+                    bytes.write(chunk, 0, n);
+                }
+                return new ClassReader(bytes.toByteArray());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
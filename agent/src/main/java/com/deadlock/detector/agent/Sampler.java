@@ -0,0 +1,80 @@
+package com.deadlock.detector.agent;
+
+/**
+ * 采样模式（budget参数）的开销控制
+ * 每个线程用计数最小草图估计"持有的锁集合 + 正在获取的锁"这一加锁上下文出现过的次数：
+ * 少见的上下文（估计不超过KEEP次）总是记录，常见的按次数降采样，记录概率约为 KEEP/估计值 × 2^-shift。
+ * 检测线程每个周期按事件数和遍历的持有锁数估算插桩开销：超出预算时加大shift；
+ * shift到上限仍超出，或者仅插桩方法本身就超出时，按比例暂停若干个周期，
+ * 暂停期间插桩方法读一个volatile就返回，恢复时推进纪元，各线程丢弃已失效的持有栈。
+ * 计数由各线程普通写入、检测线程无同步读取，只作估算。
+ */
+final class Sampler {
+    // 估计出现次数不超过该值的加锁上下文总是记录
+    static final int KEEP = 8;
+    private static final int MAX_SHIFT = 12;
+    private static final int MAX_PAUSE = 16;
+    // 基准测试中一次加锁+释放的插桩开销，以及遍历一把持有锁的开销（纳秒）
+    private static final long EVENT_NANOS = 12;
+    private static final long VISIT_NANOS = 4;
+
+    static volatile boolean enabled;
+    static volatile boolean paused;
+    static volatile int shift;
+    static volatile int epoch;
+
+    // 一个CPU的比例
+    private final double budget;
+    private long lastCheck = System.nanoTime();
+    private long events;
+    private long visits;
+    private int pausedChecks;
+
+    Sampler(double budgetPercent) {
+        this.budget = budgetPercent / 100;
+    }
+
+    /**
+     * 累计一个线程自上次以来的事件数
+     */
+    void account(ThreadLockState state) {
+        long stateEvents = state.events;
+        long stateVisits = state.visits;
+        events += stateEvents - state.accountedEvents;
+        visits += stateVisits - state.accountedVisits;
+        state.accountedEvents = stateEvents;
+        state.accountedVisits = stateVisits;
+    }
+
+    /**
+     * 每个检测周期调用一次，按本周期的估算开销调整采样率
+     */
+    void adjust() {
+        long now = System.nanoTime();
+        long budgetNanos = Math.max(1, (long) ((now - lastCheck) * budget));
+        long baseCost = events * EVENT_NANOS;
+        long cost = baseCost + visits * VISIT_NANOS;
+        lastCheck = now;
+        events = 0;
+        visits = 0;
+        if (pausedChecks > 0) {
+            if (--pausedChecks == 0) {
+                epoch++;
+                paused = false;
+            }
+            return;
+        }
+        if (cost > budgetNanos) {
+            if (shift < MAX_SHIFT && baseCost <= budgetNanos) {
+                int over = 63 - Long.numberOfLeadingZeros(cost / budgetNanos);
+                shift = Math.min(MAX_SHIFT, shift + Math.max(1, over));
+            } else {
+                pausedChecks = (int) Math.min(MAX_PAUSE, cost / budgetNanos);
+                paused = true;
+                System.err.println("[deadlock-agent] 插桩开销超出预算，暂停跟踪 " + pausedChecks + " 个检测周期");
+            }
+        } else if (cost < budgetNanos / 4 && shift > 0) {
+            shift--;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.deadlock.detector.agent;
+
+import java.lang.ref.WeakReference;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个线程的加锁状态，只由所属线程写入
+ * 持有栈记录当前持有的锁对象、锁ID和加锁位置；去重缓存是直接映射的long数组，
+ * 本线程记录过的边命中后直接返回，热路径上没有共享写也没有分配。
+ * 新边先写入固定大小的单生产者/单消费者环形缓冲，由检测线程定期取走；
+ * 缓冲满时直接写入全局边集合。
+ * 重入和释放按对象引用比较；锁ID先查最近用过的几把锁：对被其他线程持有的对象取identityHashCode
+ * 会迫使虚拟机膨胀它的监视器，竞争激烈时代价明显。
+ * 开启事件日志时，本线程的事件写入自己领取的日志块，写满一块才再领取。
+ * 采样模式下另有一个计数最小草图，按加锁上下文的出现次数决定是否记录边（见Sampler）。
+ */
+final class ThreadLockState {
+    static final int MAX_HELD = 64;
+    private static final int DEDUP_SIZE = 1024;
+    private static final int BUFFER_SIZE = 256;
+    private static final int RECENT_SIZE = 8;
+    private static final int SKETCH_ROWS = 4;
+    private static final int SKETCH_WIDTH = 256;
+    // 草图每更新这么多次，所有计数减半，不再出现的上下文逐渐重新变为少见
+    private static final int SKETCH_DECAY = 1 << 16;
+
+    final long threadId;
+    final String threadName;
+    private final WeakReference<Thread> thread;
+
+    private final Object[] heldLocks = new Object[MAX_HELD];
+    private final int[] heldIds = new int[MAX_HELD];
+    private final int[] heldSites = new int[MAX_HELD];
+    // 可能超过MAX_HELD，超出的部分不跟踪
+    private int depth;
+    // 持有栈中锁ID散列之和，加锁上下文的指纹（重入的锁出现两次，因此用和而不是异或）
+    private long heldHash;
+    private int epoch = Sampler.epoch;
+
+    // 采样模式：计数最小草图及其更新次数、xorshift随机数
+    private final int[] sketch;
+    private int sketchUpdates;
+    private long random;
+
+    // 由本线程写入、检测线程读取的开销计数，以及检测线程已经统计过的部分
+    long events;
+    long visits;
+    long accountedEvents;
+    long accountedVisits;
+
+    private final long[] seen = new long[DEDUP_SIZE];
+
+    // 最近用过的锁及其ID，轮流替换；最多让8个已不再使用的锁对象晚一些被回收
+    private final Object[] recentLocks = new Object[RECENT_SIZE];
+    private final int[] recentIds = new int[RECENT_SIZE];
+    private int recentNext;
+
+    // 每条待取走的边占两个槽：边、加锁位置
+    private final long[] buffer = new long[BUFFER_SIZE * 2];
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // 事件日志中当前块的写入位置和块尾，相等时需要领取新块
+    private int logPosition;
+    private int logLimit;
+    // 本线程已经写过定义的锁ID，直接映射；不同线程重复定义同一把锁无妨
+    private final int[] definedLocks = new int[DEDUP_SIZE];
+
+    ThreadLockState(Thread owner) {
+        threadId = owner.getId();
+        threadName = owner.getName();
+        thread = new WeakReference<>(owner);
+        sketch = Sampler.enabled ? new int[SKETCH_ROWS * SKETCH_WIDTH] : null;
+        random = threadId * 0x9E3779B97F4A7C15L | 1;
+    }
+
+    /**
+     * 暂停跟踪之后恢复时调用：暂停期间的获取和释放都没有记录，持有栈已不可信
+     */
+    void syncEpoch() {
+        if (epoch != Sampler.epoch) {
+            epoch = Sampler.epoch;
+            Arrays.fill(heldLocks, null);
+            depth = 0;
+            heldHash = 0;
+        }
+    }
+
+    /**
+     * 锁ID：System.identityHashCode，0保留给空槽
+     */
+    int lockId(Object lock) {
+        for (int i = 0; i < RECENT_SIZE; i++) {
+            if (recentLocks[i] == lock) {
+                return recentIds[i];
+            }
+        }
+        int id = System.identityHashCode(lock);
+        if (id == 0) {
+            id = 1;
+        }
+        recentLocks[recentNext] = lock;
+        recentIds[recentNext] = id;
+        recentNext = (recentNext + 1) & (RECENT_SIZE - 1);
+        EventLogWriter log = LockRecorder.log();
+        if (log != null && definedLocks[id & (DEDUP_SIZE - 1)] != id) {
+            definedLocks[id & (DEDUP_SIZE - 1)] = id;
+            String type = lock.getClass().getName();
+            define(log, EventLogWriter.DEFINE_LOCK, id,
+                    type.substring(type.lastIndexOf('.') + 1) + "@0x" + Integer.toHexString(id));
+        }
+        return id;
+    }
+
+    /**
+     * 即将获取一把锁（可能阻塞）：为每个已持有的其他锁记录一条"持有A、获取B"的边
+     */
+    void acquiring(Object lock, int lockId, int site, EdgeSet edges) {
+        int tracked = Math.min(depth, MAX_HELD);
+        for (int i = 0; i < tracked; i++) {
+            if (heldLocks[i] == lock) {
+                // 重入
+                return;
+            }
+        }
+        events++;
+        if (tracked == 0 || sketch != null && !sample(lockId)) {
+            return;
+        }
+        visits += tracked;
+        for (int i = 0; i < tracked; i++) {
+            int held = heldIds[i];
+            long edge = EdgeSet.edge(held, lockId);
+            int slot = (int) (edge ^ (edge >>> 29)) & (DEDUP_SIZE - 1);
+            if (seen[slot] == edge) {
+                continue;
+            }
+            seen[slot] = edge;
+            edges.registerLock(held, heldLocks[i].getClass());
+            edges.registerLock(lockId, lock.getClass());
+            long sites = ((long) heldSites[i] << 32) | (site & 0xffffffffL);
+            if (!offer(edge, sites)) {
+                edges.add(edge, sites, threadId);
+            }
+        }
+    }
+
+    /**
+     * 已获取
+     */
+    void acquired(Object lock, int lockId, int site) {
+        if (depth < MAX_HELD) {
+            heldLocks[depth] = lock;
+            heldIds[depth] = lockId;
+            heldSites[depth] = site;
+            heldHash += mix(lockId);
+        }
+        depth++;
+    }
+
+    /**
+     * 释放：从栈顶向下找到最近一次获取的同一把锁，显式锁可以不按获取的相反顺序释放
+     */
+    void released(Object lock) {
+        if (depth > MAX_HELD) {
+            depth--;
+            return;
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            if (heldLocks[i] == lock) {
+                heldHash -= mix(heldIds[i]);
+                System.arraycopy(heldLocks, i + 1, heldLocks, i, depth - i - 1);
+                System.arraycopy(heldIds, i + 1, heldIds, i, depth - i - 1);
+                System.arraycopy(heldSites, i + 1, heldSites, i, depth - i - 1);
+                depth--;
+                heldLocks[depth] = null;
+                return;
+            }
+        }
+        // 插桩之前就已持有的锁，忽略
+    }
+
+    /**
+     * 在草图中记一次当前加锁上下文（保守更新：只增加等于最小值的计数），返回本次是否记录边
+     */
+    private boolean sample(int lockId) {
+        long key = mix(heldHash + lockId * 0x9E3779B97F4A7C15L);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < SKETCH_ROWS; row++) {
+            estimate = Math.min(estimate, sketch[row * SKETCH_WIDTH + ((int) (key >>> (row * 16)) & (SKETCH_WIDTH - 1))]);
+        }
+        if (estimate < Integer.MAX_VALUE) {
+            estimate++;
+        }
+        for (int row = 0; row < SKETCH_ROWS; row++) {
+            int index = row * SKETCH_WIDTH + ((int) (key >>> (row * 16)) & (SKETCH_WIDTH - 1));
+            if (sketch[index] < estimate) {
+                sketch[index] = estimate;
+            }
+        }
+        if (++sketchUpdates == SKETCH_DECAY) {
+            sketchUpdates = 0;
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] >>>= 1;
+            }
+        }
+        if (estimate <= Sampler.KEEP) {
+            return true;
+        }
+        int bits = Math.min(30, 31 - Integer.numberOfLeadingZeros(estimate / Sampler.KEEP) + Sampler.shift);
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (random & ((1L << bits) - 1)) == 0;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * 写一条ACQUIRE/ACQUIRED/RELEASE事件；日志已满时丢弃
+     */
+    void log(EventLogWriter log, byte kind, int lockId, int site) {
+        if (logPosition == logLimit && !nextBlock(log)) {
+            return;
+        }
+        MappedByteBuffer buffer = log.buffer();
+        int offset = logPosition;
+        buffer.putInt(offset + 4, (int) threadId);
+        buffer.putInt(offset + 8, lockId);
+        buffer.putInt(offset + 12, site);
+        buffer.putLong(offset + 16, System.nanoTime());
+        buffer.put(offset, kind);
+        logPosition = offset + EventLogWriter.RECORD_SIZE;
+    }
+
+    /**
+     * 采样模式下由检测线程写出一条加锁顺序边：线程为第一次记录它的线程，-1表示多个线程
+     */
+    void logEdge(EventLogWriter log, long edge, long sites, int edgeThread) {
+        if (logPosition == logLimit && !nextBlock(log)) {
+            return;
+        }
+        MappedByteBuffer buffer = log.buffer();
+        int offset = logPosition;
+        buffer.putInt(offset + 4, edgeThread);
+        buffer.putInt(offset + 8, EdgeSet.acquired(edge));
+        buffer.putInt(offset + 12, EdgeSet.held(edge));
+        buffer.putLong(offset + 16, System.nanoTime());
+        buffer.putLong(offset + 24, sites);
+        buffer.put(offset, EventLogWriter.ORDER_EDGE);
+        logPosition = offset + EventLogWriter.RECORD_SIZE;
+    }
+
+    /**
+     * 写一条线程/锁/位置的名字定义，名字放在其后的附加槽中，不跨块
+     */
+    void define(EventLogWriter log, byte kind, int id, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, EventLogWriter.MAX_NAME_BYTES);
+        int slots = (length + EventLogWriter.RECORD_SIZE - 1) / EventLogWriter.RECORD_SIZE;
+        int size = (1 + slots) * EventLogWriter.RECORD_SIZE;
+        if (logLimit - logPosition < size && !nextBlock(log)) {
+            return;
+        }
+        MappedByteBuffer buffer = log.buffer();
+        int offset = logPosition;
+        for (int i = 0; i < length; i++) {
+            buffer.put(offset + EventLogWriter.RECORD_SIZE + i, bytes[i]);
+        }
+        buffer.putShort(offset + 2, (short) slots);
+        buffer.putInt(offset + 4, (int) threadId);
+        buffer.putInt(offset + 12, id);
+        buffer.putLong(offset + 16, System.nanoTime());
+        buffer.putLong(offset + 24, length);
+        buffer.put(offset, kind);
+        logPosition = offset + size;
+    }
+
+    /**
+     * 领取新块，当前块剩余的空间保持为0，回放时视为块尾
+     */
+    private boolean nextBlock(EventLogWriter log) {
+        int position = log.isFull() ? -1 : log.reserveBlock();
+        if (position < 0) {
+            logPosition = logLimit;
+            return false;
+        }
+        logPosition = position;
+        logLimit = position + EventLogWriter.BLOCK_SIZE;
+        return true;
+    }
+
+    private boolean offer(long edge, long sites) {
+        long position = tail.get();
+        if (position - head.get() == BUFFER_SIZE) {
+            return false;
+        }
+        int index = (int) (position & (BUFFER_SIZE - 1)) * 2;
+        buffer[index] = edge;
+        buffer[index + 1] = sites;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * 由检测线程调用，把缓冲中的边移入全局集合
+     */
+    int drainTo(EdgeSet edges) {
+        long position = head.get();
+        long end = tail.get();
+        for (long i = position; i < end; i++) {
+            int index = (int) (i & (BUFFER_SIZE - 1)) * 2;
+            edges.add(buffer[index], buffer[index + 1], threadId);
+        }
+        head.lazySet(end);
+        return (int) (end - position);
+    }
+
+    boolean isTerminated() {
+        Thread owner = thread.get();
+        return owner == null || !owner.isAlive();
+    }
+}
@@ -0,0 +1,68 @@
+package com.deadlock.detector.agent;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CycleMonitorTest {
+    private static final int A = 1;
+    private static final int B = 2;
+    private static final int C = 3;
+
+    @Test
+    public void edgeBecomingSharedTriggersRecheck() throws IOException {
+        File report = File.createTempFile("locks", ".txt");
+        report.deleteOnExit();
+        AgentOptions options = new AgentOptions();
+        options.reportFile = report.getPath();
+        EdgeSet edges = new EdgeSet(1024);
+        LockRecorder.install(edges);
+        CycleMonitor monitor = new CycleMonitor(options, null);
+
+        // 线程1先ab()再ba()：只有它自己记录的环，不报告
+        edges.add(EdgeSet.edge(A, B), 0, 1);
+        edges.add(EdgeSet.edge(B, A), 0, 1);
+        monitor.check();
+        assertEquals(0, report.length());
+
+        // 之后线程2执行ab()：边数不变，但A→B变为多线程
+        edges.add(EdgeSet.edge(A, B), 0, 2);
+        monitor.check();
+        // 报告按默认字符集写出
+        String text = new String(Files.readAllBytes(report.toPath()), Charset.defaultCharset());
+        assertTrue(text, text.contains("Object@1") && text.contains("Object@2"));
+    }
+
+    @Test
+    public void singleThreadCycleDoesNotHideMultiThreadCycle() {
+        EdgeSet edges = new EdgeSet(1024);
+        // A⇄B只由线程1记录；A→C→B→A 经过线程1和线程2
+        edges.add(EdgeSet.edge(A, B), 0, 1);
+        edges.add(EdgeSet.edge(B, A), 0, 1);
+        edges.add(EdgeSet.edge(A, C), 0, 2);
+        edges.add(EdgeSet.edge(C, B), 0, 2);
+
+        List<List<Integer>> cycles = CycleMonitor.findCycles(edges, CycleMonitor.snapshot(edges));
+
+        assertEquals(1, cycles.size());
+        assertEquals(Arrays.asList(A, C, B), cycles.get(0));
+    }
+
+    @Test
+    public void singleThreadCyclesAreNotReported() {
+        EdgeSet edges = new EdgeSet(1024);
+        edges.add(EdgeSet.edge(A, B), 0, 1);
+        edges.add(EdgeSet.edge(B, C), 0, 1);
+        edges.add(EdgeSet.edge(C, A), 0, 1);
+
+        assertTrue(CycleMonitor.findCycles(edges, CycleMonitor.snapshot(edges)).isEmpty());
+    }
+}
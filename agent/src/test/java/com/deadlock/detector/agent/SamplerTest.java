@@ -0,0 +1,97 @@
+package com.deadlock.detector.agent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SamplerTest {
+    private final Object a = new Object();
+    private final Object b = new Object();
+
+    @Before
+    public void setUp() {
+        Sampler.enabled = true;
+        Sampler.paused = false;
+        Sampler.shift = 0;
+        Sampler.epoch = 0;
+    }
+
+    @After
+    public void tearDown() {
+        Sampler.enabled = false;
+        Sampler.paused = false;
+        Sampler.shift = 0;
+    }
+
+    /**
+     * 少见的加锁上下文总是记录，同一上下文反复出现后按次数降采样
+     */
+    @Test
+    public void frequentContextIsDownsampled() {
+        ThreadLockState state = new ThreadLockState(Thread.currentThread());
+        EdgeSet edges = new EdgeSet(1024);
+        state.acquired(a, 1, 0);
+        for (int i = 0; i < Sampler.KEEP; i++) {
+            state.acquiring(b, 2, 0, edges);
+        }
+        assertEquals(Sampler.KEEP, state.visits);
+
+        for (int i = 0; i < 10000; i++) {
+            state.acquiring(b, 2, 0, edges);
+        }
+        assertEquals(10000 + Sampler.KEEP, state.events);
+        assertTrue(state.visits < 1000);
+    }
+
+    @Test
+    public void overBudgetRaisesShiftThenPauses() throws InterruptedException {
+        Sampler sampler = new Sampler(1);
+        ThreadLockState state = new ThreadLockState(Thread.currentThread());
+        Thread.sleep(10);
+        // 只有遍历持有锁的开销超出预算：降低采样率
+        state.visits = 1_000_000_000L;
+        sampler.account(state);
+        sampler.adjust();
+        assertTrue(Sampler.shift > 0);
+        assertFalse(Sampler.paused);
+
+        // 插桩方法本身就超出预算：暂停，若干周期后恢复并推进纪元
+        state.events = 1_000_000_000L;
+        sampler.account(state);
+        sampler.adjust();
+        assertTrue(Sampler.paused);
+        for (int i = 0; i < 16 && Sampler.paused; i++) {
+            sampler.adjust();
+        }
+        assertFalse(Sampler.paused);
+        assertEquals(1, Sampler.epoch);
+    }
+
+    @Test
+    public void underBudgetLowersShift() throws InterruptedException {
+        Sampler sampler = new Sampler(1);
+        Sampler.shift = 3;
+        Thread.sleep(1);
+        sampler.adjust();
+        assertEquals(2, Sampler.shift);
+    }
+
+    /**
+     * 暂停期间的加锁没有记录，恢复后丢弃持有栈，不会凭过期的持有锁记录边
+     */
+    @Test
+    public void resumedThreadForgetsStaleHeldLocks() {
+        ThreadLockState state = new ThreadLockState(Thread.currentThread());
+        EdgeSet edges = new EdgeSet(1024);
+        state.acquired(a, 1, 0);
+        Sampler.epoch++;
+        state.syncEpoch();
+        state.acquiring(b, 2, 0, edges);
+        assertEquals(0, state.visits);
+        assertEquals(0, state.drainTo(edges));
+    }
+}
@@ -26,6 +26,13 @@ java {
     targetCompatibility = JavaVersion.VERSION_17
 }
 
+// 字节码分析（analyzer/BytecodeLockAnalyzer）与Agent使用同一版本的ASM
+dependencies {
+    implementation("org.ow2.asm:asm:9.8")
+    implementation("org.ow2.asm:asm-tree:9.8")
+    testImplementation("junit:junit:4.13.2")
+}
+
 intellij {
     version.set("2023.1") // 使用IntelliJ IDEA版本号代替localPath
     plugins.set(listOf("java", "org.jetbrains.kotlin")) // 使用完整的Kotlin插件ID
@@ -37,6 +44,26 @@ tasks {
         jvmArgs("-Dkotlinx.coroutines.javaagent.enabled=false")
     }
 
+    // 在CI中分析构建产物：./gradlew analyzeBytecode -Ptargets=build/classes/java/main:libs/foo.jar，发现死锁时失败
+    register<JavaExec>("analyzeBytecode") {
+        group = "verification"
+        description = "分析class目录和jar中的加锁顺序"
+        classpath = sourceSets["main"].runtimeClasspath
+        mainClass.set("com.deadlock.detector.analyzer.BytecodeLockAnalyzer")
+        args((findProperty("targets") as String? ?: "").split(File.pathSeparator).filter { it.isNotBlank() })
+    }
+
+    // 重新生成JDK与常用库的加锁摘要资源：./gradlew generateLockSummaries -Plibraries=guava.jar:commons-lang3.jar
+    // JDK摘要来自运行该任务的JDK
+    register<JavaExec>("generateLockSummaries") {
+        group = "build"
+        description = "生成预计算的JDK与库加锁摘要"
+        classpath = sourceSets["main"].runtimeClasspath
+        mainClass.set("com.deadlock.detector.analyzer.LockSummaryLibrary")
+        args(listOf(file("src/main/resources/lockSummaries/library.dls").path, "jrt") +
+                (findProperty("libraries") as String? ?: "").split(File.pathSeparator).filter { it.isNotBlank() })
+    }
+
     buildPlugin {
         archiveBaseName.set("DeadLockDetectorPlugin")
         archiveVersion.set("1.0.0") // 插件版本写在这里
@@ -7,4 +7,6 @@ pluginManagement {
     }
 }
 
-rootProject.name = "DeadLockDetectorPlugin"
\ No newline at end of file
+rootProject.name = "DeadLockDetectorPlugin"
+
+include("agent")
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.deadlock.detector.action;
+
+import com.deadlock.detector.analyzer.BytecodeLockAnalyzer;
+import com.deadlock.detector.detector.DeadlockDetectionResult;
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.visualizer.DeadlockVisualizerDialog;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分析编译后的class目录、jar（含第三方依赖）中的加锁顺序，不需要源码
+ */
+public class AnalyzeBytecodeAction extends AnAction {
+    // 节点超过该数量时图中只显示环上的节点
+    private static final int MAX_VISIBLE_NODES = 200;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        VirtualFile[] files = FileChooser.chooseFiles(
+                new FileChooserDescriptor(true, true, true, true, false, true), project, null);
+        if (files.length == 0) {
+            return;
+        }
+
+        new Task.Backgroundable(project, "分析字节码", true) {
+            private BytecodeLockAnalyzer analyzer;
+            private DeadlockDetector detector;
+            private DeadlockDetectionResult result;
+            private IOException error;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                analyzer = new BytecodeLockAnalyzer();
+                try {
+                    for (int i = 0; i < files.length; i++) {
+                        indicator.setText("分析 " + files[i].getName());
+                        indicator.setFraction((double) i / files.length);
+                        analyzer.addPath(files[i].toNioPath());
+                        indicator.checkCanceled();
+                    }
+                } catch (IOException ex) {
+                    error = ex;
+                    return;
+                }
+                indicator.setText("检测死锁");
+                detector = analyzer.buildDetector();
+                result = detector.detectDeadlocks();
+            }
+
+            @Override
+            public void onSuccess() {
+                if (error != null) {
+                    Messages.showErrorDialog(project, "无法读取：" + error.getMessage(), "分析字节码");
+                    return;
+                }
+                showResult(detector, result, analyzer.formatReport(result));
+            }
+        }.queue();
+    }
+
+    private void showResult(DeadlockDetector detector, DeadlockDetectionResult result, String report) {
+        List<List<GraphNode>> cycles = result.getHardDeadlockCycles();
+        if (cycles.isEmpty()) {
+            Messages.showInfoMessage(report, "字节码分析结果");
+            return;
+        }
+        List<GraphNode> nodes = new ArrayList<>(detector.getNodes().values());
+        if (nodes.size() > MAX_VISIBLE_NODES) {
+            Set<GraphNode> onCycles = new LinkedHashSet<>();
+            for (List<GraphNode> cycle : cycles) {
+                onCycles.addAll(cycle);
+            }
+            nodes = new ArrayList<>(onCycles);
+        }
+        Map<String, String> reports = new LinkedHashMap<>();
+        reports.put("加锁顺序与位置", report);
+        new DeadlockVisualizerDialog(nodes, cycles, true, reports).show();
+    }
+}
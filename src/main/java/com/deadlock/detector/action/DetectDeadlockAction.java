@@ -1,10 +1,12 @@
 package com.deadlock.detector.action;
 
 import com.deadlock.detector.analyzer.CodeAnalyzer;
+import com.deadlock.detector.analyzer.ContentionAnalyzer;
 import com.deadlock.detector.detector.DeadlockDetector;
 import com.deadlock.detector.detector.DeadlockDetectionResult;
 import com.deadlock.detector.model.GraphNode;
 import com.deadlock.detector.visualizer.DeadlockVisualizerDialog;
+import com.deadlock.detector.visualizer.ReportDialog;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
@@ -13,6 +15,9 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import org.jetbrains.kotlin.psi.KtFile;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class DetectDeadlockAction extends AnAction {
     @Override
@@ -29,14 +34,53 @@ public class DetectDeadlockAction extends AnAction {
         DeadlockDetector detector = analyzer.analyzePsiFile(psiFile);
         DeadlockDetectionResult result = detector.detectDeadlocks();
 
-        // 3. 展示结果
+        // 3. 临界区竞争热点（Java文件）
+        String contentionReport = null;
+        if (psiFile instanceof PsiJavaFile) {
+            ContentionAnalyzer contentionAnalyzer = new ContentionAnalyzer();
+            List<ContentionAnalyzer.ContentionHotspot> hotspots = contentionAnalyzer.analyze(psiFile);
+            if (!hotspots.isEmpty()) {
+                contentionReport = contentionAnalyzer.formatReport(hotspots);
+            }
+        }
+
+        // 4. 信号丢失导致的挂起，以及由带超时/非阻塞获取组成、不会永久死锁的环
+        String hangReport = result.getHangs().isEmpty() ? null : detector.formatHangInfo(result.getHangs());
+        String timedReport = result.getTimedCycles().isEmpty() ? null : detector.formatTimedCycleInfo(result);
+
+        // 5. 展示结果
         if (result.isHasDeadlock()) {
             // 创建所有节点的列表
             ArrayList<GraphNode> allNodes = new ArrayList<>(detector.getNodes().values());
+            Map<String, String> reports = new LinkedHashMap<>();
+            if (hangReport != null) {
+                reports.put("挂起等待", hangReport);
+            }
+            if (timedReport != null) {
+                reports.put("超时与活锁风险", timedReport);
+            }
+            if (contentionReport != null) {
+                reports.put("锁竞争热点", contentionReport);
+            }
             
             // 显示可视化对话框
-            DeadlockVisualizerDialog dialog = new DeadlockVisualizerDialog(allNodes, result.getCycles(), true);
+            DeadlockVisualizerDialog dialog = new DeadlockVisualizerDialog(allNodes, result.getHardDeadlockCycles(), true,
+                    reports, result.getHardDeadlockWitnesses(), analyzer.getSourceAnchors());
             dialog.show();
+        } else if (hangReport != null) {
+            String report = hangReport;
+            if (timedReport != null) {
+                report += "\n" + timedReport;
+            }
+            if (contentionReport != null) {
+                report += "\n" + contentionReport;
+            }
+            new ReportDialog("死锁检测结果 - 检测到挂起", "未检测到死锁环，但存在永远不会被唤醒的等待", report).show();
+        } else if (timedReport != null) {
+            String report = contentionReport != null ? timedReport + "\n" + contentionReport : timedReport;
+            new ReportDialog("死锁检测结果 - 存在超时/活锁风险", "未检测到永久死锁，但存在靠超时打破的锁环", report).show();
+        } else if (contentionReport != null) {
+            new ReportDialog("死锁检测结果 - 未检测到死锁", "未检测到死锁，临界区竞争风险如下", contentionReport).show();
         } else {
             Messages.showInfoMessage("未检测到死锁", "死锁检测结果");
         }
@@ -0,0 +1,36 @@
+package com.deadlock.detector.action;
+
+import com.deadlock.detector.analyzer.PinningAnalyzer;
+import com.deadlock.detector.visualizer.ReportDialog;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+
+import java.util.List;
+
+public class DetectPinningAction extends AnAction {
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        // 1. 获取当前Java文件
+        PsiFile psiFile = e.getData(CommonDataKeys.PSI_FILE);
+        if (!(psiFile instanceof PsiJavaFile)) {
+            Messages.showInfoMessage("请先打开Java文件！", "虚拟线程钉住检测提示");
+            return;
+        }
+
+        // 2. 查找持有监视器期间的阻塞调用
+        PinningAnalyzer analyzer = new PinningAnalyzer();
+        List<PinningAnalyzer.PinningIssue> issues = analyzer.analyze(psiFile);
+
+        // 3. 展示结果
+        if (issues.isEmpty()) {
+            Messages.showInfoMessage("未发现持有监视器期间的阻塞调用", "虚拟线程钉住检测结果");
+            return;
+        }
+        new ReportDialog("虚拟线程钉住检测结果", "持锁阻塞调用（按严重程度排序）",
+                analyzer.formatReport(issues)).show();
+    }
+}
@@ -0,0 +1,63 @@
+package com.deadlock.detector.action;
+
+import com.deadlock.detector.importer.JfrImporter;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * 导入JFR记录，后台按chunk并行解析，展示运行时观测到的竞争热点
+ * JFR不记录等待时持有的锁，只报告竞争，不检测加锁顺序反转（见JfrImporter）
+ */
+public class ImportJfrAction extends AnAction {
+    private static final int HOTSPOT_LIMIT = 20;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        VirtualFile file = FileChooser.chooseFile(
+                FileChooserDescriptorFactory.createSingleFileDescriptor("jfr"), project, null);
+        if (file == null) {
+            return;
+        }
+
+        new Task.Backgroundable(project, "导入JFR记录", true) {
+            private JfrImporter importer;
+            private IOException error;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                indicator.setText("解析 " + file.getName());
+                importer = new JfrImporter((completed, total) -> {
+                    indicator.checkCanceled();
+                    indicator.setFraction((double) completed / total);
+                }, Runtime.getRuntime().availableProcessors());
+                try {
+                    importer.importRecording(file.toNioPath());
+                } catch (IOException ex) {
+                    error = ex;
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (error != null) {
+                    Messages.showErrorDialog(project, "无法读取JFR记录：" + error.getMessage(), "导入JFR记录");
+                    return;
+                }
+                Messages.showInfoMessage(importer.formatHotspots(HOTSPOT_LIMIT)
+                        + "\nJFR不记录等待时持有的锁，只报告竞争；加锁顺序反转请用Agent采集的加锁事件日志检测", "JFR检测结果");
+            }
+        }.queue();
+    }
+}
@@ -0,0 +1,107 @@
+package com.deadlock.detector.action;
+
+import com.deadlock.detector.detector.DeadlockDetectionResult;
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.importer.ThreadDumpSeries;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.visualizer.DeadlockVisualizerDialog;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 导入jstack / jcmd Thread.print线程转储，在后台流式解析后用同一个可视化对话框展示死锁环
+ * 选择多个文件（或一个文件中有多份转储）时按采集顺序做差分分析，只报告在所有转储中都存在的环和阻塞链。
+ */
+public class ImportThreadDumpAction extends AnAction {
+    // 节点超过该数量时图中只显示环上的节点
+    private static final int MAX_VISIBLE_NODES = 200;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        VirtualFile[] files = FileChooser.chooseFiles(
+                FileChooserDescriptorFactory.createMultipleFilesNoJarsDescriptor(), project, null);
+        if (files.length == 0) {
+            return;
+        }
+        // 按文件名排序，jstack按时间戳命名时即为采集顺序
+        List<Path> paths = new ArrayList<>();
+        for (VirtualFile file : files) {
+            paths.add(file.toNioPath());
+        }
+        paths.sort(null);
+
+        new Task.Backgroundable(project, "导入线程转储", true) {
+            private ThreadDumpSeries series;
+            private DeadlockDetector detector;
+            private DeadlockDetectionResult result;
+            private IOException error;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                series = new ThreadDumpSeries((position, size) -> indicator.checkCanceled());
+                try {
+                    for (int i = 0; i < paths.size(); i++) {
+                        indicator.setText("解析 " + paths.get(i).getFileName());
+                        indicator.setFraction((double) i / paths.size());
+                        series.add(paths.get(i));
+                    }
+                } catch (IOException ex) {
+                    error = ex;
+                    return;
+                }
+                indicator.setText("检测死锁环");
+                detector = series.getSnapshotCount() > 1 ? series.buildStableDetector() : series.getLatest().getDetector();
+                result = detector.detectDeadlocks();
+            }
+
+            @Override
+            public void onSuccess() {
+                if (error != null) {
+                    Messages.showErrorDialog(project, "无法读取线程转储：" + error.getMessage(), "导入线程转储");
+                    return;
+                }
+                String summary = series.getSnapshotCount() > 1
+                        ? series.formatReport() : series.getLatest().formatSummary();
+                showResult(detector, result, summary);
+            }
+        }.queue();
+    }
+
+    private void showResult(DeadlockDetector detector, DeadlockDetectionResult result, String summary) {
+        if (!result.isHasDeadlock()) {
+            Messages.showInfoMessage(summary + "\n未检测到死锁", "线程转储检测结果");
+            return;
+        }
+        List<List<GraphNode>> cycles = result.getHardDeadlockCycles();
+        List<GraphNode> nodes = new ArrayList<>(detector.getNodes().values());
+        if (nodes.size() > MAX_VISIBLE_NODES) {
+            Set<GraphNode> onCycles = new LinkedHashSet<>();
+            for (List<GraphNode> cycle : cycles) {
+                onCycles.addAll(cycle);
+            }
+            nodes = new ArrayList<>(onCycles);
+        }
+        Map<String, String> reports = new LinkedHashMap<>();
+        reports.put("转储概况", summary);
+        new DeadlockVisualizerDialog(nodes, cycles, true, reports).show();
+    }
+}
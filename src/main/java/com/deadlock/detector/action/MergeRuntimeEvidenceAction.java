@@ -0,0 +1,128 @@
+package com.deadlock.detector.action;
+
+import com.deadlock.detector.analyzer.CodeAnalyzer;
+import com.deadlock.detector.analyzer.SourceAnchors;
+import com.deadlock.detector.detector.DeadlockDetectionResult;
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.detector.GraphMerger;
+import com.deadlock.detector.importer.JfrImporter;
+import com.deadlock.detector.importer.LockEventReplay;
+import com.deadlock.detector.importer.ThreadDumpImporter;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.visualizer.DeadlockVisualizerDialog;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.psi.KtFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 静态分析当前文件，再导入运行时记录（加锁事件日志、JFR记录或线程转储），合并为一张标注来源的图；
+ * 运行时确认的死锁环排在最前
+ */
+public class MergeRuntimeEvidenceAction extends AnAction {
+    // 节点超过该数量时图中只显示环上的节点
+    private static final int MAX_VISIBLE_NODES = 200;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        PsiFile psiFile = e.getData(CommonDataKeys.PSI_FILE);
+        if (psiFile == null || !(psiFile instanceof PsiJavaFile || psiFile instanceof KtFile)) {
+            Messages.showInfoMessage("请先打开Java或Kotlin文件！", "死锁检测提示");
+            return;
+        }
+        VirtualFile[] files = FileChooser.chooseFiles(
+                FileChooserDescriptorFactory.createMultipleFilesNoJarsDescriptor(), project, null);
+        if (files.length == 0) {
+            return;
+        }
+
+        CodeAnalyzer analyzer = new CodeAnalyzer();
+        DeadlockDetector staticDetector = analyzer.analyzePsiFile(psiFile);
+        SourceAnchors anchors = analyzer.getSourceAnchors();
+        GraphMerger merger = new GraphMerger();
+        merger.addStatic(staticDetector, anchors::format);
+
+        new Task.Backgroundable(project, "合并运行时记录", true) {
+            private DeadlockDetector merged;
+            private DeadlockDetectionResult result;
+            private IOException error;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                try {
+                    for (int i = 0; i < files.length; i++) {
+                        VirtualFile file = files[i];
+                        indicator.setText("导入 " + file.getName());
+                        indicator.setFraction((double) i / files.length);
+                        if ("dlev".equals(file.getExtension())) {
+                            LockEventReplay replay = new LockEventReplay();
+                            replay.replay(file.toNioPath());
+                            replay.exportOrderEdges(merger, file.getName());
+                        } else if ("jfr".equals(file.getExtension())) {
+                            merger.addRuntime(new JfrImporter().importRecording(file.toNioPath()), file.getName());
+                        } else {
+                            merger.addRuntimeSnapshot(new ThreadDumpImporter((position, size) -> indicator.checkCanceled())
+                                    .importDump(file.toNioPath()), file.getName());
+                        }
+                        indicator.checkCanceled();
+                    }
+                } catch (IOException ex) {
+                    error = ex;
+                    return;
+                }
+                indicator.setText("合并并检测死锁");
+                merged = merger.merge();
+                result = merged.detectDeadlocks();
+            }
+
+            @Override
+            public void onSuccess() {
+                if (error != null) {
+                    Messages.showErrorDialog(project, "无法读取运行时记录：" + error.getMessage(), "合并运行时记录");
+                    return;
+                }
+                showResult(merger, merged, result);
+            }
+        }.queue();
+    }
+
+    private void showResult(GraphMerger merger, DeadlockDetector merged, DeadlockDetectionResult result) {
+        List<List<GraphNode>> cycles = merger.rankCycles(result.getHardDeadlockCycles());
+        String report = merger.formatReport(cycles);
+        if (cycles.isEmpty()) {
+            Messages.showInfoMessage(report, "合并检测结果");
+            return;
+        }
+        List<GraphNode> nodes = new ArrayList<>(merged.getNodes().values());
+        if (nodes.size() > MAX_VISIBLE_NODES) {
+            Set<GraphNode> onCycles = new LinkedHashSet<>();
+            for (List<GraphNode> cycle : cycles) {
+                onCycles.addAll(cycle);
+            }
+            nodes = new ArrayList<>(onCycles);
+        }
+        Map<String, String> reports = new LinkedHashMap<>();
+        reports.put("来源与排序", report);
+        new DeadlockVisualizerDialog(nodes, cycles, true, reports).show();
+    }
+}
@@ -0,0 +1,113 @@
+package com.deadlock.detector.action;
+
+import com.deadlock.detector.detector.DeadlockDetectionResult;
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.importer.JfrImporter;
+import com.deadlock.detector.importer.LockEventReplay;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.visualizer.DeadlockVisualizerDialog;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 回放Agent写出的加锁事件日志（.dlev），重建当时的等待链与加锁顺序；
+ * 选择JFR记录时先导出为事件日志，只包含竞争观测
+ */
+public class ReplayLockEventLogAction extends AnAction {
+    // 节点超过该数量时图中只显示环上的节点
+    private static final int MAX_VISIBLE_NODES = 200;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        VirtualFile file = FileChooser.chooseFile(FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor()
+                .withFileFilter(f -> "dlev".equals(f.getExtension()) || "jfr".equals(f.getExtension())), project, null);
+        if (file == null) {
+            return;
+        }
+
+        new Task.Backgroundable(project, "回放加锁事件日志", true) {
+            private LockEventReplay replay;
+            private DeadlockDetector detector;
+            private DeadlockDetectionResult result;
+            private IOException error;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                Path log = file.toNioPath();
+                try {
+                    if ("jfr".equals(file.getExtension())) {
+                        indicator.setText("导出 " + file.getName());
+                        log = Files.createTempFile("deadlock-", ".dlev");
+                        JfrImporter.exportEvents(file.toNioPath(), log);
+                    }
+                    indicator.checkCanceled();
+                    indicator.setText("回放 " + file.getName());
+                    replay = new LockEventReplay();
+                    replay.replay(log);
+                } catch (IOException ex) {
+                    error = ex;
+                    return;
+                } finally {
+                    if (!log.equals(file.toNioPath())) {
+                        try {
+                            Files.deleteIfExists(log);
+                        } catch (IOException ignored) {
+                            // 临时文件，删除失败无妨
+                        }
+                    }
+                }
+                indicator.setText("检测死锁");
+                detector = replay.buildDetector();
+                result = detector.detectDeadlocks();
+            }
+
+            @Override
+            public void onSuccess() {
+                if (error != null) {
+                    Messages.showErrorDialog(project, "无法读取加锁事件日志：" + error.getMessage(), "回放加锁事件日志");
+                    return;
+                }
+                showResult(detector, result, replay.formatReport());
+            }
+        }.queue();
+    }
+
+    private void showResult(DeadlockDetector detector, DeadlockDetectionResult result, String report) {
+        if (!result.isHasDeadlock()) {
+            Messages.showInfoMessage(report + "\n未发现死锁或加锁顺序反转", "回放结果");
+            return;
+        }
+        List<List<GraphNode>> cycles = result.getHardDeadlockCycles();
+        List<GraphNode> nodes = new ArrayList<>(detector.getNodes().values());
+        if (nodes.size() > MAX_VISIBLE_NODES) {
+            Set<GraphNode> onCycles = new LinkedHashSet<>();
+            for (List<GraphNode> cycle : cycles) {
+                onCycles.addAll(cycle);
+            }
+            nodes = new ArrayList<>(onCycles);
+        }
+        Map<String, String> reports = new LinkedHashMap<>();
+        reports.put("回放报告", report);
+        new DeadlockVisualizerDialog(nodes, cycles, true, reports).show();
+    }
+}
@@ -0,0 +1,165 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.*;
+
+/**
+ * 阻塞调用分类器
+ * 根据被调用方法所属的类和方法名判断调用是否会阻塞当前线程，或是否为日志等耗时但不阻塞的操作
+ */
+public class BlockingCallClassifier {
+
+    /**
+     * 阻塞调用类别
+     */
+    public enum Category {
+        SLEEP("线程休眠", true),
+        OBJECT_WAIT("Object.wait", true),
+        FUTURE_GET("Future等待", true),
+        BLOCKING_IO("阻塞I/O", true),
+        NETWORK_IO("网络I/O", true),
+        JDBC("JDBC数据库调用", true),
+        LOGGING("日志输出", false);
+
+        private final String description;
+        private final boolean blocking;
+
+        Category(String description, boolean blocking) {
+            this.description = description;
+            this.blocking = blocking;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * 是否会阻塞当前线程（日志输出耗时但通常不阻塞）
+         */
+        public boolean isBlocking() {
+            return blocking;
+        }
+    }
+
+    private static final String[] IO_PACKAGES = {
+            "java.io.", "java.nio.channels.", "java.nio.file."
+    };
+
+    private static final String[] LOGGER_CLASSES = {
+            "java.util.logging.Logger", "org.slf4j.Logger", "org.apache.logging.log4j.Logger",
+            "org.apache.log4j.Logger", "org.apache.commons.logging.Log", "com.intellij.openapi.diagnostic.Logger"
+    };
+
+    /**
+     * 对方法调用分类，不阻塞返回null
+     */
+    public Category classify(PsiMethodCallExpression call) {
+        String methodName = call.getMethodExpression().getReferenceName();
+        if (methodName == null) {
+            return null;
+        }
+        PsiMethod method = call.resolveMethod();
+        String className = containingClassName(method);
+
+        if ("sleep".equals(methodName)
+                && ("java.lang.Thread".equals(className) || "java.util.concurrent.TimeUnit".equals(className)
+                || (className == null && isQualifiedBy(call, "Thread")))) {
+            return Category.SLEEP;
+        }
+        if ("wait".equals(methodName) && (className == null || "java.lang.Object".equals(className))) {
+            return Category.OBJECT_WAIT;
+        }
+        if (("get".equals(methodName) || "join".equals(methodName)) && isFutureCall(call, method)) {
+            return Category.FUTURE_GET;
+        }
+        if (isLoggingCall(call, className)) {
+            return Category.LOGGING;
+        }
+        if (className == null || isNonBlockingIoMethod(methodName)) {
+            return null;
+        }
+        if (className.startsWith("java.net.")) {
+            return Category.NETWORK_IO;
+        }
+        if (className.startsWith("java.sql.") || className.startsWith("javax.sql.")) {
+            return Category.JDBC;
+        }
+        if (isIoClass(className) && !isConsoleOutput(className)) {
+            return Category.BLOCKING_IO;
+        }
+        return null;
+    }
+
+    /**
+     * 日志调用：System.out/err输出或常见日志框架的Logger
+     */
+    private boolean isLoggingCall(PsiMethodCallExpression call, String className) {
+        PsiExpression qualifier = call.getMethodExpression().getQualifierExpression();
+        String qualifierText = qualifier != null ? qualifier.getText().trim() : "";
+        if ("System.out".equals(qualifierText) || "System.err".equals(qualifierText)) {
+            return true;
+        }
+        if (className != null) {
+            for (String loggerClass : LOGGER_CLASSES) {
+                if (loggerClass.equals(className)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // 无法解析时按常见命名判断
+        return "log".equalsIgnoreCase(qualifierText) || "logger".equalsIgnoreCase(qualifierText);
+    }
+
+    private boolean isFutureCall(PsiMethodCallExpression call, PsiMethod method) {
+        if (method != null) {
+            PsiClass containingClass = method.getContainingClass();
+            if (containingClass == null) {
+                return false;
+            }
+            PsiClass futureClass = JavaPsiFacade.getInstance(call.getProject())
+                    .findClass("java.util.concurrent.Future", call.getResolveScope());
+            return futureClass != null
+                    && (containingClass == futureClass || containingClass.isInheritor(futureClass, true));
+        }
+        // 无法解析时按限定表达式的类型文本判断
+        PsiExpression qualifier = call.getMethodExpression().getQualifierExpression();
+        PsiType type = qualifier != null ? qualifier.getType() : null;
+        return type != null && type.getPresentableText().contains("Future");
+    }
+
+    private boolean isIoClass(String className) {
+        for (String ioPackage : IO_PACKAGES) {
+            if (className.startsWith(ioPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 控制台输出（System.out/err）写入缓冲后立即返回，不视为阻塞I/O
+     */
+    private boolean isConsoleOutput(String className) {
+        return "java.io.PrintStream".equals(className) || "java.io.PrintWriter".equals(className);
+    }
+
+    /**
+     * I/O类中的构造辅助、元数据类方法不会阻塞
+     */
+    private boolean isNonBlockingIoMethod(String methodName) {
+        return (methodName.startsWith("get") && !"getConnection".equals(methodName)) || methodName.startsWith("set") || methodName.startsWith("is")
+                || "toString".equals(methodName) || "hashCode".equals(methodName) || "equals".equals(methodName);
+    }
+
+    private boolean isQualifiedBy(PsiMethodCallExpression call, String qualifierText) {
+        PsiExpression qualifier = call.getMethodExpression().getQualifierExpression();
+        return qualifier != null && qualifierText.equals(qualifier.getText().trim());
+    }
+
+    static String containingClassName(PsiMethod method) {
+        if (method == null || method.getContainingClass() == null) {
+            return null;
+        }
+        return method.getContainingClass().getQualifiedName();
+    }
+}
@@ -0,0 +1,949 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.detector.DeadlockDetectionResult;
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.model.AcquisitionKind;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.model.LockType;
+import com.deadlock.detector.model.NodeType;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 字节码级的加锁分析：读取编译后的.class文件、目录和jar（包括嵌套jar），不需要源码，也不依赖IDE，
+ * 第三方依赖中的加锁同样可见，可在CI中直接分析构建产物（main方法）。
+ * jar按内存映射读取，条目在ForkJoinPool中并行解析；每个方法在控制流图上前向传播"当前持有的锁"：
+ * monitorenter/monitorexit、ACC_SYNCHRONIZED与Lock.lock()/lockInterruptibly()/unlock()改变持有集合，
+ * tryLock()只记为非阻塞/带超时的获取，不改变持有集合；异常处理器继承所覆盖区域的持有集合。
+ * 锁对象按产生它的指令识别：静态/实例字段为"类名.字段"，this为"类名.this"，类字面量为"CLASS_类名.class"，
+ * readLock()/writeLock()加_readLock/_writeLock后缀；局部变量追溯到最近一次存储，参数等无法识别的锁不跟踪。
+ * 方法摘要记录直接加锁和持锁期间的调用，调用按所有者+名字+描述符精确解析（不做虚分派），
+ * 加锁集合沿调用图传递，分析范围之外的JDK与库方法查LockSummaryLibrary；
+ * 线程根是run()V、call()、main方法，以及invokedynamic生成Runnable/Callable的lambda与方法引用的实现方法，
+ * 只有不同的线程根之间才会成环；其余没有被调用的方法只报告读锁升级写锁这类单线程的永久阻塞。
+ */
+public class BytecodeLockAnalyzer {
+    /**
+     * 方法中的一次加锁
+     */
+    public static class Acquisition {
+        private final String lockId;
+        private final LockType lockType;
+        private final AcquisitionKind kind;
+        private final long timeoutMillis;
+        private final List<String> held;
+        private final String site;
+
+        Acquisition(String lockId, LockType lockType, AcquisitionKind kind, long timeoutMillis, List<String> held, String site) {
+            this.lockId = lockId;
+            this.lockType = lockType;
+            this.kind = kind;
+            this.timeoutMillis = timeoutMillis;
+            this.held = held;
+            this.site = site;
+        }
+
+        public String getLockId() {
+            return lockId;
+        }
+
+        public LockType getLockType() {
+            return lockType;
+        }
+
+        public AcquisitionKind getKind() {
+            return kind;
+        }
+
+        /**
+         * 加锁时已持有的锁（外层在前）
+         */
+        public List<String> getHeld() {
+            return held;
+        }
+
+        /**
+         * 加锁位置：类名.方法:行号
+         */
+        public String getSite() {
+            return site;
+        }
+    }
+
+    /**
+     * 持锁期间的一次方法调用
+     */
+    private static class Call {
+        final String callee;
+        // 接收者的锁ID，静态调用或无法识别时为null
+        final String receiver;
+        final List<String> held;
+        final String site;
+
+        Call(String callee, String receiver, List<String> held, String site) {
+            this.callee = callee;
+            this.receiver = receiver;
+            this.held = held;
+            this.site = site;
+        }
+    }
+
+    /**
+     * 单个方法的加锁摘要
+     */
+    public static class MethodSummary {
+        private final String owner;
+        private final String name;
+        private final String descriptor;
+        private final int access;
+        private final List<Acquisition> acquisitions = new ArrayList<>();
+        private final List<Call> calls = new ArrayList<>();
+        // 直接或经调用获取的锁，buildDetector时计算
+        private final Set<String> acquiredLocks = new LinkedHashSet<>();
+        private String returnedType;
+
+        MethodSummary(String owner, String name, String descriptor, int access) {
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.access = access;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        public List<Acquisition> getAcquisitions() {
+            return acquisitions;
+        }
+
+        public Set<String> getAcquiredLocks() {
+            return acquiredLocks;
+        }
+
+        int getAccess() {
+            return access;
+        }
+
+        /**
+         * 方法直接返回 new T(...) 时的T（内部名），否则为null
+         */
+        String getReturnedType() {
+            return returnedType;
+        }
+    }
+
+    // 读锁升级为写锁的边标记
+    private static final String SELF = "SELF";
+
+    private final int parallelism;
+    private final Map<String, MethodSummary> methods = new ConcurrentHashMap<>();
+    private final AtomicInteger classCount = new AtomicInteger();
+    // 类 → 父类，类 → 构造器中赋值为this的字段（内部名）
+    private final Map<String, String> superNames = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> receiverFields = new ConcurrentHashMap<>();
+    private boolean useLibrary = true;
+    // 获取写锁前释放本线程全部读锁的读写锁
+    private final Set<String> releasesReadHolds = ConcurrentHashMap.newKeySet();
+    // invokedynamic生成Runnable/Callable的lambda与方法引用的实现方法
+    private final Set<String> lambdaBodies = ConcurrentHashMap.newKeySet();
+    // 加锁顺序边 "持有\0获取" → 首个位置，用于报告
+    private final Map<String, String> edgeSites = new HashMap<>();
+    private final Map<String, LockType> lockTypes = new HashMap<>();
+
+    public BytecodeLockAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BytecodeLockAnalyzer(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 分析.class文件、jar/war/zip或目录（递归查找其中的.class和jar）
+     */
+    public void addPath(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(Files::isRegularFile).forEach(files::add);
+            }
+            for (Path file : files) {
+                if (isArchive(file.toString())) {
+                    addArchive(MappedZip.open(file));
+                }
+            }
+            parallel(files, file -> {
+                if (file.toString().endsWith(".class")) {
+                    analyzeClass(ByteBuffer.wrap(Files.readAllBytes(file)));
+                }
+            });
+        } else if (isArchive(path.toString())) {
+            addArchive(MappedZip.open(path));
+        } else {
+            analyzeClass(ByteBuffer.wrap(Files.readAllBytes(path)));
+        }
+    }
+
+    private static boolean isArchive(String name) {
+        return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".zip");
+    }
+
+    private void addArchive(MappedZip zip) throws IOException {
+        List<MappedZip.Entry> nested = new ArrayList<>();
+        List<MappedZip.Entry> classes = new ArrayList<>();
+        for (MappedZip.Entry entry : zip.entries()) {
+            if (entry.name.endsWith(".class") && !entry.name.endsWith("module-info.class")) {
+                classes.add(entry);
+            } else if (entry.name.endsWith(".jar")) {
+                nested.add(entry);
+            }
+        }
+        parallel(classes, entry -> analyzeClass(zip.read(entry)));
+        for (MappedZip.Entry entry : nested) {
+            addArchive(zip.nested(entry));
+        }
+    }
+
+    private interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+
+    private <T> void parallel(List<T> items, IOConsumer<T> action) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> items.parallelStream().forEach(item -> {
+                try {
+                    action.accept(item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("分析被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("分析失败：" + cause, cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void analyzeClass(ByteBuffer content) {
+        byte[] bytes;
+        if (content.hasArray() && content.arrayOffset() == 0 && content.remaining() == content.array().length) {
+            bytes = content.array();
+        } else {
+            bytes = new byte[content.remaining()];
+            content.duplicate().get(bytes);
+        }
+        ClassNode type = new ClassNode();
+        try {
+            new ClassReader(bytes).accept(type, ClassReader.SKIP_FRAMES);
+        } catch (RuntimeException e) {
+            System.out.println("Skipping unreadable class: " + e);
+            return;
+        }
+        classCount.incrementAndGet();
+        if (type.superName != null) {
+            superNames.put(type.name, type.superName);
+        }
+        for (MethodNode method : type.methods) {
+            if ("<init>".equals(method.name)) {
+                collectReceiverFields(type.name, method);
+            }
+            if (method.instructions.size() > 0) {
+                MethodSummary summary = summarize(type.name, method);
+                methods.put(key(type.name, method.name, method.desc), summary);
+            }
+        }
+    }
+
+    private static String key(String owner, String name, String descriptor) {
+        return owner + "." + name + descriptor;
+    }
+
+    /**
+     * 构造器中 this.f = this 的字段：默认以对象自身为锁（例如Collections.synchronizedMap的mutex）
+     */
+    private void collectReceiverFields(String owner, MethodNode constructor) {
+        for (AbstractInsnNode insn = constructor.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn.getOpcode() != Opcodes.PUTFIELD || !owner.equals(((FieldInsnNode) insn).owner)) {
+                continue;
+            }
+            AbstractInsnNode value = previous(insn);
+            AbstractInsnNode target = previous(value);
+            if (isLoadOfThis(value) && isLoadOfThis(target)) {
+                receiverFields.computeIfAbsent(owner, k -> ConcurrentHashMap.newKeySet()).add(((FieldInsnNode) insn).name);
+            }
+        }
+    }
+
+    private static boolean isLoadOfThis(AbstractInsnNode insn) {
+        return insn != null && insn.getOpcode() == Opcodes.ALOAD && ((VarInsnNode) insn).var == 0;
+    }
+
+    /**
+     * 在控制流图上传播持有集合，再按到达各指令时的持有集合记录加锁与调用
+     */
+    private MethodSummary summarize(String owner, MethodNode method) {
+        MethodSummary summary = new MethodSummary(owner, method.name, method.desc, method.access);
+        InsnList insns = method.instructions;
+        int size = insns.size();
+        boolean isStatic = (method.access & Opcodes.ACC_STATIC) != 0;
+        List<String> initial = new ArrayList<>();
+        if ((method.access & Opcodes.ACC_SYNCHRONIZED) != 0) {
+            initial.add(isStatic ? "CLASS_" + simpleName(owner) + ".class" : simpleName(owner) + ".this");
+        }
+
+        List<List<String>> held = flow(method, initial, isStatic, owner);
+        String[] sites = new String[size];
+        int line = 0;
+        for (int i = 0; i < size; i++) {
+            AbstractInsnNode insn = insns.get(i);
+            if (insn instanceof LineNumberNode) {
+                line = ((LineNumberNode) insn).line;
+            }
+            sites[i] = simpleName(owner) + "." + method.name + ":" + line;
+        }
+        if (!initial.isEmpty()) {
+            summary.acquisitions.add(new Acquisition(initial.get(0), isStatic ? LockType.CLASS_LOCK : LockType.SYNCHRONIZED,
+                    AcquisitionKind.BLOCKING, -1, new ArrayList<>(), sites[0]));
+        }
+        for (int i = 0; i < size; i++) {
+            AbstractInsnNode insn = insns.get(i);
+            List<String> heldHere = held.get(i);
+            if (heldHere == null) {
+                continue;
+            }
+            if (insn.getOpcode() == Opcodes.MONITORENTER) {
+                String lockId = valueOf(previous(insn), owner, isStatic, 0);
+                if (lockId != null && !heldHere.contains(lockId)) {
+                    summary.acquisitions.add(new Acquisition(lockId,
+                            lockId.startsWith("CLASS_") ? LockType.CLASS_LOCK : LockType.SYNCHRONIZED,
+                            AcquisitionKind.BLOCKING, -1, new ArrayList<>(heldHere), sites[i]));
+                }
+            } else if (insn instanceof MethodInsnNode) {
+                MethodInsnNode call = (MethodInsnNode) insn;
+                AcquisitionKind kind = lockKind(call);
+                if (kind != null) {
+                    String lockId = valueOf(receiver(call), owner, isStatic, 0);
+                    if (lockId != null && !heldHere.contains(lockId)) {
+                        summary.acquisitions.add(new Acquisition(lockId, explicitLockType(lockId), kind,
+                                kind == AcquisitionKind.TIMED ? timeoutMillis(call) : -1, new ArrayList<>(heldHere), sites[i]));
+                    }
+                } else if ("getReadHoldCount".equals(call.name) && isLockOwner(call.owner)) {
+                    // Kotlin的ReentrantReadWriteLock.write {}先按读锁重入次数释放读锁再获取写锁，不是升级
+                    String lockId = valueOf(previous(call), owner, isStatic, 0);
+                    if (lockId != null) {
+                        releasesReadHolds.add(lockId);
+                    }
+                } else if (!isUnlock(call)) {
+                    String receiver = call.getOpcode() != Opcodes.INVOKESTATIC
+                            ? valueOf(receiver(call), owner, isStatic, 0) : null;
+                    summary.calls.add(new Call(key(call.owner, call.name, call.desc), receiver, new ArrayList<>(heldHere), sites[i]));
+                }
+            } else if (insn instanceof InvokeDynamicInsnNode) {
+                String body = threadBodyOf((InvokeDynamicInsnNode) insn);
+                if (body != null) {
+                    lambdaBodies.add(body);
+                }
+            } else if (insn.getOpcode() == Opcodes.ARETURN && summary.returnedType == null) {
+                AbstractInsnNode created = previous(insn);
+                if (created instanceof MethodInsnNode && "<init>".equals(((MethodInsnNode) created).name)) {
+                    summary.returnedType = ((MethodInsnNode) created).owner;
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * LambdaMetafactory生成Runnable或Callable时的实现方法，其他invokedynamic返回null
+     */
+    private static String threadBodyOf(InvokeDynamicInsnNode indy) {
+        String produced = Type.getReturnType(indy.desc).getInternalName();
+        if (!"java/lang/invoke/LambdaMetafactory".equals(indy.bsm.getOwner())
+                || !"java/lang/Runnable".equals(produced) && !"java/util/concurrent/Callable".equals(produced)
+                || indy.bsmArgs.length < 2 || !(indy.bsmArgs[1] instanceof Handle)) {
+            return null;
+        }
+        Handle implementation = (Handle) indy.bsmArgs[1];
+        return key(implementation.getOwner(), implementation.getName(), implementation.getDesc());
+    }
+
+    /**
+     * 前向数据流：held.get(i)为执行第i条指令之前可能持有的锁，不可达指令为null；汇合处取并集
+     */
+    private List<List<String>> flow(MethodNode method, List<String> initial, boolean isStatic, String owner) {
+        InsnList insns = method.instructions;
+        List<List<String>> held = new ArrayList<>(Collections.nCopies(insns.size(), null));
+        Deque<Integer> work = new ArrayDeque<>();
+        held.set(0, new ArrayList<>(initial));
+        work.add(0);
+        while (!work.isEmpty()) {
+            int index = work.poll();
+            AbstractInsnNode insn = insns.get(index);
+            List<String> after = new ArrayList<>(held.get(index));
+            int opcode = insn.getOpcode();
+            if (opcode == Opcodes.MONITORENTER) {
+                String lockId = valueOf(previous(insn), owner, isStatic, 0);
+                if (lockId != null && !after.contains(lockId)) {
+                    after.add(lockId);
+                }
+            } else if (opcode == Opcodes.MONITOREXIT) {
+                String lockId = valueOf(previous(insn), owner, isStatic, 0);
+                if (lockId != null) {
+                    after.remove(lockId);
+                } else if (!after.isEmpty()) {
+                    after.remove(after.size() - 1);
+                }
+            } else if (insn instanceof MethodInsnNode) {
+                MethodInsnNode call = (MethodInsnNode) insn;
+                AcquisitionKind kind = lockKind(call);
+                if (kind == AcquisitionKind.BLOCKING || isUnlock(call)) {
+                    String lockId = valueOf(receiver(call), owner, isStatic, 0);
+                    if (lockId != null && kind != null && !after.contains(lockId)) {
+                        after.add(lockId);
+                    } else if (lockId != null && kind == null) {
+                        after.remove(lockId);
+                    }
+                }
+            }
+            // 异常表按顺序匹配：第一个覆盖该指令的catch-all处理器之后的条目不会被用到
+            for (TryCatchBlockNode handler : method.tryCatchBlocks) {
+                if (insns.indexOf(handler.start) <= index && index < insns.indexOf(handler.end)) {
+                    join(held, insns.indexOf(handler.handler), held.get(index), work);
+                    if (handler.type == null) {
+                        break;
+                    }
+                }
+            }
+            if (insn instanceof JumpInsnNode) {
+                join(held, insns.indexOf(((JumpInsnNode) insn).label), after, work);
+                if (opcode == Opcodes.GOTO) {
+                    continue;
+                }
+            } else if (insn instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode table = (TableSwitchInsnNode) insn;
+                join(held, insns.indexOf(table.dflt), after, work);
+                for (LabelNode label : table.labels) {
+                    join(held, insns.indexOf(label), after, work);
+                }
+                continue;
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lookup = (LookupSwitchInsnNode) insn;
+                join(held, insns.indexOf(lookup.dflt), after, work);
+                for (LabelNode label : lookup.labels) {
+                    join(held, insns.indexOf(label), after, work);
+                }
+                continue;
+            } else if (opcode == Opcodes.ATHROW || opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+                continue;
+            }
+            if (index + 1 < insns.size()) {
+                join(held, index + 1, after, work);
+            }
+        }
+        return held;
+    }
+
+    private static void join(List<List<String>> held, int target, List<String> state, Deque<Integer> work) {
+        List<String> existing = held.get(target);
+        if (existing == null) {
+            held.set(target, new ArrayList<>(state));
+            work.add(target);
+            return;
+        }
+        boolean changed = false;
+        for (String lockId : state) {
+            if (!existing.contains(lockId)) {
+                existing.add(lockId);
+                changed = true;
+            }
+        }
+        if (changed) {
+            work.add(target);
+        }
+    }
+
+    /**
+     * Lock的获取方法：lock/lockInterruptibly为阻塞获取，tryLock()为非阻塞，tryLock(long, TimeUnit)为带超时
+     */
+    private static AcquisitionKind lockKind(MethodInsnNode call) {
+        if (!isLockOwner(call.owner)) {
+            return null;
+        }
+        if (("lock".equals(call.name) || "lockInterruptibly".equals(call.name)) && "()V".equals(call.desc)) {
+            return AcquisitionKind.BLOCKING;
+        }
+        if ("tryLock".equals(call.name)) {
+            return "()Z".equals(call.desc) ? AcquisitionKind.NON_BLOCKING : AcquisitionKind.TIMED;
+        }
+        return null;
+    }
+
+    private static boolean isUnlock(MethodInsnNode call) {
+        return isLockOwner(call.owner) && "unlock".equals(call.name) && "()V".equals(call.desc);
+    }
+
+    private static boolean isLockOwner(String owner) {
+        return owner.startsWith("java/util/concurrent/locks/") && owner.endsWith("Lock");
+    }
+
+    private static LockType explicitLockType(String lockId) {
+        if (lockId.endsWith("_readLock")) {
+            return LockType.READ_LOCK;
+        }
+        return lockId.endsWith("_writeLock") ? LockType.WRITE_LOCK : LockType.REENTRANT_LOCK;
+    }
+
+    /**
+     * tryLock(long, TimeUnit)的超时：两个参数都是常量时换算为毫秒，否则未知
+     */
+    private static long timeoutMillis(MethodInsnNode call) {
+        AbstractInsnNode unit = previous(call);
+        AbstractInsnNode amount = previous(unit);
+        if (!(unit instanceof FieldInsnNode) || !(amount instanceof LdcInsnNode)
+                || !(((LdcInsnNode) amount).cst instanceof Long)) {
+            return -1;
+        }
+        long value = (Long) ((LdcInsnNode) amount).cst;
+        try {
+            return java.util.concurrent.TimeUnit.valueOf(((FieldInsnNode) unit).name).toMillis(value);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 调用的接收者：逐个跳过参数，参数不是由单条常量/读取指令产生时放弃
+     */
+    private static AbstractInsnNode receiver(MethodInsnNode call) {
+        AbstractInsnNode insn = previous(call);
+        for (int i = Type.getArgumentTypes(call.desc).length; i > 0 && insn != null; i--) {
+            int opcode = insn.getOpcode();
+            boolean simple = insn instanceof LdcInsnNode || opcode >= Opcodes.ACONST_NULL && opcode <= Opcodes.SIPUSH
+                    || opcode == Opcodes.GETSTATIC || opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD;
+            if (!simple) {
+                return null;
+            }
+            insn = previous(insn);
+        }
+        return insn;
+    }
+
+    /**
+     * 产生栈顶值的指令所对应的锁ID，无法识别时为null
+     */
+    private static String valueOf(AbstractInsnNode insn, String owner, boolean isStatic, int depth) {
+        if (insn == null || depth > 8) {
+            return null;
+        }
+        switch (insn.getOpcode()) {
+            case Opcodes.DUP:
+            case Opcodes.CHECKCAST:
+                return valueOf(previous(insn), owner, isStatic, depth + 1);
+            case Opcodes.ASTORE:
+                // X; dup; astore n 之后栈顶仍是X
+                AbstractInsnNode stored = previous(insn);
+                return stored != null && stored.getOpcode() == Opcodes.DUP
+                        ? valueOf(stored, owner, isStatic, depth + 1) : null;
+            case Opcodes.GETSTATIC:
+            case Opcodes.GETFIELD:
+                FieldInsnNode field = (FieldInsnNode) insn;
+                return simpleName(field.owner) + "." + field.name;
+            case Opcodes.ALOAD:
+                int var = ((VarInsnNode) insn).var;
+                if (var == 0 && !isStatic) {
+                    return simpleName(owner) + ".this";
+                }
+                for (AbstractInsnNode p = previous(insn); p != null; p = previous(p)) {
+                    if (p.getOpcode() == Opcodes.ASTORE && ((VarInsnNode) p).var == var) {
+                        return valueOf(previous(p), owner, isStatic, depth + 1);
+                    }
+                }
+                return null;
+            case Opcodes.LDC:
+                Object constant = ((LdcInsnNode) insn).cst;
+                return constant instanceof Type && ((Type) constant).getSort() == Type.OBJECT
+                        ? "CLASS_" + simpleName(((Type) constant).getInternalName()) + ".class" : null;
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKEINTERFACE:
+                MethodInsnNode call = (MethodInsnNode) insn;
+                if (("readLock".equals(call.name) || "writeLock".equals(call.name)) && call.desc.startsWith("()")) {
+                    String base = valueOf(previous(insn), owner, isStatic, depth + 1);
+                    return base != null ? base + "_" + call.name : null;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 前一条真实指令（跳过标签、行号和栈帧）
+     */
+    private static AbstractInsnNode previous(AbstractInsnNode insn) {
+        AbstractInsnNode p = insn != null ? insn.getPrevious() : null;
+        while (p != null && p.getOpcode() < 0) {
+            p = p.getPrevious();
+        }
+        return p;
+    }
+
+    /**
+     * com/bank/Bank$Account → Account；匿名类（Bank$1）保留外部类名
+     */
+    static String simpleName(String internalName) {
+        String name = internalName.substring(internalName.lastIndexOf('/') + 1);
+        int inner = name.lastIndexOf('$');
+        if (inner >= 0 && inner + 1 < name.length() && Character.isJavaIdentifierStart(name.charAt(inner + 1))) {
+            return name.substring(inner + 1);
+        }
+        return name;
+    }
+
+    public Map<String, MethodSummary> getMethods() {
+        return methods;
+    }
+
+    public int getClassCount() {
+        return classCount.get();
+    }
+
+    /**
+     * 是否对分析范围之外的被调方法使用预计算的库摘要；生成库摘要时关闭
+     */
+    public void setUseLibrary(boolean useLibrary) {
+        this.useLibrary = useLibrary;
+    }
+
+    String superNameOf(String owner) {
+        return superNames.get(owner);
+    }
+
+    Set<String> receiverFieldsOf(String owner) {
+        return receiverFields.getOrDefault(owner, Collections.emptySet());
+    }
+
+    /**
+     * 构建检测器：每个线程根在它及其可达方法中持有外层的锁、等待内层的锁
+     */
+    public DeadlockDetector buildDetector() {
+        DeadlockDetector detector = new DeadlockDetector();
+        addTo(detector);
+        return detector;
+    }
+
+    /**
+     * 把加锁顺序加入已有的检测器（例如与源码分析的结果合并）
+     */
+    public void addTo(DeadlockDetector detector) {
+        Map<String, Set<String>> callers = propagateAcquiredLocks();
+
+        Map<String, List<String[]>> localEdges = new HashMap<>();
+        for (Map.Entry<String, MethodSummary> entry : methods.entrySet()) {
+            List<String[]> edges = localEdges(entry.getValue());
+            if (!edges.isEmpty()) {
+                localEdges.put(entry.getKey(), edges);
+            }
+        }
+        int roots = 0;
+        for (Map.Entry<String, MethodSummary> entry : methods.entrySet()) {
+            MethodSummary summary = entry.getValue();
+            boolean threadRoot = isThreadRoot(entry.getKey(), summary);
+            if (!threadRoot && callers.containsKey(entry.getKey())) {
+                continue;
+            }
+            String thread = "Thread_" + simpleName(summary.owner) + "#" + summary.name;
+            // 按外层锁拆分进程：持有某把锁时等待的只是在它之内获取的锁，环上每一步都对应一条真实的加锁顺序边
+            Map<String, List<String[]>> byOuter = new LinkedHashMap<>();
+            for (String reachable : reachable(entry.getKey())) {
+                for (String[] edge : localEdges.getOrDefault(reachable, new ArrayList<>())) {
+                    if (threadRoot || SELF.equals(edge[2])) {
+                        byOuter.computeIfAbsent(edge[0], k -> new ArrayList<>()).add(edge);
+                    }
+                }
+            }
+            List<String> partitions = new ArrayList<>();
+            for (Map.Entry<String, List<String[]>> group : byOuter.entrySet()) {
+                String process = byOuter.size() == 1 ? thread : thread + "@" + group.getKey();
+                partitions.add(process);
+                for (String[] edge : group.getValue()) {
+                    if (SELF.equals(edge[2])) {
+                        detector.addSelfDeadlock(process, edge[1], LockType.WRITE_LOCK);
+                        continue;
+                    }
+                    detector.addProcessHoldsResource(process, edge[0], lockTypes.get(edge[0]));
+                    detector.addProcessWaitsForResource(process, edge[1], lockTypes.get(edge[1]),
+                            AcquisitionKind.valueOf(edge[2]), Long.parseLong(edge[3]), false);
+                }
+            }
+            // 同一线程根的各部分在同一个线程中先后执行，彼此之间不成环
+            for (int i = 0; threadRoot && i < partitions.size(); i++) {
+                for (int j = i + 1; j < partitions.size(); j++) {
+                    detector.addHappensBefore(partitions.get(i), partitions.get(j));
+                }
+            }
+            roots += threadRoot && !byOuter.isEmpty() ? 1 : 0;
+        }
+        System.out.println("Bytecode analysis: " + classCount.get() + " classes, " + methods.size() + " methods, "
+                + edgeSites.size() + " lock-order edges, " + roots + " thread roots");
+    }
+
+    /**
+     * 线程根：run()V、call()、main方法，以及作为Runnable/Callable的lambda与方法引用
+     */
+    private boolean isThreadRoot(String key, MethodSummary summary) {
+        return "run".equals(summary.name) && "()V".equals(summary.descriptor)
+                || "call".equals(summary.name) && summary.descriptor.startsWith("()")
+                || "main".equals(summary.name) && "([Ljava/lang/String;)V".equals(summary.descriptor)
+                        && (summary.access & Opcodes.ACC_STATIC) != 0
+                || lambdaBodies.contains(key);
+    }
+
+    /**
+     * 加锁集合沿调用图反向传递到调用者，直到不动点；分析范围之外的被调方法按库摘要计入
+     * @return 被调方法 → 调用者
+     */
+    Map<String, Set<String>> propagateAcquiredLocks() {
+        Map<String, Set<String>> callers = new HashMap<>();
+        Deque<String> work = new ArrayDeque<>();
+        for (Map.Entry<String, MethodSummary> entry : methods.entrySet()) {
+            for (Acquisition acquisition : entry.getValue().acquisitions) {
+                entry.getValue().acquiredLocks.add(acquisition.lockId);
+                lockTypes.putIfAbsent(acquisition.lockId, acquisition.lockType);
+            }
+            for (Call call : entry.getValue().calls) {
+                if (methods.containsKey(call.callee)) {
+                    callers.computeIfAbsent(call.callee, k -> new HashSet<>()).add(entry.getKey());
+                } else {
+                    entry.getValue().acquiredLocks.addAll(libraryLocks(call));
+                }
+            }
+            if (!entry.getValue().acquiredLocks.isEmpty()) {
+                work.add(entry.getKey());
+            }
+        }
+        while (!work.isEmpty()) {
+            String callee = work.poll();
+            Set<String> acquired = methods.get(callee).acquiredLocks;
+            for (String caller : callers.getOrDefault(callee, new HashSet<>())) {
+                if (methods.get(caller).acquiredLocks.addAll(acquired)) {
+                    work.add(caller);
+                }
+            }
+        }
+        return callers;
+    }
+
+    /**
+     * 分析范围之外的被调方法（JDK与常用库）查预计算的库摘要，接收者的锁换成调用点识别出的锁ID
+     */
+    private List<String> libraryLocks(Call call) {
+        List<String> locks = new ArrayList<>();
+        int split = call.callee.indexOf('.');
+        LockSummaryLibrary.MethodEffect effect = useLibrary
+                ? LockSummaryLibrary.get().lookup(call.callee.substring(0, split), call.callee.substring(split + 1)) : null;
+        if (effect == null) {
+            return locks;
+        }
+        for (int i = 0; i < effect.getLockIds().size(); i++) {
+            String lockId = LockSummaryLibrary.RECEIVER.equals(effect.getLockIds().get(i))
+                    ? call.receiver : effect.getLockIds().get(i);
+            if (lockId != null) {
+                locks.add(lockId);
+                lockTypes.putIfAbsent(lockId, effect.getLockTypes().get(i));
+            }
+        }
+        return locks;
+    }
+
+    /**
+     * 方法自身产生的加锁顺序边 [持有, 获取, 获取方式, 超时]：直接嵌套的加锁，以及持锁调用的方法会获取的锁
+     */
+    private List<String[]> localEdges(MethodSummary summary) {
+        List<String[]> edges = new ArrayList<>();
+        for (Acquisition acquisition : summary.acquisitions) {
+            for (String outer : acquisition.held) {
+                addEdge(edges, outer, acquisition.lockId, acquisition.kind, acquisition.timeoutMillis, acquisition.site);
+            }
+        }
+        for (Call call : summary.calls) {
+            if (call.held.isEmpty()) {
+                continue;
+            }
+            MethodSummary callee = methods.get(call.callee);
+            for (String outer : call.held) {
+                for (String inner : callee != null ? callee.acquiredLocks : libraryLocks(call)) {
+                    addEdge(edges, outer, inner, AcquisitionKind.BLOCKING, -1, call.site);
+                }
+            }
+        }
+        return edges;
+    }
+
+    private void addEdge(List<String[]> edges, String outer, String inner, AcquisitionKind kind, long timeoutMillis, String site) {
+        if (resourceOf(outer).equals(resourceOf(inner))) {
+            // 持有读锁时请求同一把锁的写锁：不支持升级，线程自身阻塞；其余组合是重入或降级
+            if (outer.endsWith("_readLock") && inner.endsWith("_writeLock") && kind == AcquisitionKind.BLOCKING
+                    && !releasesReadHolds.contains(resourceOf(inner))) {
+                edges.add(new String[]{outer, inner, SELF, "-1"});
+            }
+            return;
+        }
+        edges.add(new String[]{outer, inner, kind.name(), Long.toString(timeoutMillis)});
+        edgeSites.putIfAbsent(resourceOf(outer) + "\u0000" + resourceOf(inner), site);
+    }
+
+    /**
+     * 读写锁的两种模式是同一个资源，与检测器中的资源节点ID一致
+     */
+    private static String resourceOf(String lockId) {
+        for (String suffix : new String[]{"_readLock", "_writeLock"}) {
+            if (lockId.endsWith(suffix)) {
+                return lockId.substring(0, lockId.length() - suffix.length());
+            }
+        }
+        return lockId;
+    }
+
+    private Set<String> reachable(String root) {
+        Set<String> seen = new LinkedHashSet<>();
+        Deque<String> work = new ArrayDeque<>();
+        work.push(root);
+        while (!work.isEmpty()) {
+            String current = work.pop();
+            MethodSummary summary = methods.get(current);
+            if (summary == null || !seen.add(current)) {
+                continue;
+            }
+            for (Call call : summary.calls) {
+                work.push(call.callee);
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * 报告：统计与每个死锁环上的加锁顺序（附位置）
+     */
+    public String formatReport(DeadlockDetectionResult result) {
+        int locking = 0;
+        for (MethodSummary summary : methods.values()) {
+            locking += summary.acquisitions.isEmpty() ? 0 : 1;
+        }
+        StringBuilder report = new StringBuilder(String.format("字节码分析：%d 个类，%d 个方法，其中 %d 个方法直接加锁，%d 条加锁顺序边\n",
+                classCount.get(), methods.size(), locking, edgeSites.size()));
+        List<List<GraphNode>> cycles = result.getHardDeadlockCycles();
+        if (cycles.isEmpty() && result.getHangs().isEmpty()) {
+            return report.append("未检测到死锁\n").toString();
+        }
+        for (int i = 0; i < cycles.size(); i++) {
+            // 环的末尾重复起点
+            List<GraphNode> cycle = cycles.get(i);
+            int length = cycle.size() - 1;
+            report.append(String.format("\n死锁环 %d：\n", i + 1));
+            for (int j = 0; j < length; j++) {
+                GraphNode resource = cycle.get(j);
+                if (resource.getType() != NodeType.RESOURCE) {
+                    continue;
+                }
+                GraphNode process = cycle.get((j + 1) % length);
+                GraphNode next = cycle.get((j + 2) % length);
+                String site = edgeSites.get(resource.getId() + "\u0000" + next.getId());
+                report.append(String.format("  %s 持有 %s 时获取 %s（%s）\n", process.getId(), resource.getId(), next.getId(),
+                        site != null ? site : "经调用链"));
+            }
+        }
+        for (List<GraphNode> hang : result.getHangs()) {
+            report.append(String.format("\n永久阻塞：%s 等待 %s\n", hang.get(0).getId(), hang.get(hang.size() - 1).getId()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * 命令行入口，供CI分析构建产物：参数为class目录、jar或class文件；发现死锁或永久阻塞时退出码为1
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("用法：BytecodeLockAnalyzer <class目录|jar|class文件>...");
+            System.exit(2);
+        }
+        BytecodeLockAnalyzer analyzer = new BytecodeLockAnalyzer();
+        PrintStream out = System.out;
+        DeadlockDetectionResult result;
+        try {
+            for (String arg : args) {
+                analyzer.addPath(Paths.get(arg));
+            }
+            // 检测器的逐节点调试输出在大型jar上过多，命令行下不输出
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            result = analyzer.buildDetector().detectDeadlocks();
+        } catch (IOException e) {
+            System.setOut(out);
+            System.err.println("无法读取：" + e.getMessage());
+            System.exit(2);
+            return;
+        } finally {
+            System.setOut(out);
+        }
+        System.out.print(analyzer.formatReport(result));
+        System.exit(result.getHardDeadlockCycles().isEmpty() && result.getHangs().isEmpty() ? 0 : 1);
+    }
+}
@@ -1,13 +1,17 @@
 package com.deadlock.detector.analyzer;
 
 import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.model.GraphNode;
 import com.deadlock.detector.model.LockType;
+import com.deadlock.detector.model.NodeType;
+import com.deadlock.detector.model.SourceAnchor;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.PsiMethodImpl;
 import com.intellij.psi.javadoc.PsiDocComment;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiTypesUtil;
+import com.intellij.psi.util.PsiUtil;
 import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.kotlin.psi.KtFile;
@@ -23,7 +27,13 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 基于Psi API的Java代码锁解析器
@@ -31,6 +41,16 @@ import java.util.List;
  */
 public class CodeAnalyzer {
     private DeadlockDetector detector;
+    // 被调方法的加锁摘要，每次分析文件时重建
+    private MethodLockSummary lockSummary = new MethodLockSummary();
+    // 线程根（Lambda、匿名类或Thread子类）到线程ID的映射，用于解析unpark目标
+    private final Map<PsiElement, String> rootThreadIds = new HashMap<>();
+    // Lambda生成的虚拟run方法到原Lambda的映射
+    private final Map<PsiMethod, PsiLambdaExpression> virtualRunOrigins = new HashMap<>();
+    // 边与线程根的源码位置
+    private SourceAnchors sourceAnchors = new SourceAnchors();
+    // 存在无法解析目标的unpark时，任何park都可能被唤醒
+    private boolean unresolvedUnpark;
 
     public CodeAnalyzer() {
         this.detector = new DeadlockDetector();
@@ -44,16 +64,57 @@ public class CodeAnalyzer {
     public DeadlockDetector analyzePsiFile(PsiFile psiFile) {
         // 重置检测器
         detector.reset();
-        // 重置线程计数器
-        threadCounter = 0;
+        // 重置线程ID分配
+        threadIdentity = new ThreadIdentity();
+        lockSummary = new MethodLockSummary();
+        rootThreadIds.clear();
+        virtualRunOrigins.clear();
+        unresolvedUnpark = false;
+        sourceAnchors = new SourceAnchors();
 
         // 1. 根据文件类型选择对应的分析方法
         if (psiFile instanceof PsiJavaFile) {
-            // Java文件分析
+            // Java文件分析：先为所有线程分配ID，unpark可能指向后面的线程
             List<PsiMethod> threadRunMethods = extractThreadRunMethods(psiFile);
+            List<String> threadIds = new ArrayList<>();
             for (PsiMethod runMethod : threadRunMethods) {
                 String threadId = generateThreadId(runMethod);
-                analyzeRunMethodPsi(runMethod, threadId);
+                threadIds.add(threadId);
+                PsiElement root = virtualRunOrigins.containsKey(runMethod)
+                        ? virtualRunOrigins.get(runMethod) : runMethod.getContainingClass();
+                if (root != null) {
+                    rootThreadIds.put(root, threadId);
+                }
+            }
+            for (int i = 0; i < threadRunMethods.size(); i++) {
+                analyzeRunMethodPsi(threadRunMethods.get(i), threadIds.get(i));
+            }
+            for (Map.Entry<PsiElement, String> entry : rootThreadIds.entrySet()) {
+                detector.anchorProcess(entry.getValue(), sourceAnchors.anchor(entry.getKey()));
+            }
+            // 线程池任务：槽位占用与Future等待，并解析任务体中的锁操作
+            List<ExecutorAnalyzer.SubmittedTask> tasks = analyzeExecutorTasks(psiFile);
+            // start/join、CountDownLatch与invokeAll确定的先后关系，排除不会并发的线程对
+            HappensBeforeAnalyzer happensBefore = new HappensBeforeAnalyzer();
+            for (Map.Entry<PsiElement, String> entry : rootThreadIds.entrySet()) {
+                happensBefore.addThread(entry.getValue(), entry.getKey());
+            }
+            for (ExecutorAnalyzer.SubmittedTask task : tasks) {
+                happensBefore.addTask(task);
+            }
+            for (String[] pair : happensBefore.computeOrderedPairs()) {
+                detector.addHappensBefore(pair[0], pair[1]);
+            }
+            // 循环中启动或重复提交的线程/任务：同一代码的多个实例之间也可能死锁
+            registerManyInstances(psiFile, tasks);
+            // 线程之外的入口方法中发出的信号与unpark
+            registerExternalSignals(psiFile);
+            if (unresolvedUnpark) {
+                for (GraphNode node : detector.getNodes().values()) {
+                    if (node.getType() == NodeType.PROCESS) {
+                        detector.addExternalSignalProvider("LockSupport_" + node.getId());
+                    }
+                }
             }
         } else if (psiFile instanceof KtFile) {
             // Kotlin文件分析
@@ -63,6 +124,34 @@ public class CodeAnalyzer {
         return detector;
     }
 
+    /**
+     * 解析线程池任务，任务体与线程run方法一样参与锁分析
+     */
+    private List<ExecutorAnalyzer.SubmittedTask> analyzeExecutorTasks(PsiFile psiFile) {
+        ExecutorAnalyzer executorAnalyzer = new ExecutorAnalyzer(detector, sourceAnchors);
+        List<ExecutorAnalyzer.SubmittedTask> tasks = executorAnalyzer.analyze(psiFile);
+        for (ExecutorAnalyzer.SubmittedTask task : tasks) {
+            PsiElement body = task.getBody();
+            PsiMethod taskMethod = null;
+            if (body instanceof PsiLambdaExpression) {
+                PsiLambdaExpression lambda = (PsiLambdaExpression) body;
+                PsiCodeBlock lambdaBody = getLambdaCodeBlock(lambda, psiFile.getProject());
+                if (lambdaBody != null) {
+                    taskMethod = createVirtualRunMethod(lambdaBody, psiFile.getProject(), lambda);
+                }
+            } else if (body instanceof PsiAnonymousClass) {
+                PsiMethod[] methods = ((PsiAnonymousClass) body).getMethods();
+                taskMethod = methods.length > 0 ? methods[0] : null;
+            } else if (body instanceof PsiMethod) {
+                taskMethod = (PsiMethod) body;
+            }
+            if (taskMethod != null && taskMethod.getBody() != null) {
+                analyzeRunMethodPsi(taskMethod, task.getTaskId());
+            }
+        }
+        return tasks;
+    }
+
     /**
      * 分析Kotlin文件，提取线程和锁信息
      * @param ktFile Kotlin文件语法树根节点
@@ -153,9 +242,7 @@ public class CodeAnalyzer {
      * 生成Kotlin线程的唯一ID
      */
     private String generateKotlinThreadId(PsiElement runElement) {
-        String elementType = runElement.getClass().getSimpleName();
-        threadCounter++;
-        return String.format("KotlinThread_%s_%d_%d", elementType, runElement.getTextOffset(), threadCounter);
+        return threadIdentity.allocate("KotlinThread_", ThreadIdentity.describeKotlin(runElement));
     }
     
     /**
@@ -226,6 +313,8 @@ public class CodeAnalyzer {
             
             System.out.println("Found Kotlin lock call: " + methodName + " on " + lockObject);
             
+            // tryLock成功时同样持有锁；Kotlin分析只记录持有关系，不建立等待边，
+            // 因此无参tryLock不会被当作阻塞获取参与成环
             if ("lock".equals(methodName) || "tryLock".equals(methodName)) {
                 detector.addProcessHoldsResource(threadId, lockObject, lockType);
             }
@@ -464,6 +553,7 @@ public class CodeAnalyzer {
         
         if (methods.length > 0) {
             System.out.println("Created virtual run method with body: " + methods[0].getBody().getText());
+            virtualRunOrigins.put(methods[0], lambda);
             return methods[0];
         }
         
@@ -471,24 +561,20 @@ public class CodeAnalyzer {
         String methodText = String.format("public void run() %s", body.getText());
         PsiMethod fallbackMethod = factory.createMethodFromText(methodText, lambda);
         System.out.println("Fallback: Created virtual run method with body: " + fallbackMethod.getBody().getText());
+        virtualRunOrigins.put(fallbackMethod, lambda);
         return fallbackMethod;
     }
 
     /**
-     * 生成唯一线程ID（基于方法位置、所属类和唯一计数器）
+     * 生成稳定的线程ID（基于线程根的全限定位置，见ThreadIdentity）
      */
-    private int threadCounter = 0;
-    
+    private ThreadIdentity threadIdentity = new ThreadIdentity();
+
     private String generateThreadId(PsiMethod runMethod) {
-        String className = "AnonymousThread";
-        if (runMethod.getContainingClass() != null) {
-            className = runMethod.getContainingClass().getName() != null
-                    ? runMethod.getContainingClass().getName()
-                    : "AnonymousClass";
-        }
-        // 使用全局计数器确保每个线程都有唯一ID
-        threadCounter++;
-        String threadId = String.format("Thread_%s_%d_%d", className, runMethod.getTextOffset(), threadCounter);
+        PsiElement root = virtualRunOrigins.containsKey(runMethod)
+                ? virtualRunOrigins.get(runMethod) : runMethod.getContainingClass();
+        String descriptor = root != null ? ThreadIdentity.describe(root) : ThreadIdentity.describeSite(runMethod);
+        String threadId = threadIdentity.allocate("Thread_", descriptor);
         System.out.println("Generated thread ID: " + threadId);
         return threadId;
     }
@@ -516,6 +602,12 @@ public class CodeAnalyzer {
         // 3. 解析LockSupport
         System.out.println("Parsing lock support...");
         parseLockSupportPsi(runMethod, threadId);
+        // 4. 解析调用的synchronized方法及其他加锁方法
+        System.out.println("Parsing lock-acquiring method calls...");
+        parseMethodCallLocksPsi(runMethod, threadId);
+        // 5. 解析条件等待与发信号（wait/notify、await/signal）
+        System.out.println("Parsing condition waits...");
+        parseConditionWaitsPsi(runMethod, threadId);
         
         System.out.println("Finished analyzing run method: " + runMethod.getTextOffset());
     }
@@ -525,6 +617,15 @@ public class CodeAnalyzer {
      */
     private void parseSynchronizedBlocksPsi(PsiMethod method, String threadId) {
         List<String> lockStack = new ArrayList<>();
+
+        // synchronized方法：进入方法即持有this（静态方法为类锁），方法内的同步块都嵌套在其中
+        if (method.hasModifierProperty(PsiModifier.SYNCHRONIZED)) {
+            String monitorId = LockScopeWalker.methodMonitorId(method);
+            System.out.println("Synchronized method holds: " + threadId + " -> " + monitorId);
+            lockStack.add(monitorId);
+            detector.addProcessHoldsResource(threadId, monitorId, LockScopeWalker.methodMonitorType(method));
+            detector.anchorHold(threadId, monitorId, anchorOf(method.getNameIdentifier()));
+        }
         
         // 使用PsiTreeUtil直接查找所有同步块，确保能找到所有同步语句
         System.out.println("Using PsiTreeUtil to find synchronized statements...");
@@ -581,6 +682,7 @@ public class CodeAnalyzer {
             if (!lockStack.isEmpty()) {
                 System.out.println("Adding wait relationship: " + threadId + " -> " + lockObject);
                 detector.addProcessWaitsForResource(threadId, lockObject, lockType);
+                detector.anchorWait(threadId, lockObject, anchorOf(statement));
             } else {
                 System.out.println("First lock for thread: " + threadId + " -> " + lockObject);
             }
@@ -589,6 +691,7 @@ public class CodeAnalyzer {
             lockStack.add(lockObject);
             System.out.println("Adding hold relationship: " + threadId + " -> " + lockObject);
             detector.addProcessHoldsResource(threadId, lockObject, lockType);
+            detector.anchorHold(threadId, lockObject, anchorOf(statement));
 
             // 处理内部嵌套同步块
             PsiCodeBlock block = statement.getBody();
@@ -604,6 +707,233 @@ public class CodeAnalyzer {
         }
     }
     
+    /**
+     * 解析对加锁方法的调用：被调方法的锁在调用点展开，调用时已持有其他锁则建立等待关系
+     */
+    private void parseMethodCallLocksPsi(PsiMethod method, String threadId) {
+        new LockScopeWalker().walk(method, new ArrayList<>(), new LockScopeWalker.Callback() {
+            @Override
+            public void visitCall(PsiMethodCallExpression call, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+                // Lambda与内部类中的调用不在当前线程中执行
+                if (MethodLockSummary.isDeferred(call, method)) {
+                    return;
+                }
+                for (MethodLockSummary.Acquisition acquisition : lockSummary.summarize(call)) {
+                    String lockId = acquisition.getLockId();
+                    boolean reentrant = false;
+                    for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+                        reentrant |= held.getLockId().equals(lockId);
+                    }
+                    if (reentrant) {
+                        continue;
+                    }
+                    if (acquisition.isNested() || !heldMonitors.isEmpty()) {
+                        System.out.println("Adding call wait relationship: " + threadId + " -> " + lockId);
+                        detector.addProcessWaitsForResource(threadId, lockId, acquisition.getLockType(),
+                                acquisition.getKind(), acquisition.getTimeoutMillis(), acquisition.isRetried());
+                        detector.anchorWait(threadId, lockId, anchorOf(call));
+                    }
+                    // 库方法返回前就释放了锁，线程不会持有它去等待其他锁
+                    if (acquisition.isLeaf()) {
+                        continue;
+                    }
+                    detector.addProcessHoldsResource(threadId, lockId, acquisition.getLockType());
+                    detector.anchorHold(threadId, lockId, anchorOf(call));
+                }
+            }
+        });
+    }
+
+    /**
+     * 解析条件等待与发信号：等待只释放所属的锁，等待线程指向它需要的信号
+     */
+    private void parseConditionWaitsPsi(PsiMethod method, String threadId) {
+        for (MethodLockSummary.ConditionSite site : lockSummary.conditionSitesOf(method)) {
+            if (site.getKind() == ConditionOperation.Kind.WAIT) {
+                System.out.println("Adding signal wait: " + threadId + " -> " + site.getSignalId()
+                        + ", releases " + site.getReleasedLock() + ", holds " + site.getHeldLocks());
+                detector.addSignalWait(threadId, site.getSignalId(), site.getReleasedLock(), site.getHeldLocks());
+                detector.anchorWait(threadId, site.getSignalId(), anchorOf(site.getSite()));
+            } else {
+                System.out.println("Adding signal provider: " + threadId + " -> " + site.getSignalId());
+                detector.addSignalProvider(threadId, site.getSignalId(), site.getHeldLocks());
+                detector.anchorHold(threadId, site.getSignalId(), anchorOf(site.getSite()));
+            }
+        }
+    }
+
+    /**
+     * 最近一次分析的源码位置文件表，用于从结果跳转到代码
+     */
+    public SourceAnchors getSourceAnchors() {
+        return sourceAnchors;
+    }
+
+    /**
+     * 元素的源码位置；Lambda线程的虚拟run方法按相对偏移映射回原Lambda体
+     */
+    private SourceAnchor anchorOf(PsiElement element) {
+        if (element == null) {
+            return null;
+        }
+        if (element.isPhysical()) {
+            return sourceAnchors.anchor(element);
+        }
+        for (Map.Entry<PsiMethod, PsiLambdaExpression> entry : virtualRunOrigins.entrySet()) {
+            PsiCodeBlock virtualBody = entry.getKey().getBody();
+            if (virtualBody == null || !PsiTreeUtil.isAncestor(virtualBody, element, false)) {
+                continue;
+            }
+            PsiLambdaExpression lambda = entry.getValue();
+            if (!(lambda.getBody() instanceof PsiCodeBlock)) {
+                return sourceAnchors.anchor(lambda);
+            }
+            int delta = element.getTextRange().getStartOffset() - virtualBody.getTextRange().getStartOffset();
+            return sourceAnchors.anchor(lambda.getContainingFile(), lambda.getBody().getTextRange().getStartOffset() + delta);
+        }
+        return null;
+    }
+
+    /**
+     * 入口方法（本文件中没有调用者，也不是run/call任务方法）中的发信号来自线程之外，
+     * 对应的等待不判定为信号丢失
+     */
+    private void registerExternalSignals(PsiFile psiFile) {
+        Set<PsiMethod> calledMethods = new HashSet<>();
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethodCallExpression.class)) {
+            PsiMethod callee = call.resolveMethod();
+            if (callee != null) {
+                calledMethods.add(callee);
+            }
+        }
+        for (PsiMethod method : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethod.class)) {
+            boolean taskMethod = ("run".equals(method.getName()) || "call".equals(method.getName()))
+                    && method.getParameterList().isEmpty();
+            if (taskMethod || method.getBody() == null || calledMethods.contains(method)) {
+                continue;
+            }
+            for (MethodLockSummary.ConditionSite site : lockSummary.conditionSitesOf(method)) {
+                if (site.getKind() == ConditionOperation.Kind.SIGNAL) {
+                    detector.addExternalSignalProvider(site.getSignalId());
+                }
+            }
+            for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(method.getBody(), PsiMethodCallExpression.class)) {
+                if (!MethodLockSummary.isDeferred(call, method) && isLockSupportCall(call, "unpark")
+                        && call.getArgumentList().getExpressions().length == 1) {
+                    String targetId = resolveThreadId(call.getArgumentList().getExpressions()[0], null);
+                    if (targetId != null) {
+                        detector.addExternalSignalProvider("LockSupport_" + targetId);
+                    } else {
+                        unresolvedUnpark = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 识别会运行多个实例的线程与任务：线程根被多处创建、创建或start()位于循环中，任务在循环中提交。
+     * 不展开实例，只为实例相关的锁（线程类的实例字段、循环中声明并被捕获的变量）给出另一个实例中的对应关系，
+     * 同类型的变量按逆序互换，例如 transfer(from, to) 的另一个实例按 transfer(to, from) 加锁。
+     */
+    private void registerManyInstances(PsiFile psiFile, List<ExecutorAnalyzer.SubmittedTask> tasks) {
+        Collection<PsiNewExpression> creations = PsiTreeUtil.findChildrenOfType(psiFile, PsiNewExpression.class);
+        for (Map.Entry<PsiElement, String> entry : rootThreadIds.entrySet()) {
+            List<PsiElement> sites = new ArrayList<>();
+            int creationCount = 0;
+            for (PsiNewExpression creation : creations) {
+                if (ThreadRoots.isThreadCreation(creation) && ThreadRoots.threadRootOf(creation) == entry.getKey()) {
+                    creationCount++;
+                    sites.add(creation);
+                    sites.addAll(ThreadRoots.findThreadCalls(creation, "start"));
+                }
+            }
+            boolean repeated = creationCount > 1;
+            for (PsiElement site : sites) {
+                repeated |= enclosingLoop(site) != null;
+            }
+            if (repeated) {
+                System.out.println("Many instances: " + entry.getValue());
+                detector.addManyInstances(entry.getValue(), instanceSwap(entry.getKey(), sites));
+            }
+        }
+        for (ExecutorAnalyzer.SubmittedTask task : tasks) {
+            if (task.getBody() != null && enclosingLoop(task.getSubmission()) != null) {
+                System.out.println("Many instances: " + task.getTaskId());
+                detector.addManyInstances(task.getTaskId(),
+                        instanceSwap(task.getBody(), Collections.singletonList(task.getSubmission())));
+            }
+        }
+    }
+
+    /**
+     * 元素所在的循环：循环语句，或作为forEach参数的Lambda；不越过方法与类的边界
+     */
+    private PsiElement enclosingLoop(PsiElement element) {
+        PsiElement current = element.getParent();
+        while (current != null && !(current instanceof PsiMethod) && !(current instanceof PsiClass)
+                && !(current instanceof PsiFile)) {
+            if (current instanceof PsiLoopStatement) {
+                return current;
+            }
+            if (current instanceof PsiLambdaExpression) {
+                PsiElement call = PsiUtil.skipParenthesizedExprUp(current.getParent());
+                if (call instanceof PsiExpressionList && call.getParent() instanceof PsiMethodCallExpression
+                        && "forEach".equals(((PsiMethodCallExpression) call.getParent()).getMethodExpression().getReferenceName())) {
+                    return current;
+                }
+                return null;
+            }
+            current = current.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * 实例相关变量按类型分组，组内逆序互换
+     */
+    private Map<String, String> instanceSwap(PsiElement root, List<PsiElement> sites) {
+        Map<String, List<String>> namesByType = new LinkedHashMap<>();
+        List<PsiVariable> candidates = new ArrayList<>();
+        if (root instanceof PsiClass) {
+            for (PsiField field : ((PsiClass) root).getFields()) {
+                if (!field.hasModifierProperty(PsiModifier.STATIC)) {
+                    candidates.add(field);
+                }
+            }
+        }
+        for (PsiElement site : sites) {
+            PsiElement loop = enclosingLoop(site);
+            if (loop == null) {
+                continue;
+            }
+            for (PsiVariable variable : PsiTreeUtil.findChildrenOfType(loop, PsiVariable.class)) {
+                if (!(variable instanceof PsiField) && !PsiTreeUtil.isAncestor(root, variable, false)) {
+                    candidates.add(variable);
+                }
+            }
+        }
+        for (PsiVariable variable : candidates) {
+            if (variable.getName() == null || variable.getType() instanceof PsiPrimitiveType) {
+                continue;
+            }
+            List<String> names = namesByType.computeIfAbsent(variable.getType().getCanonicalText(), k -> new ArrayList<>());
+            if (!names.contains(variable.getName())) {
+                names.add(variable.getName());
+            }
+        }
+        Map<String, String> swap = new HashMap<>();
+        for (List<String> names : namesByType.values()) {
+            for (int i = 0; i < names.size(); i++) {
+                String counterpart = names.get(names.size() - 1 - i);
+                if (!counterpart.equals(names.get(i))) {
+                    swap.put(names.get(i), counterpart);
+                }
+            }
+        }
+        return swap;
+    }
+
     /**
      * 处理单个同步块（递归处理嵌套同步块）
      */
@@ -629,6 +959,7 @@ public class CodeAnalyzer {
         if (!lockStack.isEmpty()) {
             System.out.println("Adding nested wait relationship: " + threadId + " -> " + lockObject);
             detector.addProcessWaitsForResource(threadId, lockObject, lockType);
+            detector.anchorWait(threadId, lockObject, anchorOf(statement));
         }
         
         // 锁重入判断
@@ -651,6 +982,7 @@ public class CodeAnalyzer {
         lockStack.add(lockObject);
         System.out.println("Adding nested hold relationship: " + threadId + " -> " + lockObject);
         detector.addProcessHoldsResource(threadId, lockObject, lockType);
+        detector.anchorHold(threadId, lockObject, anchorOf(statement));
         
         // 处理更深层次的嵌套同步块
         PsiCodeBlock block = statement.getBody();
@@ -667,185 +999,153 @@ public class CodeAnalyzer {
 
     /**
      * 解析ReentrantLock/ReadWriteLock操作（Psi API）
+     * 优先使用控制流数据流分析得到每次获取时的持锁集合，控制流不可用时回退到按源码顺序的线性锁栈
      */
     private void parseLockMethodsPsi(PsiMethod method, String threadId) {
-        List<String> lockStack = new ArrayList<>();
-
-        method.accept(new PsiRecursiveElementVisitor() {
-
-            public void visitMethodCallExpression(PsiMethodCallExpression callExpr) {
-                String methodName = callExpr.getMethodExpression().getReferenceName();
-                if (methodName == null) {
-                    return;
-                }
+        PsiCodeBlock body = method.getBody();
+        List<LockOperation> operations = LockOperation.collect(body);
+        if (operations.isEmpty()) {
+            return;
+        }
 
-                // 1. 处理ReadLock/WriteLock（xxx.readLock().lock()）
-                if (("readLock".equals(methodName) || "writeLock".equals(methodName))
-                        && callExpr.getArgumentList().getExpressions().length == 0) {
-                    handleReadWriteLock(callExpr, methodName, threadId, lockStack);
+        List<HeldLockDataflow.AcquireSite> sites = new HeldLockDataflow().analyze(body, operations);
+        if (sites != null) {
+            for (HeldLockDataflow.AcquireSite site : sites) {
+                LockOperation operation = site.getOperation();
+                // 读锁升级写锁、StampedLock重入：线程自身阻塞
+                String blockingKey = operation.findSelfBlockingKey(site.getMayHeld());
+                if (blockingKey != null) {
+                    recordSelfDeadlock(threadId, operation, blockingKey);
+                    continue;
                 }
-
-                // 2. 处理ReentrantLock的lock()/unlock()/tryLock()
-                if ("lock".equals(methodName) && callExpr.getArgumentList().getExpressions().length == 0) {
-                    handleReentrantLockAcquire(callExpr, threadId, lockStack);
-                } else if ("unlock".equals(methodName) && callExpr.getArgumentList().getExpressions().length == 0) {
-                    handleReentrantLockRelease(callExpr, lockStack);
-                } else if ("tryLock".equals(methodName)) {
-                    handleTryLock(callExpr, threadId, lockStack);
+                // 所有路径上都已持有：锁重入，不产生新的关系
+                if (site.getMustHeld().contains(operation.getLockKey())) {
+                    continue;
                 }
+                List<String> heldOthers = new ArrayList<>(site.getMayHeld());
+                heldOthers.remove(operation.getLockKey());
+                recordLockAcquire(threadId, operation, !heldOthers.isEmpty());
             }
-        });
-    }
-
-    /**
-     * 处理ReadWriteLock的获取与释放
-     */
-    private void handleReadWriteLock(PsiMethodCallExpression callExpr, String rwMethodName,
-                                     String threadId, List<String> lockStack) {
-        PsiExpression qualifier = callExpr.getMethodExpression().getQualifierExpression();
-        if (qualifier == null) {
             return;
         }
 
-        String lockObjName = qualifier.getText().trim();
-        LockType lockType = "readLock".equals(rwMethodName) ? LockType.READ_LOCK : LockType.WRITE_LOCK;
-        String lockKey = lockObjName + "_" + rwMethodName;
-
-        // 查找后续的lock()/unlock()调用
-        PsiElement parent = callExpr.getParent();
-        if (parent instanceof PsiMethodCallExpression) {
-            PsiMethodCallExpression parentCall = (PsiMethodCallExpression) parent;
-            String parentMethodName = parentCall.getMethodExpression().getReferenceName();
-            if ("lock".equals(parentMethodName)) {
-                // 处理锁获取
-                if (lockStack.contains(lockKey)) {
-                    lockStack.add(lockKey);
-                    return;
-                }
-                if (!lockStack.isEmpty()) {
-                    detector.addProcessWaitsForResource(threadId, lockKey, lockType);
-                }
-                lockStack.add(lockKey);
-                detector.addProcessHoldsResource(threadId, lockKey, lockType);
-            } else if ("unlock".equals(parentMethodName)) {
-                // 处理锁释放
+        // 回退：线性锁栈
+        List<String> lockStack = new ArrayList<>();
+        for (LockOperation operation : operations) {
+            String lockKey = operation.getLockKey();
+            if (operation.getKind() == LockOperation.Kind.RELEASE) {
                 int lastIndex = lockStack.lastIndexOf(lockKey);
                 if (lastIndex != -1) {
                     lockStack.subList(lastIndex, lockStack.size()).clear();
                 }
+                continue;
+            }
+            String blockingKey = operation.findSelfBlockingKey(lockStack);
+            if (blockingKey != null) {
+                recordSelfDeadlock(threadId, operation, blockingKey);
+                continue;
             }
+            if (lockStack.contains(lockKey)) {
+                lockStack.add(lockKey);
+                continue;
+            }
+            recordLockAcquire(threadId, operation, !lockStack.isEmpty());
+            lockStack.add(lockKey);
         }
     }
 
     /**
-     * 处理ReentrantLock的lock()获取
+     * 记录一次显式锁获取：持有其他锁时建立等待关系，并记录持有关系
      */
-    private void handleReentrantLockAcquire(PsiMethodCallExpression callExpr,
-                                            String threadId, List<String> lockStack) {
-        PsiExpression qualifier = callExpr.getMethodExpression().getQualifierExpression();
-        if (qualifier == null) {
-            return;
-        }
-
-        String lockObjName = qualifier.getText().trim();
-        LockType lockType = LockType.REENTRANT_LOCK;
-
-        if (lockStack.contains(lockObjName)) {
-            lockStack.add(lockObjName);
-            return;
+    private void recordLockAcquire(String threadId, LockOperation operation, boolean holdingOtherLocks) {
+        if (holdingOtherLocks) {
+            System.out.println("Adding wait relationship: " + threadId + " -> " + operation.getLockKey());
+            detector.addProcessWaitsForResource(threadId, operation.getLockKey(), operation.getLockType(),
+                    operation.getAcquisitionKind(), operation.getTimeoutMillis(), operation.isRetried());
+            detector.anchorWait(threadId, operation.getLockKey(), anchorOf(operation.getCall()));
         }
-
-        if (!lockStack.isEmpty()) {
-            detector.addProcessWaitsForResource(threadId, lockObjName, lockType);
-        }
-
-        lockStack.add(lockObjName);
-        detector.addProcessHoldsResource(threadId, lockObjName, lockType);
+        detector.addProcessHoldsResource(threadId, operation.getLockKey(), operation.getLockType());
+        detector.anchorHold(threadId, operation.getLockKey(), anchorOf(operation.getCall()));
     }
 
-    /**
-     * 处理ReentrantLock的unlock()释放
-     */
-    private void handleReentrantLockRelease(PsiMethodCallExpression callExpr, List<String> lockStack) {
-        PsiExpression qualifier = callExpr.getMethodExpression().getQualifierExpression();
-        if (qualifier == null) {
-            return;
-        }
-
-        String lockObjName = qualifier.getText().trim();
-        int lastIndex = lockStack.lastIndexOf(lockObjName);
-        if (lastIndex != -1) {
-            lockStack.subList(lastIndex, lockStack.size()).clear();
-        }
+    private void recordSelfDeadlock(String threadId, LockOperation operation, String heldKey) {
+        System.out.println("Self deadlock: " + threadId + " holds " + heldKey + " and requests " + operation.getLockKey());
+        detector.addSelfDeadlock(threadId, operation.getLockKey(), operation.getLockType());
+        detector.anchorWait(threadId, operation.getLockKey(), anchorOf(operation.getCall()));
     }
 
     /**
-     * 处理ReentrantLock的tryLock()
+     * 解析LockSupport：park()等待唤醒自己的许可，unpark(t)由调用线程向线程t发放许可。
+     * unpark的目标解析到本文件中的线程根（Thread变量、new Thread(...)、Thread.currentThread()）。
      */
-    private void handleTryLock(PsiMethodCallExpression callExpr,
-                               String threadId, List<String> lockStack) {
-        PsiExpression qualifier = callExpr.getMethodExpression().getQualifierExpression();
-        if (qualifier == null) {
-            return;
-        }
-
-        // 带超时参数的tryLock视为锁获取
-        if (callExpr.getArgumentList().getExpressions().length > 0) {
-            String lockObjName = qualifier.getText().trim();
-            LockType lockType = LockType.REENTRANT_LOCK;
-
-            if (lockStack.contains(lockObjName)) {
-                lockStack.add(lockObjName);
+    private void parseLockSupportPsi(PsiMethod method, String threadId) {
+        new LockScopeWalker().walk(method, new ArrayList<>(), (call, heldMonitors) -> {
+            if (MethodLockSummary.isDeferred(call, method)) {
                 return;
             }
-
-            if (!lockStack.isEmpty()) {
-                detector.addProcessWaitsForResource(threadId, lockObjName, lockType);
+            PsiExpression[] args = call.getArgumentList().getExpressions();
+            List<String> heldIds = new ArrayList<>();
+            for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+                heldIds.add(held.getLockId());
+            }
+            // park()/park(blocker)；parkNanos/parkUntil会超时返回
+            if (isLockSupportCall(call, "park") && args.length <= 1) {
+                System.out.println("Adding park: " + threadId + ", holds " + heldIds);
+                detector.addPark(threadId, heldIds);
+                detector.anchorWait(threadId, "LockSupport_" + threadId, anchorOf(call));
+            } else if (isLockSupportCall(call, "unpark") && args.length == 1) {
+                String targetId = resolveThreadId(args[0], threadId);
+                if (targetId == null) {
+                    System.out.println("Unresolved unpark target: " + args[0].getText());
+                    unresolvedUnpark = true;
+                    return;
+                }
+                System.out.println("Adding unpark: " + threadId + " -> " + targetId);
+                detector.addUnpark(threadId, targetId, heldIds);
+                detector.anchorHold(threadId, "LockSupport_" + targetId, anchorOf(call));
             }
+        });
+    }
 
-            lockStack.add(lockObjName);
-            detector.addProcessHoldsResource(threadId, lockObjName, lockType);
+    private boolean isLockSupportCall(PsiMethodCallExpression call, String methodName) {
+        if (!methodName.equals(call.getMethodExpression().getReferenceName())) {
+            return false;
+        }
+        PsiMethod method = call.resolveMethod();
+        if (method != null && method.getContainingClass() != null) {
+            return "java.util.concurrent.locks.LockSupport".equals(method.getContainingClass().getQualifiedName());
         }
+        PsiExpression qualifier = call.getMethodExpression().getQualifierExpression();
+        return qualifier instanceof PsiReferenceExpression
+                && "LockSupport".equals(((PsiReferenceExpression) qualifier).getReferenceName());
     }
 
     /**
-     * 解析LockSupport操作（Psi API）
+     * 将Thread表达式解析为已分配的线程ID，无法解析时返回null
+     * @param currentThreadId 当前线程ID，用于Thread.currentThread()
      */
-    private void parseLockSupportPsi(PsiMethod method, String threadId) {
-        method.accept(new PsiRecursiveElementVisitor() {
-
-            public void visitMethodCallExpression(PsiMethodCallExpression callExpr) {
-                PsiReferenceExpression refExpr = callExpr.getMethodExpression();
-                PsiElement qualifier = refExpr.getQualifier();
-
-                // 匹配LockSupport类的方法调用
-                if (qualifier instanceof PsiReferenceExpression) {
-                    PsiReferenceExpression qualRef = (PsiReferenceExpression) qualifier;
-                    if ("LockSupport".equals(qualRef.getReferenceName())) {
-                        String methodName = refExpr.getReferenceName();
-                        if (methodName == null) {
-                            return;
-                        }
-
-                        // 处理park()
-                        if ("park".equals(methodName) && callExpr.getArgumentList().getExpressions().length == 0) {
-                            String resourceKey = "LockSupport_" + threadId;
-                            detector.addProcessWaitsForResource(threadId, resourceKey, LockType.LOCK_SUPPORT);
-                        }
-
-                        // 处理unpark(thread)
-                        if ("unpark".equals(methodName) && callExpr.getArgumentList().getExpressions().length == 1) {
-                            PsiExpression targetThreadExpr = callExpr.getArgumentList().getExpressions()[0];
-                            String targetThreadName = targetThreadExpr.getText().trim();
-                            String targetThreadId = "Thread_" + targetThreadName;
-                            String resourceKey = "LockSupport_" + targetThreadId;
-                            // 此处可扩展detector添加移除等待关系的方法
-                            // detector.removeProcessWaitsForResource(targetThreadId, resourceKey);
-                        }
-                    }
-                }
+    private String resolveThreadId(PsiExpression threadExpr, String currentThreadId) {
+        threadExpr = PsiUtil.skipParenthesizedExprDown(threadExpr);
+        if (threadExpr instanceof PsiMethodCallExpression
+                && "currentThread".equals(((PsiMethodCallExpression) threadExpr).getMethodExpression().getReferenceName())) {
+            return currentThreadId;
+        }
+        List<PsiExpression> creations = new ArrayList<>();
+        if (threadExpr instanceof PsiReferenceExpression) {
+            PsiElement resolved = ((PsiReferenceExpression) threadExpr).resolve();
+            if (resolved instanceof PsiVariable) {
+                creations.addAll(ThreadRoots.assignedValues((PsiVariable) resolved));
             }
-        });
+        } else if (threadExpr != null) {
+            creations.add(threadExpr);
+        }
+        for (PsiExpression creation : creations) {
+            PsiElement root = ThreadRoots.threadRootOf(creation);
+            if (root != null && rootThreadIds.containsKey(root)) {
+                return rootThreadIds.get(root);
+            }
+        }
+        return null;
     }
 
     /**
@@ -0,0 +1,172 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+/**
+ * 条件变量操作：Object.wait()/notify()/notifyAll() 与 Condition.await()/signal()/signalAll()
+ * 等待只释放所属的那一把锁：wait()释放被调用对象的监视器，await()释放创建该Condition的Lock。
+ * 信号资源命名为 Signal_<监视器或Condition>；带超时的等待会自行返回，不视为等待。
+ */
+public class ConditionOperation {
+    private static final String CONDITION_CLASS = "java.util.concurrent.locks.Condition";
+
+    public enum Kind {
+        WAIT,
+        SIGNAL
+    }
+
+    private final PsiMethodCallExpression call;
+    private final Kind kind;
+    private final String signalId;
+    private final String releasedLock;
+
+    ConditionOperation(PsiMethodCallExpression call, Kind kind, String signalId, String releasedLock) {
+        this.call = call;
+        this.kind = kind;
+        this.signalId = signalId;
+        this.releasedLock = releasedLock;
+    }
+
+    public PsiMethodCallExpression getCall() {
+        return call;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getSignalId() {
+        return signalId;
+    }
+
+    /**
+     * 等待期间释放的锁（与锁分析中的锁ID一致），无法确定所属锁时为null
+     */
+    public String getReleasedLock() {
+        return releasedLock;
+    }
+
+    /**
+     * 解析单个方法调用，不是条件变量操作时返回null
+     */
+    public static ConditionOperation fromCall(PsiMethodCallExpression call) {
+        String methodName = call.getMethodExpression().getReferenceName();
+        if (methodName == null) {
+            return null;
+        }
+        PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        int argCount = call.getArgumentList().getExpressions().length;
+
+        // Object监视器
+        if ("wait".equals(methodName) || "notify".equals(methodName) || "notifyAll".equals(methodName)) {
+            if (argCount != 0 || !isDeclaredIn(call, CommonClassNames.JAVA_LANG_OBJECT)) {
+                return null;
+            }
+            String monitor = qualifier == null || qualifier instanceof PsiThisExpression
+                    ? "this" : qualifier.getText().trim();
+            if (monitor.endsWith(".class")) {
+                monitor = "CLASS_" + monitor;
+            }
+            Kind kind = "wait".equals(methodName) ? Kind.WAIT : Kind.SIGNAL;
+            return new ConditionOperation(call, kind, "Signal_" + monitor, monitor);
+        }
+
+        // java.util.concurrent.locks.Condition
+        Kind kind;
+        if (("await".equals(methodName) || "awaitUninterruptibly".equals(methodName)) && argCount == 0) {
+            kind = Kind.WAIT;
+        } else if (("signal".equals(methodName) || "signalAll".equals(methodName)) && argCount == 0) {
+            kind = Kind.SIGNAL;
+        } else {
+            return null;
+        }
+        if (qualifier == null) {
+            return null;
+        }
+        String owner = conditionOwnerLock(qualifier);
+        if (owner == null && !isDeclaredIn(call, CONDITION_CLASS)) {
+            return null;
+        }
+        return new ConditionOperation(call, kind, "Signal_" + qualifier.getText().trim(), owner);
+    }
+
+    private static boolean isDeclaredIn(PsiMethodCallExpression call, String className) {
+        PsiMethod method = call.resolveMethod();
+        if (method == null) {
+            // 无法解析时按方法名处理
+            return true;
+        }
+        PsiClass containingClass = method.getContainingClass();
+        if (containingClass == null) {
+            return false;
+        }
+        if (className.equals(containingClass.getQualifiedName())) {
+            return true;
+        }
+        for (PsiMethod superMethod : method.findDeepestSuperMethods()) {
+            PsiClass superClass = superMethod.getContainingClass();
+            if (superClass != null && className.equals(superClass.getQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找创建Condition的Lock：变量初始化或赋值为 lock.newCondition()，
+     * 返回与LockOperation一致的锁键（读写锁为 rw_writeLock 形式）
+     */
+    private static String conditionOwnerLock(PsiExpression conditionExpr) {
+        if (!(conditionExpr instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        PsiElement resolved = ((PsiReferenceExpression) conditionExpr).resolve();
+        if (!(resolved instanceof PsiVariable)) {
+            return null;
+        }
+        PsiVariable variable = (PsiVariable) resolved;
+        String owner = newConditionOwner(variable.getInitializer());
+        if (owner != null) {
+            return owner;
+        }
+        // 在构造方法等位置赋值的字段
+        PsiElement scope = variable instanceof PsiField
+                ? ((PsiField) variable).getContainingClass() : PsiTreeUtil.getParentOfType(variable, PsiCodeBlock.class);
+        if (scope == null) {
+            return null;
+        }
+        for (PsiAssignmentExpression assignment : PsiTreeUtil.findChildrenOfType(scope, PsiAssignmentExpression.class)) {
+            PsiExpression lhs = PsiUtil.skipParenthesizedExprDown(assignment.getLExpression());
+            if (lhs instanceof PsiReferenceExpression && ((PsiReferenceExpression) lhs).resolve() == variable) {
+                owner = newConditionOwner(assignment.getRExpression());
+                if (owner != null) {
+                    return owner;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String newConditionOwner(PsiExpression expression) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (!(expression instanceof PsiMethodCallExpression)) {
+            return null;
+        }
+        PsiMethodCallExpression call = (PsiMethodCallExpression) expression;
+        PsiExpression lockExpr = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        if (!"newCondition".equals(call.getMethodExpression().getReferenceName()) || lockExpr == null) {
+            return null;
+        }
+        if (lockExpr instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression rwCall = (PsiMethodCallExpression) lockExpr;
+            String rwMethodName = rwCall.getMethodExpression().getReferenceName();
+            PsiExpression rwQualifier = rwCall.getMethodExpression().getQualifierExpression();
+            if (("readLock".equals(rwMethodName) || "writeLock".equals(rwMethodName)) && rwQualifier != null) {
+                return rwQualifier.getText().trim() + "_" + rwMethodName;
+            }
+        }
+        return lockExpr.getText().trim();
+    }
+}
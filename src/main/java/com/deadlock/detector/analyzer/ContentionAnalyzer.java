@@ -0,0 +1,216 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 锁竞争热点分析器
+ * 遍历锁作用域时统计临界区内拖慢吞吐量的操作（I/O、日志、网络/JDBC、sleep、大循环、调用其他加锁方法），
+ * 按风险分数排序生成竞争风险报告。
+ */
+public class ContentionAnalyzer {
+    // 循环次数达到该常量值视为大循环
+    private static final int LARGE_LOOP_BOUND = 1000;
+
+    private final BlockingCallClassifier classifier = new BlockingCallClassifier();
+    private final Map<PsiMethod, Boolean> lockAcquiringMethods = new HashMap<>();
+
+    /**
+     * 一个临界区的竞争风险
+     */
+    public static class ContentionHotspot {
+        private final String lockId;
+        private final PsiElement scope;
+        private final List<String> reasons = new ArrayList<>();
+        private int score;
+
+        ContentionHotspot(String lockId, PsiElement scope) {
+            this.lockId = lockId;
+            this.scope = scope;
+        }
+
+        void addFactor(int weight, String reason) {
+            score += weight;
+            reasons.add(reason);
+        }
+
+        public String getLockId() {
+            return lockId;
+        }
+
+        /**
+         * 临界区的语法元素：PsiSynchronizedStatement、synchronized方法或lock()调用
+         */
+        public PsiElement getScope() {
+            return scope;
+        }
+
+        public List<String> getReasons() {
+            return reasons;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * 核心入口：分析文件，返回按风险分数从高到低排序的临界区
+     */
+    public List<ContentionHotspot> analyze(PsiFile psiFile) {
+        lockAcquiringMethods.clear();
+        Map<PsiElement, ContentionHotspot> hotspots = new LinkedHashMap<>();
+
+        new LockScopeWalker().walkFile(psiFile, new LockScopeWalker.Callback() {
+            @Override
+            public void visitCall(PsiMethodCallExpression call, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+                if (heldMonitors.isEmpty()) {
+                    return;
+                }
+                int weight = 0;
+                String reason = null;
+                BlockingCallClassifier.Category category = classifier.classify(call);
+                if (category != null && category != BlockingCallClassifier.Category.OBJECT_WAIT) {
+                    weight = categoryWeight(category);
+                    reason = category.getDescription();
+                } else if (category == null && callsLockAcquiringMethod(call)) {
+                    weight = 5;
+                    reason = "调用加锁方法";
+                }
+                if (reason == null) {
+                    return;
+                }
+                // 外层临界区同样被拖长，计入所有持有的锁
+                String description = String.format("%s：%s（第 %d 行）", reason,
+                        call.getMethodExpression().getText() + "()", PinningAnalyzer.lineNumber(call));
+                for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+                    hotspots.computeIfAbsent(held.getOwner(), k -> new ContentionHotspot(held.getLockId(), k))
+                            .addFactor(weight, description);
+                }
+            }
+
+            @Override
+            public void visitLoop(PsiLoopStatement loop, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+                if (heldMonitors.isEmpty()) {
+                    return;
+                }
+                boolean large = isLargeLoop(loop);
+                String description = String.format("%s（第 %d 行）", large ? "大循环" : "循环",
+                        PinningAnalyzer.lineNumber(loop));
+                for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+                    hotspots.computeIfAbsent(held.getOwner(), k -> new ContentionHotspot(held.getLockId(), k))
+                            .addFactor(large ? 6 : 2, description);
+                }
+            }
+        });
+
+        List<ContentionHotspot> result = new ArrayList<>(hotspots.values());
+        result.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+        System.out.println("Found " + result.size() + " contention hotspots");
+        return result;
+    }
+
+    private int categoryWeight(BlockingCallClassifier.Category category) {
+        switch (category) {
+            case SLEEP:
+                return 10;
+            case NETWORK_IO:
+            case JDBC:
+                return 9;
+            case FUTURE_GET:
+                return 8;
+            case BLOCKING_IO:
+                return 7;
+            case LOGGING:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * 被调用方法（源码中）是否会获取锁：synchronized方法，或方法体内有synchronized块/lock()调用
+     */
+    private boolean callsLockAcquiringMethod(PsiMethodCallExpression call) {
+        PsiMethod method = call.resolveMethod();
+        if (method == null || method instanceof PsiCompiledElement) {
+            return false;
+        }
+        return lockAcquiringMethods.computeIfAbsent(method, m -> {
+            if (m.hasModifierProperty(PsiModifier.SYNCHRONIZED)) {
+                return true;
+            }
+            PsiCodeBlock body = m.getBody();
+            if (body == null) {
+                return false;
+            }
+            if (PsiTreeUtil.findChildOfType(body, PsiSynchronizedStatement.class) != null) {
+                return true;
+            }
+            for (PsiMethodCallExpression inner : PsiTreeUtil.findChildrenOfType(body, PsiMethodCallExpression.class)) {
+                if ("lock".equals(inner.getMethodExpression().getReferenceName())) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 大循环：while(true)/for(;;)，或循环上界为不小于LARGE_LOOP_BOUND的常量
+     */
+    private boolean isLargeLoop(PsiLoopStatement loop) {
+        PsiExpression condition = null;
+        if (loop instanceof PsiForStatement) {
+            condition = ((PsiForStatement) loop).getCondition();
+            if (condition == null) {
+                return true;
+            }
+        } else if (loop instanceof PsiWhileStatement) {
+            condition = ((PsiWhileStatement) loop).getCondition();
+        } else if (loop instanceof PsiDoWhileStatement) {
+            condition = ((PsiDoWhileStatement) loop).getCondition();
+        }
+        if (condition == null) {
+            return false;
+        }
+        Object constant = JavaPsiFacade.getInstance(loop.getProject())
+                .getConstantEvaluationHelper().computeConstantExpression(condition);
+        if (Boolean.TRUE.equals(constant)) {
+            return true;
+        }
+        if (condition instanceof PsiBinaryExpression) {
+            PsiExpression bound = ((PsiBinaryExpression) condition).getROperand();
+            Object value = bound != null ? JavaPsiFacade.getInstance(loop.getProject())
+                    .getConstantEvaluationHelper().computeConstantExpression(bound) : null;
+            return value instanceof Number && ((Number) value).longValue() >= LARGE_LOOP_BOUND;
+        }
+        return false;
+    }
+
+    /**
+     * 生成竞争风险报告
+     */
+    public String formatReport(List<ContentionHotspot> hotspots) {
+        if (hotspots.isEmpty()) {
+            return "未发现临界区内的耗时操作";
+        }
+        StringBuilder report = new StringBuilder("临界区竞争风险排名（分数越高越容易造成锁竞争）：\n");
+        for (int i = 0; i < hotspots.size(); i++) {
+            ContentionHotspot hotspot = hotspots.get(i);
+            report.append(String.format("\n%d. 锁 %s，第 %d 行，风险分数 %d\n", i + 1, hotspot.getLockId(),
+                    PinningAnalyzer.lineNumber(hotspot.getScope()), hotspot.getScore()));
+            for (String reason : hotspot.getReasons()) {
+                report.append("   - ").append(reason).append("\n");
+            }
+        }
+        report.append("\n建议：将I/O、日志、网络和休眠移出临界区，缩小锁的持有范围\n");
+        return report.toString();
+    }
+}
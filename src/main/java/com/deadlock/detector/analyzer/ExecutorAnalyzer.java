@@ -0,0 +1,343 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 线程池饥饿死锁解析器
+ * 识别固定容量的线程池、提交到池中的任务，以及任务内部对同池任务Future的阻塞等待
+ */
+public class ExecutorAnalyzer {
+    private final DeadlockDetector detector;
+    private final SourceAnchors sourceAnchors;
+    // 线程池变量 -> 池资源ID
+    private final Map<PsiVariable, String> pools = new HashMap<>();
+    // 提交调用 -> 任务信息（保持源码顺序）
+    private final Map<PsiMethodCallExpression, SubmittedTask> tasks = new LinkedHashMap<>();
+    // invokeAll一次提交的多个任务
+    private final List<SubmittedTask> invokedTasks = new ArrayList<>();
+    // 每个方法中已提交的任务数，用于生成稳定的任务ID
+    private final Map<String, Integer> taskOrdinals = new HashMap<>();
+
+    /**
+     * 提交到线程池的任务
+     */
+    public static class SubmittedTask {
+        private final String taskId;
+        private final String poolId;
+        private final PsiElement body;
+        private final PsiMethodCallExpression submission;
+        private final List<PsiMethodCallExpression> joinSites = new ArrayList<>();
+
+        SubmittedTask(String taskId, String poolId, PsiElement body, PsiMethodCallExpression submission) {
+            this.taskId = taskId;
+            this.poolId = poolId;
+            this.body = body;
+            this.submission = submission;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public String getPoolId() {
+            return poolId;
+        }
+
+        /**
+         * 任务体：Lambda表达式、匿名类或方法引用解析到的方法
+         */
+        public PsiElement getBody() {
+            return body;
+        }
+
+        /**
+         * 提交任务的调用：submit/execute/supplyAsync/runAsync/invokeAll
+         */
+        public PsiMethodCallExpression getSubmission() {
+            return submission;
+        }
+
+        /**
+         * 阻塞等待任务完成的调用：Future的无超时get()/join()，invokeAll本身也会等待所有任务完成
+         */
+        public List<PsiMethodCallExpression> getJoinSites() {
+            return joinSites;
+        }
+    }
+
+    public ExecutorAnalyzer(DeadlockDetector detector) {
+        this(detector, new SourceAnchors());
+    }
+
+    public ExecutorAnalyzer(DeadlockDetector detector, SourceAnchors sourceAnchors) {
+        this.detector = detector;
+        this.sourceAnchors = sourceAnchors;
+    }
+
+    /**
+     * 核心入口：解析文件中的线程池、任务提交与Future等待
+     * @return 识别到的所有任务（供调用方继续解析任务体中的锁操作）
+     */
+    public List<SubmittedTask> analyze(PsiFile psiFile) {
+        pools.clear();
+        tasks.clear();
+        invokedTasks.clear();
+        taskOrdinals.clear();
+
+        // 1. 识别容量为常量的线程池
+        Collection<PsiVariable> variables = PsiTreeUtil.findChildrenOfType(psiFile, PsiVariable.class);
+        for (PsiVariable variable : variables) {
+            Integer capacity = inferPoolCapacity(variable.getInitializer());
+            if (capacity == null) {
+                continue;
+            }
+            String poolId = "Pool_" + variable.getName();
+            pools.put(variable, poolId);
+            detector.addThreadPool(poolId, capacity);
+            System.out.println("Found thread pool: " + poolId + " (capacity " + capacity + ")");
+        }
+        if (pools.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 2. 识别提交到线程池的任务，任务运行时占用一个槽位
+        Collection<PsiMethodCallExpression> calls = PsiTreeUtil.findChildrenOfType(psiFile, PsiMethodCallExpression.class);
+        for (PsiMethodCallExpression call : calls) {
+            SubmittedTask task = resolveSubmission(call);
+            if (task != null) {
+                tasks.put(call, task);
+                detector.addTaskRunsOnPool(task.getTaskId(), task.getPoolId());
+                anchorTask(task);
+                System.out.println("Found pool task: " + task.getTaskId() + " on " + task.getPoolId());
+            }
+            for (SubmittedTask invoked : resolveInvokeAll(call)) {
+                invokedTasks.add(invoked);
+                invoked.getJoinSites().add(call);
+                detector.addTaskRunsOnPool(invoked.getTaskId(), invoked.getPoolId());
+                anchorTask(invoked);
+                System.out.println("Found invokeAll task: " + invoked.getTaskId() + " on " + invoked.getPoolId());
+            }
+        }
+        // 任务之外（提交方）对Future的等待，用于确定任务生命周期的先后
+        for (PsiMethodCallExpression call : calls) {
+            SubmittedTask joined = resolveJoinedTask(call);
+            if (joined != null) {
+                joined.getJoinSites().add(call);
+            }
+        }
+
+        // 3. 任务体内等待其他任务的Future：建立Future等待边
+        for (SubmittedTask waiter : tasks.values()) {
+            if (waiter.getBody() == null) {
+                continue;
+            }
+            Collection<PsiMethodCallExpression> innerCalls = PsiTreeUtil.findChildrenOfType(waiter.getBody(), PsiMethodCallExpression.class);
+            for (PsiMethodCallExpression innerCall : innerCalls) {
+                SubmittedTask target = resolveJoinedTask(innerCall);
+                if (target == null || target == waiter) {
+                    continue;
+                }
+                System.out.println("Found future join: " + waiter.getTaskId() + " -> " + target.getTaskId());
+                detector.addTaskJoinsFuture(waiter.getTaskId(), target.getTaskId());
+                detector.anchorWait(waiter.getTaskId(), "Future_" + target.getTaskId(), sourceAnchors.anchor(innerCall));
+                detector.anchorHold(target.getTaskId(), "Future_" + target.getTaskId(), sourceAnchors.anchor(target.getSubmission()));
+                // 被等待的任务与等待者同池时，需要排队等待空闲槽位
+                if (target.getPoolId().equals(waiter.getPoolId())) {
+                    detector.addTaskQueuedOnPool(target.getTaskId(), target.getPoolId());
+                    detector.anchorWait(target.getTaskId(), target.getPoolId(), sourceAnchors.anchor(target.getSubmission()));
+                }
+            }
+        }
+
+        List<SubmittedTask> result = new ArrayList<>(tasks.values());
+        result.addAll(invokedTasks);
+        return result;
+    }
+
+    /**
+     * 从初始化表达式推断线程池容量，非常量或无界线程池返回null
+     */
+    private Integer inferPoolCapacity(PsiExpression initializer) {
+        initializer = PsiUtil.skipParenthesizedExprDown(initializer);
+        if (initializer instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) initializer;
+            PsiExpression qualifier = call.getMethodExpression().getQualifierExpression();
+            if (qualifier == null || !"Executors".equals(qualifier.getText().trim())) {
+                return null;
+            }
+            String methodName = call.getMethodExpression().getReferenceName();
+            PsiExpression[] args = call.getArgumentList().getExpressions();
+            if ("newSingleThreadExecutor".equals(methodName) || "newSingleThreadScheduledExecutor".equals(methodName)) {
+                return 1;
+            }
+            if (("newFixedThreadPool".equals(methodName) || "newScheduledThreadPool".equals(methodName))
+                    && args.length > 0) {
+                return evaluateIntConstant(args[0]);
+            }
+        } else if (initializer instanceof PsiNewExpression) {
+            PsiNewExpression newExpr = (PsiNewExpression) initializer;
+            PsiJavaCodeReferenceElement classRef = newExpr.getClassReference();
+            PsiExpressionList argList = newExpr.getArgumentList();
+            if (classRef == null || argList == null || !"ThreadPoolExecutor".equals(classRef.getReferenceName())) {
+                return null;
+            }
+            // ThreadPoolExecutor(core, max, keepAlive, unit, workQueue, ...)
+            PsiExpression[] args = argList.getExpressions();
+            if (args.length < 5) {
+                return null;
+            }
+            // 只有直接移交的SynchronousQueue才会扩容到max，其余队列下并发度为core
+            boolean handOff = args[4].getText().contains("SynchronousQueue");
+            return evaluateIntConstant(handOff ? args[1] : args[0]);
+        }
+        return null;
+    }
+
+    private Integer evaluateIntConstant(PsiExpression expression) {
+        Object value = JavaPsiFacade.getInstance(expression.getProject())
+                .getConstantEvaluationHelper().computeConstantExpression(expression);
+        if (value instanceof Integer && (Integer) value > 0) {
+            return (Integer) value;
+        }
+        return null;
+    }
+
+    /**
+     * 识别任务提交：pool.submit(task)/pool.execute(task)/CompletableFuture.supplyAsync(task, pool)
+     */
+    private SubmittedTask resolveSubmission(PsiMethodCallExpression call) {
+        String methodName = call.getMethodExpression().getReferenceName();
+        PsiExpression[] args = call.getArgumentList().getExpressions();
+        if (methodName == null || args.length == 0) {
+            return null;
+        }
+
+        PsiExpression poolExpr;
+        if ("submit".equals(methodName) || "execute".equals(methodName)) {
+            poolExpr = call.getMethodExpression().getQualifierExpression();
+        } else if (("supplyAsync".equals(methodName) || "runAsync".equals(methodName)) && args.length == 2) {
+            poolExpr = args[1];
+        } else {
+            return null;
+        }
+
+        String poolId = resolvePoolId(poolExpr);
+        if (poolId == null) {
+            return null;
+        }
+        return newTask(poolId, call, args[0]);
+    }
+
+    private SubmittedTask newTask(String poolId, PsiMethodCallExpression submission, PsiExpression taskExpr) {
+        // 任务ID：池 + 提交所在方法 + 在该方法中的提交序号，不随无关编辑变化
+        String site = ThreadIdentity.describeSite(submission);
+        int ordinal = taskOrdinals.merge(site, 1, Integer::sum);
+        String taskId = "Task_" + poolId + "@" + site + "/" + ordinal;
+        return new SubmittedTask(taskId, poolId, resolveTaskBody(taskExpr), submission);
+    }
+
+    /**
+     * 识别pool.invokeAll(List.of(t1, t2)) / Arrays.asList(...)，集合也可以是用这两种方式初始化的变量
+     */
+    private List<SubmittedTask> resolveInvokeAll(PsiMethodCallExpression call) {
+        List<SubmittedTask> result = new ArrayList<>();
+        PsiExpression[] args = call.getArgumentList().getExpressions();
+        if (!"invokeAll".equals(call.getMethodExpression().getReferenceName()) || args.length == 0) {
+            return result;
+        }
+        String poolId = resolvePoolId(call.getMethodExpression().getQualifierExpression());
+        if (poolId == null) {
+            return result;
+        }
+        PsiExpression collection = PsiUtil.skipParenthesizedExprDown(args[0]);
+        if (collection instanceof PsiReferenceExpression
+                && ((PsiReferenceExpression) collection).resolve() instanceof PsiVariable) {
+            collection = PsiUtil.skipParenthesizedExprDown(
+                    ((PsiVariable) ((PsiReferenceExpression) collection).resolve()).getInitializer());
+        }
+        if (!(collection instanceof PsiMethodCallExpression)) {
+            return result;
+        }
+        String factory = ((PsiMethodCallExpression) collection).getMethodExpression().getReferenceName();
+        if (!"of".equals(factory) && !"asList".equals(factory)) {
+            return result;
+        }
+        for (PsiExpression element : ((PsiMethodCallExpression) collection).getArgumentList().getExpressions()) {
+            result.add(newTask(poolId, call, element));
+        }
+        return result;
+    }
+
+    /**
+     * 任务的源码位置：任务体为线程根，提交调用为占用槽位的位置
+     */
+    private void anchorTask(SubmittedTask task) {
+        detector.anchorProcess(task.getTaskId(), sourceAnchors.anchor(task.getBody()));
+        detector.anchorHold(task.getTaskId(), task.getPoolId(), sourceAnchors.anchor(task.getSubmission()));
+    }
+
+    private String resolvePoolId(PsiExpression poolExpr) {
+        poolExpr = PsiUtil.skipParenthesizedExprDown(poolExpr);
+        if (poolExpr instanceof PsiReferenceExpression) {
+            PsiElement resolved = ((PsiReferenceExpression) poolExpr).resolve();
+            if (resolved instanceof PsiVariable) {
+                return pools.get(resolved);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 定位任务体：Lambda/匿名类直接使用，方法引用解析到目标方法
+     */
+    private PsiElement resolveTaskBody(PsiExpression taskExpr) {
+        taskExpr = PsiUtil.skipParenthesizedExprDown(taskExpr);
+        if (taskExpr instanceof PsiLambdaExpression) {
+            return taskExpr;
+        }
+        if (taskExpr instanceof PsiNewExpression && ((PsiNewExpression) taskExpr).getAnonymousClass() != null) {
+            return ((PsiNewExpression) taskExpr).getAnonymousClass();
+        }
+        if (taskExpr instanceof PsiMethodReferenceExpression) {
+            PsiElement resolved = ((PsiMethodReferenceExpression) taskExpr).resolve();
+            if (resolved instanceof PsiMethod) {
+                return resolved;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 识别对任务Future的阻塞等待：future.get()/future.join()，future来自同文件中的任务提交
+     */
+    private SubmittedTask resolveJoinedTask(PsiMethodCallExpression call) {
+        String methodName = call.getMethodExpression().getReferenceName();
+        // 带超时的get(timeout, unit)不会永久阻塞
+        if (!("get".equals(methodName) || "join".equals(methodName))
+                || call.getArgumentList().getExpressions().length != 0) {
+            return null;
+        }
+
+        PsiExpression futureExpr = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        if (futureExpr instanceof PsiReferenceExpression) {
+            PsiElement resolved = ((PsiReferenceExpression) futureExpr).resolve();
+            if (resolved instanceof PsiVariable) {
+                futureExpr = PsiUtil.skipParenthesizedExprDown(((PsiVariable) resolved).getInitializer());
+            }
+        }
+        if (futureExpr instanceof PsiMethodCallExpression) {
+            return tasks.get(futureExpr);
+        }
+        return null;
+    }
+}
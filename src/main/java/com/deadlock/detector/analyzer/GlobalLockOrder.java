@@ -0,0 +1,89 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件内的统一加锁顺序
+ * 两把锁在&#64;LockOrder同一条链中时以声明为准；否则统计文件中（含被调方法展开后）两种嵌套顺序出现的次数，
+ * 多数顺序为准，改动最少；次数相同时按锁名排序，保证所有位置得到同一个结论。
+ * 锁按名称比较（见LockAnnotations.lockName），只适用于字段、this、类锁等身份固定的锁。
+ */
+public class GlobalLockOrder {
+    private final LockAnnotations annotations;
+    private final Map<String, Integer> pairCounts = new HashMap<>();
+
+    private GlobalLockOrder(LockAnnotations annotations) {
+        this.annotations = annotations;
+    }
+
+    /**
+     * 文件的加锁顺序，文件修改前缓存
+     */
+    public static GlobalLockOrder forFile(PsiFile file) {
+        return CachedValuesManager.getCachedValue(file, () ->
+                CachedValueProvider.Result.create(collect(file), file));
+    }
+
+    private static GlobalLockOrder collect(PsiFile file) {
+        GlobalLockOrder order = new GlobalLockOrder(LockAnnotations.forProject(file.getProject()));
+        MethodLockSummary summary = new MethodLockSummary();
+        new LockScopeWalker(true).walkFile(file, new LockScopeWalker.Callback() {
+            @Override
+            public void visitAcquire(LockScopeWalker.HeldMonitor acquired, List<LockScopeWalker.HeldMonitor> heldBefore) {
+                for (LockScopeWalker.HeldMonitor held : heldBefore) {
+                    order.count(held.getLockId(), acquired.getLockId());
+                }
+            }
+
+            @Override
+            public void visitCall(PsiMethodCallExpression call, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+                if (heldMonitors.isEmpty()) {
+                    return;
+                }
+                for (MethodLockSummary.Acquisition acquisition : summary.summarize(call)) {
+                    for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+                        order.count(held.getLockId(), acquisition.getLockId());
+                    }
+                }
+            }
+        });
+        return order;
+    }
+
+    private void count(String outer, String inner) {
+        String outerName = LockAnnotations.lockName(outer);
+        String innerName = LockAnnotations.lockName(inner);
+        if (!outerName.equals(innerName)) {
+            pairCounts.merge(outerName + "\u0000" + innerName, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * first是否应当先于second获取
+     */
+    public boolean precedes(String first, String second) {
+        String firstName = LockAnnotations.lockName(first);
+        String secondName = LockAnnotations.lockName(second);
+        if (firstName.equals(secondName)) {
+            return false;
+        }
+        LockAnnotations.OrderRank firstRank = annotations.rankOf(first);
+        LockAnnotations.OrderRank secondRank = annotations.rankOf(second);
+        if (firstRank != null && secondRank != null && firstRank.getChain() == secondRank.getChain()) {
+            return firstRank.getRank() < secondRank.getRank();
+        }
+        int forward = pairCounts.getOrDefault(firstName + "\u0000" + secondName, 0);
+        int backward = pairCounts.getOrDefault(secondName + "\u0000" + firstName, 0);
+        if (forward != backward) {
+            return forward > backward;
+        }
+        return firstName.compareTo(secondName) < 0;
+    }
+}
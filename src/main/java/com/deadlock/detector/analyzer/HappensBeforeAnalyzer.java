@@ -0,0 +1,294 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 线程生命周期先后关系（happens-before）分析
+ * 每个线程或任务记录启动点和汇合点：Thread.start()/join()、submit/execute与Future.get()/join()、invokeAll（提交并等待）。
+ * A的某个汇合点在同一方法中无条件地先于B的所有启动点执行，且A不会在该汇合点之后再次启动，则A结束后B才开始，二者不会并发。
+ * CountDownLatch：计数为n的闩锁恰好由n个线程各在run体最后一条语句countDown()一次，
+ * 而B在任何加锁之前await()，则这n个线程的加锁都先于B的加锁。
+ */
+public class HappensBeforeAnalyzer {
+    private final Map<String, Activity> activities = new LinkedHashMap<>();
+
+    /**
+     * 一个并发执行体（线程或线程池任务）
+     */
+    private static class Activity {
+        private final String id;
+        private final PsiElement body;
+        private final List<PsiMethodCallExpression> startSites = new ArrayList<>();
+        private final List<PsiMethodCallExpression> joinSites = new ArrayList<>();
+
+        Activity(String id, PsiElement body) {
+            this.id = id;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 注册线程：启动点与汇合点从文件中创建该线程根的new Thread(...)推导
+     * @param root 线程根（Lambda、匿名类或Thread/Runnable子类），同时作为线程执行体
+     */
+    public void addThread(String threadId, PsiElement root) {
+        Activity activity = new Activity(threadId, root);
+        PsiFile file = root.getContainingFile();
+        if (file != null) {
+            for (PsiNewExpression creation : PsiTreeUtil.findChildrenOfType(file, PsiNewExpression.class)) {
+                if (ThreadRoots.isThreadCreation(creation) && ThreadRoots.threadRootOf(creation) == root) {
+                    activity.startSites.addAll(ThreadRoots.findThreadCalls(creation, "start"));
+                    activity.joinSites.addAll(ThreadRoots.findThreadCalls(creation, "join"));
+                }
+            }
+        }
+        activities.put(threadId, activity);
+    }
+
+    /**
+     * 注册线程池任务
+     */
+    public void addTask(ExecutorAnalyzer.SubmittedTask task) {
+        Activity activity = new Activity(task.getTaskId(), task.getBody());
+        activity.startSites.add(task.getSubmission());
+        activity.joinSites.addAll(task.getJoinSites());
+        activities.put(task.getTaskId(), activity);
+    }
+
+    /**
+     * 计算不会并发执行的线程对
+     * @return [先执行者ID, 后执行者ID]
+     */
+    public List<String[]> computeOrderedPairs() {
+        List<String[]> ordered = new ArrayList<>();
+        for (Activity before : activities.values()) {
+            for (Activity after : activities.values()) {
+                if (before != after && (joinsBeforeStart(before, after) || latchOrders(before, after))) {
+                    System.out.println("Happens-before: " + before.id + " -> " + after.id);
+                    ordered.add(new String[]{before.id, after.id});
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * before的某个汇合点先于after的所有启动点，且before的所有启动点都在该汇合点之前
+     */
+    private boolean joinsBeforeStart(Activity before, Activity after) {
+        if (before.startSites.isEmpty() || after.startSites.isEmpty()) {
+            return false;
+        }
+        for (PsiMethodCallExpression join : before.joinSites) {
+            boolean orderedStarts = true;
+            for (PsiMethodCallExpression start : before.startSites) {
+                orderedStarts &= start != join && executesBefore(start, join);
+            }
+            // invokeAll既是启动点也是汇合点
+            boolean selfJoined = before.startSites.size() == 1 && before.startSites.get(0) == join;
+            if (!orderedStarts && !selfJoined) {
+                continue;
+            }
+            boolean allAfter = true;
+            for (PsiMethodCallExpression start : after.startSites) {
+                allAfter &= start != join && executesBefore(join, start);
+            }
+            if (allAfter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * first在同一方法中无条件地先于second执行：first所在语句（穿过try块）所在的代码块包含second，
+     * 且两者都不在循环中
+     */
+    private boolean executesBefore(PsiElement first, PsiElement second) {
+        PsiElement owner = PsiTreeUtil.getParentOfType(first, PsiMethod.class, PsiLambdaExpression.class, PsiClassInitializer.class);
+        if (owner == null
+                || owner != PsiTreeUtil.getParentOfType(second, PsiMethod.class, PsiLambdaExpression.class, PsiClassInitializer.class)
+                || first.getTextRange().getEndOffset() > second.getTextRange().getStartOffset()
+                || isInLoop(first, owner) || isInLoop(second, owner)) {
+            return false;
+        }
+        PsiStatement statement = PsiTreeUtil.getParentOfType(first, PsiStatement.class);
+        while (statement != null && !(statement.getParent() instanceof PsiCodeBlock)) {
+            statement = PsiTreeUtil.getParentOfType(statement, PsiStatement.class);
+        }
+        if (statement == null) {
+            return false;
+        }
+        PsiCodeBlock block = (PsiCodeBlock) statement.getParent();
+        // t.join()通常包在try中：try块正常结束后继续执行try语句之后的代码
+        while (block.getParent() instanceof PsiTryStatement
+                && ((PsiTryStatement) block.getParent()).getTryBlock() == block
+                && block.getParent().getParent() instanceof PsiCodeBlock) {
+            block = (PsiCodeBlock) block.getParent().getParent();
+        }
+        return PsiTreeUtil.isAncestor(block, second, true);
+    }
+
+    private boolean isInLoop(PsiElement element, PsiElement owner) {
+        PsiLoopStatement loop = PsiTreeUtil.getParentOfType(element, PsiLoopStatement.class);
+        return loop != null && PsiTreeUtil.isAncestor(owner, loop, true);
+    }
+
+    /**
+     * 通过CountDownLatch建立的先后关系
+     */
+    private boolean latchOrders(Activity before, Activity after) {
+        if (before.body == null || after.body == null) {
+            return false;
+        }
+        for (PsiMethodCallExpression await : findCalls(after.body, "await")) {
+            PsiVariable latch = latchVariable(await);
+            if (latch == null || !awaitsBeforeLocking(await, after.body)) {
+                continue;
+            }
+            Integer count = latchCount(latch);
+            // 所有countDown()必须分别是各线程run体的最后一条语句，且线程数等于计数
+            Map<Activity, Integer> countDowns = new HashMap<>();
+            boolean valid = true;
+            PsiFile file = latch.getContainingFile();
+            for (PsiMethodCallExpression countDown : findCalls(file, "countDown")) {
+                if (latchVariable(countDown) != latch) {
+                    continue;
+                }
+                Activity owner = ownerOf(countDown);
+                if (owner == null || !isLastStatement(countDown, owner.body)) {
+                    valid = false;
+                    break;
+                }
+                countDowns.merge(owner, 1, Integer::sum);
+            }
+            if (valid && count != null && countDowns.size() == count
+                    && countDowns.values().stream().allMatch(n -> n == 1) && countDowns.containsKey(before)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Collection<PsiMethodCallExpression> findCalls(PsiElement root, String methodName) {
+        List<PsiMethodCallExpression> result = new ArrayList<>();
+        if (root == null) {
+            return result;
+        }
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(root, PsiMethodCallExpression.class)) {
+            if (methodName.equals(call.getMethodExpression().getReferenceName())
+                    && call.getArgumentList().getExpressions().length == 0) {
+                result.add(call);
+            }
+        }
+        return result;
+    }
+
+    private PsiVariable latchVariable(PsiMethodCallExpression call) {
+        PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        if (!(qualifier instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        PsiElement resolved = ((PsiReferenceExpression) qualifier).resolve();
+        if (!(resolved instanceof PsiVariable)
+                || !"java.util.concurrent.CountDownLatch".equals(((PsiVariable) resolved).getType().getCanonicalText())) {
+            return null;
+        }
+        return (PsiVariable) resolved;
+    }
+
+    private Integer latchCount(PsiVariable latch) {
+        for (PsiExpression value : ThreadRoots.assignedValues(latch)) {
+            value = PsiUtil.skipParenthesizedExprDown(value);
+            if (value instanceof PsiNewExpression && ((PsiNewExpression) value).getArgumentList() != null) {
+                PsiExpression[] args = ((PsiNewExpression) value).getArgumentList().getExpressions();
+                Object constant = args.length == 1 ? JavaPsiFacade.getInstance(latch.getProject())
+                        .getConstantEvaluationHelper().computeConstantExpression(args[0]) : null;
+                return constant instanceof Integer ? (Integer) constant : null;
+            }
+        }
+        return null;
+    }
+
+    private Activity ownerOf(PsiElement element) {
+        for (Activity activity : activities.values()) {
+            if (activity.body != null && PsiTreeUtil.isAncestor(activity.body, element, false)) {
+                return activity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * await()是执行体的顶层语句，且在它之前没有synchronized块或显式加锁
+     */
+    private boolean awaitsBeforeLocking(PsiMethodCallExpression await, PsiElement body) {
+        if (body instanceof PsiMethod && ((PsiMethod) body).hasModifierProperty(PsiModifier.SYNCHRONIZED)) {
+            return false;
+        }
+        PsiCodeBlock block = bodyBlock(body);
+        if (block == null || !(await.getParent() instanceof PsiExpressionStatement)
+                || await.getParent().getParent() != block) {
+            return false;
+        }
+        int awaitOffset = await.getTextRange().getStartOffset();
+        for (PsiSynchronizedStatement statement : PsiTreeUtil.findChildrenOfType(block, PsiSynchronizedStatement.class)) {
+            if (statement.getTextRange().getStartOffset() < awaitOffset) {
+                return false;
+            }
+        }
+        for (LockOperation operation : LockOperation.collect(block)) {
+            if (operation.getCall().getTextRange().getStartOffset() < awaitOffset) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * call是执行体最后一条顶层语句（或最后一条try语句的finally块中的语句）
+     */
+    private boolean isLastStatement(PsiMethodCallExpression call, PsiElement body) {
+        PsiCodeBlock block = bodyBlock(body);
+        if (block == null || block.getStatements().length == 0 || !(call.getParent() instanceof PsiExpressionStatement)) {
+            return false;
+        }
+        PsiStatement last = block.getStatements()[block.getStatements().length - 1];
+        if (call.getParent() == last) {
+            return true;
+        }
+        if (last instanceof PsiTryStatement && ((PsiTryStatement) last).getFinallyBlock() != null) {
+            PsiStatement[] finallyStatements = ((PsiTryStatement) last).getFinallyBlock().getStatements();
+            return finallyStatements.length > 0 && finallyStatements[finallyStatements.length - 1] == call.getParent();
+        }
+        return false;
+    }
+
+    private PsiCodeBlock bodyBlock(PsiElement body) {
+        if (body instanceof PsiMethod) {
+            return ((PsiMethod) body).getBody();
+        }
+        if (body instanceof PsiLambdaExpression && ((PsiLambdaExpression) body).getBody() instanceof PsiCodeBlock) {
+            return (PsiCodeBlock) ((PsiLambdaExpression) body).getBody();
+        }
+        if (body instanceof PsiClass) {
+            for (String name : new String[]{"run", "call"}) {
+                PsiMethod[] methods = ((PsiClass) body).findMethodsByName(name, false);
+                if (methods.length > 0) {
+                    return methods[0].getBody();
+                }
+            }
+            return null;
+        }
+        return body instanceof PsiCodeBlock ? (PsiCodeBlock) body : null;
+    }
+}
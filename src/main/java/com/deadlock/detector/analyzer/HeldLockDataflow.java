@@ -0,0 +1,204 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.controlFlow.AllVariablesControlFlowPolicy;
+import com.intellij.psi.controlFlow.AnalysisCanceledException;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.Instruction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于IntelliJ控制流图的持锁集合数据流分析
+ * 在ControlFlowFactory生成的指令上做前向工作表迭代，汇合点对may集合取并、对must集合取交，
+ * 从而正确处理if/else分支、提前返回、异常路径以及try/finally中的unlock。
+ * 锁集合用long位图表示，单个方法最多跟踪64把锁；超出规模或迭代预算时返回null，由调用方回退到线性分析。
+ */
+public class HeldLockDataflow {
+    // 单个方法允许分析的最大指令数
+    private static final int MAX_INSTRUCTIONS = 20000;
+    // 工作表迭代预算（每条指令的may集合只增、must集合只减，正常情况下远低于此值）
+    private static final int MAX_STEPS = 200000;
+    private static final int MAX_LOCKS = 64;
+
+    /**
+     * 一次锁获取及获取前的持锁集合
+     */
+    public static class AcquireSite {
+        private final LockOperation operation;
+        private final List<String> mayHeld;
+        private final List<String> mustHeld;
+
+        AcquireSite(LockOperation operation, List<String> mayHeld, List<String> mustHeld) {
+            this.operation = operation;
+            this.mayHeld = mayHeld;
+            this.mustHeld = mustHeld;
+        }
+
+        public LockOperation getOperation() {
+            return operation;
+        }
+
+        /**
+         * 至少一条路径上持有的锁
+         */
+        public List<String> getMayHeld() {
+            return mayHeld;
+        }
+
+        /**
+         * 所有路径上都持有的锁
+         */
+        public List<String> getMustHeld() {
+            return mustHeld;
+        }
+    }
+
+    /**
+     * 分析代码块中的锁操作
+     * @param body 方法体或Lambda体
+     * @param operations body内按源码顺序排列的锁操作
+     * @return 每次锁获取的持锁集合；控制流不可用或超出预算时返回null
+     */
+    public List<AcquireSite> analyze(PsiElement body, List<LockOperation> operations) {
+        ControlFlow flow;
+        try {
+            flow = ControlFlowFactory.getInstance(body.getProject())
+                    .getControlFlow(body, AllVariablesControlFlowPolicy.getInstance());
+        } catch (AnalysisCanceledException e) {
+            System.out.println("Control flow unavailable: " + e.getMessage());
+            return null;
+        }
+        List<Instruction> instructions = flow.getInstructions();
+        int size = instructions.size();
+        if (size > MAX_INSTRUCTIONS) {
+            System.out.println("Control flow too large for dataflow: " + size);
+            return null;
+        }
+
+        // 1. 锁编号与每个操作在指令流中的范围
+        Map<String, Integer> lockIndex = new HashMap<>();
+        List<String> lockNames = new ArrayList<>();
+        int[] starts = new int[operations.size()];
+        int[] ends = new int[operations.size()];
+        // 以结束位置分组：边(i -> end)且start <= i < end 表示调用正常完成
+        Map<Integer, List<Integer>> opsByEnd = new HashMap<>();
+        for (int k = 0; k < operations.size(); k++) {
+            LockOperation operation = operations.get(k);
+            if (!lockIndex.containsKey(operation.getLockKey())) {
+                if (lockNames.size() == MAX_LOCKS) {
+                    System.out.println("Too many locks for dataflow: " + lockNames.size());
+                    return null;
+                }
+                lockIndex.put(operation.getLockKey(), lockNames.size());
+                lockNames.add(operation.getLockKey());
+            }
+            starts[k] = flow.getStartOffset(operation.getCall());
+            ends[k] = flow.getEndOffset(operation.getCall());
+            if (starts[k] < 0 || ends[k] < 0) {
+                continue;
+            }
+            opsByEnd.computeIfAbsent(ends[k], e -> new ArrayList<>()).add(k);
+        }
+
+        // 2. 前向工作表迭代：mayIn/mustIn为进入指令前的状态，位置size表示方法出口
+        long[] mayIn = new long[size + 1];
+        long[] mustIn = new long[size + 1];
+        boolean[] reached = new boolean[size + 1];
+        boolean[] queued = new boolean[size + 1];
+        int[] worklist = new int[size + 1];
+        int head = 0;
+        int count = 1;
+        int steps = 0;
+        reached[0] = true;
+        queued[0] = true;
+
+        while (count > 0) {
+            if (++steps > MAX_STEPS) {
+                System.out.println("Dataflow exceeded step budget");
+                return null;
+            }
+            int i = worklist[head];
+            head = (head + 1) % worklist.length;
+            count--;
+            queued[i] = false;
+            if (i >= size) {
+                continue;
+            }
+
+            Instruction instruction = instructions.get(i);
+            for (int n = 0; n < instruction.nNext(); n++) {
+                int j = instruction.getNext(i, n);
+                if (j < 0 || j > size) {
+                    continue;
+                }
+                long may = mayIn[i];
+                long must = mustIn[i];
+                List<Integer> completed = opsByEnd.get(j);
+                if (completed != null) {
+                    for (int k : completed) {
+                        // 零长度范围（调用未生成指令）在顺序执行进入时生效
+                        boolean applies = starts[k] < ends[k] ? (starts[k] <= i && i < j) : (i + 1 == j);
+                        if (!applies) {
+                            continue;
+                        }
+                        long bit = 1L << lockIndex.get(operations.get(k).getLockKey());
+                        if (operations.get(k).getKind() == LockOperation.Kind.ACQUIRE) {
+                            may |= bit;
+                            must |= bit;
+                        } else {
+                            may &= ~bit;
+                            must &= ~bit;
+                        }
+                    }
+                }
+
+                boolean changed;
+                if (!reached[j]) {
+                    reached[j] = true;
+                    mayIn[j] = may;
+                    mustIn[j] = must;
+                    changed = true;
+                } else {
+                    long newMay = mayIn[j] | may;
+                    long newMust = mustIn[j] & must;
+                    changed = newMay != mayIn[j] || newMust != mustIn[j];
+                    mayIn[j] = newMay;
+                    mustIn[j] = newMust;
+                }
+                if (changed && !queued[j]) {
+                    worklist[(head + count) % worklist.length] = j;
+                    count++;
+                    queued[j] = true;
+                }
+            }
+        }
+        System.out.println("Dataflow converged in " + steps + " steps over " + size + " instructions");
+
+        // 3. 每次获取前的持锁集合
+        List<AcquireSite> sites = new ArrayList<>();
+        for (int k = 0; k < operations.size(); k++) {
+            LockOperation operation = operations.get(k);
+            if (operation.getKind() != LockOperation.Kind.ACQUIRE || starts[k] < 0 || !reached[starts[k]]) {
+                continue;
+            }
+            sites.add(new AcquireSite(operation,
+                    toLockNames(mayIn[starts[k]], lockNames), toLockNames(mustIn[starts[k]], lockNames)));
+        }
+        return sites;
+    }
+
+    private List<String> toLockNames(long bits, List<String> lockNames) {
+        List<String> names = new ArrayList<>();
+        for (int b = 0; b < lockNames.size(); b++) {
+            if ((bits & (1L << b)) != 0) {
+                names.add(lockNames.get(b));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,244 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.LockType;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.java.stubs.index.JavaAnnotationIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiModificationTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 锁意图注解
+ * &#64;GuardedBy("lock")：字段只能在持有lock时访问；方法只能在持有lock时调用，分析时方法体按已持有lock处理。
+ * 按简单名识别，javax.annotation.concurrent、net.jcip、Error Prone和Checker Framework的GuardedBy都适用。
+ * &#64;LockOrder({"accountsLock", "ledgerLock"})：项目级声明的加锁顺序，可标注在任意类或package-info上，
+ * 每个声明是一条顺序链；链中的锁只能按声明顺序获取，持有靠后的锁再获取靠前的锁即违反顺序。
+ * 锁按名称匹配：this.accountsLock、bank.accountsLock都对应accountsLock，读写锁键rw_readLock对应rw，类锁对应Bank.class。
+ */
+public class LockAnnotations {
+    public static final String GUARDED_BY = "GuardedBy";
+    public static final String LOCK_ORDER = "LockOrder";
+
+    /**
+     * 锁在某条顺序链中的位置
+     */
+    public static class OrderRank {
+        private final int chain;
+        private final int rank;
+        private final PsiAnnotation declaration;
+
+        OrderRank(int chain, int rank, PsiAnnotation declaration) {
+            this.chain = chain;
+            this.rank = rank;
+            this.declaration = declaration;
+        }
+
+        public int getChain() {
+            return chain;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public PsiAnnotation getDeclaration() {
+            return declaration;
+        }
+
+        /**
+         * 与other同链且位置靠后
+         */
+        public boolean isAfter(OrderRank other) {
+            return other != null && chain == other.chain && rank > other.rank;
+        }
+    }
+
+    /**
+     * 一次违反声明顺序的获取
+     */
+    public static class OrderViolation {
+        private final String heldLock;
+        private final String acquiredLock;
+        private final OrderRank heldRank;
+
+        OrderViolation(String heldLock, String acquiredLock, OrderRank heldRank) {
+            this.heldLock = heldLock;
+            this.acquiredLock = acquiredLock;
+            this.heldRank = heldRank;
+        }
+
+        public String getHeldLock() {
+            return heldLock;
+        }
+
+        public String getAcquiredLock() {
+            return acquiredLock;
+        }
+
+        public PsiAnnotation getDeclaration() {
+            return heldRank.getDeclaration();
+        }
+    }
+
+    private final Map<String, OrderRank> ranks;
+
+    private LockAnnotations(Map<String, OrderRank> ranks) {
+        this.ranks = ranks;
+    }
+
+    /**
+     * 项目中声明的加锁顺序，通过注解短名索引查找，PSI变化前缓存
+     */
+    public static LockAnnotations forProject(Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(project, () ->
+                CachedValueProvider.Result.create(collect(project), PsiModificationTracker.getInstance(project)));
+    }
+
+    private static LockAnnotations collect(Project project) {
+        Map<String, OrderRank> ranks = new HashMap<>();
+        int chain = 0;
+        for (PsiAnnotation annotation : JavaAnnotationIndex.getInstance()
+                .get(LOCK_ORDER, project, GlobalSearchScope.projectScope(project))) {
+            List<String> names = stringValues(annotation.findAttributeValue("value"));
+            for (int i = 0; i < names.size(); i++) {
+                // 同一把锁出现在多条链中时以最先声明的为准
+                ranks.putIfAbsent(lockName(names.get(i)), new OrderRank(chain, i, annotation));
+            }
+            chain++;
+        }
+        if (!ranks.isEmpty()) {
+            System.out.println("Declared lock order: " + ranks.keySet());
+        }
+        return new LockAnnotations(ranks);
+    }
+
+    public boolean hasDeclaredOrder() {
+        return !ranks.isEmpty();
+    }
+
+    /**
+     * 锁在声明顺序中的位置，未声明时为null
+     */
+    public OrderRank rankOf(String lockId) {
+        return ranks.isEmpty() ? null : ranks.get(lockName(lockId));
+    }
+
+    /**
+     * 持有heldLocks时获取acquired是否违反声明顺序：每把锁只需一次查表
+     * @return 第一把声明在acquired之后的已持有锁，没有违反时返回null
+     */
+    public OrderViolation findViolation(List<String> heldLocks, String acquired) {
+        OrderRank acquiredRank = rankOf(acquired);
+        if (acquiredRank == null) {
+            return null;
+        }
+        for (String held : heldLocks) {
+            OrderRank heldRank = rankOf(held);
+            if (heldRank != null && heldRank.isAfter(acquiredRank)) {
+                return new OrderViolation(held, acquired, heldRank);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 元素上的&#64;GuardedBy注解，没有时返回null
+     */
+    public static PsiAnnotation findGuardedBy(PsiModifierListOwner owner) {
+        PsiModifierList modifiers = owner.getModifierList();
+        if (modifiers == null) {
+            return null;
+        }
+        for (PsiAnnotation annotation : modifiers.getAnnotations()) {
+            PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+            if (reference != null && GUARDED_BY.equals(reference.getReferenceName())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * &#64;GuardedBy声明的锁ID，写法与CodeAnalyzer一致（类锁加CLASS_前缀）；
+     * Error Prone的"itself"等无法对应到锁表达式的值忽略
+     */
+    public static String guardOf(PsiModifierListOwner owner) {
+        PsiAnnotation annotation = findGuardedBy(owner);
+        if (annotation == null) {
+            return null;
+        }
+        List<String> values = stringValues(annotation.findAttributeValue("value"));
+        if (values.isEmpty() || values.get(0).isEmpty() || "itself".equals(values.get(0))) {
+            return null;
+        }
+        String guard = values.get(0).trim();
+        return guard.endsWith(".class") ? "CLASS_" + guard : guard;
+    }
+
+    /**
+     * 守护锁的类型：类锁、显式Lock字段或内置监视器
+     */
+    public static LockType guardType(String guardId, PsiClass context) {
+        if (guardId.startsWith("CLASS_")) {
+            return LockType.CLASS_LOCK;
+        }
+        PsiField field = context != null ? context.findFieldByName(lockName(guardId), true) : null;
+        if (field != null && InheritanceUtil.isInheritor(field.getType(), "java.util.concurrent.locks.Lock")) {
+            return LockType.REENTRANT_LOCK;
+        }
+        return LockType.SYNCHRONIZED;
+    }
+
+    /**
+     * 两个锁ID是否指同一把锁（按名称比较）
+     */
+    public static boolean sameLock(String first, String second) {
+        return first.equals(second) || lockName(first).equals(lockName(second));
+    }
+
+    /**
+     * 锁ID的名称：类锁为X.class，其余为最后一段标识符（去掉读写锁后缀）
+     */
+    public static String lockName(String lockId) {
+        String name = lockId.trim();
+        if (name.startsWith("CLASS_")) {
+            name = name.substring("CLASS_".length());
+        }
+        if (name.endsWith(".class")) {
+            String type = name.substring(0, name.length() - ".class".length());
+            return type.substring(type.lastIndexOf('.') + 1) + ".class";
+        }
+        for (String suffix : new String[]{"_readLock", "_writeLock"}) {
+            if (name.endsWith(suffix)) {
+                name = name.substring(0, name.length() - suffix.length());
+            }
+        }
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static List<String> stringValues(PsiAnnotationMemberValue value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        PsiAnnotationMemberValue[] items = value instanceof PsiArrayInitializerMemberValue
+                ? ((PsiArrayInitializerMemberValue) value).getInitializers() : new PsiAnnotationMemberValue[]{value};
+        for (PsiAnnotationMemberValue item : items) {
+            Object constant = item instanceof PsiExpression ? JavaPsiFacade.getInstance(item.getProject())
+                    .getConstantEvaluationHelper().computeConstantExpression(item) : null;
+            if (constant instanceof String) {
+                result.add((String) constant);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,316 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.AcquisitionKind;
+import com.deadlock.detector.model.LockType;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 显式锁操作：lock()/lockInterruptibly()/tryLock()为获取，unlock()为释放
+ * 获取方式区分阻塞（lock）、带超时（tryLock(time, unit)）和非阻塞（tryLock()），超时时长从常量参数估算。
+ * 读写锁 rw.readLock().lock() 的锁键沿用 rw_readLock / rw_writeLock 命名，两种模式对应同一个资源 rw。
+ * StampedLock：readLock()/writeLock()（及Interruptibly、带超时try版本）为获取，unlockRead/unlockWrite/unlock(stamp)为释放；
+ * tryOptimisticRead()不加锁，不产生操作。
+ */
+public class LockOperation {
+    private static final String STAMPED_LOCK_CLASS = "java.util.concurrent.locks.StampedLock";
+
+    public enum Kind {
+        ACQUIRE,
+        RELEASE
+    }
+
+    private final PsiMethodCallExpression call;
+    private final Kind kind;
+    private final String lockKey;
+    private final LockType lockType;
+    private AcquisitionKind acquisitionKind = AcquisitionKind.BLOCKING;
+    private long timeoutMillis = -1;
+
+    LockOperation(PsiMethodCallExpression call, Kind kind, String lockKey, LockType lockType) {
+        this.call = call;
+        this.kind = kind;
+        this.lockKey = lockKey;
+        this.lockType = lockType;
+    }
+
+    public PsiMethodCallExpression getCall() {
+        return call;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getLockKey() {
+        return lockKey;
+    }
+
+    public LockType getLockType() {
+        return lockType;
+    }
+
+    public AcquisitionKind getAcquisitionKind() {
+        return acquisitionKind;
+    }
+
+    /**
+     * 带超时获取的超时时长（毫秒），非常量参数或非超时获取时为-1
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 获取位于当前方法的循环中：tryLock失败后会重试
+     */
+    public boolean isRetried() {
+        return PsiTreeUtil.getParentOfType(call, PsiLoopStatement.class, true,
+                PsiMethod.class, PsiLambdaExpression.class, PsiClass.class) != null;
+    }
+
+    /**
+     * 锁所在的资源：读写锁和StampedLock的两种模式共用一个资源
+     */
+    public String getResourceKey() {
+        if (lockType == LockType.READ_LOCK || lockType == LockType.STAMPED_READ_LOCK) {
+            return lockKey.substring(0, lockKey.length() - "_readLock".length());
+        }
+        if (lockType == LockType.WRITE_LOCK || lockType == LockType.STAMPED_WRITE_LOCK) {
+            return lockKey.substring(0, lockKey.length() - "_writeLock".length());
+        }
+        return lockKey;
+    }
+
+    /**
+     * 在已持有heldKeys时执行本次获取是否会阻塞自己：
+     * 读写锁持有读锁时请求写锁（不支持升级）；StampedLock不可重入，持有写锁时再请求任何模式、持有读锁时请求写锁
+     * @return 造成阻塞的已持有锁键，不会自身阻塞时返回null（带超时或非阻塞的获取不会永久阻塞）
+     */
+    public String findSelfBlockingKey(List<String> heldKeys) {
+        if (kind != Kind.ACQUIRE || acquisitionKind != AcquisitionKind.BLOCKING) {
+            return null;
+        }
+        String readKey = getResourceKey() + "_readLock";
+        String writeKey = getResourceKey() + "_writeLock";
+        if (lockType == LockType.WRITE_LOCK && heldKeys.contains(readKey)) {
+            return readKey;
+        }
+        if (lockType == LockType.STAMPED_WRITE_LOCK || lockType == LockType.STAMPED_READ_LOCK) {
+            if (heldKeys.contains(writeKey)) {
+                return writeKey;
+            }
+            if (lockType == LockType.STAMPED_WRITE_LOCK && heldKeys.contains(readKey)) {
+                return readKey;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按源码顺序收集元素内的锁操作（不进入Lambda与内部类，它们不在当前控制流中执行）
+     */
+    public static List<LockOperation> collect(PsiElement root) {
+        List<LockOperation> operations = new ArrayList<>();
+        if (root == null) {
+            return operations;
+        }
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(root, PsiMethodCallExpression.class)) {
+            PsiElement owner = PsiTreeUtil.getParentOfType(call, PsiLambdaExpression.class, PsiClass.class);
+            if (owner != null && PsiTreeUtil.isAncestor(root, owner, true)) {
+                continue;
+            }
+            LockOperation operation = fromCall(call);
+            if (operation != null) {
+                operations.add(operation);
+            }
+        }
+        operations.sort((a, b) -> Integer.compare(a.getCall().getTextOffset(), b.getCall().getTextOffset()));
+        return operations;
+    }
+
+    /**
+     * 解析单个方法调用，不是锁操作时返回null
+     */
+    public static LockOperation fromCall(PsiMethodCallExpression call) {
+        String methodName = call.getMethodExpression().getReferenceName();
+        PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        if (methodName == null || qualifier == null) {
+            return null;
+        }
+        int argCount = call.getArgumentList().getExpressions().length;
+
+        if (isStampedLock(qualifier)) {
+            return fromStampedLockCall(call, methodName, qualifier, argCount);
+        }
+
+        Kind kind;
+        if (("lock".equals(methodName) || "lockInterruptibly".equals(methodName)) && argCount == 0) {
+            kind = Kind.ACQUIRE;
+        } else if ("tryLock".equals(methodName)) {
+            // 成功时持有锁；等待方式由参数决定
+            kind = Kind.ACQUIRE;
+        } else if ("unlock".equals(methodName) && argCount == 0) {
+            kind = Kind.RELEASE;
+        } else {
+            return null;
+        }
+        LockOperation operation = fromExplicitLockCall(call, kind, qualifier);
+        if ("tryLock".equals(methodName)) {
+            operation.setTimed(call.getArgumentList().getExpressions());
+        }
+        return operation;
+    }
+
+    private static LockOperation fromExplicitLockCall(PsiMethodCallExpression call, Kind kind, PsiExpression qualifier) {
+        // 读写锁：xxx.readLock().lock() / xxx.writeLock().unlock()
+        if (qualifier instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression rwCall = (PsiMethodCallExpression) qualifier;
+            String rwMethodName = rwCall.getMethodExpression().getReferenceName();
+            PsiExpression rwQualifier = rwCall.getMethodExpression().getQualifierExpression();
+            if (("readLock".equals(rwMethodName) || "writeLock".equals(rwMethodName))
+                    && rwCall.getArgumentList().getExpressions().length == 0 && rwQualifier != null) {
+                LockType lockType = "readLock".equals(rwMethodName) ? LockType.READ_LOCK : LockType.WRITE_LOCK;
+                return new LockOperation(call, kind, rwQualifier.getText().trim() + "_" + rwMethodName, lockType);
+            }
+            // StampedLock的Lock视图：sl.asReadLock().lock()
+            if (("asReadLock".equals(rwMethodName) || "asWriteLock".equals(rwMethodName)) && isStampedLock(rwQualifier)) {
+                boolean read = "asReadLock".equals(rwMethodName);
+                return new LockOperation(call, kind, rwQualifier.getText().trim() + (read ? "_readLock" : "_writeLock"),
+                        read ? LockType.STAMPED_READ_LOCK : LockType.STAMPED_WRITE_LOCK);
+            }
+        }
+        return new LockOperation(call, kind, qualifier.getText().trim(), LockType.REENTRANT_LOCK);
+    }
+
+    private static LockOperation fromStampedLockCall(PsiMethodCallExpression call, String methodName,
+                                                     PsiExpression qualifier, int argCount) {
+        Kind kind;
+        boolean read;
+        switch (methodName) {
+            case "readLock":
+            case "readLockInterruptibly":
+                kind = argCount == 0 ? Kind.ACQUIRE : null;
+                read = true;
+                break;
+            case "writeLock":
+            case "writeLockInterruptibly":
+                kind = argCount == 0 ? Kind.ACQUIRE : null;
+                read = false;
+                break;
+            case "tryReadLock":
+                // 无参版本立即返回，成功时同样持有锁
+                kind = Kind.ACQUIRE;
+                read = true;
+                break;
+            case "tryWriteLock":
+                kind = Kind.ACQUIRE;
+                read = false;
+                break;
+            case "unlockRead":
+                kind = Kind.RELEASE;
+                read = true;
+                break;
+            case "unlockWrite":
+                kind = Kind.RELEASE;
+                read = false;
+                break;
+            case "unlock":
+                kind = argCount == 1 ? Kind.RELEASE : null;
+                read = argCount == 1 && isReadStamp(call.getArgumentList().getExpressions()[0]);
+                break;
+            default:
+                // tryOptimisticRead/validate/tryConvertTo*都不会阻塞
+                return null;
+        }
+        if (kind == null) {
+            return null;
+        }
+        String lockKey = qualifier.getText().trim() + (read ? "_readLock" : "_writeLock");
+        LockOperation operation = new LockOperation(call, kind, lockKey,
+                read ? LockType.STAMPED_READ_LOCK : LockType.STAMPED_WRITE_LOCK);
+        if (methodName.startsWith("try")) {
+            operation.setTimed(call.getArgumentList().getExpressions());
+        }
+        return operation;
+    }
+
+    /**
+     * 按tryLock参数设置获取方式：无参为非阻塞，(time, unit)为带超时
+     */
+    private void setTimed(PsiExpression[] args) {
+        if (args.length == 0) {
+            acquisitionKind = AcquisitionKind.NON_BLOCKING;
+            return;
+        }
+        acquisitionKind = AcquisitionKind.TIMED;
+        timeoutMillis = args.length == 2 ? constantTimeoutMillis(args[0], args[1]) : -1;
+    }
+
+    /**
+     * 常量超时换算为毫秒：tryLock(500, TimeUnit.MILLISECONDS)、tryLock(1, SECONDS)
+     */
+    static long constantTimeoutMillis(PsiExpression timeExpr, PsiExpression unitExpr) {
+        Object time = JavaPsiFacade.getInstance(timeExpr.getProject()).getConstantEvaluationHelper()
+                .computeConstantExpression(timeExpr);
+        unitExpr = PsiUtil.skipParenthesizedExprDown(unitExpr);
+        if (!(time instanceof Number) || !(unitExpr instanceof PsiReferenceExpression)) {
+            return -1;
+        }
+        long value = ((Number) time).longValue();
+        String unit = ((PsiReferenceExpression) unitExpr).getReferenceName();
+        if (unit == null) {
+            return -1;
+        }
+        switch (unit) {
+            case "NANOSECONDS":
+                return value / 1_000_000;
+            case "MICROSECONDS":
+                return value / 1_000;
+            case "MILLISECONDS":
+                return value;
+            case "SECONDS":
+                return value * 1_000;
+            case "MINUTES":
+                return value * 60_000;
+            case "HOURS":
+                return value * 3_600_000;
+            case "DAYS":
+                return value * 86_400_000;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * unlock(stamp)：根据stamp变量的初始化判断是读还是写，无法判断时按写处理
+     */
+    private static boolean isReadStamp(PsiExpression stampExpr) {
+        stampExpr = PsiUtil.skipParenthesizedExprDown(stampExpr);
+        if (!(stampExpr instanceof PsiReferenceExpression)) {
+            return false;
+        }
+        PsiElement resolved = ((PsiReferenceExpression) stampExpr).resolve();
+        if (!(resolved instanceof PsiVariable)) {
+            return false;
+        }
+        PsiExpression initializer = PsiUtil.skipParenthesizedExprDown(((PsiVariable) resolved).getInitializer());
+        if (!(initializer instanceof PsiMethodCallExpression)) {
+            return false;
+        }
+        String name = ((PsiMethodCallExpression) initializer).getMethodExpression().getReferenceName();
+        return name != null && (name.startsWith("readLock") || "tryReadLock".equals(name));
+    }
+
+    private static boolean isStampedLock(PsiExpression expression) {
+        if (expression == null) {
+            return false;
+        }
+        PsiType type = expression.getType();
+        return type != null && STAMPED_LOCK_CLASS.equals(type.getCanonicalText());
+    }
+}
@@ -0,0 +1,269 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.LockType;
+import com.intellij.psi.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 锁作用域遍历器
+ * 按源码嵌套结构遍历方法体，维护当前持有的锁栈（synchronized块、synchronized方法、显式lock()/unlock()），
+ * 对每个方法调用和循环回调当前持有的锁。Lambda、匿名类和局部类的代码稍后才会执行，进入时使用空锁栈。
+ * 开启assumeGuards时，标注&#64;GuardedBy的方法进入时已持有声明的锁（调用者负责加锁，不回调visitAcquire）。
+ */
+public class LockScopeWalker {
+    private final boolean assumeGuards;
+
+    public LockScopeWalker() {
+        this(false);
+    }
+
+    public LockScopeWalker(boolean assumeGuards) {
+        this.assumeGuards = assumeGuards;
+    }
+
+    /**
+     * 当前持有的一个监视器
+     */
+    public static class HeldMonitor {
+        private final String lockId;
+        private final LockType lockType;
+        private final PsiElement owner;
+
+        HeldMonitor(String lockId, LockType lockType, PsiElement owner) {
+            this.lockId = lockId;
+            this.lockType = lockType;
+            this.owner = owner;
+        }
+
+        public String getLockId() {
+            return lockId;
+        }
+
+        public LockType getLockType() {
+            return lockType;
+        }
+
+        /**
+         * 获取该锁的语法元素：PsiSynchronizedStatement、synchronized方法、lock()调用或&#64;GuardedBy注解
+         */
+        public PsiElement getOwner() {
+            return owner;
+        }
+
+        /**
+         * 是否为内置监视器（synchronized），显式Lock返回false
+         */
+        public boolean isMonitor() {
+            return lockType == LockType.SYNCHRONIZED || lockType == LockType.CLASS_LOCK;
+        }
+    }
+
+    /**
+     * 遍历回调
+     */
+    public interface Callback {
+        /**
+         * 访问一次方法调用
+         * @param call 方法调用
+         * @param heldMonitors 调用发生时持有的监视器（由外到内）
+         */
+        void visitCall(PsiMethodCallExpression call, List<HeldMonitor> heldMonitors);
+
+        /**
+         * 访问一次锁获取，默认忽略
+         * @param acquired 新获取的锁
+         * @param heldBefore 获取前已持有的锁
+         */
+        default void visitAcquire(HeldMonitor acquired, List<HeldMonitor> heldBefore) {
+        }
+
+        /**
+         * 访问一个循环语句，默认忽略
+         */
+        default void visitLoop(PsiLoopStatement loop, List<HeldMonitor> heldMonitors) {
+        }
+
+        /**
+         * 访问一次引用（字段、变量或方法名），默认忽略
+         * 引用数量远多于调用，heldMonitors是当前锁栈的只读视图，只在回调期间有效
+         */
+        default void visitReference(PsiReferenceExpression reference, List<HeldMonitor> heldMonitors) {
+        }
+    }
+
+    /**
+     * 遍历文件中所有方法（包括内部类、匿名类中的方法以及字段初始化中的Lambda）
+     */
+    public void walkFile(PsiFile psiFile, Callback callback) {
+        psiFile.accept(new ScopeVisitor(callback, new ArrayList<>(), assumeGuards));
+    }
+
+    /**
+     * 遍历单个元素，initialMonitors为进入时已持有的监视器
+     */
+    public void walk(PsiElement element, List<HeldMonitor> initialMonitors, Callback callback) {
+        element.accept(new ScopeVisitor(callback, new ArrayList<>(initialMonitors), assumeGuards));
+    }
+
+    /**
+     * 计算synchronized方法隐式持有的监视器：实例方法锁this，静态方法锁所在类的Class对象
+     */
+    public static String methodMonitorId(PsiMethod method) {
+        if (method.hasModifierProperty(PsiModifier.STATIC)) {
+            PsiClass containingClass = method.getContainingClass();
+            String className = containingClass != null && containingClass.getName() != null
+                    ? containingClass.getName() : "Anonymous";
+            return "CLASS_" + className + ".class";
+        }
+        return "this";
+    }
+
+    /**
+     * synchronized方法的监视器类型：静态方法为类锁
+     */
+    public static LockType methodMonitorType(PsiMethod method) {
+        return method.hasModifierProperty(PsiModifier.STATIC) ? LockType.CLASS_LOCK : LockType.SYNCHRONIZED;
+    }
+
+    /**
+     * 计算synchronized块的锁ID，与CodeAnalyzer中的命名保持一致（类锁加CLASS_前缀）
+     */
+    public static String statementMonitorId(PsiSynchronizedStatement statement) {
+        PsiExpression lockExpr = statement.getLockExpression();
+        if (lockExpr == null) {
+            return null;
+        }
+        String lockObject = lockExpr.getText().trim();
+        return lockObject.endsWith(".class") ? "CLASS_" + lockObject : lockObject;
+    }
+
+    private static class ScopeVisitor extends JavaRecursiveElementVisitor {
+        private final Callback callback;
+        private final boolean assumeGuards;
+        private List<HeldMonitor> heldMonitors;
+
+        ScopeVisitor(Callback callback, List<HeldMonitor> heldMonitors, boolean assumeGuards) {
+            this.callback = callback;
+            this.heldMonitors = heldMonitors;
+            this.assumeGuards = assumeGuards;
+        }
+
+        @Override
+        public void visitMethod(PsiMethod method) {
+            List<HeldMonitor> saved = heldMonitors;
+            heldMonitors = new ArrayList<>();
+            String guard = assumeGuards ? LockAnnotations.guardOf(method) : null;
+            if (guard != null) {
+                heldMonitors.add(new HeldMonitor(guard, LockAnnotations.guardType(guard, method.getContainingClass()),
+                        LockAnnotations.findGuardedBy(method)));
+            }
+            if (method.hasModifierProperty(PsiModifier.SYNCHRONIZED)) {
+                acquire(new HeldMonitor(methodMonitorId(method), methodMonitorType(method), method));
+            }
+            super.visitMethod(method);
+            heldMonitors = saved;
+        }
+
+        @Override
+        public void visitLambdaExpression(PsiLambdaExpression expression) {
+            List<HeldMonitor> saved = heldMonitors;
+            heldMonitors = new ArrayList<>();
+            super.visitLambdaExpression(expression);
+            heldMonitors = saved;
+        }
+
+        @Override
+        public void visitClass(PsiClass aClass) {
+            List<HeldMonitor> saved = heldMonitors;
+            heldMonitors = new ArrayList<>();
+            super.visitClass(aClass);
+            heldMonitors = saved;
+        }
+
+        @Override
+        public void visitSynchronizedStatement(PsiSynchronizedStatement statement) {
+            String lockId = statementMonitorId(statement);
+            // 锁表达式本身在获取锁之前求值
+            PsiExpression lockExpr = statement.getLockExpression();
+            if (lockExpr != null) {
+                lockExpr.accept(this);
+            }
+            if (lockId != null) {
+                LockType lockType = lockId.startsWith("CLASS_") ? LockType.CLASS_LOCK : LockType.SYNCHRONIZED;
+                acquire(new HeldMonitor(lockId, lockType, statement));
+            }
+            PsiCodeBlock body = statement.getBody();
+            if (body != null) {
+                body.accept(this);
+            }
+            if (lockId != null) {
+                heldMonitors.remove(heldMonitors.size() - 1);
+            }
+        }
+
+        @Override
+        public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+            callback.visitCall(expression, snapshot());
+            super.visitMethodCallExpression(expression);
+
+            // 显式锁：获取入栈，unlock()弹出最近一次同名锁
+            LockOperation operation = LockOperation.fromCall(expression);
+            if (operation == null) {
+                return;
+            }
+            String lockId = operation.getLockKey();
+            if (operation.getKind() == LockOperation.Kind.ACQUIRE) {
+                acquire(new HeldMonitor(lockId, operation.getLockType(), expression));
+            } else {
+                for (int i = heldMonitors.size() - 1; i >= 0; i--) {
+                    if (!heldMonitors.get(i).isMonitor() && heldMonitors.get(i).getLockId().equals(lockId)) {
+                        heldMonitors.remove(i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void acquire(HeldMonitor monitor) {
+            callback.visitAcquire(monitor, snapshot());
+            heldMonitors.add(monitor);
+        }
+
+        @Override
+        public void visitReferenceExpression(PsiReferenceExpression expression) {
+            callback.visitReference(expression, Collections.unmodifiableList(heldMonitors));
+            super.visitReferenceExpression(expression);
+        }
+
+        @Override
+        public void visitForStatement(PsiForStatement statement) {
+            callback.visitLoop(statement, snapshot());
+            super.visitForStatement(statement);
+        }
+
+        @Override
+        public void visitForeachStatement(PsiForeachStatement statement) {
+            callback.visitLoop(statement, snapshot());
+            super.visitForeachStatement(statement);
+        }
+
+        @Override
+        public void visitWhileStatement(PsiWhileStatement statement) {
+            callback.visitLoop(statement, snapshot());
+            super.visitWhileStatement(statement);
+        }
+
+        @Override
+        public void visitDoWhileStatement(PsiDoWhileStatement statement) {
+            callback.visitLoop(statement, snapshot());
+            super.visitDoWhileStatement(statement);
+        }
+
+        private List<HeldMonitor> snapshot() {
+            return Collections.unmodifiableList(new ArrayList<>(heldMonitors));
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.LockType;
+import org.objectweb.asm.Opcodes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 预计算的JDK与常用库加锁摘要：源码中调用Hashtable.put、StringBuffer.append、PrintStream.println等方法时，
+ * 不必（往往也无法）展开库的实现，直接查表得到调用会获取的锁。
+ * 摘要由BytecodeLockAnalyzer分析JDK模块和库jar生成（main方法），只保留调用者能看到的锁：
+ * 接收者自身的监视器（含构造器中赋值为this的mutex一类字段）和所在类的类锁；库内部对象的锁不会与调用者的锁成环，不记录。
+ * 另外标记返回自锁对象的工厂方法（Collections.synchronizedMap等），调用者对其返回值的调用都锁接收者。
+ * 摘要作为资源随插件发布，首次查询时加载；格式带版本号，版本不符时按没有摘要处理。
+ */
+public final class LockSummaryLibrary {
+    /**
+     * 摘要中表示接收者的锁ID，与MethodLockSummary中被调方法内部的写法一致
+     */
+    public static final String RECEIVER = "this";
+
+    static final String RESOURCE = "/lockSummaries/library.dls";
+    private static final int MAGIC = 0x444c4c53;
+    static final int FORMAT_VERSION = 1;
+
+    // JDK内部实现不会被用户代码直接调用，不导出
+    private static final String[] INTERNAL_PACKAGES = {"sun/", "jdk/", "com/sun/"};
+    // 工厂方法返回的对象多数公开方法都锁接收者时，视为自锁对象
+    private static final int MIN_LOCKED_METHODS = 3;
+
+    /**
+     * 调用一个库方法的加锁效果
+     */
+    public static final class MethodEffect {
+        private final List<String> lockIds;
+        private final List<LockType> lockTypes;
+        private final boolean returnsLockedObject;
+
+        MethodEffect(List<String> lockIds, List<LockType> lockTypes, boolean returnsLockedObject) {
+            this.lockIds = lockIds;
+            this.lockTypes = lockTypes;
+            this.returnsLockedObject = returnsLockedObject;
+        }
+
+        /**
+         * 调用期间获取并释放的锁：RECEIVER或类锁（CLASS_类名.class）
+         */
+        public List<String> getLockIds() {
+            return lockIds;
+        }
+
+        public List<LockType> getLockTypes() {
+            return lockTypes;
+        }
+
+        /**
+         * 返回值的公开方法都锁返回值自身（例如Collections.synchronizedList）
+         */
+        public boolean isReturnsLockedObject() {
+            return returnsLockedObject;
+        }
+    }
+
+    // 延迟加载：第一次查询时才读取资源
+    private static final class Holder {
+        static final LockSummaryLibrary INSTANCE = load();
+    }
+
+    private final List<String> sources;
+    // 类内部名 → (方法名+描述符 → 效果)
+    private final Map<String, Map<String, MethodEffect>> effects;
+
+    private LockSummaryLibrary(List<String> sources, Map<String, Map<String, MethodEffect>> effects) {
+        this.sources = sources;
+        this.effects = effects;
+    }
+
+    public static LockSummaryLibrary get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param owner 声明方法的类的内部名，例如 java/util/Hashtable
+     * @param nameAndDescriptor 方法名加描述符，例如 put(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;
+     * @return 没有摘要（不加锁或不在库中）时为null
+     */
+    public MethodEffect lookup(String owner, String nameAndDescriptor) {
+        Map<String, MethodEffect> methods = effects.get(owner);
+        return methods != null ? methods.get(nameAndDescriptor) : null;
+    }
+
+    /**
+     * 生成摘要时分析的JDK与库版本
+     */
+    public List<String> getSources() {
+        return sources;
+    }
+
+    private static LockSummaryLibrary load() {
+        try (InputStream resource = LockSummaryLibrary.class.getResourceAsStream(RESOURCE)) {
+            if (resource == null) {
+                System.out.println("Lock summary library not found: " + RESOURCE);
+                return empty();
+            }
+            LockSummaryLibrary library = read(resource);
+            System.out.println("Loaded lock summaries for " + library.sources);
+            return library;
+        } catch (IOException e) {
+            System.out.println("Failed to load lock summary library: " + e.getMessage());
+            return empty();
+        }
+    }
+
+    private static LockSummaryLibrary empty() {
+        return new LockSummaryLibrary(Collections.emptyList(), Collections.emptyMap());
+    }
+
+    /**
+     * 格式（gzip压缩）：魔数、格式版本、来源列表、字符串表，
+     * 然后按类分组：类名索引、方法数，每个方法：名字+描述符索引、标志、锁数，每把锁：锁ID索引、锁类型索引
+     */
+    static LockSummaryLibrary read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(input)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是加锁摘要文件");
+        }
+        int version = in.readUnsignedShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("加锁摘要格式版本 " + version + " 不受支持（需要 " + FORMAT_VERSION + "）");
+        }
+        List<String> sources = new ArrayList<>();
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+            sources.add(in.readUTF());
+        }
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        Map<String, Map<String, MethodEffect>> effects = new HashMap<>();
+        for (int classes = in.readInt(); classes > 0; classes--) {
+            Map<String, MethodEffect> methods = new HashMap<>();
+            effects.put(strings[in.readInt()], methods);
+            for (int count = in.readUnsignedShort(); count > 0; count--) {
+                String method = strings[in.readInt()];
+                boolean returnsLockedObject = in.readByte() != 0;
+                int locks = in.readUnsignedByte();
+                List<String> lockIds = new ArrayList<>(locks);
+                List<LockType> lockTypes = new ArrayList<>(locks);
+                for (int i = 0; i < locks; i++) {
+                    lockIds.add(strings[in.readInt()]);
+                    lockTypes.add(LockType.valueOf(strings[in.readInt()]));
+                }
+                methods.put(method, new MethodEffect(lockIds, lockTypes, returnsLockedObject));
+            }
+        }
+        return new LockSummaryLibrary(sources, effects);
+    }
+
+    private static void write(OutputStream output, List<String> sources,
+                              Map<String, Map<String, MethodEffect>> effects) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, MethodEffect>> type : effects.entrySet()) {
+            strings.putIfAbsent(type.getKey(), strings.size());
+            for (Map.Entry<String, MethodEffect> method : type.getValue().entrySet()) {
+                strings.putIfAbsent(method.getKey(), strings.size());
+                for (int i = 0; i < method.getValue().lockIds.size(); i++) {
+                    strings.putIfAbsent(method.getValue().lockIds.get(i), strings.size());
+                    strings.putIfAbsent(method.getValue().lockTypes.get(i).name(), strings.size());
+                }
+            }
+        }
+        GZIPOutputStream gzip = new GZIPOutputStream(output);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip));
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeShort(sources.size());
+        for (String source : sources) {
+            out.writeUTF(source);
+        }
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            out.writeUTF(string);
+        }
+        out.writeInt(effects.size());
+        for (Map.Entry<String, Map<String, MethodEffect>> type : effects.entrySet()) {
+            out.writeInt(strings.get(type.getKey()));
+            out.writeShort(type.getValue().size());
+            for (Map.Entry<String, MethodEffect> method : type.getValue().entrySet()) {
+                MethodEffect effect = method.getValue();
+                out.writeInt(strings.get(method.getKey()));
+                out.writeByte(effect.returnsLockedObject ? 1 : 0);
+                out.writeByte(effect.lockIds.size());
+                for (int i = 0; i < effect.lockIds.size(); i++) {
+                    out.writeInt(strings.get(effect.lockIds.get(i)));
+                    out.writeInt(strings.get(effect.lockTypes.get(i).name()));
+                }
+            }
+        }
+        out.flush();
+        gzip.finish();
+    }
+
+    /**
+     * 从分析结果中提取公开方法的加锁效果
+     */
+    static Map<String, Map<String, MethodEffect>> extract(BytecodeLockAnalyzer analyzer) {
+        analyzer.propagateAcquiredLocks();
+        Map<String, List<BytecodeLockAnalyzer.MethodSummary>> byOwner = new HashMap<>();
+        for (BytecodeLockAnalyzer.MethodSummary summary : analyzer.getMethods().values()) {
+            byOwner.computeIfAbsent(summary.getOwner(), k -> new ArrayList<>()).add(summary);
+        }
+        Map<String, Map<String, MethodEffect>> effects = new TreeMap<>();
+        for (BytecodeLockAnalyzer.MethodSummary summary : analyzer.getMethods().values()) {
+            if ((summary.getAccess() & Opcodes.ACC_PUBLIC) == 0 || isInternal(summary.getOwner())) {
+                continue;
+            }
+            MethodEffect effect = effectOf(analyzer, summary);
+            boolean returnsLockedObject = summary.getReturnedType() != null
+                    && isLockedObject(analyzer, byOwner, summary.getReturnedType());
+            if (!effect.lockIds.isEmpty() || returnsLockedObject) {
+                effects.computeIfAbsent(summary.getOwner(), k -> new TreeMap<>()).put(
+                        summary.getName() + summary.getDescriptor(),
+                        new MethodEffect(effect.lockIds, effect.lockTypes, returnsLockedObject));
+            }
+        }
+        return effects;
+    }
+
+    private static boolean isInternal(String owner) {
+        for (String prefix : INTERNAL_PACKAGES) {
+            if (owner.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 方法（含传递调用）获取的锁中，调用者能看到的部分：接收者及其别名字段、所在类层次的类锁
+     */
+    private static MethodEffect effectOf(BytecodeLockAnalyzer analyzer, BytecodeLockAnalyzer.MethodSummary summary) {
+        // 继承的字段在字节码中以引用处的类限定，别名字段与类层次中的每个类名组合
+        List<String> simpleNames = new ArrayList<>();
+        Set<String> aliasFields = new LinkedHashSet<>();
+        for (String type = summary.getOwner(); type != null; type = analyzer.superNameOf(type)) {
+            simpleNames.add(BytecodeLockAnalyzer.simpleName(type));
+            aliasFields.addAll(analyzer.receiverFieldsOf(type));
+        }
+        Set<String> receiverIds = new LinkedHashSet<>();
+        Set<String> classLocks = new LinkedHashSet<>();
+        for (String simpleName : simpleNames) {
+            receiverIds.add(simpleName + ".this");
+            classLocks.add("CLASS_" + simpleName + ".class");
+            for (String field : aliasFields) {
+                receiverIds.add(simpleName + "." + field);
+            }
+        }
+        boolean isStatic = (summary.getAccess() & Opcodes.ACC_STATIC) != 0;
+        List<String> lockIds = new ArrayList<>();
+        List<LockType> lockTypes = new ArrayList<>();
+        for (String lockId : summary.getAcquiredLocks()) {
+            if (!isStatic && receiverIds.contains(lockId) && !lockIds.contains(RECEIVER)) {
+                lockIds.add(RECEIVER);
+                lockTypes.add(LockType.SYNCHRONIZED);
+            } else if (classLocks.contains(lockId) && !lockIds.contains(lockId)) {
+                lockIds.add(lockId);
+                lockTypes.add(LockType.CLASS_LOCK);
+            }
+        }
+        return new MethodEffect(lockIds, lockTypes, false);
+    }
+
+    /**
+     * 类（含父类）的公开实例方法中多数锁接收者
+     */
+    private static boolean isLockedObject(BytecodeLockAnalyzer analyzer,
+                                          Map<String, List<BytecodeLockAnalyzer.MethodSummary>> byOwner, String type) {
+        int locked = 0;
+        int total = 0;
+        for (String current = type; current != null; current = analyzer.superNameOf(current)) {
+            for (BytecodeLockAnalyzer.MethodSummary summary : byOwner.getOrDefault(current, Collections.emptyList())) {
+                int access = summary.getAccess();
+                if ((access & Opcodes.ACC_PUBLIC) == 0 || (access & (Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC)) != 0
+                        || summary.getName().startsWith("<")) {
+                    continue;
+                }
+                total++;
+                locked += effectOf(analyzer, summary).lockIds.contains(RECEIVER) ? 1 : 0;
+            }
+        }
+        return locked >= MIN_LOCKED_METHODS && locked * 2 >= total;
+    }
+
+    /**
+     * 生成摘要资源：参数为输出文件，随后是输入（jrt 表示当前运行的JDK，其余为jar或class目录）。
+     * 例如：library.dls jrt guava-33.4.6-jre.jar commons-lang3-3.17.0.jar
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法：LockSummaryLibrary <输出文件> <jrt|jar|class目录>...");
+            System.exit(2);
+        }
+        BytecodeLockAnalyzer analyzer = new BytecodeLockAnalyzer();
+        analyzer.setUseLibrary(false);
+        List<String> sources = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if ("jrt".equals(args[i])) {
+                // java.*模块是公开API，jdk.*模块不在标准API中
+                FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+                List<Path> modules = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(jrt.getPath("/modules"), "java.*")) {
+                    stream.forEach(modules::add);
+                }
+                for (Path module : modules) {
+                    analyzer.addPath(module);
+                }
+                sources.add("jdk " + System.getProperty("java.version"));
+            } else {
+                Path input = Paths.get(args[i]);
+                analyzer.addPath(input);
+                String name = input.getFileName().toString();
+                sources.add(name.endsWith(".jar") ? name.substring(0, name.length() - 4) : name);
+            }
+        }
+        Map<String, Map<String, MethodEffect>> effects = extract(analyzer);
+        int methods = 0;
+        for (Map<String, MethodEffect> type : effects.values()) {
+            methods += type.size();
+        }
+        try (OutputStream output = Files.newOutputStream(Paths.get(args[0]))) {
+            write(output, sources, effects);
+        }
+        System.out.println("已写出 " + effects.size() + " 个类的 " + methods + " 个方法摘要，来源：" + sources);
+    }
+}
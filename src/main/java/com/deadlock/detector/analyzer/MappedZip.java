@@ -0,0 +1,149 @@
+package com.deadlock.detector.analyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 内存映射的jar/zip读取：只解析末尾的中央目录，条目内容按需从映射中切片，
+ * 存储（不压缩）的条目直接返回切片，压缩的条目解压到堆上。切片互相独立，可以并行读取。
+ * 不支持ZIP64（单个jar超过4GB或超过65535个条目）。
+ */
+final class MappedZip {
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT = 0xffff;
+
+    /**
+     * 中央目录中的一个条目
+     */
+    static final class Entry {
+        final String name;
+        final int method;
+        final int compressedSize;
+        final int size;
+        final int localHeader;
+
+        Entry(String name, int method, int compressedSize, int size, int localHeader) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeader = localHeader;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final List<Entry> entries = new ArrayList<>();
+
+    private MappedZip(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        readCentralDirectory();
+    }
+
+    static MappedZip open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("jar过大：" + file);
+            }
+            // 映射在通道关闭后仍然有效
+            return new MappedZip(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 嵌套在另一个jar中的jar（例如Spring Boot的BOOT-INF/lib），存储的条目不复制
+     */
+    MappedZip nested(Entry entry) throws IOException {
+        return new MappedZip(read(entry));
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    private void readCentralDirectory() throws IOException {
+        int limit = buffer.capacity();
+        int end = -1;
+        for (int position = limit - END_SIZE; position >= Math.max(0, limit - END_SIZE - MAX_COMMENT); position--) {
+            if (buffer.getInt(position) == END_SIGNATURE) {
+                end = position;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("不是zip文件：找不到中央目录");
+        }
+        int count = buffer.getShort(end + 10) & 0xffff;
+        long directory = buffer.getInt(end + 16) & 0xffffffffL;
+        if (count == 0xffff || directory == 0xffffffffL) {
+            throw new IOException("不支持ZIP64");
+        }
+        int position = (int) directory;
+        for (int i = 0; i < count; i++) {
+            if (buffer.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new IOException("中央目录损坏");
+            }
+            int method = buffer.getShort(position + 10) & 0xffff;
+            int compressedSize = buffer.getInt(position + 20);
+            int size = buffer.getInt(position + 24);
+            int nameLength = buffer.getShort(position + 28) & 0xffff;
+            int extraLength = buffer.getShort(position + 30) & 0xffff;
+            int commentLength = buffer.getShort(position + 32) & 0xffff;
+            int localHeader = buffer.getInt(position + 42);
+            byte[] name = new byte[nameLength];
+            buffer.get(position + 46, name);
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, compressedSize, size, localHeader));
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * 条目内容；可在多个线程中同时调用
+     */
+    ByteBuffer read(Entry entry) throws IOException {
+        if (buffer.getInt(entry.localHeader) != LOCAL_SIGNATURE) {
+            throw new IOException("本地文件头损坏：" + entry.name);
+        }
+        int data = entry.localHeader + 30 + (buffer.getShort(entry.localHeader + 26) & 0xffff)
+                + (buffer.getShort(entry.localHeader + 28) & 0xffff);
+        ByteBuffer compressed = buffer.slice(data, entry.compressedSize);
+        if (entry.method == 0) {
+            return compressed;
+        }
+        if (entry.method != 8) {
+            throw new IOException("不支持的压缩方式 " + entry.method + "：" + entry.name);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] content = new byte[entry.size];
+            int length = 0;
+            while (length < content.length && !inflater.finished()) {
+                int read = inflater.inflate(content, length, content.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != content.length) {
+                throw new IOException("条目解压不完整：" + entry.name);
+            }
+            return ByteBuffer.wrap(content);
+        } catch (DataFormatException e) {
+            throw new IOException("条目解压失败：" + entry.name, e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.AcquisitionKind;
+import com.deadlock.detector.model.LockType;
+import com.intellij.psi.*;
+import com.intellij.psi.util.ClassUtil;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 方法加锁摘要
+ * 记录源码方法（含传递调用）获取的锁：synchronized方法入口的隐式监视器、synchronized块和显式lock()，
+ * 以及方法中的条件等待与发信号点（wait/notify、await/signal）和当时持有的锁。
+ * 摘要中的锁ID使用被调方法内部的写法，在调用点再把this、参数和本类字段替换为调用点的表达式，
+ * 例如 a.transfer(b) 中 synchronized(this)/synchronized(other) 分别对应 a 和 b。
+ * 标注&#64;GuardedBy的方法以声明为准：调用者已持有守护锁，方法内再获取它是重入，其他获取都嵌套在它之内。
+ * 没有源码的JDK与库方法查LockSummaryLibrary中预计算的摘要。
+ */
+public class MethodLockSummary {
+    // 传递调用的最大深度
+    private static final int MAX_DEPTH = 6;
+
+    private final Map<PsiMethod, List<Acquisition>> cache = new HashMap<>();
+    private final Set<PsiMethod> inProgress = new HashSet<>();
+    private final Map<PsiMethod, List<ConditionSite>> conditionCache = new HashMap<>();
+    private final Set<PsiMethod> conditionInProgress = new HashSet<>();
+
+    /**
+     * 方法执行期间的一次锁获取
+     */
+    public static class Acquisition {
+        private final String lockId;
+        private final LockType lockType;
+        private final boolean nested;
+        private final AcquisitionKind kind;
+        private final long timeoutMillis;
+        private final boolean retried;
+        private final boolean leaf;
+
+        Acquisition(String lockId, LockType lockType, boolean nested) {
+            this(lockId, lockType, nested, AcquisitionKind.BLOCKING, -1, false, false);
+        }
+
+        Acquisition(String lockId, LockType lockType, boolean nested, AcquisitionKind kind, long timeoutMillis,
+                    boolean retried) {
+            this(lockId, lockType, nested, kind, timeoutMillis, retried, false);
+        }
+
+        private Acquisition(String lockId, LockType lockType, boolean nested, AcquisitionKind kind, long timeoutMillis,
+                            boolean retried, boolean leaf) {
+            this.lockId = lockId;
+            this.lockType = lockType;
+            this.nested = nested;
+            this.kind = kind;
+            this.timeoutMillis = timeoutMillis;
+            this.retried = retried;
+            this.leaf = leaf;
+        }
+
+        /**
+         * 库方法内部获取并释放的锁
+         */
+        static Acquisition leaf(String lockId, LockType lockType) {
+            return new Acquisition(lockId, lockType, false, AcquisitionKind.BLOCKING, -1, false, true);
+        }
+
+        /**
+         * 同一次获取换一个锁ID或嵌套标记
+         */
+        Acquisition with(String newLockId, boolean newNested) {
+            return new Acquisition(newLockId, lockType, newNested, kind, timeoutMillis, retried, leaf);
+        }
+
+        public String getLockId() {
+            return lockId;
+        }
+
+        public LockType getLockType() {
+            return lockType;
+        }
+
+        /**
+         * 获取时方法内部已持有其他锁（在调用点无论是否持锁都构成等待关系）
+         */
+        public boolean isNested() {
+            return nested;
+        }
+
+        public AcquisitionKind getKind() {
+            return kind;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public boolean isRetried() {
+            return retried;
+        }
+
+        /**
+         * 锁在库方法内部获取、返回前释放，期间不回调调用者的代码：调用者会等待它，但不会持有它去等待其他锁
+         */
+        public boolean isLeaf() {
+            return leaf;
+        }
+    }
+
+    /**
+     * 方法执行期间的一次条件等待或发信号
+     */
+    public static class ConditionSite {
+        private final ConditionOperation.Kind kind;
+        private final String signalId;
+        private final String releasedLock;
+        private final List<String> heldLocks;
+        private final PsiElement site;
+
+        ConditionSite(ConditionOperation.Kind kind, String signalId, String releasedLock, List<String> heldLocks,
+                      PsiElement site) {
+            this.kind = kind;
+            this.signalId = signalId;
+            this.releasedLock = releasedLock;
+            this.heldLocks = heldLocks;
+            this.site = site;
+        }
+
+        public ConditionOperation.Kind getKind() {
+            return kind;
+        }
+
+        public String getSignalId() {
+            return signalId;
+        }
+
+        /**
+         * 等待时释放的锁，发信号或无法确定时为null
+         */
+        public String getReleasedLock() {
+            return releasedLock;
+        }
+
+        /**
+         * 方法内部在该点持有的锁（不含调用点已持有的锁）
+         */
+        public List<String> getHeldLocks() {
+            return heldLocks;
+        }
+
+        /**
+         * 所在方法中的源码位置：wait/notify调用本身，或间接执行它的方法调用
+         */
+        public PsiElement getSite() {
+            return site;
+        }
+    }
+
+    /**
+     * 计算调用点会获取的锁，锁ID已替换为调用点的写法；被调方法不在源码中时按库摘要计算
+     */
+    public List<Acquisition> summarize(PsiMethodCallExpression call) {
+        return summarize(call, 0);
+    }
+
+    private List<Acquisition> summarize(PsiMethodCallExpression call, int depth) {
+        PsiMethod callee = call.resolveMethod();
+        if (callee == null) {
+            return Collections.emptyList();
+        }
+        if (callee instanceof PsiCompiledElement || callee.getBody() == null) {
+            return libraryAcquisitions(call, callee);
+        }
+        List<Acquisition> raw = summarizeMethod(callee, depth);
+        if (raw.isEmpty()) {
+            return raw;
+        }
+        List<Acquisition> result = new ArrayList<>();
+        for (Acquisition acquisition : raw) {
+            result.add(acquisition.with(substitute(acquisition.getLockId(), call, callee), acquisition.isNested()));
+        }
+        return result;
+    }
+
+    /**
+     * 查预计算的库摘要；接收者由返回自锁对象的工厂方法（Collections.synchronizedMap等）得到时，
+     * 即使被调方法是接口方法也锁接收者
+     */
+    private static List<Acquisition> libraryAcquisitions(PsiMethodCallExpression call, PsiMethod callee) {
+        List<Acquisition> result = new ArrayList<>();
+        LockSummaryLibrary.MethodEffect effect = libraryEffect(callee);
+        if (effect != null) {
+            for (int i = 0; i < effect.getLockIds().size(); i++) {
+                String lockId = effect.getLockIds().get(i);
+                result.add(Acquisition.leaf(substitute(lockId, call, callee), effect.getLockTypes().get(i)));
+            }
+        }
+        if (result.isEmpty() && !callee.hasModifierProperty(PsiModifier.STATIC)
+                && isLockedObject(call.getMethodExpression().getQualifierExpression())) {
+            result.add(Acquisition.leaf(substitute(LockSummaryLibrary.RECEIVER, call, callee), LockType.SYNCHRONIZED));
+        }
+        return result;
+    }
+
+    private static LockSummaryLibrary.MethodEffect libraryEffect(PsiMethod method) {
+        PsiClass owner = method.getContainingClass();
+        String ownerName = owner != null ? ClassUtil.getJVMClassName(owner) : null;
+        if (ownerName == null) {
+            return null;
+        }
+        return LockSummaryLibrary.get().lookup(ownerName.replace('.', '/'),
+                method.getName() + ClassUtil.getAsmMethodSignature(method));
+    }
+
+    /**
+     * 表达式的值来自返回自锁对象的工厂方法：直接调用，或由这样的调用初始化的变量/字段
+     */
+    private static boolean isLockedObject(PsiExpression expression) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (expression instanceof PsiReferenceExpression) {
+            PsiElement target = ((PsiReferenceExpression) expression).resolve();
+            expression = target instanceof PsiVariable
+                    ? PsiUtil.skipParenthesizedExprDown(((PsiVariable) target).getInitializer()) : null;
+        }
+        if (!(expression instanceof PsiMethodCallExpression)) {
+            return false;
+        }
+        PsiMethod factory = ((PsiMethodCallExpression) expression).resolveMethod();
+        LockSummaryLibrary.MethodEffect effect = factory != null ? libraryEffect(factory) : null;
+        return effect != null && effect.isReturnsLockedObject();
+    }
+
+    /**
+     * 计算方法本身的摘要（锁ID为方法内部写法），递归调用和超出深度的调用按不加锁处理
+     */
+    private List<Acquisition> summarizeMethod(PsiMethod method, int depth) {
+        List<Acquisition> cached = cache.get(method);
+        if (cached != null) {
+            return cached;
+        }
+        if (depth > MAX_DEPTH || !inProgress.add(method)) {
+            return Collections.emptyList();
+        }
+
+        List<Acquisition> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        new LockScopeWalker(true).walk(method, new ArrayList<>(), new LockScopeWalker.Callback() {
+            @Override
+            public void visitAcquire(LockScopeWalker.HeldMonitor acquired, List<LockScopeWalker.HeldMonitor> heldBefore) {
+                if (isDeferred(acquired.getOwner(), method) || isHeld(acquired.getLockId(), heldBefore)) {
+                    return;
+                }
+                LockOperation operation = acquired.getOwner() instanceof PsiMethodCallExpression
+                        ? LockOperation.fromCall((PsiMethodCallExpression) acquired.getOwner()) : null;
+                if (operation != null) {
+                    add(new Acquisition(acquired.getLockId(), acquired.getLockType(), !heldBefore.isEmpty(),
+                            operation.getAcquisitionKind(), operation.getTimeoutMillis(), operation.isRetried()));
+                } else {
+                    add(new Acquisition(acquired.getLockId(), acquired.getLockType(), !heldBefore.isEmpty()));
+                }
+            }
+
+            @Override
+            public void visitCall(PsiMethodCallExpression call, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+                if (isDeferred(call, method)) {
+                    return;
+                }
+                for (Acquisition inner : summarize(call, depth + 1)) {
+                    if (!isHeld(inner.getLockId(), heldMonitors)) {
+                        add(inner.with(inner.getLockId(), inner.isNested() || !heldMonitors.isEmpty()));
+                    }
+                }
+            }
+
+            private void add(Acquisition acquisition) {
+                // 同一把锁只保留一次，嵌套获取优先（它携带等待关系）
+                String key = acquisition.getLockId() + (acquisition.isNested() ? "#nested" : "");
+                if (seen.add(key)) {
+                    result.add(acquisition);
+                }
+            }
+        });
+
+        inProgress.remove(method);
+        // 递归链上的中间结果不完整，只缓存最外层的结果
+        if (inProgress.isEmpty()) {
+            cache.put(method, result);
+        }
+        return result;
+    }
+
+    /**
+     * 计算调用点会执行的条件等待与发信号，ID已替换为调用点的写法
+     */
+    public List<ConditionSite> summarizeConditions(PsiMethodCallExpression call) {
+        return summarizeConditions(call, 0);
+    }
+
+    private List<ConditionSite> summarizeConditions(PsiMethodCallExpression call, int depth) {
+        PsiMethod callee = call.resolveMethod();
+        if (callee == null || callee instanceof PsiCompiledElement || callee.getBody() == null) {
+            return Collections.emptyList();
+        }
+        List<ConditionSite> raw = conditionSitesOf(callee, depth);
+        List<ConditionSite> result = new ArrayList<>();
+        for (ConditionSite site : raw) {
+            String signalTarget = site.getSignalId().substring("Signal_".length());
+            List<String> held = new ArrayList<>();
+            for (String lockId : site.getHeldLocks()) {
+                held.add(substitute(lockId, call, callee));
+            }
+            result.add(new ConditionSite(site.getKind(), "Signal_" + substitute(signalTarget, call, callee),
+                    site.getReleasedLock() != null ? substitute(site.getReleasedLock(), call, callee) : null, held,
+                    site.getSite()));
+        }
+        return result;
+    }
+
+    /**
+     * 遍历方法中的条件操作（含传递调用），调用点持有的锁并入被调方法内部持有的锁
+     */
+    public List<ConditionSite> conditionSitesOf(PsiMethod method) {
+        return conditionSitesOf(method, 0);
+    }
+
+    private List<ConditionSite> conditionSitesOf(PsiMethod method, int depth) {
+        List<ConditionSite> cached = conditionCache.get(method);
+        if (cached != null) {
+            return cached;
+        }
+        if (depth > MAX_DEPTH || !conditionInProgress.add(method)) {
+            return Collections.emptyList();
+        }
+
+        List<ConditionSite> result = new ArrayList<>();
+        new LockScopeWalker(true).walk(method, new ArrayList<>(), (call, heldMonitors) -> {
+            if (isDeferred(call, method)) {
+                return;
+            }
+            List<String> heldIds = new ArrayList<>();
+            for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+                heldIds.add(held.getLockId());
+            }
+            ConditionOperation operation = ConditionOperation.fromCall(call);
+            if (operation != null) {
+                result.add(new ConditionSite(operation.getKind(), operation.getSignalId(),
+                        operation.getReleasedLock(), heldIds, call));
+                return;
+            }
+            for (ConditionSite inner : summarizeConditions(call, depth + 1)) {
+                List<String> held = new ArrayList<>(heldIds);
+                for (String lockId : inner.getHeldLocks()) {
+                    if (!held.contains(lockId)) {
+                        held.add(lockId);
+                    }
+                }
+                result.add(new ConditionSite(inner.getKind(), inner.getSignalId(), inner.getReleasedLock(), held, call));
+            }
+        });
+
+        conditionInProgress.remove(method);
+        if (conditionInProgress.isEmpty()) {
+            conditionCache.put(method, result);
+        }
+        return result;
+    }
+
+    /**
+     * 元素位于方法内的Lambda或内部类中，不在方法执行期间运行
+     */
+    static boolean isDeferred(PsiElement element, PsiMethod method) {
+        PsiElement owner = PsiTreeUtil.getParentOfType(element, PsiLambdaExpression.class, PsiClass.class);
+        return owner != null && PsiTreeUtil.isAncestor(method, owner, true);
+    }
+
+    private static boolean isHeld(String lockId, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+        for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+            if (held.getLockId().equals(lockId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把被调方法内部的锁ID替换为调用点写法：
+     * this → 接收者；参数名 → 实参；本类字段 → 接收者.字段；类锁保持不变
+     */
+    private static String substitute(String lockId, PsiMethodCallExpression call, PsiMethod callee) {
+        if (lockId.startsWith("CLASS_")) {
+            return lockId;
+        }
+        PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        String receiver = qualifier == null || qualifier instanceof PsiThisExpression
+                ? null : qualifier.getText().trim();
+
+        int end = 0;
+        while (end < lockId.length() && Character.isJavaIdentifierPart(lockId.charAt(end))) {
+            end++;
+        }
+        // 读写锁键 rw_readLock 的根是 rw
+        for (String suffix : new String[]{"_readLock", "_writeLock"}) {
+            if (lockId.substring(0, end).endsWith(suffix)) {
+                end -= suffix.length();
+            }
+        }
+        String root = lockId.substring(0, end);
+        String rest = lockId.substring(end);
+
+        if ("this".equals(root)) {
+            if (receiver == null) {
+                return lockId;
+            }
+            // this.lock → receiver.lock
+            return receiver + rest;
+        }
+        PsiParameter[] parameters = callee.getParameterList().getParameters();
+        PsiExpression[] args = call.getArgumentList().getExpressions();
+        for (int i = 0; i < parameters.length && i < args.length; i++) {
+            if (parameters[i].getName().equals(root) && !parameters[i].isVarArgs()) {
+                PsiExpression arg = PsiUtil.skipParenthesizedExprDown(args[i]);
+                return arg != null ? arg.getText().trim() + rest : lockId;
+            }
+        }
+        PsiClass containingClass = callee.getContainingClass();
+        if (receiver != null && containingClass != null && !root.isEmpty()) {
+            PsiField field = containingClass.findFieldByName(root, true);
+            if (field != null && !field.hasModifierProperty(PsiModifier.STATIC)) {
+                return receiver + "." + lockId;
+            }
+        }
+        return lockId;
+    }
+}
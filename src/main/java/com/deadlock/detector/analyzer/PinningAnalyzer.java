@@ -0,0 +1,224 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 虚拟线程钉住（pinning）分析器
+ * 复用锁作用域遍历，找出持有监视器期间发生的阻塞调用。
+ * JDK 21中虚拟线程在synchronized内阻塞会钉住载体线程，按嵌套深度和虚拟线程可达性排序输出。
+ */
+public class PinningAnalyzer {
+    private final BlockingCallClassifier classifier = new BlockingCallClassifier();
+
+    /**
+     * 一处持锁阻塞调用
+     */
+    public static class PinningIssue {
+        private final PsiMethodCallExpression call;
+        private final BlockingCallClassifier.Category category;
+        private final List<LockScopeWalker.HeldMonitor> heldMonitors;
+        private final boolean reachableFromVirtualThread;
+
+        PinningIssue(PsiMethodCallExpression call, BlockingCallClassifier.Category category,
+                     List<LockScopeWalker.HeldMonitor> heldMonitors, boolean reachableFromVirtualThread) {
+            this.call = call;
+            this.category = category;
+            this.heldMonitors = heldMonitors;
+            this.reachableFromVirtualThread = reachableFromVirtualThread;
+        }
+
+        public PsiMethodCallExpression getCall() {
+            return call;
+        }
+
+        public BlockingCallClassifier.Category getCategory() {
+            return category;
+        }
+
+        public List<LockScopeWalker.HeldMonitor> getHeldMonitors() {
+            return heldMonitors;
+        }
+
+        public int getNestingDepth() {
+            return heldMonitors.size();
+        }
+
+        public boolean isReachableFromVirtualThread() {
+            return reachableFromVirtualThread;
+        }
+    }
+
+    /**
+     * 核心入口：分析文件，返回按严重程度排序的钉住问题
+     */
+    public List<PinningIssue> analyze(PsiFile psiFile) {
+        Set<PsiElement> reachable = collectVirtualThreadReachable(psiFile);
+        List<PinningIssue> issues = new ArrayList<>();
+
+        new LockScopeWalker().walkFile(psiFile, (call, heldLocks) -> {
+            // 只有内置监视器会钉住载体线程，显式Lock不会
+            List<LockScopeWalker.HeldMonitor> heldMonitors = new ArrayList<>();
+            for (LockScopeWalker.HeldMonitor held : heldLocks) {
+                if (held.isMonitor()) {
+                    heldMonitors.add(held);
+                }
+            }
+            if (heldMonitors.isEmpty()) {
+                return;
+            }
+            BlockingCallClassifier.Category category = classifier.classify(call);
+            if (category == null || !category.isBlocking()) {
+                return;
+            }
+            // Object.wait()释放的是自身监视器，但仍会钉住载体线程
+            issues.add(new PinningIssue(call, category, heldMonitors, isReachable(call, reachable)));
+        });
+
+        // 虚拟线程可达的优先，其次嵌套越深越靠前
+        issues.sort(Comparator.comparing(PinningIssue::isReachableFromVirtualThread).reversed()
+                .thenComparing(Comparator.comparingInt(PinningIssue::getNestingDepth).reversed())
+                .thenComparingInt(issue -> issue.getCall().getTextOffset()));
+        System.out.println("Found " + issues.size() + " blocking calls inside monitors");
+        return issues;
+    }
+
+    /**
+     * 收集虚拟线程根（Lambda/匿名类/方法），以及从根出发在本文件内可调用到的方法
+     */
+    private Set<PsiElement> collectVirtualThreadReachable(PsiFile psiFile) {
+        Set<PsiElement> reachable = new HashSet<>();
+        Deque<PsiElement> worklist = new ArrayDeque<>();
+
+        Set<PsiVariable> virtualExecutors = new HashSet<>();
+        for (PsiVariable variable : PsiTreeUtil.findChildrenOfType(psiFile, PsiVariable.class)) {
+            PsiExpression initializer = PsiUtil.skipParenthesizedExprDown(variable.getInitializer());
+            if (initializer instanceof PsiMethodCallExpression
+                    && "newVirtualThreadPerTaskExecutor".equals(((PsiMethodCallExpression) initializer)
+                    .getMethodExpression().getReferenceName())) {
+                virtualExecutors.add(variable);
+            }
+        }
+
+        Collection<PsiMethodCallExpression> calls = PsiTreeUtil.findChildrenOfType(psiFile, PsiMethodCallExpression.class);
+        for (PsiMethodCallExpression call : calls) {
+            if (!isVirtualThreadLaunch(call, virtualExecutors)) {
+                continue;
+            }
+            PsiExpression[] args = call.getArgumentList().getExpressions();
+            if (args.length > 0) {
+                PsiElement root = resolveRoot(args[0]);
+                if (root != null && reachable.add(root)) {
+                    worklist.add(root);
+                }
+            }
+        }
+
+        // 沿本文件内的调用关系扩展可达方法
+        while (!worklist.isEmpty()) {
+            PsiElement element = worklist.poll();
+            for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(element, PsiMethodCallExpression.class)) {
+                PsiMethod callee = call.resolveMethod();
+                if (callee != null && callee.getContainingFile() == psiFile && reachable.add(callee)) {
+                    worklist.add(callee);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * 判断是否为虚拟线程启动：Thread.startVirtualThread(r)、Thread.ofVirtual()...start(r)/unstarted(r)、
+     * 以及虚拟线程执行器上的submit/execute
+     */
+    private boolean isVirtualThreadLaunch(PsiMethodCallExpression call, Set<PsiVariable> virtualExecutors) {
+        String methodName = call.getMethodExpression().getReferenceName();
+        PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        if (methodName == null || qualifier == null) {
+            return false;
+        }
+        if ("startVirtualThread".equals(methodName)) {
+            return true;
+        }
+        if ("start".equals(methodName) || "unstarted".equals(methodName)) {
+            return qualifier.getText().contains("ofVirtual()");
+        }
+        if (("submit".equals(methodName) || "execute".equals(methodName)) && qualifier instanceof PsiReferenceExpression) {
+            return virtualExecutors.contains(((PsiReferenceExpression) qualifier).resolve());
+        }
+        return false;
+    }
+
+    private PsiElement resolveRoot(PsiExpression taskExpr) {
+        taskExpr = PsiUtil.skipParenthesizedExprDown(taskExpr);
+        if (taskExpr instanceof PsiLambdaExpression) {
+            return taskExpr;
+        }
+        if (taskExpr instanceof PsiNewExpression && ((PsiNewExpression) taskExpr).getAnonymousClass() != null) {
+            return ((PsiNewExpression) taskExpr).getAnonymousClass();
+        }
+        if (taskExpr instanceof PsiMethodReferenceExpression) {
+            PsiElement resolved = ((PsiMethodReferenceExpression) taskExpr).resolve();
+            return resolved instanceof PsiMethod ? resolved : null;
+        }
+        return null;
+    }
+
+    /**
+     * 调用所在的方法或Lambda（沿父节点向上）是否属于可达集合
+     */
+    private boolean isReachable(PsiElement element, Set<PsiElement> reachable) {
+        PsiElement current = element;
+        while (current != null && !(current instanceof PsiFile)) {
+            if (reachable.contains(current)) {
+                return true;
+            }
+            current = current.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * 生成文本报告
+     */
+    public String formatReport(List<PinningIssue> issues) {
+        if (issues.isEmpty()) {
+            return "未发现持有监视器期间的阻塞调用";
+        }
+        StringBuilder report = new StringBuilder("持有监视器期间的阻塞调用（可能钉住虚拟线程的载体线程）：\n");
+        for (int i = 0; i < issues.size(); i++) {
+            PinningIssue issue = issues.get(i);
+            report.append(String.format("\n%d. %s%s，嵌套深度 %d，第 %d 行\n", i + 1,
+                    issue.isReachableFromVirtualThread() ? "[虚拟线程可达] " : "",
+                    issue.getCategory().getDescription(), issue.getNestingDepth(), lineNumber(issue.getCall())));
+            report.append("   调用：").append(issue.getCall().getText()).append("\n");
+            report.append("   持有锁：");
+            for (int j = 0; j < issue.getHeldMonitors().size(); j++) {
+                report.append(issue.getHeldMonitors().get(j).getLockId());
+                if (j < issue.getHeldMonitors().size() - 1) {
+                    report.append(" → ");
+                }
+            }
+            report.append("\n");
+        }
+        report.append("\n建议：将synchronized替换为ReentrantLock（可使用快速修复），或将阻塞操作移出临界区\n");
+        return report.toString();
+    }
+
+    static int lineNumber(PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        Document document = file != null ? PsiDocumentManager.getInstance(file.getProject()).getDocument(file) : null;
+        return document != null ? document.getLineNumber(element.getTextOffset()) + 1 : -1;
+    }
+}
@@ -0,0 +1,94 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.SourceAnchor;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.util.Segment;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiFileRange;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 源码位置表
+ * 文件按VirtualFile分配编号；每个不同的位置（文件+起始偏移量）保存一个SmartPsiFileRange，
+ * 文件编辑后仍指向原来的代码。图中的边只记录（文件编号, 位置编号, 行号），同一位置的多条边共用一个指针。
+ */
+public class SourceAnchors {
+    private final Map<VirtualFile, Integer> fileIds = new HashMap<>();
+    private final List<String> fileNames = new ArrayList<>();
+    // 文件编号<<32|偏移量 -> 位置编号
+    private final Map<Long, Integer> siteIds = new HashMap<>();
+    private final List<SmartPsiFileRange> sites = new ArrayList<>();
+
+    /**
+     * 元素起始位置的锚点；不在物理文件中的元素（例如由文本生成的虚拟方法）返回null
+     */
+    public SourceAnchor anchor(PsiElement element) {
+        if (element == null || !element.isPhysical() || element.getContainingFile() == null) {
+            return null;
+        }
+        PsiFile file = element.getContainingFile();
+        VirtualFile virtualFile = file.getViewProvider().getVirtualFile();
+        Integer fileId = fileIds.get(virtualFile);
+        if (fileId == null) {
+            fileId = fileNames.size();
+            fileIds.put(virtualFile, fileId);
+            fileNames.add(file.getName());
+        }
+        int offset = element.getTextRange().getStartOffset();
+        long key = (long) fileId << 32 | offset;
+        Integer siteId = siteIds.get(key);
+        if (siteId == null) {
+            siteId = sites.size();
+            siteIds.put(key, siteId);
+            sites.add(SmartPointerManager.getInstance(file.getProject())
+                    .createSmartPsiFileRangePointer(file, element.getTextRange()));
+        }
+        Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+        int line = document != null && offset <= document.getTextLength() ? document.getLineNumber(offset) + 1 : 0;
+        return new SourceAnchor(fileId, siteId, line);
+    }
+
+    /**
+     * 显示用的位置文本，例如 Bank.java:42；行号按位置当前所在的行计算
+     */
+    public String format(SourceAnchor anchor) {
+        if (anchor == null || anchor.getSiteId() >= sites.size()) {
+            return "未知位置";
+        }
+        SmartPsiFileRange site = sites.get(anchor.getSiteId());
+        Segment range = site.getRange();
+        VirtualFile virtualFile = site.getVirtualFile();
+        Document document = virtualFile != null ? FileDocumentManager.getInstance().getDocument(virtualFile) : null;
+        int line = range != null && document != null && range.getStartOffset() <= document.getTextLength()
+                ? document.getLineNumber(range.getStartOffset()) + 1 : anchor.getLine();
+        return fileNames.get(anchor.getFileId()) + ":" + line;
+    }
+
+    /**
+     * 在编辑器中打开锚点所在的位置
+     * @return 文件已不存在或位置所在的代码已被删除时返回false
+     */
+    public boolean navigate(SourceAnchor anchor) {
+        if (anchor == null || anchor.getSiteId() >= sites.size()) {
+            return false;
+        }
+        SmartPsiFileRange site = sites.get(anchor.getSiteId());
+        Segment range = site.getRange();
+        VirtualFile virtualFile = site.getVirtualFile();
+        if (range == null || virtualFile == null || !virtualFile.isValid()) {
+            return false;
+        }
+        new OpenFileDescriptor(site.getProject(), virtualFile, range.getStartOffset()).navigate(true);
+        return true;
+    }
+}
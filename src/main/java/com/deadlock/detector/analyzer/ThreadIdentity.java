@@ -0,0 +1,135 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.kotlin.psi.KtLambdaExpression;
+import org.jetbrains.kotlin.psi.KtNamedDeclaration;
+import org.jetbrains.kotlin.psi.KtObjectLiteralExpression;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 线程与任务的稳定标识
+ * 由线程根的全限定位置生成，不含文本偏移和运行计数，同一份代码在每次分析、无关编辑之后得到相同的ID：
+ * 具名类为类的全限定名；Lambda与匿名类为"所在类#所在方法(参数类型)"加上在该方法中的序号，
+ * 例如 com.bank.Bank#main(String[])$lambda2。
+ */
+public class ThreadIdentity {
+    private final Set<String> used = new HashSet<>();
+
+    /**
+     * 分配ID，同一次分析中重复的描述追加 ~n 区分
+     */
+    public String allocate(String prefix, String descriptor) {
+        String id = prefix + descriptor;
+        int n = 1;
+        while (!used.add(id)) {
+            n++;
+            id = prefix + descriptor + "~" + n;
+        }
+        return id;
+    }
+
+    /**
+     * Java线程根（具名类、匿名类或Lambda）的描述
+     */
+    public static String describe(PsiElement root) {
+        if (root instanceof PsiClass && !(root instanceof PsiAnonymousClass)) {
+            PsiClass psiClass = (PsiClass) root;
+            return psiClass.getQualifiedName() != null ? psiClass.getQualifiedName() : String.valueOf(psiClass.getName());
+        }
+        PsiElement owner = ownerOf(root);
+        String kind = root instanceof PsiLambdaExpression ? "$lambda" : "$anon";
+        Class<? extends PsiElement> type = root instanceof PsiLambdaExpression ? PsiLambdaExpression.class : PsiAnonymousClass.class;
+        return describeOwner(owner) + kind + ordinal(owner, root, type);
+    }
+
+    /**
+     * 元素所在方法/初始化块的描述，用于任务等没有独立线程根的元素
+     */
+    public static String describeSite(PsiElement element) {
+        return describeOwner(ownerOf(element));
+    }
+
+    /**
+     * 元素在所在方法中同类元素里的序号（从1开始，按源码顺序）
+     */
+    public static int ordinal(PsiElement owner, PsiElement element, Class<? extends PsiElement> type) {
+        if (owner == null) {
+            return 1;
+        }
+        int index = 0;
+        for (PsiElement candidate : PsiTreeUtil.findChildrenOfType(owner, type)) {
+            index++;
+            if (candidate == element) {
+                return index;
+            }
+        }
+        return index + 1;
+    }
+
+    /**
+     * 最近的具名方法、初始化块或字段（跳过Lambda与匿名类）
+     */
+    public static PsiElement ownerOf(PsiElement element) {
+        PsiElement current = element.getParent();
+        while (current != null && !(current instanceof PsiFile)) {
+            if (current instanceof PsiMethod || current instanceof PsiClassInitializer || current instanceof PsiField) {
+                PsiClass containingClass = ((PsiMember) current).getContainingClass();
+                if (!(containingClass instanceof PsiAnonymousClass)) {
+                    return current;
+                }
+            }
+            current = current.getParent();
+        }
+        return element.getContainingFile();
+    }
+
+    private static String describeOwner(PsiElement owner) {
+        if (owner instanceof PsiMember) {
+            PsiMember member = (PsiMember) owner;
+            PsiClass containingClass = member.getContainingClass();
+            String className = containingClass != null && containingClass.getQualifiedName() != null
+                    ? containingClass.getQualifiedName() : "?";
+            if (member instanceof PsiMethod) {
+                StringBuilder signature = new StringBuilder(className).append('#').append(member.getName()).append('(');
+                PsiParameter[] parameters = ((PsiMethod) member).getParameterList().getParameters();
+                for (int i = 0; i < parameters.length; i++) {
+                    signature.append(i > 0 ? "," : "").append(parameters[i].getType().getPresentableText());
+                }
+                return signature.append(')').toString();
+            }
+            if (member instanceof PsiClassInitializer) {
+                return className + (member.hasModifierProperty(PsiModifier.STATIC) ? "#<clinit>" : "#<init>");
+            }
+            return className + "#" + member.getName();
+        }
+        return owner instanceof PsiFile ? ((PsiFile) owner).getName() : "?";
+    }
+
+    /**
+     * Kotlin线程根的描述：具名函数为其全限定名，Lambda与对象表达式为所在声明加序号
+     */
+    public static String describeKotlin(PsiElement root) {
+        if (root instanceof KtNamedDeclaration && ((KtNamedDeclaration) root).getFqName() != null) {
+            return ((KtNamedDeclaration) root).getFqName().asString();
+        }
+        // 局部声明和对象表达式成员没有全限定名，继续向外查找
+        KtNamedDeclaration owner = PsiTreeUtil.getParentOfType(root, KtNamedDeclaration.class, true);
+        while (owner != null && owner.getFqName() == null) {
+            owner = PsiTreeUtil.getParentOfType(owner, KtNamedDeclaration.class, true);
+        }
+        String ownerName = owner != null && owner.getFqName() != null
+                ? owner.getFqName().asString() : root.getContainingFile().getName();
+        PsiElement scope = owner != null ? owner : root.getContainingFile();
+        if (root instanceof KtLambdaExpression) {
+            return ownerName + "$lambda" + ordinal(scope, root, KtLambdaExpression.class);
+        }
+        KtObjectLiteralExpression literal = PsiTreeUtil.getParentOfType(root, KtObjectLiteralExpression.class, false);
+        if (literal != null) {
+            return ownerName + "$object" + ordinal(scope, literal, KtObjectLiteralExpression.class);
+        }
+        return ownerName + "$" + root.getClass().getSimpleName();
+    }
+}
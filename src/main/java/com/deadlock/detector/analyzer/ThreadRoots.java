@@ -0,0 +1,120 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 线程根解析工具
+ * 线程根是线程实际执行的代码：new Thread(...)中的Lambda、匿名Runnable/匿名Thread子类，或Thread/Runnable的子类。
+ * 同时提供Thread对象的启动点start()与汇合点join()的查找。
+ */
+public final class ThreadRoots {
+
+    private ThreadRoots() {
+    }
+
+    /**
+     * 变量的初始化值以及文件中对它的赋值
+     */
+    public static List<PsiExpression> assignedValues(PsiVariable variable) {
+        List<PsiExpression> values = new ArrayList<>();
+        if (variable.getInitializer() != null) {
+            values.add(variable.getInitializer());
+        }
+        PsiFile file = variable.getContainingFile();
+        if (file != null) {
+            for (PsiAssignmentExpression assignment : PsiTreeUtil.findChildrenOfType(file, PsiAssignmentExpression.class)) {
+                PsiExpression lhs = PsiUtil.skipParenthesizedExprDown(assignment.getLExpression());
+                if (lhs instanceof PsiReferenceExpression && ((PsiReferenceExpression) lhs).resolve() == variable
+                        && assignment.getRExpression() != null) {
+                    values.add(assignment.getRExpression());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 线程创建表达式对应的线程根：new Thread(lambda/匿名Runnable/new MyRunnable())、匿名Thread子类或new MyThread()
+     */
+    public static PsiElement threadRootOf(PsiExpression creation) {
+        creation = PsiUtil.skipParenthesizedExprDown(creation);
+        if (!(creation instanceof PsiNewExpression)) {
+            return null;
+        }
+        PsiNewExpression newExpr = (PsiNewExpression) creation;
+        if (newExpr.getAnonymousClass() != null) {
+            return newExpr.getAnonymousClass();
+        }
+        PsiJavaCodeReferenceElement classRef = newExpr.getClassReference();
+        PsiElement createdClass = classRef != null ? classRef.resolve() : null;
+        if (!(createdClass instanceof PsiClass)) {
+            return null;
+        }
+        if (!"java.lang.Thread".equals(((PsiClass) createdClass).getQualifiedName())) {
+            // Thread或Runnable的子类，run方法在该类中
+            return createdClass;
+        }
+        PsiExpressionList argList = newExpr.getArgumentList();
+        if (argList == null || argList.getExpressions().length == 0) {
+            return null;
+        }
+        PsiExpression task = PsiUtil.skipParenthesizedExprDown(argList.getExpressions()[0]);
+        if (task instanceof PsiLambdaExpression) {
+            return task;
+        }
+        return task instanceof PsiNewExpression ? threadRootOf(task) : null;
+    }
+
+    /**
+     * 是否为创建Thread对象（或其子类）的new表达式
+     */
+    public static boolean isThreadCreation(PsiNewExpression newExpr) {
+        return InheritanceUtil.isInheritor(newExpr.getType(), "java.lang.Thread");
+    }
+
+    /**
+     * 线程对象上的指定无参调用：new Thread(...).start() 直接链式调用，或保存线程对象的变量上的调用
+     * @param methodName start或join（带超时的join会自行返回，不计入）
+     */
+    public static List<PsiMethodCallExpression> findThreadCalls(PsiNewExpression creation, String methodName) {
+        List<PsiMethodCallExpression> result = new ArrayList<>();
+        PsiElement parent = PsiUtil.skipParenthesizedExprUp(creation.getParent());
+        if (parent instanceof PsiReferenceExpression && parent.getParent() instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) parent.getParent();
+            if (methodName.equals(call.getMethodExpression().getReferenceName())
+                    && call.getArgumentList().getExpressions().length == 0) {
+                result.add(call);
+            }
+            return result;
+        }
+
+        PsiVariable variable = null;
+        if (parent instanceof PsiVariable) {
+            variable = (PsiVariable) parent;
+        } else if (parent instanceof PsiAssignmentExpression) {
+            PsiExpression lhs = PsiUtil.skipParenthesizedExprDown(((PsiAssignmentExpression) parent).getLExpression());
+            if (lhs instanceof PsiReferenceExpression && ((PsiReferenceExpression) lhs).resolve() instanceof PsiVariable) {
+                variable = (PsiVariable) ((PsiReferenceExpression) lhs).resolve();
+            }
+        }
+        if (variable == null || creation.getContainingFile() == null) {
+            return result;
+        }
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(creation.getContainingFile(), PsiMethodCallExpression.class)) {
+            PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+            if (methodName.equals(call.getMethodExpression().getReferenceName())
+                    && call.getArgumentList().getExpressions().length == 0
+                    && qualifier instanceof PsiReferenceExpression
+                    && ((PsiReferenceExpression) qualifier).resolve() == variable) {
+                result.add(call);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,33 @@
+package com.deadlock.detector.detector;
+
+/**
+ * 死锁环的分类
+ * 环上所有等待都是阻塞获取时为真正的死锁；只要有一个线程会超时或立即放弃，环最终会被打破，
+ * 但放弃后在循环中重试的获取在高负载下会演变为反复失败的重试风暴（活锁）。
+ */
+public class CycleClassification {
+    public enum Severity {
+        HARD_DEADLOCK,
+        TIMEOUT_RESOLVED,
+        LIVELOCK_RISK
+    }
+
+    private final Severity severity;
+    private final long resolveMillis;
+
+    public CycleClassification(Severity severity, long resolveMillis) {
+        this.severity = severity;
+        this.resolveMillis = resolveMillis;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * 环上最早放弃的等待的超时（毫秒），即环最长持续的时间；死锁或无法估计时为-1
+     */
+    public long getResolveMillis() {
+        return resolveMillis;
+    }
+}
@@ -2,15 +2,39 @@ package com.deadlock.detector.detector;
 
 import com.deadlock.detector.model.GraphNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class DeadlockDetectionResult {
     private final boolean hasDeadlock;
     private final List<List<GraphNode>> cycles;
+    // 没有成环但永远不会被唤醒的等待：[等待线程, 等待的信号, 已阻塞的唤醒者...]
+    private final List<List<GraphNode>> hangs;
+    // 与cycles一一对应的分类
+    private final List<CycleClassification> classifications;
+    // 与cycles一一对应的源码证据链
+    private final List<List<WitnessStep>> witnesses;
 
     public DeadlockDetectionResult(boolean hasDeadlock, List<List<GraphNode>> cycles) {
+        this(hasDeadlock, cycles, new ArrayList<>());
+    }
+
+    public DeadlockDetectionResult(boolean hasDeadlock, List<List<GraphNode>> cycles, List<List<GraphNode>> hangs) {
+        this(hasDeadlock, cycles, hangs, new ArrayList<>());
+    }
+
+    public DeadlockDetectionResult(boolean hasDeadlock, List<List<GraphNode>> cycles, List<List<GraphNode>> hangs,
+                                   List<CycleClassification> classifications) {
+        this(hasDeadlock, cycles, hangs, classifications, new ArrayList<>());
+    }
+
+    public DeadlockDetectionResult(boolean hasDeadlock, List<List<GraphNode>> cycles, List<List<GraphNode>> hangs,
+                                   List<CycleClassification> classifications, List<List<WitnessStep>> witnesses) {
         this.hasDeadlock = hasDeadlock;
         this.cycles = cycles;
+        this.hangs = hangs;
+        this.classifications = classifications;
+        this.witnesses = witnesses;
     }
 
     public boolean isHasDeadlock() {
@@ -20,4 +44,62 @@ public class DeadlockDetectionResult {
     public List<List<GraphNode>> getCycles() {
         return cycles;
     }
-}
\ No newline at end of file
+
+    public List<List<GraphNode>> getHangs() {
+        return hangs;
+    }
+
+    /**
+     * 第index个环的分类，未分类的环按死锁处理
+     */
+    public CycleClassification getClassification(int index) {
+        return index < classifications.size()
+                ? classifications.get(index) : new CycleClassification(CycleClassification.Severity.HARD_DEADLOCK, -1);
+    }
+
+    /**
+     * 第index个环每一步的源码位置，未记录时为空列表
+     */
+    public List<WitnessStep> getWitness(int index) {
+        return index < witnesses.size() ? witnesses.get(index) : new ArrayList<>();
+    }
+
+    /**
+     * 所有等待都会无限阻塞的环的证据链，与getHardDeadlockCycles()一一对应
+     */
+    public List<List<WitnessStep>> getHardDeadlockWitnesses() {
+        List<List<WitnessStep>> hard = new ArrayList<>();
+        for (int i = 0; i < cycles.size(); i++) {
+            if (getClassification(i).getSeverity() == CycleClassification.Severity.HARD_DEADLOCK) {
+                hard.add(getWitness(i));
+            }
+        }
+        return hard;
+    }
+
+    /**
+     * 所有等待都会无限阻塞的环
+     */
+    public List<List<GraphNode>> getHardDeadlockCycles() {
+        List<List<GraphNode>> hard = new ArrayList<>();
+        for (int i = 0; i < cycles.size(); i++) {
+            if (getClassification(i).getSeverity() == CycleClassification.Severity.HARD_DEADLOCK) {
+                hard.add(cycles.get(i));
+            }
+        }
+        return hard;
+    }
+
+    /**
+     * 会因超时打破、或存在活锁风险的环
+     */
+    public List<List<GraphNode>> getTimedCycles() {
+        List<List<GraphNode>> timed = new ArrayList<>();
+        for (int i = 0; i < cycles.size(); i++) {
+            if (getClassification(i).getSeverity() != CycleClassification.Severity.HARD_DEADLOCK) {
+                timed.add(cycles.get(i));
+            }
+        }
+        return timed;
+    }
+}
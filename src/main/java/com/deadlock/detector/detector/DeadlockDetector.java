@@ -1,17 +1,91 @@
 package com.deadlock.detector.detector;
+import com.deadlock.detector.model.AccessMode;
+import com.deadlock.detector.model.AcquisitionKind;
+import com.deadlock.detector.model.EdgeInfo;
 import com.deadlock.detector.model.GraphNode;
 import com.deadlock.detector.model.LockType;
 import com.deadlock.detector.model.NodeType;
+import com.deadlock.detector.model.SourceAnchor;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class DeadlockDetector {
+    // 枚举的简单环数量上限，防止环数量爆炸
+    private static final int MAX_CYCLES = 10000;
+
     private final Map<String, GraphNode> nodes;
+    // 条件变量：等待点与发信号点
+    private final List<SignalWait> signalWaits = new ArrayList<>();
+    private final Map<String, Map<String, List<Set<String>>>> signalProviders = new LinkedHashMap<>();
+    // 在分析范围之外（非线程入口代码）也会发出的信号
+    private final Set<String> externalSignals = new HashSet<>();
+    // 等待信号期间释放的锁：线程ID|信号ID -> 锁ID
+    private final Map<String, Set<String>> releasedOnWait = new ConcurrentHashMap<>();
+    // 自身阻塞（读锁升级等）：[线程ID, 资源ID]
+    private final List<String[]> selfDeadlocks = new ArrayList<>();
+    // 不会并发执行的线程对（先后关系），双向记录：线程ID -> 线程ID集合
+    private final Map<String, Set<String>> orderedProcesses = new HashMap<>();
+    // 会运行多个实例的线程或任务（循环中启动、多处创建或重复提交）
+    private final Set<String> manyInstances = new HashSet<>();
+    // 多实例线程的另一个实例：线程ID -> 实例相关锁的根标识符互换表
+    private final Map<String, Map<String, String>> instanceSwaps = new LinkedHashMap<>();
+
+    /**
+     * 一次条件等待：线程等待信号，期间释放released，仍持有heldLocks
+     */
+    private static class SignalWait {
+        private final String processId;
+        private final String signalId;
+        private final Set<String> heldLocks;
+
+        SignalWait(String processId, String signalId, Set<String> heldLocks) {
+            this.processId = processId;
+            this.signalId = signalId;
+            this.heldLocks = heldLocks;
+        }
+    }
+
+    /**
+     * 一次环枚举的状态：当前起点、路径与Johnson算法的阻塞标记
+     */
+    private static class CycleSearch {
+        private final Map<GraphNode, Integer> index = new HashMap<>();
+        private final Map<GraphNode, Integer> components;
+        private final List<GraphNode> path = new ArrayList<>();
+        private final Set<GraphNode> blocked = new HashSet<>();
+        private final Map<GraphNode, Set<GraphNode>> blockedBy = new HashMap<>();
+        private final List<List<GraphNode>> cycles = new ArrayList<>();
+        private GraphNode start;
+
+        CycleSearch(List<GraphNode> order, Map<GraphNode, Integer> components) {
+            for (GraphNode node : order) {
+                index.put(node, index.size());
+            }
+            this.components = components;
+        }
+
+        void start(GraphNode node) {
+            start = node;
+            blocked.clear();
+            blockedBy.clear();
+        }
+
+        boolean inScope(GraphNode node) {
+            Integer position = index.get(node);
+            return position != null && position >= index.get(start)
+                    && components.get(node).equals(components.get(start));
+        }
+    }
 
     public DeadlockDetector() {
         this.nodes = new ConcurrentHashMap<>();
@@ -19,8 +93,8 @@ public class DeadlockDetector {
 
     public void addProcessHoldsResource(String processId, String resourceId, LockType lockType) {
         GraphNode process = getOrCreateNode(processId, NodeType.PROCESS, null);
-        GraphNode resource = getOrCreateNode(resourceId, NodeType.RESOURCE, lockType);
-        resource.addEdge(process);
+        GraphNode resource = getOrCreateNode(resourceIdOf(resourceId), NodeType.RESOURCE, lockType);
+        resource.addEdge(process, new EdgeInfo(accessModeOf(lockType)));
     }
 
     public void addProcessHoldsResource(String processId, String resourceId) {
@@ -28,15 +102,296 @@ public class DeadlockDetector {
     }
 
     public void addProcessWaitsForResource(String processId, String resourceId, LockType lockType) {
+        addProcessWaitsForResource(processId, resourceId, lockType, AcquisitionKind.BLOCKING, -1, false);
+    }
+
+    /**
+     * 记录带获取方式的等待：带超时或非阻塞的获取不会无限等待
+     * @param timeoutMillis 超时时长（毫秒），未知时为-1
+     * @param retried 获取失败后是否在循环中重试
+     */
+    public void addProcessWaitsForResource(String processId, String resourceId, LockType lockType,
+                                           AcquisitionKind kind, long timeoutMillis, boolean retried) {
         GraphNode process = getOrCreateNode(processId, NodeType.PROCESS, null);
-        GraphNode resource = getOrCreateNode(resourceId, NodeType.RESOURCE, lockType);
-        process.addEdge(resource);
+        GraphNode resource = getOrCreateNode(resourceIdOf(resourceId), NodeType.RESOURCE, lockType);
+        process.addEdge(resource, new EdgeInfo(accessModeOf(lockType), kind, timeoutMillis, retried));
+    }
+
+    /**
+     * 记录运行时观测到的持有：owner在其他线程等待时持有该锁
+     */
+    public void addObservedHold(String processId, String resourceId, LockType lockType, long count) {
+        GraphNode process = getOrCreateNode(processId, NodeType.PROCESS, null);
+        GraphNode resource = getOrCreateNode(resourceIdOf(resourceId), NodeType.RESOURCE, lockType);
+        EdgeInfo info = new EdgeInfo(accessModeOf(lockType));
+        info.addContention(0, count);
+        resource.addEdge(process, info);
+    }
+
+    /**
+     * 记录运行时观测到的等待及累计竞争时长（纳秒）
+     */
+    public void addObservedWait(String processId, String resourceId, LockType lockType, long contentionNanos, long count) {
+        GraphNode process = getOrCreateNode(processId, NodeType.PROCESS, null);
+        GraphNode resource = getOrCreateNode(resourceIdOf(resourceId), NodeType.RESOURCE, lockType);
+        EdgeInfo info = new EdgeInfo(accessModeOf(lockType));
+        info.addContention(contentionNanos, count);
+        process.addEdge(resource, info);
+    }
+
+    /**
+     * 同一线程在持有读锁时请求写锁（ReentrantReadWriteLock不支持升级），
+     * 或再次请求不可重入的StampedLock：线程自身永久阻塞
+     */
+    public void addSelfDeadlock(String processId, String lockKey, LockType lockType) {
+        addProcessWaitsForResource(processId, lockKey, lockType);
+        selfDeadlocks.add(new String[]{processId, resourceIdOf(lockKey)});
+    }
+
+    /**
+     * 读写锁的两种模式是同一个资源：rw_readLock / rw_writeLock 都对应资源 rw
+     */
+    static String resourceIdOf(String lockKey) {
+        for (String suffix : new String[]{"_readLock", "_writeLock"}) {
+            if (lockKey.endsWith(suffix) && lockKey.length() > suffix.length()) {
+                return lockKey.substring(0, lockKey.length() - suffix.length());
+            }
+        }
+        return lockKey;
+    }
+
+    private static AccessMode accessModeOf(LockType lockType) {
+        return lockType != null ? lockType.getAccessMode() : AccessMode.EXCLUSIVE;
     }
 
     public void addProcessWaitsForResource(String processId, String resourceId) {
         addProcessWaitsForResource(processId, resourceId, null);
     }
 
+    /**
+     * 删除持有边，供实时监控增量更新图
+     */
+    public void removeProcessHoldsResource(String processId, String resourceId) {
+        GraphNode process = nodes.get(processId);
+        GraphNode resource = nodes.get(resourceIdOf(resourceId));
+        if (process != null && resource != null) {
+            resource.removeEdge(process);
+        }
+    }
+
+    /**
+     * 删除等待边，供实时监控增量更新图
+     */
+    public void removeProcessWaitsForResource(String processId, String resourceId) {
+        GraphNode process = nodes.get(processId);
+        GraphNode resource = nodes.get(resourceIdOf(resourceId));
+        if (process != null && resource != null) {
+            process.removeEdge(resource);
+        }
+    }
+
+    /**
+     * 删除节点，调用方保证已没有边指向它
+     */
+    public void removeNode(String id) {
+        nodes.remove(id);
+    }
+
+    /**
+     * 注册线程池资源：池中每个工作线程是一个槽位，capacity为可同时运行的任务数
+     */
+    public void addThreadPool(String poolId, int capacity) {
+        GraphNode pool = getOrCreateNode(poolId, NodeType.RESOURCE, LockType.POOL_SLOT);
+        pool.setCapacity(capacity);
+    }
+
+    /**
+     * 任务运行时占用线程池的一个槽位
+     */
+    public void addTaskRunsOnPool(String taskId, String poolId) {
+        addProcessHoldsResource(taskId, poolId, LockType.POOL_SLOT);
+    }
+
+    /**
+     * 任务在线程池队列中等待空闲槽位
+     */
+    public void addTaskQueuedOnPool(String taskId, String poolId) {
+        addProcessWaitsForResource(taskId, poolId, LockType.POOL_SLOT);
+    }
+
+    /**
+     * waiterId阻塞在taskId的Future.get()/join()上：Future在任务完成前一直由任务持有
+     */
+    public void addTaskJoinsFuture(String waiterId, String taskId) {
+        String futureId = "Future_" + taskId;
+        addProcessHoldsResource(taskId, futureId, LockType.FUTURE);
+        addProcessWaitsForResource(waiterId, futureId, LockType.FUTURE);
+    }
+
+    /**
+     * 线程在wait()/await()中等待信号：只释放所属的锁releasedLockId，heldLockIds中的其他锁在等待期间仍被持有
+     */
+    public void addSignalWait(String processId, String signalId, String releasedLockId, List<String> heldLockIds) {
+        addWait(processId, signalId, LockType.CONDITION, releasedLockId, heldLockIds);
+    }
+
+    /**
+     * 线程发出信号（notify/signal），发信号前需要先获得requiredLockIds中的锁
+     */
+    public void addSignalProvider(String processId, String signalId, List<String> requiredLockIds) {
+        addProvider(processId, signalId, LockType.CONDITION, requiredLockIds);
+    }
+
+    /**
+     * 线程调用LockSupport.park()，等待其他线程unpark自己，期间不释放任何锁
+     */
+    public void addPark(String processId, List<String> heldLockIds) {
+        addWait(processId, "LockSupport_" + processId, LockType.LOCK_SUPPORT, null, heldLockIds);
+    }
+
+    /**
+     * wakerId调用LockSupport.unpark(targetId)；unpark发生前需要先获得requiredLockIds中的锁
+     */
+    public void addUnpark(String wakerId, String targetId, List<String> requiredLockIds) {
+        addProvider(wakerId, "LockSupport_" + targetId, LockType.LOCK_SUPPORT, requiredLockIds);
+    }
+
+    /**
+     * 信号在分析的线程之外也会发出（例如主线程或普通方法中），该信号不会被判定为丢失
+     */
+    public void addExternalSignalProvider(String signalId) {
+        externalSignals.add(signalId);
+    }
+
+    private void addWait(String processId, String signalId, LockType lockType, String releasedLockId,
+                         List<String> heldLockIds) {
+        addProcessWaitsForResource(processId, signalId, lockType);
+        Set<String> stillHeld = new HashSet<>();
+        for (String lockId : heldLockIds) {
+            stillHeld.add(resourceIdOf(lockId));
+        }
+        if (releasedLockId != null) {
+            stillHeld.remove(resourceIdOf(releasedLockId));
+            releasedOnWait.computeIfAbsent(processId + "|" + signalId, k -> new HashSet<>())
+                    .add(resourceIdOf(releasedLockId));
+        }
+        signalWaits.add(new SignalWait(processId, signalId, stillHeld));
+    }
+
+    private void addProvider(String processId, String signalId, LockType lockType, List<String> requiredLockIds) {
+        GraphNode signal = getOrCreateNode(signalId, NodeType.RESOURCE, lockType);
+        GraphNode process = getOrCreateNode(processId, NodeType.PROCESS, null);
+        if (!signal.getOutgoingEdges().contains(process)) {
+            signal.addEdge(process);
+        }
+        Set<String> required = new HashSet<>();
+        for (String lockId : requiredLockIds) {
+            required.add(resourceIdOf(lockId));
+        }
+        signalProviders.computeIfAbsent(signalId, k -> new LinkedHashMap<>())
+                .computeIfAbsent(processId, k -> new ArrayList<>())
+                .add(required);
+    }
+
+    /**
+     * 除等待者自己外的发信号者。LockSupport的许可可以由线程预先发给自己，此时自己也算唤醒者
+     */
+    private Set<String> otherProviders(SignalWait wait) {
+        Set<String> providers = new HashSet<>(signalProviders.getOrDefault(wait.signalId, new LinkedHashMap<>()).keySet());
+        GraphNode signal = nodes.get(wait.signalId);
+        if (signal == null || signal.getLockType() != LockType.LOCK_SUPPORT) {
+            providers.remove(wait.processId);
+        }
+        return providers;
+    }
+
+    /**
+     * 处理条件等待：
+     * 1. 等待者在等待期间仍持有的锁若是发信号者每个发信号点都需要的，发信号者等待该锁（持锁等待导致的死锁）
+     * 2. 没有任何（其他）发信号者的，记为信号丢失导致的挂起
+     */
+    private List<List<GraphNode>> applySignalWaits() {
+        List<List<GraphNode>> hangs = new ArrayList<>();
+        for (SignalWait wait : signalWaits) {
+            Map<String, List<Set<String>>> providers = signalProviders.getOrDefault(wait.signalId, new LinkedHashMap<>());
+            Set<String> others = otherProviders(wait);
+            for (String providerId : others) {
+                // 只要有一个发信号点不需要该锁，发信号者就能从那里唤醒等待者
+                Set<String> alwaysRequired = null;
+                for (Set<String> required : providers.get(providerId)) {
+                    if (alwaysRequired == null) {
+                        alwaysRequired = new HashSet<>(required);
+                    } else {
+                        alwaysRequired.retainAll(required);
+                    }
+                }
+                for (String lockId : alwaysRequired) {
+                    if (wait.heldLocks.contains(lockId)) {
+                        System.out.println("Signal provider " + providerId + " needs " + lockId
+                                + " held by waiting " + wait.processId);
+                        GraphNode process = nodes.get(providerId);
+                        GraphNode lock = getOrCreateNode(lockId, NodeType.RESOURCE, null);
+                        if (!process.getOutgoingEdges().contains(lock)) {
+                            process.addEdge(lock);
+                        }
+                    }
+                }
+            }
+            if (others.isEmpty() && !externalSignals.contains(wait.signalId)) {
+                System.out.println("Missed signal: " + wait.processId + " waits for " + wait.signalId);
+                List<GraphNode> hang = new ArrayList<>();
+                hang.add(nodes.get(wait.processId));
+                hang.add(nodes.get(wait.signalId));
+                hangs.add(hang);
+            }
+        }
+        return hangs;
+    }
+
+    /**
+     * 唤醒者全部处于死锁环中（或自身已挂起）的等待同样永远不会返回，迭代到不动点
+     */
+    private void propagateBlockedWakers(List<List<GraphNode>> cycles, List<List<GraphNode>> hangs) {
+        Set<String> blocked = new HashSet<>();
+        for (List<GraphNode> cycle : cycles) {
+            for (GraphNode node : cycle) {
+                if (node.getType() == NodeType.PROCESS) {
+                    blocked.add(node.getId());
+                }
+            }
+        }
+        Set<SignalWait> hung = new HashSet<>();
+        for (List<GraphNode> hang : hangs) {
+            blocked.add(hang.get(0).getId());
+            for (SignalWait wait : signalWaits) {
+                if (wait.processId.equals(hang.get(0).getId()) && wait.signalId.equals(hang.get(1).getId())) {
+                    hung.add(wait);
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (SignalWait wait : signalWaits) {
+                Set<String> others = otherProviders(wait);
+                if (hung.contains(wait) || others.isEmpty() || externalSignals.contains(wait.signalId)
+                        || !blocked.containsAll(others)) {
+                    continue;
+                }
+                System.out.println("Wakers of " + wait.processId + " are all blocked: " + others);
+                List<GraphNode> hang = new ArrayList<>();
+                hang.add(nodes.get(wait.processId));
+                hang.add(nodes.get(wait.signalId));
+                for (String providerId : others) {
+                    hang.add(nodes.get(providerId));
+                }
+                hangs.add(hang);
+                hung.add(wait);
+                changed |= blocked.add(wait.processId);
+            }
+        }
+    }
+
     private GraphNode getOrCreateNode(String id, NodeType type, LockType lockType) {
         return nodes.computeIfAbsent(id, k -> new GraphNode(k, type, lockType));
     }
@@ -53,54 +408,357 @@ public class DeadlockDetector {
             }
         }
         
-        Set<GraphNode> visited = new HashSet<>();
-        Set<GraphNode> recursionStack = new HashSet<>();
+        materializeInstanceShadows();
+        List<List<GraphNode>> hangs = applySignalWaits();
+        for (String[] selfDeadlock : selfDeadlocks) {
+            List<GraphNode> hang = new ArrayList<>();
+            hang.add(nodes.get(selfDeadlock[0]));
+            hang.add(nodes.get(selfDeadlock[1]));
+            hangs.add(hang);
+        }
+
         List<List<GraphNode>> cycles = new ArrayList<>();
+        for (List<GraphNode> cycle : findCycles()) {
+            System.out.println("  Cycle found: " + cycleToString(cycle));
+            if (cycle.size() >= 4 && isValidDeadlockCycle(cycle)) {
+                System.out.println("  Valid deadlock cycle, adding to result");
+                cycles.add(cycle);
+            } else {
+                System.out.println("  Invalid deadlock cycle, skipping");
+            }
+        }
 
-        for (GraphNode node : nodes.values()) {
-            if (!visited.contains(node)) {
-                detectCycle(node, visited, recursionStack, new ArrayList<>(), cycles);
-            }
-        }
-
-        System.out.println("Detected cycles: " + cycles.size());
-        return new DeadlockDetectionResult(!cycles.isEmpty(), cycles);
-    }
-
-    private void detectCycle(GraphNode current, Set<GraphNode> visited, Set<GraphNode> recursionStack,
-                             List<GraphNode> path, List<List<GraphNode>> cycles) {
-        System.out.println("Visiting node: " + current.getId() + " (" + current.getType() + ")");
-        visited.add(current);
-        recursionStack.add(current);
-        path.add(current);
-
-        for (GraphNode neighbor : current.getOutgoingEdges()) {
-            System.out.println("  Neighbor: " + neighbor.getId() + " (" + neighbor.getType() + ")");
-            if (!visited.contains(neighbor)) {
-                detectCycle(neighbor, visited, recursionStack, path, cycles);
-            } else if (recursionStack.contains(neighbor)) {
-                System.out.println("  Found cycle: " + neighbor.getId() + " is in recursion stack");
-                int cycleStartIndex = path.indexOf(neighbor);
-                if (cycleStartIndex != -1) {
-                    List<GraphNode> cycle = new ArrayList<>(path.subList(cycleStartIndex, path.size()));
-                    cycle.add(neighbor);
-                    
-                    System.out.println("  Cycle found: " + cycleToString(cycle));
-                    
-                    if (cycle.size() >= 4 && isValidDeadlockCycle(cycle)) {
-                        System.out.println("  Valid deadlock cycle, adding to result");
-                        cycles.add(cycle);
-                    } else {
-                        System.out.println("  Invalid deadlock cycle, skipping");
+        propagateBlockedWakers(cycles, hangs);
+
+        List<CycleClassification> classifications = new ArrayList<>();
+        List<List<WitnessStep>> witnesses = new ArrayList<>();
+        boolean hasHardDeadlock = false;
+        for (List<GraphNode> cycle : cycles) {
+            witnesses.add(buildWitness(cycle));
+            CycleClassification classification = classifyCycle(cycle);
+            System.out.println("  Cycle " + cycleToString(cycle) + ": " + classification.getSeverity());
+            hasHardDeadlock |= classification.getSeverity() == CycleClassification.Severity.HARD_DEADLOCK;
+            classifications.add(classification);
+        }
+
+        System.out.println("Detected cycles: " + cycles.size() + ", hangs: " + hangs.size());
+        return new DeadlockDetectionResult(hasHardDeadlock, cycles, hangs, classifications, witnesses);
+    }
+
+    /**
+     * 按环上等待边的获取方式分类：全部阻塞为死锁；否则最早放弃的等待打破环，
+     * 放弃后在循环中重试的获取有活锁风险
+     */
+    private CycleClassification classifyCycle(List<GraphNode> cycle) {
+        boolean allBlocking = true;
+        boolean retried = false;
+        long resolveMillis = -1;
+        for (int i = 0; i < cycle.size() - 1; i++) {
+            GraphNode from = cycle.get(i);
+            if (from.getType() != NodeType.PROCESS) {
+                continue;
+            }
+            EdgeInfo info = from.getEdgeInfo(cycle.get(i + 1));
+            if (info.getKind() == AcquisitionKind.BLOCKING) {
+                continue;
+            }
+            allBlocking = false;
+            retried |= info.isRetried();
+            long timeout = info.getKind() == AcquisitionKind.NON_BLOCKING ? 0 : info.getTimeoutMillis();
+            if (timeout >= 0 && (resolveMillis < 0 || timeout < resolveMillis)) {
+                resolveMillis = timeout;
+            }
+        }
+        if (allBlocking) {
+            return new CycleClassification(CycleClassification.Severity.HARD_DEADLOCK, -1);
+        }
+        return new CycleClassification(retried ? CycleClassification.Severity.LIVELOCK_RISK
+                : CycleClassification.Severity.TIMEOUT_RESOLVED, resolveMillis);
+    }
+
+    /**
+     * 枚举图中所有的简单环（Johnson算法）：按ID顺序依次以每个节点为起点，只走同一强连通分量内排在它之后的节点。
+     * 阻塞标记只对当前起点的搜索有效，一个环被判为无效不会让经过相同节点的其他环被漏掉；
+     * 共享模式、先后关系等过滤都在完整的环上进行（见isValidDeadlockCycle）
+     */
+    private List<List<GraphNode>> findCycles() {
+        List<GraphNode> order = new ArrayList<>(nodes.values());
+        order.sort(Comparator.comparing(GraphNode::getId));
+        CycleSearch search = new CycleSearch(order, stronglyConnectedComponents(order));
+        for (GraphNode start : order) {
+            if (search.cycles.size() >= MAX_CYCLES) {
+                System.out.println("Too many cycles, stopping after " + MAX_CYCLES);
+                break;
+            }
+            search.start(start);
+            circuit(start, search);
+        }
+        return search.cycles;
+    }
+
+    private boolean circuit(GraphNode node, CycleSearch search) {
+        boolean closed = false;
+        search.path.add(node);
+        search.blocked.add(node);
+        for (GraphNode next : node.getOutgoingEdges()) {
+            if (search.cycles.size() >= MAX_CYCLES) {
+                break;
+            }
+            if (!search.inScope(next)) {
+                continue;
+            }
+            if (next == search.start) {
+                List<GraphNode> cycle = new ArrayList<>(search.path);
+                cycle.add(next);
+                search.cycles.add(cycle);
+                closed = true;
+            } else if (!search.blocked.contains(next) && circuit(next, search)) {
+                closed = true;
+            }
+        }
+        if (closed) {
+            unblock(node, search);
+        } else {
+            for (GraphNode next : node.getOutgoingEdges()) {
+                if (search.inScope(next)) {
+                    search.blockedBy.computeIfAbsent(next, k -> new HashSet<>()).add(node);
+                }
+            }
+        }
+        search.path.remove(search.path.size() - 1);
+        return closed;
+    }
+
+    private void unblock(GraphNode node, CycleSearch search) {
+        Deque<GraphNode> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            GraphNode current = pending.pop();
+            search.blocked.remove(current);
+            Set<GraphNode> waiting = search.blockedBy.remove(current);
+            if (waiting != null) {
+                for (GraphNode other : waiting) {
+                    if (search.blocked.contains(other)) {
+                        pending.push(other);
                     }
                 }
             }
         }
+    }
 
-        recursionStack.remove(current);
-        path.remove(path.size() - 1);
+    /**
+     * 强连通分量（迭代的Tarjan算法）：节点 -> 所在分量的编号
+     */
+    private Map<GraphNode, Integer> stronglyConnectedComponents(List<GraphNode> order) {
+        Map<GraphNode, Integer> discovery = new HashMap<>();
+        Map<GraphNode, Integer> low = new HashMap<>();
+        Map<GraphNode, Integer> nextEdge = new HashMap<>();
+        Map<GraphNode, Integer> component = new HashMap<>();
+        Deque<GraphNode> stack = new ArrayDeque<>();
+        Set<GraphNode> onStack = new HashSet<>();
+        for (GraphNode root : order) {
+            if (discovery.containsKey(root)) {
+                continue;
+            }
+            Deque<GraphNode> callStack = new ArrayDeque<>();
+            callStack.push(root);
+            discovery.put(root, discovery.size());
+            low.put(root, discovery.get(root));
+            nextEdge.put(root, 0);
+            stack.push(root);
+            onStack.add(root);
+            while (!callStack.isEmpty()) {
+                GraphNode node = callStack.peek();
+                int edge = nextEdge.get(node);
+                if (edge < node.getOutgoingEdges().size()) {
+                    nextEdge.put(node, edge + 1);
+                    GraphNode next = node.getOutgoingEdges().get(edge);
+                    if (!discovery.containsKey(next)) {
+                        discovery.put(next, discovery.size());
+                        low.put(next, discovery.get(next));
+                        nextEdge.put(next, 0);
+                        stack.push(next);
+                        onStack.add(next);
+                        callStack.push(next);
+                    } else if (onStack.contains(next)) {
+                        low.put(node, Math.min(low.get(node), discovery.get(next)));
+                    }
+                    continue;
+                }
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    GraphNode parent = callStack.peek();
+                    low.put(parent, Math.min(low.get(parent), low.get(node)));
+                }
+                if (low.get(node).equals(discovery.get(node))) {
+                    GraphNode member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.put(member, discovery.get(node));
+                    } while (member != node);
+                }
+            }
+        }
+        return component;
     }
     
+    /**
+     * waiter → resource → holder 两条边都是共享模式（例如都是读锁），waiter不会被holder阻塞
+     */
+    private boolean isSharedLink(GraphNode waiter, GraphNode resource, GraphNode holder) {
+        return waiter.getType() == NodeType.PROCESS && resource.getType() == NodeType.RESOURCE
+                && waiter.getEdgeInfo(resource).getMode() == AccessMode.SHARED
+                && resource.getEdgeInfo(holder).getMode() == AccessMode.SHARED;
+    }
+
+    /**
+     * 记录线程或任务的源码位置（线程根）
+     */
+    public void anchorProcess(String processId, SourceAnchor anchor) {
+        GraphNode process = nodes.get(processId);
+        if (process != null && process.getAnchor() == null) {
+            process.setAnchor(anchor);
+        }
+    }
+
+    /**
+     * 记录持有边（资源→线程）的源码位置
+     */
+    public void anchorHold(String processId, String resourceId, SourceAnchor site) {
+        GraphNode process = nodes.get(processId);
+        GraphNode resource = nodes.get(resourceIdOf(resourceId));
+        if (process != null && resource != null) {
+            resource.anchorEdge(process, site);
+        }
+    }
+
+    /**
+     * 记录等待边（线程→资源）的源码位置
+     */
+    public void anchorWait(String processId, String resourceId, SourceAnchor site) {
+        GraphNode process = nodes.get(processId);
+        GraphNode resource = nodes.get(resourceIdOf(resourceId));
+        if (process != null && resource != null) {
+            process.anchorEdge(resource, site);
+        }
+    }
+
+    /**
+     * 环上每一步的源码位置
+     */
+    private List<WitnessStep> buildWitness(List<GraphNode> cycle) {
+        List<WitnessStep> steps = new ArrayList<>();
+        for (int i = 0; i < cycle.size() - 1; i++) {
+            GraphNode from = cycle.get(i);
+            GraphNode to = cycle.get(i + 1);
+            steps.add(new WitnessStep(from, to, from.getEdgeInfo(to).getSite()));
+        }
+        return steps;
+    }
+
+    /**
+     * 标记线程或任务会运行多个实例
+     * @param instanceSwap 实例相关的锁根标识符在另一个实例中的对应关系（如 from↔to），为空时不生成第二个实例
+     */
+    public void addManyInstances(String processId, Map<String, String> instanceSwap) {
+        manyInstances.add(processId);
+        if (!instanceSwap.isEmpty()) {
+            instanceSwaps.put(processId, instanceSwap);
+        }
+    }
+
+    /**
+     * 为多实例线程生成一个代表"另一个实例"的进程节点：复制原线程的锁边，实例相关的锁按互换表替换。
+     * 只生成一个影子实例，图不随实例数增长；锁边替换后与原线程完全相同时不生成。
+     */
+    private void materializeInstanceShadows() {
+        for (Map.Entry<String, Map<String, String>> entry : instanceSwaps.entrySet()) {
+            GraphNode process = nodes.get(entry.getKey());
+            if (process == null) {
+                continue;
+            }
+            Map<String, String> swap = entry.getValue();
+            List<GraphNode[]> waits = new ArrayList<>();
+            List<GraphNode[]> holds = new ArrayList<>();
+            boolean differs = false;
+            for (GraphNode resource : process.getOutgoingEdges()) {
+                if (isInstanceCopyable(resource)) {
+                    waits.add(new GraphNode[]{resource, shadowResource(resource, swap)});
+                    differs |= waits.get(waits.size() - 1)[1] != resource;
+                }
+            }
+            for (GraphNode resource : new ArrayList<>(nodes.values())) {
+                if (resource.getType() == NodeType.RESOURCE && resource.getOutgoingEdges().contains(process)
+                        && isInstanceCopyable(resource)) {
+                    holds.add(new GraphNode[]{resource, shadowResource(resource, swap)});
+                    differs |= holds.get(holds.size() - 1)[1] != resource;
+                }
+            }
+            if (!differs) {
+                continue;
+            }
+            String shadowId = entry.getKey() + "#2";
+            GraphNode shadow = getOrCreateNode(shadowId, NodeType.PROCESS, null);
+            for (GraphNode[] wait : waits) {
+                EdgeInfo info = process.getEdgeInfo(wait[0]);
+                EdgeInfo copy = new EdgeInfo(info.getMode(), info.getKind(), info.getTimeoutMillis(), info.isRetried());
+                copy.setSite(info.getSite());
+                shadow.addEdge(wait[1], copy);
+            }
+            for (GraphNode[] hold : holds) {
+                EdgeInfo info = hold[0].getEdgeInfo(process);
+                EdgeInfo copy = new EdgeInfo(info.getMode());
+                copy.setSite(info.getSite());
+                hold[1].addEdge(shadow, copy);
+            }
+            shadow.setAnchor(process.getAnchor());
+            manyInstances.add(shadowId);
+            Set<String> ordered = orderedProcesses.get(entry.getKey());
+            if (ordered != null) {
+                for (String other : new ArrayList<>(ordered)) {
+                    addHappensBefore(other, shadowId);
+                }
+            }
+            System.out.println("Instance shadow: " + shadowId + " with " + swap);
+        }
+    }
+
+    /**
+     * 条件变量、LockSupport与Future绑定到具体线程，不复制到另一个实例
+     */
+    private boolean isInstanceCopyable(GraphNode resource) {
+        LockType lockType = resource.getLockType();
+        return lockType != LockType.CONDITION && lockType != LockType.LOCK_SUPPORT && lockType != LockType.FUTURE;
+    }
+
+    private GraphNode shadowResource(GraphNode resource, Map<String, String> swap) {
+        String id = resource.getId();
+        String prefix = id.startsWith("this.") ? "this." : "";
+        int end = prefix.length();
+        while (end < id.length() && Character.isJavaIdentifierPart(id.charAt(end))) {
+            end++;
+        }
+        String replacement = swap.get(id.substring(prefix.length(), end));
+        if (replacement == null) {
+            return resource;
+        }
+        return getOrCreateNode(prefix + replacement + id.substring(end), NodeType.RESOURCE, resource.getLockType());
+    }
+
+    /**
+     * 记录先后关系：before结束后after才开始，两者不会并发
+     */
+    public void addHappensBefore(String beforeProcessId, String afterProcessId) {
+        orderedProcesses.computeIfAbsent(beforeProcessId, k -> new HashSet<>()).add(afterProcessId);
+        orderedProcesses.computeIfAbsent(afterProcessId, k -> new HashSet<>()).add(beforeProcessId);
+    }
+
+    private boolean isOrdered(String processId, String otherProcessId) {
+        Set<String> ordered = orderedProcesses.get(processId);
+        return ordered != null && ordered.contains(otherProcessId);
+    }
+
     private String cycleToString(List<GraphNode> cycle) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < cycle.size(); i++) {
@@ -127,7 +785,84 @@ public class DeadlockDetector {
                 processIds.add(node.getId());
             }
         }
-        return processIds.size() >= 2;
+        if (processIds.size() < 2) {
+            return false;
+        }
+        // 环上的线程必须能同时运行
+        for (String processId : processIds) {
+            for (String otherProcessId : processIds) {
+                if (isOrdered(processId, otherProcessId)) {
+                    System.out.println("  " + processId + " never runs with " + otherProcessId + ", skipping");
+                    return false;
+                }
+            }
+        }
+        // 条件等待会释放所属的锁：resource -> P -> Signal 中P等待期间并不持有resource
+        int length = cycle.size() - 1;
+        for (int i = 0; i < length; i++) {
+            if (isSharedLink(cycle.get(i), cycle.get((i + 1) % length), cycle.get((i + 2) % length))) {
+                System.out.println("  Only shared acquisitions on " + cycle.get((i + 1) % length).getId() + ", skipping");
+                return false;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            GraphNode resource = cycle.get(i);
+            GraphNode process = cycle.get((i + 1) % length);
+            GraphNode next = cycle.get((i + 2) % length);
+            Set<String> released = releasedOnWait.get(process.getId() + "|" + next.getId());
+            if (resource.getType() == NodeType.RESOURCE && released != null && released.contains(resource.getId())) {
+                System.out.println("  " + process.getId() + " releases " + resource.getId() + " while waiting, skipping");
+                return false;
+            }
+        }
+        // 线程池槽位：只有阻塞中的占用者数量达到池容量时才会饥饿
+        for (GraphNode node : cycle) {
+            if (node.getLockType() == LockType.POOL_SLOT && !isPoolStarved(node)) {
+                System.out.println("  Pool " + node.getId() + " has free slots, skipping");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断线程池是否会饥饿：占用槽位且等待链又回到这个池的任务数 >= 池容量
+     * 还在队列中等待槽位的任务（例如被join的子任务）没有运行，不占用槽位
+     * 重复提交的任务实例数没有上限，只要它的等待回到这个池就能占满整个池
+     */
+    private boolean isPoolStarved(GraphNode pool) {
+        Set<GraphNode> blockedHolders = new HashSet<>();
+        for (GraphNode holder : pool.getOutgoingEdges()) {
+            if (holder.getOutgoingEdges().isEmpty() || holder.getOutgoingEdges().contains(pool)) {
+                continue;
+            }
+            if (!waitsOnPool(holder, pool)) {
+                continue;
+            }
+            if (manyInstances.contains(holder.getId())) {
+                return true;
+            }
+            blockedHolders.add(holder);
+        }
+        return blockedHolders.size() >= pool.getCapacity();
+    }
+
+    /**
+     * 占用者的等待是否最终落到同一个池上，例如 任务 -> Future_子任务 -> 子任务 -> 池
+     */
+    private boolean waitsOnPool(GraphNode holder, GraphNode pool) {
+        Set<GraphNode> seen = new HashSet<>();
+        Deque<GraphNode> pending = new ArrayDeque<>(holder.getOutgoingEdges());
+        while (!pending.isEmpty()) {
+            GraphNode node = pending.poll();
+            if (node == pool) {
+                return true;
+            }
+            if (node != holder && seen.add(node)) {
+                pending.addAll(node.getOutgoingEdges());
+            }
+        }
+        return false;
     }
 
     public String formatDeadlockInfo(List<List<GraphNode>> cycles) {
@@ -143,7 +878,8 @@ public class DeadlockDetector {
             for (int j = 0; j < cycle.size(); j++) {
                 GraphNode node = cycle.get(j);
                 String nodeDesc = String.format("%s(%s)", node.getId(),
-                        node.getType() == NodeType.PROCESS ? "进程" : "资源");
+                        node.getType() == NodeType.PROCESS
+                                ? (manyInstances.contains(node.getId()) ? "进程，多实例" : "进程") : "资源");
                 result.append(nodeDesc);
 
                 if (j < cycle.size() - 1) {
@@ -156,12 +892,84 @@ public class DeadlockDetector {
         return result.toString();
     }
 
+    /**
+     * 格式化会因超时打破或有活锁风险的环
+     */
+    public String formatTimedCycleInfo(DeadlockDetectionResult result) {
+        StringBuilder info = new StringBuilder();
+        List<List<GraphNode>> cycles = result.getCycles();
+        int index = 0;
+        for (int i = 0; i < cycles.size(); i++) {
+            CycleClassification classification = result.getClassification(i);
+            if (classification.getSeverity() == CycleClassification.Severity.HARD_DEADLOCK) {
+                continue;
+            }
+            index++;
+            info.append(String.format("%s %d: %s\n",
+                    classification.getSeverity() == CycleClassification.Severity.LIVELOCK_RISK ? "活锁风险" : "超时打破",
+                    index, cycleToString(cycles.get(i))));
+            info.append(classification.getResolveMillis() >= 0
+                    ? String.format("  环最多持续约 %d 毫秒后由超时或tryLock失败的线程打破\n", classification.getResolveMillis())
+                    : "  环会由带超时的获取打破，超时时长无法从常量参数确定\n");
+            if (classification.getSeverity() == CycleClassification.Severity.LIVELOCK_RISK) {
+                info.append("  获取失败后在循环中立即重试，高负载下可能反复冲突，建议统一加锁顺序或加入随机退避\n");
+            }
+        }
+        return index == 0 ? "未检测到超时或活锁风险" : "以下锁环由带超时/非阻塞的获取组成，不会永久死锁：\n" + info;
+    }
+
+    /**
+     * 格式化信号丢失导致的挂起
+     */
+    public String formatHangInfo(List<List<GraphNode>> hangs) {
+        if (hangs.isEmpty()) {
+            return "未检测到挂起";
+        }
+        StringBuilder result = new StringBuilder("检测到可能永久挂起的等待：\n");
+        for (int i = 0; i < hangs.size(); i++) {
+            List<GraphNode> hang = hangs.get(i);
+            LockType waitedType = hang.get(1).getLockType();
+            if (waitedType == LockType.READ_LOCK || waitedType == LockType.WRITE_LOCK) {
+                result.append(String.format("挂起 %d: %s 持有 %s 的读锁时请求写锁，读写锁不支持升级，线程自身永久阻塞\n",
+                        i + 1, hang.get(0).getId(), hang.get(1).getId()));
+                continue;
+            }
+            if (waitedType == LockType.STAMPED_READ_LOCK || waitedType == LockType.STAMPED_WRITE_LOCK) {
+                result.append(String.format("挂起 %d: %s 持有 StampedLock %s 时再次请求与之冲突的模式，StampedLock不可重入，线程自身永久阻塞\n",
+                        i + 1, hang.get(0).getId(), hang.get(1).getId()));
+                continue;
+            }
+            result.append(String.format("挂起 %d: %s 等待 %s，", i + 1, hang.get(0).getId(), hang.get(1).getId()));
+            if (hang.size() == 2) {
+                result.append("但没有其他线程会发出该信号\n");
+                continue;
+            }
+            result.append("能唤醒它的线程 ");
+            for (int j = 2; j < hang.size(); j++) {
+                result.append(hang.get(j).getId());
+                if (j < hang.size() - 1) {
+                    result.append("、");
+                }
+            }
+            result.append(" 自身处于死锁或挂起中\n");
+        }
+        return result.toString();
+    }
+
     public Map<String, GraphNode> getNodes() {
         return nodes;
     }
 
     public void reset() {
         nodes.clear();
+        signalWaits.clear();
+        signalProviders.clear();
+        externalSignals.clear();
+        releasedOnWait.clear();
+        selfDeadlocks.clear();
+        orderedProcesses.clear();
+        manyInstances.clear();
+        instanceSwaps.clear();
     }
 
     /**
@@ -219,6 +1027,7 @@ public class DeadlockDetector {
             
             // 嵌套锁建议
             suggestions.append("   - 考虑重构代码，避免嵌套获取这组锁\n");
+            suggestions.append("   - 在\"代码位置\"中跳转到嵌套加锁处，按Alt+Enter选择\"按统一顺序重排嵌套锁\"或\"按identityHashCode顺序加锁\"自动改写\n");
         }
         
         return suggestions.toString();
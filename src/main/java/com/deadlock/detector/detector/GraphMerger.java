@@ -0,0 +1,449 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.EdgeInfo;
+import com.deadlock.detector.model.EdgeOrigin;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.model.IdInterner;
+import com.deadlock.detector.model.LockType;
+import com.deadlock.detector.model.LongIntMap;
+import com.deadlock.detector.model.NodeType;
+import com.deadlock.detector.model.SourceAnchor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 合并静态分析与运行时观测（线程转储、JFR、Agent事件日志）的图
+ * 两边都投影为加锁顺序边"持有A时获取B"，锁ID驻留为句柄后以两个句柄拼成的long为键做哈希连接：
+ * 先用静态边建表，再逐条探测运行时边，命中的边两边都标记为运行时确认，其余为仅静态分析或仅运行时。
+ * 运行时的锁是对象身份（类型@地址），按两种方式对应到静态分析中的锁表达式：
+ * 运行时边带加锁位置时，按"类名:行号"找在同一位置加锁的静态锁；类锁按类名对应（Bank.class@0x.. ↔ CLASS_Bank.class）。
+ * 对应不上的运行时锁保留原ID。合并结果只包含锁的持有与等待，条件等待、线程池等关系不参与合并。
+ * 只有确实嵌套的运行时边参与连接：Agent事件日志记录的加锁顺序边，以及单份线程转储中同一线程的持有×等待；
+ * JFR等只有竞争记录的图照常并入，但不会把任何边标记为运行时确认。
+ * 运行时的线程按来源区分，不同记录中同名的线程是不同的节点，避免拼出不存在的等待链；
+ * 事件日志的每条加锁顺序边各是一个线程节点，同一线程的各条边互相标记为先后执行，不会两两交叉成环。
+ */
+public class GraphMerger {
+    private final IdInterner locks = new IdInterner();
+    private final List<DeadlockDetector> staticGraphs = new ArrayList<>();
+    private final List<Function<SourceAnchor, String>> siteFormats = new ArrayList<>();
+    private final List<RuntimeGraph> runtimeGraphs = new ArrayList<>();
+    // 带位置的运行时加锁顺序边：边的线程节点、持有的锁、获取的锁、持有位置、获取位置、记录它的线程（多个线程时为null）
+    private final List<String[]> runtimeOrderEdges = new ArrayList<>();
+
+    // 连接结果：边键 → 1
+    private final LongIntMap staticEdges = new LongIntMap();
+    private final LongIntMap confirmedEdges = new LongIntMap();
+    // 位置键 → 在该位置加锁的静态锁句柄，同一位置有多把锁时为-1
+    private final Map<String, Integer> siteLocks = new HashMap<>();
+    // 类名（Bank.class）→ 静态类锁句柄
+    private final Map<String, Integer> classLocks = new HashMap<>();
+    // 运行时锁ID → 合并图中的锁ID
+    private final Map<String, String> runtimeLocks = new HashMap<>();
+    private int runtimeEdgeCount;
+    private int matchedBySite;
+    private int matchedByClass;
+
+    /**
+     * 一张运行时图及其来源
+     */
+    private static class RuntimeGraph {
+        private final DeadlockDetector detector;
+        private final String source;
+        // 持有与等待是否同时发生，是时才构成加锁顺序边
+        private final boolean snapshot;
+
+        RuntimeGraph(DeadlockDetector detector, String source, boolean snapshot) {
+            this.detector = detector;
+            this.source = source;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * @param siteFormat 把静态分析的源码位置格式化为"文件名:行号"
+     */
+    public void addStatic(DeadlockDetector detector, Function<SourceAnchor, String> siteFormat) {
+        staticGraphs.add(detector);
+        siteFormats.add(siteFormat);
+    }
+
+    /**
+     * 只有竞争记录的运行时图（如JFR），持有与等待不一定同时发生，不参与连接
+     * @param source 来源名称（文件名），用于区分不同记录中的同名线程
+     */
+    public void addRuntime(DeadlockDetector detector, String source) {
+        runtimeGraphs.add(new RuntimeGraph(detector, source, false));
+    }
+
+    /**
+     * 同一时刻的运行时快照（单份线程转储），线程持有的锁与正在等待的锁构成加锁顺序边
+     */
+    public void addRuntimeSnapshot(DeadlockDetector detector, String source) {
+        runtimeGraphs.add(new RuntimeGraph(detector, source, true));
+    }
+
+    /**
+     * 运行时记录的一条加锁顺序边
+     * @param source 来源名称（文件名）
+     * @param thread 记录它的线程，多个线程记录过时为null
+     * @param heldSite 持有的锁的加锁位置（类名.方法:行号），未知时为null
+     */
+    public void addRuntimeOrderEdge(String source, String thread, String heldLock, String acquiredLock,
+                                    String heldSite, String acquireSite) {
+        String recorder = thread != null ? processOf(thread, source) : null;
+        String process = processOf((thread != null ? thread : "Thread_多个线程") + "#e" + runtimeOrderEdges.size(), source);
+        runtimeOrderEdges.add(new String[]{process, heldLock, acquiredLock, heldSite, acquireSite, recorder});
+    }
+
+    /**
+     * 连接两边并构建合并后的检测器，边上带来源标记
+     */
+    public DeadlockDetector merge() {
+        for (int i = 0; i < staticGraphs.size(); i++) {
+            indexStatic(staticGraphs.get(i), siteFormats.get(i));
+        }
+        matchRuntimeLocks();
+        for (String[] edge : runtimeOrderEdges) {
+            probe(runtimeLockId(edge[1]), runtimeLockId(edge[2]));
+        }
+        for (RuntimeGraph runtime : runtimeGraphs) {
+            if (!runtime.snapshot) {
+                continue;
+            }
+            for (Map.Entry<GraphNode, List<GraphNode>> entry : heldLocks(runtime.detector).entrySet()) {
+                for (GraphNode held : entry.getValue()) {
+                    for (GraphNode waited : waitedLocks(entry.getKey())) {
+                        probe(runtimeLockId(held.getId()), runtimeLockId(waited.getId()));
+                    }
+                }
+            }
+        }
+        System.out.println("Merged graphs: " + staticEdges.size() + " static order edges, " + runtimeEdgeCount
+                + " runtime order edges, " + confirmedEdges.size() + " confirmed");
+
+        DeadlockDetector merged = new DeadlockDetector();
+        for (DeadlockDetector detector : staticGraphs) {
+            copy(detector, null, true, merged);
+        }
+        for (RuntimeGraph runtime : runtimeGraphs) {
+            copy(runtime.detector, runtime.source, runtime.snapshot, merged);
+        }
+        // 同一线程的边先后发生，不会并发
+        Map<String, List<String>> byRecorder = new HashMap<>();
+        for (String[] edge : runtimeOrderEdges) {
+            String process = edge[0];
+            String held = runtimeLockId(edge[1]);
+            String acquired = runtimeLockId(edge[2]);
+            merged.addProcessHoldsResource(process, held, LockType.SYNCHRONIZED);
+            merged.addProcessWaitsForResource(process, acquired, LockType.SYNCHRONIZED);
+            EdgeOrigin origin = originOf(held, acquired, true);
+            mark(merged, held, process, origin);
+            mark(merged, process, acquired, origin);
+            if (edge[5] != null) {
+                List<String> sameThread = byRecorder.computeIfAbsent(edge[5], k -> new ArrayList<>());
+                for (String earlier : sameThread) {
+                    merged.addHappensBefore(earlier, process);
+                }
+                sameThread.add(process);
+            }
+        }
+        return merged;
+    }
+
+    private void indexStatic(DeadlockDetector detector, Function<SourceAnchor, String> siteFormat) {
+        for (Map.Entry<GraphNode, List<GraphNode>> entry : heldLocks(detector).entrySet()) {
+            GraphNode process = entry.getKey();
+            List<GraphNode> waited = waitedLocks(process);
+            for (GraphNode held : entry.getValue()) {
+                indexSite(siteFormat.apply(held.getEdgeInfo(process).getSite()), held.getId());
+                for (GraphNode next : waited) {
+                    if (next != held) {
+                        staticEdges.put(edgeKey(held.getId(), next.getId()), 1);
+                    }
+                }
+            }
+            for (GraphNode next : waited) {
+                indexSite(siteFormat.apply(process.getEdgeInfo(next).getSite()), next.getId());
+            }
+        }
+        for (GraphNode node : detector.getNodes().values()) {
+            String id = node.getId();
+            if (node.getType() == NodeType.RESOURCE && id.startsWith("CLASS_") && id.endsWith(".class")) {
+                classLocks.put(id.substring("CLASS_".length()), locks.intern(id));
+            }
+        }
+    }
+
+    private void indexSite(String site, String lockId) {
+        String key = siteKey(site);
+        if (key == null) {
+            return;
+        }
+        int lock = locks.intern(lockId);
+        Integer existing = siteLocks.putIfAbsent(key, lock);
+        if (existing != null && existing != lock) {
+            siteLocks.put(key, -1);
+        }
+    }
+
+    /**
+     * 运行时锁先按加锁位置对应，对应不上的类锁再按类名对应
+     */
+    private void matchRuntimeLocks() {
+        for (String[] edge : runtimeOrderEdges) {
+            matchBySite(edge[1], edge[3]);
+            matchBySite(edge[2], edge[4]);
+        }
+        List<String> runtimeIds = new ArrayList<>();
+        for (String[] edge : runtimeOrderEdges) {
+            runtimeIds.add(edge[1]);
+            runtimeIds.add(edge[2]);
+        }
+        for (RuntimeGraph runtime : runtimeGraphs) {
+            for (GraphNode node : runtime.detector.getNodes().values()) {
+                if (node.getType() == NodeType.RESOURCE) {
+                    runtimeIds.add(node.getId());
+                }
+            }
+        }
+        for (String id : runtimeIds) {
+            if (runtimeLocks.containsKey(id)) {
+                continue;
+            }
+            int at = id.indexOf('@');
+            Integer classLock = at > 0 ? classLocks.get(id.substring(0, at)) : null;
+            if (classLock != null) {
+                runtimeLocks.put(id, locks.idOf(classLock));
+                matchedByClass++;
+            } else {
+                runtimeLocks.put(id, id);
+            }
+        }
+    }
+
+    private void matchBySite(String runtimeId, String site) {
+        String key = siteKey(site);
+        Integer lock = key != null ? siteLocks.get(key) : null;
+        if (lock != null && lock >= 0 && !runtimeLocks.containsKey(runtimeId)) {
+            runtimeLocks.put(runtimeId, locks.idOf(lock));
+            matchedBySite++;
+        }
+    }
+
+    private String runtimeLockId(String id) {
+        String mapped = runtimeLocks.get(id);
+        return mapped != null ? mapped : id;
+    }
+
+    private void probe(String held, String acquired) {
+        if (held.equals(acquired)) {
+            return;
+        }
+        runtimeEdgeCount++;
+        long key = edgeKey(held, acquired);
+        if (staticEdges.get(key, 0) != 0) {
+            confirmedEdges.put(key, 1);
+        }
+    }
+
+    private long edgeKey(String held, String acquired) {
+        return ((long) locks.intern(held) << 32) | (locks.intern(acquired) & 0xffffffffL);
+    }
+
+    private EdgeOrigin originOf(String held, String acquired, boolean runtime) {
+        if (confirmedEdges.get(edgeKey(held, acquired), 0) != 0) {
+            return EdgeOrigin.RUNTIME_CONFIRMED;
+        }
+        return runtime ? EdgeOrigin.RUNTIME_ONLY : EdgeOrigin.STATIC_ONLY;
+    }
+
+    /**
+     * 运行时线程在合并图中的ID：线程名后附来源
+     */
+    private static String processOf(String thread, String source) {
+        return thread + "（" + source + "）";
+    }
+
+    /**
+     * 复制一张图的锁持有与等待，持有边和等待边的来源取它们组成的加锁顺序边中最强的一条
+     * @param runtimeSource 运行时图的来源名称，静态分析的图为null
+     * @param nested 持有×等待是否构成加锁顺序边，不构成时所有边都只标记为来自该图
+     */
+    private void copy(DeadlockDetector source, String runtimeSource, boolean nested, DeadlockDetector merged) {
+        boolean runtime = runtimeSource != null;
+        EdgeOrigin only = runtime ? EdgeOrigin.RUNTIME_ONLY : EdgeOrigin.STATIC_ONLY;
+        for (Map.Entry<GraphNode, List<GraphNode>> entry : heldLocks(source).entrySet()) {
+            GraphNode process = entry.getKey();
+            String processId = runtime ? processOf(process.getId(), runtimeSource) : process.getId();
+            List<GraphNode> waited = waitedLocks(process);
+            for (GraphNode next : waited) {
+                String lockId = runtime ? runtimeLockId(next.getId()) : next.getId();
+                EdgeInfo info = process.getEdgeInfo(next);
+                if (info.getObservations() > 0) {
+                    merged.addObservedWait(processId, lockId, next.getLockType(), info.getContentionNanos(), info.getObservations());
+                } else {
+                    merged.addProcessWaitsForResource(processId, lockId, next.getLockType(),
+                            info.getKind(), info.getTimeoutMillis(), info.isRetried());
+                }
+                merged.anchorWait(processId, lockId, info.getSite());
+                EdgeOrigin origin = only;
+                for (GraphNode held : entry.getValue()) {
+                    String heldId = runtime ? runtimeLockId(held.getId()) : held.getId();
+                    if (nested && originOf(heldId, lockId, runtime) == EdgeOrigin.RUNTIME_CONFIRMED) {
+                        origin = EdgeOrigin.RUNTIME_CONFIRMED;
+                    }
+                }
+                mark(merged, processId, lockId, origin);
+            }
+            for (GraphNode held : entry.getValue()) {
+                String lockId = runtime ? runtimeLockId(held.getId()) : held.getId();
+                EdgeInfo info = held.getEdgeInfo(process);
+                if (info.getObservations() > 0) {
+                    merged.addObservedHold(processId, lockId, held.getLockType(), info.getObservations());
+                } else {
+                    merged.addProcessHoldsResource(processId, lockId, held.getLockType());
+                }
+                merged.anchorHold(processId, lockId, info.getSite());
+                EdgeOrigin origin = only;
+                for (GraphNode next : waited) {
+                    String nextId = runtime ? runtimeLockId(next.getId()) : next.getId();
+                    if (nested && originOf(lockId, nextId, runtime) == EdgeOrigin.RUNTIME_CONFIRMED) {
+                        origin = EdgeOrigin.RUNTIME_CONFIRMED;
+                    }
+                }
+                mark(merged, lockId, processId, origin);
+            }
+        }
+    }
+
+    private static void mark(DeadlockDetector merged, String fromId, String toId, EdgeOrigin origin) {
+        GraphNode from = merged.getNodes().get(DeadlockDetector.resourceIdOf(fromId));
+        GraphNode to = merged.getNodes().get(DeadlockDetector.resourceIdOf(toId));
+        if (from != null && to != null) {
+            from.markOrigin(to, origin);
+        }
+    }
+
+    /**
+     * 线程 → 持有的锁；只持有不等待的线程也在其中
+     */
+    private static Map<GraphNode, List<GraphNode>> heldLocks(DeadlockDetector detector) {
+        Map<GraphNode, List<GraphNode>> held = new HashMap<>();
+        for (GraphNode node : detector.getNodes().values()) {
+            if (node.getType() == NodeType.PROCESS) {
+                held.computeIfAbsent(node, k -> new ArrayList<>());
+            } else if (isLock(node)) {
+                for (GraphNode holder : node.getOutgoingEdges()) {
+                    held.computeIfAbsent(holder, k -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+        return held;
+    }
+
+    private static List<GraphNode> waitedLocks(GraphNode process) {
+        List<GraphNode> waited = new ArrayList<>();
+        for (GraphNode next : process.getOutgoingEdges()) {
+            if (isLock(next)) {
+                waited.add(next);
+            }
+        }
+        return waited;
+    }
+
+    private static boolean isLock(GraphNode node) {
+        LockType type = node.getLockType();
+        return node.getType() == NodeType.RESOURCE && type != LockType.POOL_SLOT && type != LockType.FUTURE
+                && type != LockType.CONDITION && type != LockType.LOCK_SUPPORT;
+    }
+
+    /**
+     * 位置键"类名:行号"：Bank.java:42 与 com.bank.Bank$1.run:42 都对应 Bank:42
+     */
+    static String siteKey(String site) {
+        int colon = site != null ? site.lastIndexOf(':') : -1;
+        if (colon <= 0 || colon == site.length() - 1 || site.endsWith(":0")) {
+            return null;
+        }
+        String line = site.substring(colon + 1);
+        String location = site.substring(0, colon);
+        if (location.endsWith(".java") || location.endsWith(".kt")) {
+            location = location.substring(0, location.lastIndexOf('.'));
+        } else {
+            // 类名.方法：去掉方法名和包名
+            int dot = location.lastIndexOf('.');
+            location = dot > 0 ? location.substring(0, dot) : location;
+            location = location.substring(location.lastIndexOf('.') + 1);
+        }
+        int inner = location.indexOf('$');
+        if (inner > 0) {
+            location = location.substring(0, inner);
+        }
+        return location + ":" + line;
+    }
+
+    /**
+     * 按来源排序：全部由运行时确认的环在前，其次按确认的边数、有运行时观测的边数从多到少
+     */
+    public List<List<GraphNode>> rankCycles(List<List<GraphNode>> cycles) {
+        List<List<GraphNode>> ranked = new ArrayList<>(cycles);
+        ranked.sort(Comparator.<List<GraphNode>>comparingInt(cycle -> isConfirmed(cycle) ? 0 : 1)
+                .thenComparingInt(cycle -> -countEdges(cycle, EdgeOrigin.RUNTIME_CONFIRMED))
+                .thenComparingInt(cycle -> -countEdges(cycle, EdgeOrigin.RUNTIME_ONLY)));
+        return ranked;
+    }
+
+    public boolean isConfirmed(List<GraphNode> cycle) {
+        return countEdges(cycle, EdgeOrigin.RUNTIME_CONFIRMED) == cycle.size() - 1;
+    }
+
+    private static int countEdges(List<GraphNode> cycle, EdgeOrigin origin) {
+        int count = 0;
+        for (int i = 0; i < cycle.size() - 1; i++) {
+            if (cycle.get(i).getEdgeInfo(cycle.get(i + 1)).getOrigin() == origin) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 合并报告：连接统计与按来源排序后的环
+     */
+    public String formatReport(List<List<GraphNode>> rankedCycles) {
+        StringBuilder report = new StringBuilder(String.format(
+                "静态加锁顺序边 %d 条，运行时加锁顺序边 %d 条，其中运行时确认 %d 条\n",
+                staticEdges.size(), runtimeEdgeCount, confirmedEdges.size()));
+        report.append(String.format("运行时的锁按加锁位置对应 %d 把，按类名对应 %d 把\n", matchedBySite, matchedByClass));
+        if (rankedCycles.isEmpty()) {
+            return report.append("\n未发现死锁环\n").toString();
+        }
+        report.append("\n死锁环（运行时确认的在前）：\n");
+        for (int i = 0; i < rankedCycles.size(); i++) {
+            List<GraphNode> cycle = rankedCycles.get(i);
+            int confirmed = countEdges(cycle, EdgeOrigin.RUNTIME_CONFIRMED);
+            String label = isConfirmed(cycle) ? EdgeOrigin.RUNTIME_CONFIRMED.getLabel()
+                    : confirmed > 0 ? "部分确认（" + confirmed + "/" + (cycle.size() - 1) + " 条边）"
+                    : countEdges(cycle, EdgeOrigin.RUNTIME_ONLY) == cycle.size() - 1 ? EdgeOrigin.RUNTIME_ONLY.getLabel()
+                    : countEdges(cycle, EdgeOrigin.STATIC_ONLY) == cycle.size() - 1 ? EdgeOrigin.STATIC_ONLY.getLabel()
+                    : "静态与运行时各一部分";
+            report.append(String.format("  %d. [%s] ", i + 1, label));
+            for (int j = 0; j < cycle.size(); j++) {
+                report.append(cycle.get(j).getDisplayName());
+                if (j < cycle.size() - 1) {
+                    EdgeOrigin origin = cycle.get(j).getEdgeInfo(cycle.get(j + 1)).getOrigin();
+                    report.append(origin == EdgeOrigin.RUNTIME_CONFIRMED ? " ⇒ " : " → ");
+                }
+            }
+            report.append("\n");
+        }
+        report.append("（⇒ 表示运行时确认的边）\n");
+        return report.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.model.NodeType;
+import com.deadlock.detector.model.SourceAnchor;
+
+/**
+ * 死锁环上的一步：资源→线程为持有，线程→资源为等待，附带产生该关系的源码位置
+ */
+public class WitnessStep {
+    private final GraphNode from;
+    private final GraphNode to;
+    private final SourceAnchor site;
+
+    public WitnessStep(GraphNode from, GraphNode to, SourceAnchor site) {
+        this.from = from;
+        this.to = to;
+        this.site = site;
+    }
+
+    public GraphNode getFrom() {
+        return from;
+    }
+
+    public GraphNode getTo() {
+        return to;
+    }
+
+    /**
+     * 加锁或等待的位置；边没有记录位置时退回到线程根的位置，仍未知时为null
+     */
+    public SourceAnchor getSite() {
+        if (site != null) {
+            return site;
+        }
+        return from.getType() == NodeType.PROCESS ? from.getAnchor() : to.getAnchor();
+    }
+
+    public boolean isHold() {
+        return from.getType() == NodeType.RESOURCE;
+    }
+
+    /**
+     * 步骤描述，例如 "Thread_A 持有 lockA"
+     */
+    public String describe() {
+        return isHold()
+                ? to.getDisplayName() + " 持有 " + from.getDisplayName()
+                : from.getDisplayName() + " 等待 " + to.getDisplayName();
+    }
+}
@@ -0,0 +1,403 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.model.LockType;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JFR记录导入器
+ * 读取jdk.JavaMonitorEnter、jdk.JavaMonitorWait、jdk.ThreadPark和jdk.VirtualThreadPinned事件，
+ * 逐个事件流式累计，不保留事件本身：监视器进入与ReentrantLock/ReentrantReadWriteLock上的停车产生
+ * 等待线程→锁 的等待边并累计竞争时长，wait/notify与钉住只进入热点统计。
+ * 只报告竞争，不推断加锁顺序：JFR不记录线程在等待时还持有哪些锁，事件中的之前持有者只是刚释放这把锁的线程，
+ * 把不同时刻的"谁等谁"拼到一张图里会得到并不存在的环，所以导入的图只有等待边，不会成环。
+ * 锁按类型和获取位置（第一个应用栈帧）识别：事件中的地址是JVM内部监视器的地址，与线程转储中的对象地址不对应，
+ * 而且会被复用。
+ * JFR文件由自包含的chunk拼接而成，多个chunk时按chunk切分，由多个线程并行解析后合并。
+ */
+public class JfrImporter {
+    private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    private static final String MONITOR_WAIT = "jdk.JavaMonitorWait";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+    private static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+    private static final byte[] CHUNK_MAGIC = {'F', 'L', 'R', 0};
+
+    /**
+     * 导入进度回调：已完成的chunk数与总数
+     */
+    public interface Progress {
+        void update(int completedChunks, int totalChunks);
+    }
+
+    /**
+     * 一条边或一个热点的累计值
+     */
+    public static class Stats {
+        private final LockType lockType;
+        private long nanos;
+        private long count;
+
+        Stats(LockType lockType) {
+            this.lockType = lockType;
+        }
+
+        void add(long addedNanos, long addedCount) {
+            nanos += addedNanos;
+            count += addedCount;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * 一个chunk（或整个文件）的累计结果，键为"线程\0资源"或热点名
+     */
+    private static class Partial {
+        final Map<String, Stats> waits = new HashMap<>();
+        final Map<String, Stats> monitorWaits = new HashMap<>();
+        final Map<String, Stats> pinned = new HashMap<>();
+        long events;
+
+        void merge(Partial other) {
+            mergeInto(waits, other.waits);
+            mergeInto(monitorWaits, other.monitorWaits);
+            mergeInto(pinned, other.pinned);
+            events += other.events;
+        }
+
+        private static void mergeInto(Map<String, Stats> target, Map<String, Stats> source) {
+            for (Map.Entry<String, Stats> entry : source.entrySet()) {
+                target.computeIfAbsent(entry.getKey(), k -> new Stats(entry.getValue().lockType))
+                        .add(entry.getValue().nanos, entry.getValue().count);
+            }
+        }
+    }
+
+    private final Progress progress;
+    private final int parallelism;
+    private Partial result = new Partial();
+
+    public JfrImporter() {
+        this(null, Runtime.getRuntime().availableProcessors());
+    }
+
+    public JfrImporter(Progress progress, int parallelism) {
+        this.progress = progress;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 解析记录并构建只有等待边的检测器（竞争观测）
+     */
+    public DeadlockDetector importRecording(Path file) throws IOException {
+        List<long[]> chunks = findChunks(file);
+        if (chunks.size() <= 1) {
+            result = parse(file);
+            report(1, 1);
+        } else {
+            result = parseChunks(file, chunks);
+        }
+        System.out.println("Imported JFR recording: " + result.events + " lock events, "
+                + result.waits.size() + " wait edges, " + chunks.size() + " chunk(s)");
+
+        DeadlockDetector detector = new DeadlockDetector();
+        for (Map.Entry<String, Stats> entry : result.waits.entrySet()) {
+            String[] key = entry.getKey().split("\u0000", 2);
+            Stats stats = entry.getValue();
+            detector.addObservedWait(key[0], key[1], stats.lockType, stats.nanos, stats.count);
+        }
+        return detector;
+    }
+
+    /**
+     * 按chunk并行解析：每个chunk复制到临时文件后交给RecordingFile，同时存在的临时文件不超过并行度
+     */
+    private Partial parseChunks(Path file, List<long[]> chunks) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()));
+        AtomicInteger completed = new AtomicInteger();
+        List<Future<Partial>> futures = new ArrayList<>();
+        for (long[] chunk : chunks) {
+            futures.add(executor.submit(() -> {
+                Path temp = Files.createTempFile("deadlock-chunk", ".jfr");
+                try {
+                    try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+                         FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        long copied = 0;
+                        while (copied < chunk[1]) {
+                            copied += source.transferTo(chunk[0] + copied, chunk[1] - copied, target);
+                        }
+                    }
+                    return parse(temp);
+                } finally {
+                    Files.deleteIfExists(temp);
+                    report(completed.incrementAndGet(), chunks.size());
+                }
+            }));
+        }
+        Partial merged = new Partial();
+        try {
+            for (Future<Partial> future : futures) {
+                merged.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("JFR导入被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                // 包括进度回调中抛出的取消异常
+                throw (RuntimeException) cause;
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return merged;
+    }
+
+    private void report(int completed, int total) {
+        if (progress != null) {
+            progress.update(completed, total);
+        }
+    }
+
+    /**
+     * 流式读取一个记录文件中的事件
+     */
+    private static Partial parse(Path file) throws IOException {
+        Partial partial = new Partial();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String type = event.getEventType().getName();
+                switch (type) {
+                    case MONITOR_ENTER:
+                        onMonitorEnter(event, partial);
+                        break;
+                    case MONITOR_WAIT:
+                        onMonitorWait(event, partial);
+                        break;
+                    case THREAD_PARK:
+                        onThreadPark(event, partial);
+                        break;
+                    case VIRTUAL_THREAD_PINNED:
+                        onPinned(event, partial);
+                        break;
+                    default:
+                        continue;
+                }
+                partial.events++;
+            }
+        }
+        return partial;
+    }
+
+    private static void onMonitorEnter(RecordedEvent event, Partial partial) {
+        String thread = threadId(event.getThread());
+        if (thread == null) {
+            return;
+        }
+        RecordedClass monitorClass = event.getClass("monitorClass");
+        String resource = resourceId(monitorClass, event);
+        LockType lockType = monitorClass != null && "java.lang.Class".equals(monitorClass.getName())
+                ? LockType.CLASS_LOCK : LockType.SYNCHRONIZED;
+        partial.waits.computeIfAbsent(thread + "\u0000" + resource, k -> new Stats(lockType))
+                .add(event.getDuration().toNanos(), 1);
+    }
+
+    private static void onMonitorWait(RecordedEvent event, Partial partial) {
+        String resource = resourceId(event.getClass("monitorClass"), event);
+        partial.monitorWaits.computeIfAbsent(resource, k -> new Stats(LockType.CONDITION))
+                .add(event.getDuration().toNanos(), 1);
+    }
+
+    private static void onThreadPark(RecordedEvent event, Partial partial) {
+        RecordedClass parkedClass = event.getClass("parkedClass");
+        String thread = threadId(event.getThread());
+        if (thread == null || parkedClass == null
+                || !parkedClass.getName().contains("ReentrantLock") && !parkedClass.getName().contains("ReentrantReadWriteLock")) {
+            return;
+        }
+        String resource = resourceId(parkedClass, event);
+        partial.waits.computeIfAbsent(thread + "\u0000" + resource, k -> new Stats(LockType.REENTRANT_LOCK))
+                .add(event.getDuration().toNanos(), 1);
+    }
+
+    private static void onPinned(RecordedEvent event, Partial partial) {
+        partial.pinned.computeIfAbsent(applicationFrame(event), k -> new Stats(LockType.SYNCHRONIZED))
+                .add(event.getDuration().toNanos(), 1);
+    }
+
+    /**
+     * 跳过JDK内部帧，取第一个应用帧，例如 Bank.transfer:42；没有栈时为"未知位置"
+     */
+    private static String applicationFrame(RecordedEvent event) {
+        if (event.getStackTrace() != null) {
+            for (RecordedFrame candidate : event.getStackTrace().getFrames()) {
+                String typeName = candidate.getMethod().getType().getName();
+                if (!typeName.startsWith("java.") && !typeName.startsWith("jdk.")) {
+                    return typeName.substring(typeName.lastIndexOf('.') + 1) + "." + candidate.getMethod().getName()
+                            + ":" + candidate.getLineNumber();
+                }
+            }
+        }
+        return "未知位置";
+    }
+
+    /**
+     * 把记录中的监视器竞争导出为加锁事件日志（见LockEventLog），每个jdk.JavaMonitorEnter写一条CONTENDED，
+     * 附带等待时长；时间戳为纪元纳秒。持有者一栏写0（未知）：之前的持有者不能说明它在等待时持有哪些锁，
+     * 回放时不应作为持有边。JFR不记录每次加锁和释放，导出的日志只提供竞争观测，
+     * 可以与Agent采集的日志分别回放后对照。返回写入的事件数。
+     */
+    public static long exportEvents(Path recording, Path log) throws IOException {
+        Map<String, Integer> threads = new HashMap<>();
+        Map<String, Integer> locks = new HashMap<>();
+        try (RecordingFile events = new RecordingFile(recording);
+             LockEventWriter writer = new LockEventWriter(log, 0, 0)) {
+            while (events.hasMoreEvents()) {
+                RecordedEvent event = events.readEvent();
+                if (!MONITOR_ENTER.equals(event.getEventType().getName())) {
+                    continue;
+                }
+                String thread = threadId(event.getThread());
+                if (thread == null) {
+                    continue;
+                }
+                String lock = resourceId(event.getClass("monitorClass"), event);
+                long start = event.getStartTime().getEpochSecond() * 1_000_000_000L + event.getStartTime().getNano();
+                writer.contended(intern(threads, thread, writer, true), intern(locks, lock, writer, false),
+                        0, start, event.getDuration().toNanos());
+            }
+            return writer.getRecordCount();
+        }
+    }
+
+    /**
+     * 分配日志中的编号（从1开始，0表示未知），第一次出现时写入名字定义；线程名去掉Thread_前缀
+     */
+    private static int intern(Map<String, Integer> ids, String name, LockEventWriter writer, boolean thread)
+            throws IOException {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = ids.size() + 1;
+            ids.put(name, id);
+            if (thread) {
+                writer.defineThread(id, name.substring("Thread_".length()));
+            } else {
+                writer.defineLock(id, name);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * 线程ID与线程转储导入一致：Thread_线程名#线程编号
+     */
+    private static String threadId(RecordedThread thread) {
+        if (thread == null) {
+            return null;
+        }
+        String name = thread.getJavaName() != null ? thread.getJavaName() : thread.getOSName();
+        long number = thread.getJavaThreadId() > 0 ? thread.getJavaThreadId() : thread.getId();
+        return "Thread_" + (name != null ? name : "") + "#" + number;
+    }
+
+    /**
+     * 资源ID：类型简单名@获取位置，例如 Object@Bank.transfer:42
+     */
+    private static String resourceId(RecordedClass type, RecordedEvent event) {
+        String typeName = type != null ? type.getName() : "Object";
+        return typeName.substring(typeName.lastIndexOf('.') + 1) + "@" + applicationFrame(event);
+    }
+
+    /**
+     * 按chunk头切分文件：每个chunk以"FLR\0"开头，第8字节起为大端的chunk总长度；
+     * 头部不合法（例如仍在写入的记录）时按单个chunk处理
+     */
+    static List<long[]> findChunks(Path file) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (position < size) {
+                header.clear();
+                if (channel.read(header, position) < 16) {
+                    break;
+                }
+                header.flip();
+                for (byte magic : CHUNK_MAGIC) {
+                    if (header.get() != magic) {
+                        return singleChunk(size);
+                    }
+                }
+                header.getInt();
+                long chunkSize = header.getLong();
+                if (chunkSize <= 16 || position + chunkSize > size) {
+                    return singleChunk(size);
+                }
+                chunks.add(new long[]{position, chunkSize});
+                position += chunkSize;
+            }
+        }
+        return chunks.isEmpty() ? singleChunk(0) : chunks;
+    }
+
+    private static List<long[]> singleChunk(long size) {
+        List<long[]> chunks = new ArrayList<>();
+        chunks.add(new long[]{0, size});
+        return chunks;
+    }
+
+    /**
+     * 竞争热点报告：按累计时长排序的锁等待、wait/notify与虚拟线程钉住位置
+     */
+    public String formatHotspots(int limit) {
+        StringBuilder report = new StringBuilder(String.format("JFR记录：%d 个锁相关事件\n", result.events));
+        appendTop(report, "\n锁等待（线程 → 锁）：\n", result.waits, limit);
+        appendTop(report, "\nwait/notify 等待：\n", result.monitorWaits, limit);
+        appendTop(report, "\n虚拟线程钉住：\n", result.pinned, limit);
+        return report.toString();
+    }
+
+    private static void appendTop(StringBuilder report, String title, Map<String, Stats> stats, int limit) {
+        if (stats.isEmpty()) {
+            return;
+        }
+        report.append(title);
+        List<Map.Entry<String, Stats>> entries = new ArrayList<>(stats.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().nanos, a.getValue().nanos));
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            Map.Entry<String, Stats> entry = entries.get(i);
+            report.append(String.format("  %s：%d 次，共 %.1f ms\n", entry.getKey().replace("\u0000", " → "),
+                    entry.getValue().count, entry.getValue().nanos / 1_000_000.0));
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.detector.DeadlockDetectionResult;
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.model.LockType;
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 本地JVM的实时线程监控：通过Attach API启动目标JVM的本地JMX代理，轮询ThreadMXBean
+ * 每次轮询只取所有线程的基本信息（不取栈和持锁列表），从中得到"等待哪把锁、锁由谁持有"；
+ * 等待关系发生变化（阻塞抖动）时才调用findDeadlockedThreads，并用dumpAllThreads取完整的持锁信息。
+ * 抖动持续时完整转储的间隔逐步拉大，平稳时轮询间隔逐步拉长，避免干扰被观察的压测。
+ * 图只包含参与等待的线程及相关的锁，按线程比较前后两次的边集合，只增删变化的边。
+ */
+public class JvmThreadMonitor implements Closeable {
+    // 平稳时轮询间隔最多拉长到设定值的倍数
+    private static final int MAX_IDLE_BACKOFF = 8;
+    // 抖动持续时最多每隔多少次轮询做一次完整转储
+    private static final int MAX_DUMP_GAP = 16;
+    // 死锁报告中每个线程显示的栈帧数
+    private static final int REPORT_FRAMES = 3;
+
+    /**
+     * 供界面显示的图快照，与监控线程继续修改的图相互独立
+     */
+    public static class Snapshot {
+        private final List<GraphNode> nodes;
+        private final List<List<GraphNode>> cycles;
+
+        Snapshot(List<GraphNode> nodes, List<List<GraphNode>> cycles) {
+            this.nodes = nodes;
+            this.cycles = cycles;
+        }
+
+        public List<GraphNode> getNodes() {
+            return nodes;
+        }
+
+        public List<List<GraphNode>> getCycles() {
+            return cycles;
+        }
+    }
+
+    /**
+     * 一条持有边或等待边，由所属线程贡献
+     */
+    private static final class Edge {
+        final boolean hold;
+        final String process;
+        final String resource;
+        final LockType lockType;
+
+        Edge(boolean hold, String process, String resource, LockType lockType) {
+            this.hold = hold;
+            this.process = process;
+            this.resource = resource;
+            this.lockType = lockType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Edge)) {
+                return false;
+            }
+            Edge other = (Edge) o;
+            return hold == other.hold && process.equals(other.process) && resource.equals(other.resource);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hold, process, resource);
+        }
+    }
+
+    private final ThreadMXBean threads;
+    private final Closeable connection;
+    private final DeadlockDetector detector = new DeadlockDetector();
+    // 线程ID -> 该线程贡献的边（等待边及它持有的锁）
+    private Map<Long, Set<Edge>> edgesByThread = new HashMap<>();
+    // 上一次轮询的基本等待关系，用于判断抖动
+    private Map<Long, Set<Edge>> previousProbe = new HashMap<>();
+    // 节点ID -> 关联的边数，降为0时删除节点
+    private final Map<String, Integer> degrees = new HashMap<>();
+    private DeadlockDetectionResult result = new DeadlockDetectionResult(false, new ArrayList<>());
+    private long[] deadlocked = new long[0];
+    private String deadlockReport = "";
+
+    private long intervalMillis;
+    private int idleBackoff = 1;
+    private int dumpGap = 1;
+    private int pollsSinceDump = MAX_DUMP_GAP;
+    // 当前的图只来自基本信息，平稳下来后补一次完整转储
+    private boolean dumpPending;
+    private long pollCount;
+    private long dumpCount;
+    private int blockedCount;
+
+    public JvmThreadMonitor(ThreadMXBean threads, Closeable connection, long intervalMillis) {
+        this.threads = threads;
+        this.connection = connection;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * 列出本机可以附加的JVM（进程号 -> 显示名），不包括当前进程
+     */
+    public static Map<String, String> listLocalJvms() {
+        Map<String, String> jvms = new LinkedHashMap<>();
+        String self = String.valueOf(ProcessHandle.current().pid());
+        for (VirtualMachineDescriptor descriptor : VirtualMachine.list()) {
+            if (!descriptor.id().equals(self)) {
+                String name = descriptor.displayName();
+                jvms.put(descriptor.id(), name == null || name.isEmpty() ? "pid " + descriptor.id() : name);
+            }
+        }
+        return jvms;
+    }
+
+    /**
+     * 附加到本地JVM：启动（或复用）它的本地JMX代理并连接
+     */
+    public static JvmThreadMonitor attach(String pid, long intervalMillis) throws IOException {
+        String address;
+        try {
+            VirtualMachine vm = VirtualMachine.attach(pid);
+            try {
+                address = vm.startLocalManagementAgent();
+            } finally {
+                vm.detach();
+            }
+        } catch (AttachNotSupportedException e) {
+            throw new IOException("无法附加到进程 " + pid + "：" + e.getMessage(), e);
+        }
+        JMXConnector connector = JMXConnectorFactory.connect(new JMXServiceURL(address));
+        ThreadMXBean bean = ManagementFactory.newPlatformMXBeanProxy(connector.getMBeanServerConnection(),
+                ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+        return new JvmThreadMonitor(bean, connector, intervalMillis);
+    }
+
+    public synchronized void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        idleBackoff = 1;
+    }
+
+    /**
+     * 下一次轮询前的等待时间
+     */
+    public synchronized long nextDelayMillis() {
+        return intervalMillis * idleBackoff;
+    }
+
+    /**
+     * 轮询一次，返回图是否发生变化
+     */
+    public synchronized boolean poll() {
+        pollCount++;
+        pollsSinceDump++;
+        ThreadInfo[] infos = threads.getThreadInfo(threads.getAllThreadIds(), 0);
+        Map<Long, Set<Edge>> probe = waitEdges(infos, processIds(infos), false);
+        if (probe.equals(previousProbe)) {
+            idleBackoff = Math.min(idleBackoff * 2, MAX_IDLE_BACKOFF);
+            dumpGap = 1;
+            if (!dumpPending || probe.isEmpty()) {
+                return false;
+            }
+            // 平稳下来时补上完整的持锁信息
+            apply(fullDump());
+            result = detector.detectDeadlocks();
+            return true;
+        }
+        previousProbe = probe;
+        idleBackoff = 1;
+        blockedCount = 0;
+        for (ThreadInfo info : infos) {
+            if (info != null && waitedLock(info) != null) {
+                blockedCount++;
+            }
+        }
+        if (probe.isEmpty()) {
+            apply(probe);
+            dumpPending = false;
+        } else if (pollsSinceDump >= dumpGap) {
+            apply(fullDump());
+            dumpGap = Math.min(dumpGap * 2, MAX_DUMP_GAP);
+        } else {
+            apply(probe);
+            dumpPending = true;
+        }
+        updateDeadlocked();
+        result = detector.detectDeadlocks();
+        return true;
+    }
+
+    private Map<Long, Set<Edge>> fullDump() {
+        ThreadInfo[] infos = threads.dumpAllThreads(true, true);
+        dumpCount++;
+        pollsSinceDump = 0;
+        dumpPending = false;
+        return waitEdges(infos, processIds(infos), true);
+    }
+
+    /**
+     * 等待中的线程与锁持有者之间的边：基本信息只有被等待的锁及其持有者；
+     * 带锁信息时再加上这些线程持有的全部监视器和显式锁
+     */
+    private static Map<Long, Set<Edge>> waitEdges(ThreadInfo[] infos, Map<Long, String> processIds, boolean withLocks) {
+        Map<Long, Set<Edge>> edges = new HashMap<>();
+        for (ThreadInfo info : infos) {
+            LockInfo lock = info != null ? waitedLock(info) : null;
+            String owner = lock != null ? processIds.get(info.getLockOwnerId()) : null;
+            if (owner == null) {
+                continue;
+            }
+            LockType lockType = info.getThreadState() == Thread.State.BLOCKED
+                    ? monitorType(lock) : LockType.REENTRANT_LOCK;
+            String resource = resourceId(lock);
+            edges.computeIfAbsent(info.getThreadId(), k -> new HashSet<>())
+                    .add(new Edge(false, processIds.get(info.getThreadId()), resource, lockType));
+            edges.computeIfAbsent(info.getLockOwnerId(), k -> new HashSet<>())
+                    .add(new Edge(true, owner, resource, lockType));
+        }
+        if (withLocks) {
+            for (ThreadInfo info : infos) {
+                Set<Edge> threadEdges = info != null ? edges.get(info.getThreadId()) : null;
+                if (threadEdges == null) {
+                    continue;
+                }
+                String process = processIds.get(info.getThreadId());
+                for (MonitorInfo monitor : info.getLockedMonitors()) {
+                    threadEdges.add(new Edge(true, process, resourceId(monitor), monitorType(monitor)));
+                }
+                for (LockInfo synchronizer : info.getLockedSynchronizers()) {
+                    threadEdges.add(new Edge(true, process, resourceId(synchronizer), LockType.REENTRANT_LOCK));
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * 阻塞在监视器上，或停车等待ReentrantLock/ReentrantReadWriteLock；
+     * Object.wait()与条件等待等的是通知而不是锁，不算
+     */
+    private static LockInfo waitedLock(ThreadInfo info) {
+        LockInfo lock = info.getLockInfo();
+        if (lock == null || info.getLockOwnerId() < 0) {
+            return null;
+        }
+        if (info.getThreadState() == Thread.State.BLOCKED) {
+            return lock;
+        }
+        boolean parked = info.getThreadState() == Thread.State.WAITING
+                || info.getThreadState() == Thread.State.TIMED_WAITING;
+        return parked && (lock.getClassName().contains("ReentrantLock")
+                || lock.getClassName().contains("ReentrantReadWriteLock")) ? lock : null;
+    }
+
+    /**
+     * 线程ID与线程转储导入一致：Thread_线程名，重名时追加JVM线程ID
+     */
+    private static Map<Long, String> processIds(ThreadInfo[] infos) {
+        Map<String, Integer> nameCounts = new HashMap<>();
+        for (ThreadInfo info : infos) {
+            if (info != null) {
+                nameCounts.merge(info.getThreadName(), 1, Integer::sum);
+            }
+        }
+        Map<Long, String> ids = new HashMap<>();
+        for (ThreadInfo info : infos) {
+            if (info != null) {
+                String name = info.getThreadName();
+                ids.put(info.getThreadId(), "Thread_" + (nameCounts.get(name) > 1 ? name + "#" + info.getThreadId() : name));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 资源ID：类型简单名@身份哈希，JMX不提供对象地址
+     */
+    private static String resourceId(LockInfo lock) {
+        String type = lock.getClassName();
+        return type.substring(type.lastIndexOf('.') + 1) + "@0x" + Integer.toHexString(lock.getIdentityHashCode());
+    }
+
+    private static LockType monitorType(LockInfo lock) {
+        return lock.getClassName().equals("java.lang.Class") ? LockType.CLASS_LOCK : LockType.SYNCHRONIZED;
+    }
+
+    /**
+     * 按线程比较边集合，只增删变化的边
+     */
+    private void apply(Map<Long, Set<Edge>> next) {
+        Set<Long> changed = new HashSet<>(edgesByThread.keySet());
+        changed.addAll(next.keySet());
+        for (Long thread : changed) {
+            Set<Edge> before = edgesByThread.getOrDefault(thread, Collections.emptySet());
+            Set<Edge> after = next.getOrDefault(thread, Collections.emptySet());
+            if (before.equals(after)) {
+                continue;
+            }
+            for (Edge edge : before) {
+                if (!after.contains(edge)) {
+                    removeEdge(edge);
+                }
+            }
+            for (Edge edge : after) {
+                if (!before.contains(edge)) {
+                    addEdge(edge);
+                }
+            }
+        }
+        edgesByThread = next;
+    }
+
+    private void addEdge(Edge edge) {
+        if (edge.hold) {
+            detector.addProcessHoldsResource(edge.process, edge.resource, edge.lockType);
+        } else {
+            detector.addProcessWaitsForResource(edge.process, edge.resource, edge.lockType);
+        }
+        degrees.merge(edge.process, 1, Integer::sum);
+        degrees.merge(edge.resource, 1, Integer::sum);
+    }
+
+    private void removeEdge(Edge edge) {
+        if (edge.hold) {
+            detector.removeProcessHoldsResource(edge.process, edge.resource);
+        } else {
+            detector.removeProcessWaitsForResource(edge.process, edge.resource);
+        }
+        release(edge.process);
+        release(edge.resource);
+    }
+
+    private void release(String nodeId) {
+        if (degrees.merge(nodeId, -1, Integer::sum) <= 0) {
+            degrees.remove(nodeId);
+            detector.removeNode(nodeId);
+        }
+    }
+
+    /**
+     * JVM自己判定的死锁：线程集合变化时才取这些线程的栈和持锁信息
+     */
+    private void updateDeadlocked() {
+        long[] ids = threads.findDeadlockedThreads();
+        if (ids == null) {
+            deadlocked = new long[0];
+            deadlockReport = "";
+            return;
+        }
+        Arrays.sort(ids);
+        if (Arrays.equals(ids, deadlocked)) {
+            return;
+        }
+        deadlocked = ids;
+        StringBuilder report = new StringBuilder("JVM报告 " + ids.length + " 个线程处于死锁：\n");
+        for (ThreadInfo info : threads.getThreadInfo(ids, true, true)) {
+            if (info == null) {
+                continue;
+            }
+            report.append("\"").append(info.getThreadName()).append("\" 等待 ")
+                    .append(info.getLockInfo() != null ? resourceId(info.getLockInfo()) : "?")
+                    .append("，由 \"").append(info.getLockOwnerName()).append("\" 持有\n");
+            StackTraceElement[] stack = info.getStackTrace();
+            for (int i = 0; i < Math.min(REPORT_FRAMES, stack.length); i++) {
+                report.append("    at ").append(stack[i]).append('\n');
+            }
+        }
+        deadlockReport = report.toString();
+    }
+
+    public synchronized DeadlockDetectionResult getResult() {
+        return result;
+    }
+
+    /**
+     * 复制当前的图，环上的节点映射到副本
+     */
+    public synchronized Snapshot snapshot() {
+        Map<GraphNode, GraphNode> copies = new HashMap<>();
+        for (GraphNode node : detector.getNodes().values()) {
+            copies.put(node, new GraphNode(node.getId(), node.getType(), node.getLockType()));
+        }
+        for (Map.Entry<GraphNode, GraphNode> entry : copies.entrySet()) {
+            GraphNode node = entry.getKey();
+            for (GraphNode to : node.getOutgoingEdges()) {
+                GraphNode target = copies.get(to);
+                if (target != null) {
+                    entry.getValue().addEdge(target, node.getEdgeInfo(to));
+                }
+            }
+        }
+        List<List<GraphNode>> cycles = new ArrayList<>();
+        for (List<GraphNode> cycle : result.getHardDeadlockCycles()) {
+            List<GraphNode> copy = new ArrayList<>();
+            for (GraphNode node : cycle) {
+                copy.add(copies.getOrDefault(node, node));
+            }
+            cycles.add(copy);
+        }
+        return new Snapshot(new ArrayList<>(copies.values()), cycles);
+    }
+
+    /**
+     * 状态摘要：轮询与转储次数、阻塞线程数以及JVM报告的死锁
+     */
+    public synchronized String formatStatus() {
+        StringBuilder status = new StringBuilder(String.format(
+                "轮询 %d 次，完整转储 %d 次，当前 %d 个线程在等待锁，下次轮询间隔 %d ms\n",
+                pollCount, dumpCount, blockedCount, intervalMillis * idleBackoff));
+        if (result.isHasDeadlock()) {
+            status.append(detector.formatDeadlockInfo(result.getHardDeadlockCycles()));
+        }
+        status.append(deadlockReport);
+        return status.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
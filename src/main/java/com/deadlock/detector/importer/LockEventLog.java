@@ -0,0 +1,47 @@
+package com.deadlock.detector.importer;
+
+import java.nio.ByteOrder;
+
+/**
+ * 二进制加锁事件日志格式（.dlev），由运行时Agent和JFR导出写入，LockEventReplay离线回放
+ * 文件头64字节：0 魔数"DLEV"，4 版本，8 记录大小，16 开始时的墙钟毫秒，24 开始时的nanoTime，
+ * 32 写入结束位置（0表示未正常关闭，读取到文件末尾）。
+ * 之后是固定4KB的块，每块只由一个写入线程追加，块内记录按时间顺序；块内剩余的空间以0填充。
+ * 记录32字节，小端：0 类型，2 附加槽数，4 线程，8 锁，12 附加值，16 时间戳（nanoTime），24 数值。
+ * ACQUIRE（开始阻塞获取）、ACQUIRED（已获取）、RELEASE（即将释放）的附加值是加锁位置；
+ * CONTENDED（JFR观测到的一次竞争）的附加值是当时的持有者线程，数值是等待时长（纳秒）；
+ * ORDER_EDGE（采样模式下Agent写出的加锁顺序边）的锁是后获取的锁，附加值是已持有的锁，
+ * 线程是最先记录它的线程（-1表示多个线程），数值高32位是持有位置、低32位是获取位置；
+ * DEFINE_*的附加值是被定义的线程/锁/位置ID，数值是名字的UTF-8字节数，名字放在其后的附加槽中。
+ */
+public final class LockEventLog {
+    public static final int MAGIC = 0x56454C44; // "DLEV"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 32;
+    public static final int BLOCK_SIZE = 4096;
+    public static final int END_POSITION_OFFSET = 32;
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    // 一块中最多能放下的名字长度
+    public static final int MAX_NAME_BYTES = BLOCK_SIZE - RECORD_SIZE;
+
+    public static final byte EMPTY = 0;
+    public static final byte ACQUIRE = 1;
+    public static final byte ACQUIRED = 2;
+    public static final byte RELEASE = 3;
+    public static final byte CONTENDED = 4;
+    public static final byte ORDER_EDGE = 5;
+    public static final byte DEFINE_THREAD = 16;
+    public static final byte DEFINE_LOCK = 17;
+    public static final byte DEFINE_SITE = 18;
+
+    private LockEventLog() {
+    }
+
+    /**
+     * 名字占用的附加槽数
+     */
+    static int payloadSlots(int length) {
+        return (length + RECORD_SIZE - 1) / RECORD_SIZE;
+    }
+}
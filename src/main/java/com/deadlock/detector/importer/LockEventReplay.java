@@ -0,0 +1,941 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.detector.GraphMerger;
+import com.deadlock.detector.model.LockType;
+import com.deadlock.detector.model.LongIntMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 加锁事件日志（LockEventLog）的离线回放
+ * 每块只属于一个写入线程且块内按时间有序，按块首时间戳排序后用小顶堆做多路归并，得到全局时间顺序；
+ * 文件按1GB分段内存映射，记录直接从映射中读取，线程、锁都驻留为int句柄，热路径只有数组和开放寻址表。
+ * 回放时增量检测两类环：
+ * 真实死锁——每次阻塞获取沿"等待的锁 → 持有者 → 持有者等待的锁"走一遍，回到自己即成环；
+ * 加锁顺序环——"持有A时获取B"的边加入用Pearce-Kelly算法维护拓扑序的锁图，
+ * 只有违反当前拓扑序的新边才需要局部搜索，成环的边作为反转边记录，不并入拓扑序。
+ */
+public class LockEventReplay {
+    private static final long SEGMENT = 1L << 30;
+
+    /**
+     * 回放过程中发现环时回调
+     */
+    public interface Listener {
+        default void deadlockFound(Deadlock deadlock) {
+        }
+
+        default void orderCycleFound(OrderCycle cycle) {
+        }
+    }
+
+    /**
+     * 回放到某一时刻时真实发生的死锁：threads.get(i)等待locks.get(i)，该锁由下一个线程持有
+     */
+    public static class Deadlock {
+        private final long timestamp;
+        private final List<String> threads;
+        private final List<String> locks;
+
+        Deadlock(long timestamp, List<String> threads, List<String> locks) {
+            this.timestamp = timestamp;
+            this.threads = threads;
+            this.locks = locks;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public List<String> getThreads() {
+            return threads;
+        }
+
+        public List<String> getLocks() {
+            return locks;
+        }
+    }
+
+    /**
+     * 加锁顺序环：threads.get(i)持有locks.get(i)（在heldSites.get(i)获取）时获取下一把锁（在acquireSites.get(i)）
+     */
+    public static class OrderCycle {
+        private final List<String> locks;
+        private final List<String> threads;
+        private final List<String> heldSites;
+        private final List<String> acquireSites;
+
+        OrderCycle(List<String> locks, List<String> threads, List<String> heldSites, List<String> acquireSites) {
+            this.locks = locks;
+            this.threads = threads;
+            this.heldSites = heldSites;
+            this.acquireSites = acquireSites;
+        }
+
+        public List<String> getLocks() {
+            return locks;
+        }
+
+        public List<String> getThreads() {
+            return threads;
+        }
+
+        public List<String> getHeldSites() {
+            return heldSites;
+        }
+
+        public List<String> getAcquireSites() {
+            return acquireSites;
+        }
+    }
+
+    private final Listener listener;
+
+    private final Map<Integer, String> threadNames = new HashMap<>();
+    private final Map<Integer, String> lockNames = new HashMap<>();
+    private final Map<Integer, String> siteNames = new HashMap<>();
+
+    // 线程句柄 → 稠密下标
+    private final LongIntMap threadIndex = new LongIntMap();
+    private int[] threadHandles = new int[64];
+    private int threadCount;
+    private int[][] heldLocks = new int[64][];
+    private int[][] heldSites = new int[64][];
+    private int[] heldDepth = new int[64];
+    private int[] waitingFor = new int[64];
+
+    // 锁句柄 → 持有者下标+1（0为无人持有）与重入次数
+    private final LongIntMap lockOwner = new LongIntMap();
+    private final LongIntMap lockDepth = new LongIntMap();
+
+    private final OrderGraph orderGraph = new OrderGraph();
+    private final List<Deadlock> deadlocks = new ArrayList<>();
+    private final Set<String> reportedDeadlocks = new HashSet<>();
+    private final List<OrderCycle> orderCycles = new ArrayList<>();
+
+    // CONTENDED观测："线程\0锁" → {时长, 次数}
+    private final Map<String, long[]> contendedWaits = new HashMap<>();
+    private final Map<String, long[]> contendedHolds = new HashMap<>();
+
+    private long startMillis;
+    private long startNanos;
+    private long eventCount;
+
+    public LockEventReplay() {
+        this(null);
+    }
+
+    public LockEventReplay(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 回放整个日志，返回处理的事件数
+     */
+    public long replay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < LockEventLog.BLOCK_SIZE) {
+                throw new IOException("不是加锁事件日志：文件过短");
+            }
+            ByteBuffer header = ByteBuffer.allocate(LockEventLog.HEADER_SIZE).order(LockEventLog.ORDER);
+            channel.read(header, 0);
+            if (header.getInt(0) != LockEventLog.MAGIC || header.getInt(8) != LockEventLog.RECORD_SIZE) {
+                throw new IOException("不是加锁事件日志：文件头不匹配");
+            }
+            if (header.getInt(4) > LockEventLog.VERSION) {
+                throw new IOException("不支持的日志版本 " + header.getInt(4));
+            }
+            startMillis = header.getLong(16);
+            startNanos = header.getLong(24);
+            long end = header.getLong(LockEventLog.END_POSITION_OFFSET);
+            if (end <= 0 || end > size) {
+                end = size;
+            }
+            end = end / LockEventLog.BLOCK_SIZE * LockEventLog.BLOCK_SIZE;
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((end + SEGMENT - 1) / SEGMENT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT, end - start));
+                segments[i].order(LockEventLog.ORDER);
+            }
+            long before = eventCount;
+            merge(segments, sortedBlocks(segments, end));
+            System.out.println("Replayed " + (eventCount - before) + " lock events: " + threadCount + " threads, "
+                    + deadlocks.size() + " deadlock(s), " + orderCycles.size() + " lock-order cycle(s)");
+            return eventCount - before;
+        }
+    }
+
+    /**
+     * 非空块按首条记录的时间戳排序；时间范围与块数能装进一个long时打包后用基本类型排序
+     */
+    private static long[] sortedBlocks(MappedByteBuffer[] segments, long end) {
+        int blockCount = (int) (end / LockEventLog.BLOCK_SIZE);
+        long[] firstTimes = new long[blockCount];
+        int[] blocks = new int[blockCount];
+        int used = 0;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (int block = 1; block < blockCount; block++) {
+            long position = (long) block * LockEventLog.BLOCK_SIZE;
+            MappedByteBuffer segment = segments[(int) (position / SEGMENT)];
+            int offset = (int) (position % SEGMENT);
+            if (segment.get(offset) == LockEventLog.EMPTY) {
+                continue;
+            }
+            long time = segment.getLong(offset + 16);
+            firstTimes[used] = time;
+            blocks[used++] = block;
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+        long[] sorted = new long[used];
+        int indexBits = 64 - Long.numberOfLeadingZeros(Math.max(1, used));
+        if (used > 0 && maxTime - minTime >= 0 && maxTime - minTime < (1L << (63 - indexBits))) {
+            for (int i = 0; i < used; i++) {
+                sorted[i] = ((firstTimes[i] - minTime) << indexBits) | i;
+            }
+            Arrays.sort(sorted);
+            long mask = (1L << indexBits) - 1;
+            for (int i = 0; i < used; i++) {
+                sorted[i] = (long) blocks[(int) (sorted[i] & mask)] * LockEventLog.BLOCK_SIZE;
+            }
+        } else {
+            Integer[] order = new Integer[used];
+            for (int i = 0; i < used; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(firstTimes[a], firstTimes[b]));
+            for (int i = 0; i < used; i++) {
+                sorted[i] = (long) blocks[order[i]] * LockEventLog.BLOCK_SIZE;
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * 多路归并：堆中每个游标指向一块里的下一条记录，块首时间不晚于堆顶时才把下一块加入堆
+     */
+    private void merge(MappedByteBuffer[] segments, long[] blocks) {
+        long[] heapTime = new long[16];
+        long[] heapPosition = new long[16];
+        int heapSize = 0;
+        int next = 0;
+        while (next < blocks.length || heapSize > 0) {
+            if (next < blocks.length && (heapSize == 0 || timeAt(segments, blocks[next]) <= heapTime[0])) {
+                if (heapSize == heapTime.length) {
+                    heapTime = Arrays.copyOf(heapTime, heapSize * 2);
+                    heapPosition = Arrays.copyOf(heapPosition, heapSize * 2);
+                }
+                long position = blocks[next++];
+                heapTime[heapSize] = timeAt(segments, position);
+                heapPosition[heapSize] = position;
+                siftUp(heapTime, heapPosition, heapSize++);
+                continue;
+            }
+            long position = heapPosition[0];
+            MappedByteBuffer segment = segments[(int) (position / SEGMENT)];
+            int offset = (int) (position % SEGMENT);
+            int slots = 1 + (segment.get(offset) >= LockEventLog.DEFINE_THREAD ? segment.getShort(offset + 2) : 0);
+            handle(segment, offset);
+            long following = position + (long) slots * LockEventLog.RECORD_SIZE;
+            if (following % LockEventLog.BLOCK_SIZE != 0 && segment.get((int) (following % SEGMENT)) != LockEventLog.EMPTY) {
+                heapTime[0] = segment.getLong((int) (following % SEGMENT) + 16);
+                heapPosition[0] = following;
+            } else {
+                heapSize--;
+                heapTime[0] = heapTime[heapSize];
+                heapPosition[0] = heapPosition[heapSize];
+            }
+            siftDown(heapTime, heapPosition, heapSize);
+        }
+    }
+
+    private static long timeAt(MappedByteBuffer[] segments, long position) {
+        return segments[(int) (position / SEGMENT)].getLong((int) (position % SEGMENT) + 16);
+    }
+
+    private static void siftUp(long[] time, long[] position, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (time[parent] <= time[index]) {
+                return;
+            }
+            swap(time, position, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] time, long[] position, int size) {
+        int index = 0;
+        while (true) {
+            int left = index * 2 + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && time[left + 1] < time[left] ? left + 1 : left;
+            if (time[index] <= time[smallest]) {
+                return;
+            }
+            swap(time, position, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(long[] time, long[] position, int i, int j) {
+        long t = time[i];
+        time[i] = time[j];
+        time[j] = t;
+        long p = position[i];
+        position[i] = position[j];
+        position[j] = p;
+    }
+
+    private void handle(MappedByteBuffer segment, int offset) {
+        byte kind = segment.get(offset);
+        int thread = segment.getInt(offset + 4);
+        int lock = segment.getInt(offset + 8);
+        int aux = segment.getInt(offset + 12);
+        switch (kind) {
+            case LockEventLog.ACQUIRE:
+                onAcquire(indexOf(thread), lock, aux, segment.getLong(offset + 16));
+                break;
+            case LockEventLog.ACQUIRED:
+                onAcquired(indexOf(thread), lock, aux);
+                break;
+            case LockEventLog.RELEASE:
+                onRelease(indexOf(thread), lock);
+                break;
+            case LockEventLog.CONTENDED:
+                onContended(thread, lock, aux, segment.getLong(offset + 24));
+                break;
+            case LockEventLog.ORDER_EDGE:
+                onOrderEdge(thread, lock, aux, segment.getLong(offset + 24));
+                break;
+            case LockEventLog.DEFINE_THREAD:
+                threadNames.put(aux, readName(segment, offset));
+                return;
+            case LockEventLog.DEFINE_LOCK:
+                lockNames.put(aux, readName(segment, offset));
+                return;
+            case LockEventLog.DEFINE_SITE:
+                siteNames.put(aux, readName(segment, offset));
+                return;
+            default:
+                return;
+        }
+        eventCount++;
+    }
+
+    private static String readName(MappedByteBuffer segment, int offset) {
+        int length = (int) segment.getLong(offset + 24);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = segment.get(offset + LockEventLog.RECORD_SIZE + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int indexOf(int thread) {
+        int index = threadIndex.get(thread, -1);
+        if (index >= 0) {
+            return index;
+        }
+        index = threadCount++;
+        if (index == threadHandles.length) {
+            int capacity = index * 2;
+            threadHandles = Arrays.copyOf(threadHandles, capacity);
+            heldLocks = Arrays.copyOf(heldLocks, capacity);
+            heldSites = Arrays.copyOf(heldSites, capacity);
+            heldDepth = Arrays.copyOf(heldDepth, capacity);
+            waitingFor = Arrays.copyOf(waitingFor, capacity);
+        }
+        threadHandles[index] = thread;
+        heldLocks[index] = new int[8];
+        heldSites[index] = new int[8];
+        threadIndex.put(thread, index);
+        return index;
+    }
+
+    private void onAcquire(int thread, int lock, int site, long timestamp) {
+        int[] locks = heldLocks[thread];
+        int depth = heldDepth[thread];
+        for (int i = 0; i < depth; i++) {
+            if (locks[i] == lock) {
+                // 重入
+                return;
+            }
+        }
+        for (int i = 0; i < depth; i++) {
+            if (orderGraph.addEdge(locks[i], lock, thread, heldSites[thread][i], site)) {
+                reportOrderCycles();
+            }
+        }
+        int owner = lockOwner.get(lock, 0) - 1;
+        if (owner >= 0 && owner != thread) {
+            waitingFor[thread] = lock;
+            checkDeadlock(thread, timestamp);
+        }
+    }
+
+    private void onOrderEdge(int thread, int lock, int held, long sites) {
+        int index = thread == -1 ? OrderGraph.SHARED : indexOf(thread);
+        if (orderGraph.addEdge(held, lock, index, (int) (sites >>> 32), (int) sites)) {
+            reportOrderCycles();
+        }
+    }
+
+    private void onAcquired(int thread, int lock, int site) {
+        waitingFor[thread] = 0;
+        if (lockOwner.get(lock, 0) == thread + 1) {
+            lockDepth.put(lock, lockDepth.get(lock, 0) + 1);
+        } else {
+            lockOwner.put(lock, thread + 1);
+            lockDepth.put(lock, 1);
+        }
+        int depth = heldDepth[thread];
+        if (depth == heldLocks[thread].length) {
+            heldLocks[thread] = Arrays.copyOf(heldLocks[thread], depth * 2);
+            heldSites[thread] = Arrays.copyOf(heldSites[thread], depth * 2);
+        }
+        heldLocks[thread][depth] = lock;
+        heldSites[thread][depth] = site;
+        heldDepth[thread] = depth + 1;
+    }
+
+    private void onRelease(int thread, int lock) {
+        int[] locks = heldLocks[thread];
+        int depth = heldDepth[thread];
+        for (int i = depth - 1; i >= 0; i--) {
+            if (locks[i] == lock) {
+                System.arraycopy(locks, i + 1, locks, i, depth - i - 1);
+                System.arraycopy(heldSites[thread], i + 1, heldSites[thread], i, depth - i - 1);
+                heldDepth[thread] = depth - 1;
+                break;
+            }
+        }
+        if (lockOwner.get(lock, 0) == thread + 1) {
+            int remaining = lockDepth.get(lock, 1) - 1;
+            lockDepth.put(lock, remaining);
+            if (remaining <= 0) {
+                lockOwner.put(lock, 0);
+            }
+        }
+    }
+
+    private void onContended(int thread, int lock, int owner, long durationNanos) {
+        long[] wait = contendedWaits.computeIfAbsent(thread + "\u0000" + lock, k -> new long[2]);
+        wait[0] += durationNanos;
+        wait[1]++;
+        if (owner != 0 && owner != thread) {
+            contendedHolds.computeIfAbsent(owner + "\u0000" + lock, k -> new long[2])[1]++;
+        }
+    }
+
+    /**
+     * 沿等待链走：等待的锁 → 持有者 → 持有者等待的锁……回到起点即为死锁，步数不超过线程数
+     */
+    private void checkDeadlock(int start, long timestamp) {
+        int current = start;
+        for (int steps = 0; steps < threadCount; steps++) {
+            int lock = waitingFor[current];
+            if (lock == 0) {
+                return;
+            }
+            int owner = lockOwner.get(lock, 0) - 1;
+            if (owner < 0) {
+                return;
+            }
+            if (owner == start) {
+                recordDeadlock(start, timestamp);
+                return;
+            }
+            current = owner;
+        }
+    }
+
+    private void recordDeadlock(int start, long timestamp) {
+        List<String> threads = new ArrayList<>();
+        List<String> locks = new ArrayList<>();
+        List<Integer> members = new ArrayList<>();
+        int current = start;
+        do {
+            members.add(threadHandles[current]);
+            threads.add(threadName(threadHandles[current]));
+            locks.add(lockName(waitingFor[current]));
+            current = lockOwner.get(waitingFor[current], 0) - 1;
+        } while (current != start);
+        Collections.sort(members);
+        if (!reportedDeadlocks.add(members.toString())) {
+            return;
+        }
+        Deadlock deadlock = new Deadlock(timestamp, threads, locks);
+        deadlocks.add(deadlock);
+        if (listener != null) {
+            listener.deadlockFound(deadlock);
+        }
+    }
+
+    private void reportOrderCycles() {
+        for (int[] cycle : orderGraph.takeCycles()) {
+            List<String> locks = new ArrayList<>();
+            List<String> threads = new ArrayList<>();
+            List<String> held = new ArrayList<>();
+            List<String> acquired = new ArrayList<>();
+            for (int edge : cycle) {
+                locks.add(lockName(orderGraph.fromLock(edge)));
+                int thread = orderGraph.threadOf(edge);
+                threads.add(thread == OrderGraph.SHARED ? "多个线程" : threadName(threadHandles[thread]));
+                held.add(siteName(orderGraph.heldSiteOf(edge)));
+                acquired.add(siteName(orderGraph.acquireSiteOf(edge)));
+            }
+            OrderCycle orderCycle = new OrderCycle(locks, threads, held, acquired);
+            orderCycles.add(orderCycle);
+            if (listener != null) {
+                listener.orderCycleFound(orderCycle);
+            }
+        }
+    }
+
+    private String threadName(int handle) {
+        String name = threadNames.get(handle);
+        return "Thread_" + (name != null ? name : "#" + handle);
+    }
+
+    private String lockName(int lock) {
+        String name = lockNames.get(lock);
+        return name != null ? name : "Object@0x" + Integer.toHexString(lock);
+    }
+
+    private String siteName(int site) {
+        String name = siteNames.get(site);
+        return name != null ? name : "?";
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public List<Deadlock> getDeadlocks() {
+        return deadlocks;
+    }
+
+    public List<OrderCycle> getOrderCycles() {
+        return orderCycles;
+    }
+
+    /**
+     * 构建检测器：真实死锁时刻的持有/等待、加锁顺序环上的边以及JFR竞争观测
+     * 加锁顺序环上的线程i持有locks[i]、等待locks[i+1]；环上每条边是单独的线程节点（线程@环序号.边序号），
+     * 同一线程的各条边互相标记为先后执行，一个环的持有不会与另一个环的等待拼成新的环
+     */
+    public DeadlockDetector buildDetector() {
+        DeadlockDetector detector = new DeadlockDetector();
+        for (Deadlock deadlock : deadlocks) {
+            int size = deadlock.getThreads().size();
+            for (int i = 0; i < size; i++) {
+                detector.addProcessWaitsForResource(deadlock.getThreads().get(i), deadlock.getLocks().get(i), LockType.SYNCHRONIZED);
+                detector.addProcessHoldsResource(deadlock.getThreads().get((i + 1) % size), deadlock.getLocks().get(i), LockType.SYNCHRONIZED);
+            }
+        }
+        Map<String, List<String>> byThread = new HashMap<>();
+        for (int c = 0; c < orderCycles.size(); c++) {
+            OrderCycle cycle = orderCycles.get(c);
+            int size = cycle.getLocks().size();
+            for (int i = 0; i < size; i++) {
+                String thread = cycle.getThreads().get(i);
+                boolean shared = !thread.startsWith("Thread_");
+                String process = (shared ? "Thread_" + thread : thread) + "@" + (c + 1) + "." + (i + 1);
+                detector.addProcessHoldsResource(process, cycle.getLocks().get(i), LockType.SYNCHRONIZED);
+                detector.addProcessWaitsForResource(process, cycle.getLocks().get((i + 1) % size), LockType.SYNCHRONIZED);
+                if (!shared) {
+                    List<String> sameThread = byThread.computeIfAbsent(thread, k -> new ArrayList<>());
+                    for (String earlier : sameThread) {
+                        detector.addHappensBefore(earlier, process);
+                    }
+                    sameThread.add(process);
+                }
+            }
+        }
+        for (Map.Entry<String, long[]> entry : contendedHolds.entrySet()) {
+            String[] key = entry.getKey().split("\u0000", 2);
+            detector.addObservedHold(threadName(Integer.parseInt(key[0])), lockName(Integer.parseInt(key[1])),
+                    LockType.SYNCHRONIZED, entry.getValue()[1]);
+        }
+        for (Map.Entry<String, long[]> entry : contendedWaits.entrySet()) {
+            String[] key = entry.getKey().split("\u0000", 2);
+            detector.addObservedWait(threadName(Integer.parseInt(key[0])), lockName(Integer.parseInt(key[1])),
+                    LockType.SYNCHRONIZED, entry.getValue()[0], entry.getValue()[1]);
+        }
+        return detector;
+    }
+
+    /**
+     * 把回放中记录的所有加锁顺序边（不只是成环的）交给合并器，与静态分析的边做连接
+     * @param source 来源名称（日志文件名）
+     */
+    public void exportOrderEdges(GraphMerger merger, String source) {
+        for (int edge = 0; edge < orderGraph.edgeCount(); edge++) {
+            int thread = orderGraph.threadOf(edge);
+            merger.addRuntimeOrderEdge(source, thread == OrderGraph.SHARED ? null : threadName(threadHandles[thread]),
+                    lockName(orderGraph.fromLock(edge)), lockName(orderGraph.toLock(edge)),
+                    siteName(orderGraph.heldSiteOf(edge)), siteName(orderGraph.acquireSiteOf(edge)));
+        }
+    }
+
+    /**
+     * 回放报告
+     */
+    public String formatReport() {
+        StringBuilder report = new StringBuilder(String.format("加锁事件日志：%d 个事件，%d 个线程，%d 条加锁顺序边\n",
+                eventCount, threadCount, orderGraph.edgeCount()));
+        if (!deadlocks.isEmpty()) {
+            report.append("\n回放中发生的死锁：\n");
+            for (Deadlock deadlock : deadlocks) {
+                report.append(String.format("  开始后 %.1f ms：", (deadlock.getTimestamp() - startNanos) / 1_000_000.0));
+                for (int i = 0; i < deadlock.getThreads().size(); i++) {
+                    report.append(i > 0 ? "，" : "").append(deadlock.getThreads().get(i))
+                            .append(" 等待 ").append(deadlock.getLocks().get(i));
+                }
+                report.append('\n');
+            }
+        }
+        if (!orderCycles.isEmpty()) {
+            report.append("\n加锁顺序环（潜在死锁）：\n");
+            for (OrderCycle cycle : orderCycles) {
+                int size = cycle.getLocks().size();
+                for (int i = 0; i < size; i++) {
+                    report.append(String.format("  %s 持有 %s（%s）时获取 %s（%s）\n", cycle.getThreads().get(i),
+                            cycle.getLocks().get(i), cycle.getHeldSites().get(i),
+                            cycle.getLocks().get((i + 1) % size), cycle.getAcquireSites().get(i)));
+                }
+                report.append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * 加锁顺序图：锁为节点，"持有A时获取B"为边，增量维护拓扑序（Pearce-Kelly）
+     * 新边u→v满足ord(u) < ord(v)时直接加入；否则在ord介于两者之间的区域内正向搜索v能否到达u，
+     * 不能则对受影响的节点重新分配拓扑序，能则记录一个环，该边作为反转边保存但不参与拓扑序。
+     * 反转边另存一张邻接表：已有反转边时，新加入拓扑序的边还要在含反转边的完整图上找回到自己的最短路径，
+     * 经过之前反转边的环（例如单线程环A⇄B之后另一个线程的A→C→B）不会漏掉。
+     * 只由一个线程记录过的环不会死锁，先挂起，等其中某条边被另一个线程记录时再报告。
+     */
+    private static class OrderGraph {
+        static final int SHARED = -1;
+
+        private final LongIntMap edgeIndex = new LongIntMap();
+        private final LongIntMap nodeIndex = new LongIntMap();
+        private int[] nodeLock = new int[64];
+        private int[] order = new int[64];
+        private final List<List<Integer>> outgoing = new ArrayList<>();
+        private final List<List<Integer>> incoming = new ArrayList<>();
+        // 反转边（闭合环、不参与拓扑序的边）
+        private final List<List<Integer>> reversed = new ArrayList<>();
+        private int reversedCount;
+        private int nodeCount;
+
+        private int[] edgeFrom = new int[64];
+        private int[] edgeTo = new int[64];
+        private int[] edgeThread = new int[64];
+        private int[] edgeHeldSite = new int[64];
+        private int[] edgeAcquireSite = new int[64];
+        private int edgeCount;
+
+        private final List<int[]> pendingCycles = new ArrayList<>();
+        private final List<int[]> readyCycles = new ArrayList<>();
+
+        /**
+         * 返回是否有新的可报告环
+         */
+        boolean addEdge(int fromLock, int toLock, int thread, int heldSite, int acquireSite) {
+            long key = ((long) fromLock << 32) | (toLock & 0xffffffffL);
+            int existing = edgeIndex.get(key, -1);
+            if (existing >= 0) {
+                if (edgeThread[existing] != thread && edgeThread[existing] != SHARED) {
+                    edgeThread[existing] = SHARED;
+                    return promotePending(existing);
+                }
+                return false;
+            }
+            int from = node(fromLock);
+            int to = node(toLock);
+            int edge = edgeCount++;
+            if (edge == edgeFrom.length) {
+                edgeFrom = Arrays.copyOf(edgeFrom, edge * 2);
+                edgeTo = Arrays.copyOf(edgeTo, edge * 2);
+                edgeThread = Arrays.copyOf(edgeThread, edge * 2);
+                edgeHeldSite = Arrays.copyOf(edgeHeldSite, edge * 2);
+                edgeAcquireSite = Arrays.copyOf(edgeAcquireSite, edge * 2);
+            }
+            edgeFrom[edge] = from;
+            edgeTo[edge] = to;
+            edgeThread[edge] = thread;
+            edgeHeldSite[edge] = heldSite;
+            edgeAcquireSite[edge] = acquireSite;
+            edgeIndex.put(key, edge);
+            if (from == to) {
+                return false;
+            }
+            if (order[from] < order[to]) {
+                link(edge);
+                return closesThroughReversed(edge);
+            }
+            int[] path = forwardPath(to, from, order[from]);
+            if (path == null) {
+                reorder(from, to);
+                link(edge);
+                return closesThroughReversed(edge);
+            }
+            reversed.get(from).add(edge);
+            reversedCount++;
+            // 环：to ⇝ from 的路径加上这条边
+            return classify(append(path, edge));
+        }
+
+        /**
+         * 拓扑序内的新边只可能经过反转边成环：在完整图上找 to ⇝ from 的最短路径
+         */
+        private boolean closesThroughReversed(int edge) {
+            if (reversedCount == 0) {
+                return false;
+            }
+            int[] path = shortestPath(edgeTo[edge], edgeFrom[edge]);
+            return path != null && classify(append(path, edge));
+        }
+
+        private static int[] append(int[] path, int edge) {
+            int[] cycle = Arrays.copyOf(path, path.length + 1);
+            cycle[path.length] = edge;
+            return cycle;
+        }
+
+        /**
+         * 含反转边的完整图上从start到target的最短边路径（BFS）；找不到返回null
+         */
+        private int[] shortestPath(int start, int target) {
+            int[] viaEdge = new int[nodeCount];
+            Arrays.fill(viaEdge, -2);
+            viaEdge[start] = -1;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (List<List<Integer>> adjacency : Arrays.asList(outgoing, reversed)) {
+                    for (int edge : adjacency.get(node)) {
+                        int next = edgeTo[edge];
+                        if (viaEdge[next] != -2) {
+                            continue;
+                        }
+                        viaEdge[next] = edge;
+                        if (next == target) {
+                            List<Integer> path = new ArrayList<>();
+                            for (int step = next; viaEdge[step] >= 0; step = edgeFrom[viaEdge[step]]) {
+                                path.add(0, viaEdge[step]);
+                            }
+                            return path.stream().mapToInt(Integer::intValue).toArray();
+                        }
+                        queue.add(next);
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean classify(int[] cycle) {
+            int firstThread = edgeThread[cycle[0]];
+            for (int edge : cycle) {
+                if (edgeThread[edge] == SHARED || edgeThread[edge] != firstThread) {
+                    readyCycles.add(rotateToEdge(cycle));
+                    return true;
+                }
+            }
+            pendingCycles.add(cycle);
+            return false;
+        }
+
+        private boolean promotePending(int edge) {
+            boolean promoted = false;
+            for (int i = pendingCycles.size() - 1; i >= 0; i--) {
+                int[] cycle = pendingCycles.get(i);
+                for (int member : cycle) {
+                    if (member == edge) {
+                        pendingCycles.remove(i);
+                        readyCycles.add(rotateToEdge(cycle));
+                        promoted = true;
+                        break;
+                    }
+                }
+            }
+            return promoted;
+        }
+
+        /**
+         * 以闭合环的那条边结尾的边序列改为从它开始，与报告的"持有第i把锁时获取第i+1把"对应
+         */
+        private int[] rotateToEdge(int[] cycle) {
+            int[] rotated = new int[cycle.length];
+            rotated[0] = cycle[cycle.length - 1];
+            System.arraycopy(cycle, 0, rotated, 1, cycle.length - 1);
+            return rotated;
+        }
+
+        List<int[]> takeCycles() {
+            List<int[]> cycles = new ArrayList<>(readyCycles);
+            readyCycles.clear();
+            return cycles;
+        }
+
+        int fromLock(int edge) {
+            return nodeLock[edgeFrom[edge]];
+        }
+
+        int toLock(int edge) {
+            return nodeLock[edgeTo[edge]];
+        }
+
+        int threadOf(int edge) {
+            return edgeThread[edge];
+        }
+
+        int heldSiteOf(int edge) {
+            return edgeHeldSite[edge];
+        }
+
+        int acquireSiteOf(int edge) {
+            return edgeAcquireSite[edge];
+        }
+
+        int edgeCount() {
+            return edgeCount;
+        }
+
+        private int node(int lock) {
+            int index = nodeIndex.get(lock, -1);
+            if (index >= 0) {
+                return index;
+            }
+            index = nodeCount++;
+            if (index == nodeLock.length) {
+                nodeLock = Arrays.copyOf(nodeLock, index * 2);
+                order = Arrays.copyOf(order, index * 2);
+            }
+            nodeLock[index] = lock;
+            order[index] = index;
+            outgoing.add(new ArrayList<>());
+            incoming.add(new ArrayList<>());
+            reversed.add(new ArrayList<>());
+            nodeIndex.put(lock, index);
+            return index;
+        }
+
+        private void link(int edge) {
+            outgoing.get(edgeFrom[edge]).add(edge);
+            incoming.get(edgeTo[edge]).add(edge);
+        }
+
+        /**
+         * 从start出发、只经过ord不超过upperBound的节点，找到target的边路径；找不到返回null
+         */
+        private int[] forwardPath(int start, int target, int upperBound) {
+            Map<Integer, Integer> viaEdge = new HashMap<>();
+            List<Integer> stack = new ArrayList<>();
+            stack.add(start);
+            viaEdge.put(start, -1);
+            while (!stack.isEmpty()) {
+                int node = stack.remove(stack.size() - 1);
+                for (int edge : outgoing.get(node)) {
+                    int next = edgeTo[edge];
+                    if (viaEdge.containsKey(next) || order[next] > upperBound) {
+                        continue;
+                    }
+                    viaEdge.put(next, edge);
+                    if (next == target) {
+                        List<Integer> path = new ArrayList<>();
+                        for (int step = next; viaEdge.get(step) >= 0; step = edgeFrom[viaEdge.get(step)]) {
+                            path.add(0, viaEdge.get(step));
+                        }
+                        return path.stream().mapToInt(Integer::intValue).toArray();
+                    }
+                    stack.add(next);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 新边from→to违反拓扑序且不成环：from能到达的区域与能到达to的区域交换拓扑序
+         */
+        private void reorder(int from, int to) {
+            int lower = order[to];
+            int upper = order[from];
+            List<Integer> forward = collect(to, upper, true);
+            List<Integer> backward = collect(from, lower, false);
+            List<Integer> slots = new ArrayList<>();
+            for (int node : backward) {
+                slots.add(order[node]);
+            }
+            for (int node : forward) {
+                slots.add(order[node]);
+            }
+            Collections.sort(slots);
+            backward.sort((a, b) -> Integer.compare(order[a], order[b]));
+            forward.sort((a, b) -> Integer.compare(order[a], order[b]));
+            int slot = 0;
+            for (int node : backward) {
+                order[node] = slots.get(slot++);
+            }
+            for (int node : forward) {
+                order[node] = slots.get(slot++);
+            }
+        }
+
+        private List<Integer> collect(int start, int bound, boolean forward) {
+            Set<Integer> visited = new HashSet<>();
+            List<Integer> result = new ArrayList<>();
+            List<Integer> stack = new ArrayList<>();
+            stack.add(start);
+            visited.add(start);
+            while (!stack.isEmpty()) {
+                int node = stack.remove(stack.size() - 1);
+                result.add(node);
+                for (int edge : forward ? outgoing.get(node) : incoming.get(node)) {
+                    int next = forward ? edgeTo[edge] : edgeFrom[edge];
+                    boolean inRange = forward ? order[next] < bound : order[next] > bound;
+                    if (inRange && visited.add(next)) {
+                        stack.add(next);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
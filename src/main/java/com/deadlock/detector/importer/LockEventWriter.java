@@ -0,0 +1,139 @@
+package com.deadlock.detector.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 单线程的加锁事件日志写入器（格式见LockEventLog），按窗口内存映射追加
+ * 所有记录写在同一串连续的块里，等同于一个写入线程；多线程采集由Agent自己的写入器负责。
+ */
+public class LockEventWriter implements Closeable {
+    private static final int WINDOW = 8 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    // 下一条记录的文件位置
+    private long position;
+    private long recordCount;
+
+    public LockEventWriter(Path file, long startMillis, long startNanos) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(0);
+        window.putInt(0, LockEventLog.MAGIC);
+        window.putInt(4, LockEventLog.VERSION);
+        window.putInt(8, LockEventLog.RECORD_SIZE);
+        window.putLong(16, startMillis);
+        window.putLong(24, startNanos);
+        // 文件头单独占第一块，记录从第二块开始
+        position = LockEventLog.BLOCK_SIZE;
+    }
+
+    public void defineThread(int threadId, String name) throws IOException {
+        define(LockEventLog.DEFINE_THREAD, threadId, name);
+    }
+
+    public void defineLock(int lockId, String name) throws IOException {
+        define(LockEventLog.DEFINE_LOCK, lockId, name);
+    }
+
+    public void defineSite(int siteId, String site) throws IOException {
+        define(LockEventLog.DEFINE_SITE, siteId, site);
+    }
+
+    public void acquire(int thread, int lock, int site, long timestamp) throws IOException {
+        record(LockEventLog.ACQUIRE, thread, lock, site, timestamp, 0);
+    }
+
+    public void acquired(int thread, int lock, int site, long timestamp) throws IOException {
+        record(LockEventLog.ACQUIRED, thread, lock, site, timestamp, 0);
+    }
+
+    public void release(int thread, int lock, int site, long timestamp) throws IOException {
+        record(LockEventLog.RELEASE, thread, lock, site, timestamp, 0);
+    }
+
+    /**
+     * 一次竞争：thread从timestamp起等待了durationNanos，当时锁由owner持有（未知时为0）
+     */
+    public void contended(int thread, int lock, int owner, long timestamp, long durationNanos) throws IOException {
+        record(LockEventLog.CONTENDED, thread, lock, owner, timestamp, durationNanos);
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private void define(byte kind, int id, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, LockEventLog.MAX_NAME_BYTES);
+        int slots = LockEventLog.payloadSlots(length);
+        int offset = reserve(1 + slots);
+        for (int i = 0; i < length; i++) {
+            window.put(offset + LockEventLog.RECORD_SIZE + i, bytes[i]);
+        }
+        window.putShort(offset + 2, (short) slots);
+        window.putInt(offset + 12, id);
+        window.putLong(offset + 24, length);
+        window.put(offset, kind);
+    }
+
+    private void record(byte kind, int thread, int lock, int aux, long timestamp, long value) throws IOException {
+        int offset = reserve(1);
+        window.putInt(offset + 4, thread);
+        window.putInt(offset + 8, lock);
+        window.putInt(offset + 12, aux);
+        window.putLong(offset + 16, timestamp);
+        window.putLong(offset + 24, value);
+        window.put(offset, kind);
+        recordCount++;
+    }
+
+    /**
+     * 预留连续的槽，放不进当前块时从下一块开始；返回在窗口中的偏移
+     */
+    private int reserve(int slots) throws IOException {
+        int bytes = slots * LockEventLog.RECORD_SIZE;
+        long blockEnd = (position / LockEventLog.BLOCK_SIZE + 1) * LockEventLog.BLOCK_SIZE;
+        if (position + bytes > blockEnd) {
+            position = blockEnd;
+        }
+        if (position + bytes > windowStart + window.capacity()) {
+            map(position);
+        }
+        int offset = (int) (position - windowStart);
+        position += bytes;
+        return offset;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, start, WINDOW);
+        window.order(LockEventLog.ORDER);
+    }
+
+    /**
+     * 写入结束位置并截掉窗口预留的空白（部分平台在映射仍然存在时不允许截断，此时保留空白）
+     */
+    @Override
+    public void close() throws IOException {
+        long end = (position + LockEventLog.BLOCK_SIZE - 1) / LockEventLog.BLOCK_SIZE * LockEventLog.BLOCK_SIZE;
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, LockEventLog.HEADER_SIZE);
+        header.order(LockEventLog.ORDER);
+        header.putLong(LockEventLog.END_POSITION_OFFSET, end);
+        header.force();
+        window.force();
+        try {
+            channel.truncate(end);
+        } catch (IOException e) {
+            System.out.println("Could not truncate event log: " + e.getMessage());
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,105 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.model.LockType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 线程转储导入器
+ * 把转储中的持锁（locked、Locked ownable synchronizers）映射为持有边，
+ * 等待（waiting to lock、parking to wait for）映射为等待边，构建与源码分析相同的资源分配图。
+ * 文件中有多份转储时使用最后一份，解析时只保留当前转储的图。
+ */
+public class ThreadDumpImporter implements ThreadDumpParser.Listener {
+
+    /**
+     * 导入进度回调
+     */
+    public interface Progress {
+        void update(long position, long size);
+    }
+
+    private final Progress progress;
+    private DeadlockDetector detector = new DeadlockDetector();
+    private int dumpCount;
+    private int threadCount;
+    private int blockedCount;
+
+    public ThreadDumpImporter() {
+        this(null);
+    }
+
+    public ThreadDumpImporter(Progress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * 流式解析转储文件并构建检测器
+     */
+    public DeadlockDetector importDump(Path file) throws IOException {
+        new ThreadDumpParser(this).parse(file);
+        System.out.println("Imported thread dump: " + threadCount + " threads, " + blockedCount
+                + " blocked, " + dumpCount + " dump(s) in file");
+        return detector;
+    }
+
+    @Override
+    public void dumpStarted(int index) {
+        detector = new DeadlockDetector();
+        dumpCount = index + 1;
+        threadCount = 0;
+        blockedCount = 0;
+    }
+
+    @Override
+    public void threadStarted(String threadId, String name) {
+        threadCount++;
+    }
+
+    @Override
+    public void lockHeld(String threadId, String resourceId, LockType lockType) {
+        detector.addProcessHoldsResource(threadId, resourceId, lockType);
+    }
+
+    @Override
+    public void lockWaited(String threadId, String resourceId, LockType lockType) {
+        blockedCount++;
+        detector.addProcessWaitsForResource(threadId, resourceId, lockType);
+    }
+
+    @Override
+    public void progress(long position, long size) {
+        if (progress != null) {
+            progress.update(position, size);
+        }
+    }
+
+    public DeadlockDetector getDetector() {
+        return detector;
+    }
+
+    public int getDumpCount() {
+        return dumpCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * 等待监视器或显式锁的线程数
+     */
+    public int getBlockedCount() {
+        return blockedCount;
+    }
+
+    /**
+     * 导入摘要
+     */
+    public String formatSummary() {
+        return String.format("线程转储：共 %d 个线程，%d 个线程在等待锁%s\n", threadCount, blockedCount,
+                dumpCount > 1 ? "（文件中有 " + dumpCount + " 份转储，使用最后一份）" : "");
+    }
+}
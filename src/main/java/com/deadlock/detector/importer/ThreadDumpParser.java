@@ -0,0 +1,346 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.model.LockType;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * jstack / jcmd Thread.print 线程转储的流式解析器
+ * 按窗口内存映射文件，逐行扫描一遍，不把整个文件读入内存；栈帧行（"at ..."）只比较首字节，
+ * 只有线程头和加锁行才解码为字符串，堆占用与文件大小无关。
+ * 识别的行：
+ * "name" #n ... 线程头；java.lang.Thread.State: 线程状态；
+ * - locked &lt;0x..&gt; (a X) 持有监视器；- waiting to lock / waiting to re-lock in wait() 等待监视器；
+ * - parking to wait for &lt;0x..&gt; 等待ReentrantLock/ReentrantReadWriteLock（Condition与其他同步器没有持有者，忽略）；
+ * Locked ownable synchronizers 段中的 - &lt;0x..&gt; 持有显式锁。
+ * Object.wait()期间监视器已释放，同一线程"waiting on"的对象之后的"locked"不算持有。
+ * 同一文件中的多份转储（kill -3追加到日志）各自回调dumpStarted/dumpFinished；
+ * jstack末尾的"Found one Java-level deadlock"段重复列出线程栈，跳过。
+ */
+public class ThreadDumpParser {
+    // 每次映射的窗口大小，窗口在行首对齐
+    private static final int WINDOW = 64 * 1024 * 1024;
+
+    private static final byte[] FULL_THREAD_DUMP = ascii("Full thread dump");
+    private static final byte[] FOUND = ascii("Found ");
+    private static final byte[] STATE = ascii("java.lang.Thread.State:");
+    private static final byte[] LOCKED = ascii("- locked ");
+    private static final byte[] WAITING_TO_LOCK = ascii("- waiting to lock ");
+    private static final byte[] WAITING_TO_RELOCK = ascii("- waiting to re-lock in wait() ");
+    private static final byte[] WAITING_ON = ascii("- waiting on ");
+    private static final byte[] PARKING = ascii("- parking to wait for ");
+    private static final byte[] OWNABLE = ascii("Locked ownable synchronizers:");
+    private static final byte[] OWNABLE_ENTRY = ascii("- <0x");
+
+    /**
+     * 解析回调
+     */
+    public interface Listener {
+        /**
+         * 一份转储开始，index从0开始
+         */
+        default void dumpStarted(int index) {
+        }
+
+        /**
+         * 线程头，threadId为 Thread_名字#线程编号，同一线程在多份转储中ID相同；
+         * 线程头没有编号时用 Thread_名字@nid，两者都没有时同名线程按出现顺序追加 ~n
+         */
+        default void threadStarted(String threadId, String name) {
+        }
+
+        default void threadState(String threadId, String state) {
+        }
+
+        void lockHeld(String threadId, String resourceId, LockType lockType);
+
+        void lockWaited(String threadId, String resourceId, LockType lockType);
+
+        default void dumpFinished(int index) {
+        }
+
+        /**
+         * 每处理完一个窗口回调一次，可在此响应取消
+         */
+        default void progress(long position, long size) {
+        }
+    }
+
+    private final Listener listener;
+    private byte[] line = new byte[1024];
+    private int dumpIndex = -1;
+    private boolean inDump;
+    private boolean skippingReport;
+    private boolean inOwnable;
+    private String currentThread;
+    private final Map<String, Integer> threadNames = new HashMap<>();
+    private final Set<String> waitedOn = new HashSet<>();
+
+    public ThreadDumpParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 解析文件中的所有转储
+     */
+    public void parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            boolean skipToNewline = false;
+            while (position < size) {
+                int length = (int) Math.min(WINDOW, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (buffer.get(i) == '\n') {
+                        if (!skipToNewline) {
+                            handleLine(buffer, lineStart, i);
+                        }
+                        skipToNewline = false;
+                        lineStart = i + 1;
+                    }
+                }
+                if (position + length == size) {
+                    if (lineStart < length && !skipToNewline) {
+                        handleLine(buffer, lineStart, length);
+                    }
+                    position = size;
+                } else if (lineStart == 0) {
+                    // 超过窗口的超长行不是要识别的行，跳到下一个换行
+                    skipToNewline = true;
+                    position += length;
+                } else {
+                    position += lineStart;
+                }
+                listener.progress(position, size);
+            }
+        }
+        finishDump();
+    }
+
+    private void handleLine(MappedByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) == ' ' || buffer.get(start) == '\t')) {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) == '\r' || buffer.get(end - 1) == ' ')) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        byte first = buffer.get(start);
+        // 绝大多数行是栈帧
+        if (first == 'a' && end - start > 2 && buffer.get(start + 1) == 't' && buffer.get(start + 2) == ' ') {
+            return;
+        }
+        if (startsWith(buffer, start, end, FULL_THREAD_DUMP)) {
+            finishDump();
+            startDump();
+            return;
+        }
+        if (first == '"') {
+            String text = decode(buffer, start, end);
+            if (isThreadHeader(text)) {
+                if (!inDump) {
+                    startDump();
+                }
+                startThread(text);
+            } else {
+                // 死锁报告段中的 "Thread-1": 等行
+                currentThread = null;
+            }
+            return;
+        }
+        if (startsWith(buffer, start, end, FOUND)) {
+            skippingReport = true;
+            currentThread = null;
+            return;
+        }
+        if (currentThread == null || skippingReport) {
+            return;
+        }
+        if (startsWith(buffer, start, end, STATE)) {
+            listener.threadState(currentThread, decode(buffer, start + STATE.length, end).trim());
+        } else if (startsWith(buffer, start, end, OWNABLE)) {
+            inOwnable = true;
+        } else if (first == '-') {
+            handleLockLine(buffer, start, end);
+        }
+    }
+
+    private void handleLockLine(MappedByteBuffer buffer, int start, int end) {
+        boolean ownable = inOwnable && startsWith(buffer, start, end, OWNABLE_ENTRY);
+        boolean locked = !ownable && startsWith(buffer, start, end, LOCKED);
+        boolean waiting = startsWith(buffer, start, end, WAITING_TO_LOCK) || startsWith(buffer, start, end, WAITING_TO_RELOCK);
+        boolean waitingOn = startsWith(buffer, start, end, WAITING_ON);
+        boolean parking = startsWith(buffer, start, end, PARKING);
+        if (!ownable && !locked && !waiting && !waitingOn && !parking) {
+            return;
+        }
+        String text = decode(buffer, start, end);
+        String address = address(text);
+        if (address == null) {
+            return;
+        }
+        String type = lockedType(text);
+        if (ownable) {
+            listener.lockHeld(currentThread, resourceId(address, type), LockType.REENTRANT_LOCK);
+        } else if (locked) {
+            if (!waitedOn.contains(address)) {
+                listener.lockHeld(currentThread, resourceId(address, type), monitorType(type));
+            }
+        } else if (waiting) {
+            listener.lockWaited(currentThread, resourceId(address, type), monitorType(type));
+        } else if (waitingOn) {
+            waitedOn.add(address);
+        } else if (isOwnableLock(type)) {
+            listener.lockWaited(currentThread, resourceId(address, type), LockType.REENTRANT_LOCK);
+        }
+    }
+
+    /**
+     * 线程头形如 "name" #12 daemon prio=5 ... tid=0x... nid=0x...，死锁报告中的 "name": 不是线程头
+     */
+    private static boolean isThreadHeader(String text) {
+        int close = text.lastIndexOf('"');
+        return close > 0 && !text.substring(close + 1).startsWith(":")
+                && (text.contains(" tid=") || text.contains(" prio=") || text.contains(" #"));
+    }
+
+    private void startDump() {
+        dumpIndex++;
+        inDump = true;
+        skippingReport = false;
+        currentThread = null;
+        threadNames.clear();
+        listener.dumpStarted(dumpIndex);
+    }
+
+    private void finishDump() {
+        if (inDump) {
+            listener.dumpFinished(dumpIndex);
+            inDump = false;
+        }
+    }
+
+    private void startThread(String header) {
+        int close = header.lastIndexOf('"');
+        String name = header.substring(1, close);
+        String attributes = header.substring(close + 1);
+        String number = headerField(attributes, " #");
+        String nid = headerField(attributes, " nid=");
+        if (number != null) {
+            currentThread = "Thread_" + name + "#" + number;
+        } else if (nid != null) {
+            currentThread = "Thread_" + name + "@" + nid;
+        } else {
+            int count = threadNames.merge(name, 1, Integer::sum);
+            currentThread = "Thread_" + name + (count > 1 ? "~" + count : "");
+        }
+        inOwnable = false;
+        waitedOn.clear();
+        listener.threadStarted(currentThread, name);
+    }
+
+    /**
+     * 线程头中紧跟在prefix之后的值（到下一个空格为止），例如 " #" → 12、" nid=" → 0x1a2b
+     */
+    private static String headerField(String attributes, String prefix) {
+        int start = attributes.indexOf(prefix);
+        if (start < 0) {
+            return null;
+        }
+        start += prefix.length();
+        int end = start;
+        while (end < attributes.length() && !Character.isWhitespace(attributes.charAt(end))) {
+            end++;
+        }
+        return end > start ? attributes.substring(start, end) : null;
+    }
+
+    /**
+     * 资源ID：类型简单名@地址，例如 Object@0x76ab62208；类锁为 Bank.class@0x...
+     */
+    static String resourceId(String address, String type) {
+        String shortType;
+        int forIndex = type.indexOf(" for ");
+        if (forIndex >= 0) {
+            String target = type.substring(forIndex + " for ".length()).trim();
+            shortType = target.substring(target.lastIndexOf('.') + 1) + ".class";
+        } else {
+            shortType = type.substring(type.lastIndexOf('.') + 1);
+        }
+        return shortType + "@" + address;
+    }
+
+    /**
+     * &lt;0x000000076ab62208&gt; → 0x76ab62208
+     */
+    private static String address(String text) {
+        int open = text.indexOf("<0x");
+        int close = open >= 0 ? text.indexOf('>', open) : -1;
+        if (close < 0) {
+            return null;
+        }
+        String digits = text.substring(open + 3, close);
+        int nonZero = 0;
+        while (nonZero < digits.length() - 1 && digits.charAt(nonZero) == '0') {
+            nonZero++;
+        }
+        return "0x" + digits.substring(nonZero);
+    }
+
+    /**
+     * (a java.lang.Object) → java.lang.Object
+     */
+    private static String lockedType(String text) {
+        int open = text.indexOf("(a ");
+        int close = open >= 0 ? text.lastIndexOf(')') : -1;
+        return close > open ? text.substring(open + 3, close).trim() : "Object";
+    }
+
+    private static LockType monitorType(String type) {
+        return type.startsWith("java.lang.Class") ? LockType.CLASS_LOCK : LockType.SYNCHRONIZED;
+    }
+
+    private static boolean isOwnableLock(String type) {
+        return type.contains("ReentrantLock") || type.contains("ReentrantReadWriteLock");
+    }
+
+    private String decode(MappedByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            line[i] = buffer.get(start + i);
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean startsWith(MappedByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,344 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.model.IdInterner;
+import com.deadlock.detector.model.LockType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多份线程转储的差分分析
+ * 间隔几秒连续采集的转储中，只在部分转储出现的等待是瞬时竞争，每一份都出现的等待才可能是真正卡住。
+ * 线程与锁ID驻留为int句柄，每份转储的持有边、等待边编码为排好序的long数组（高32位起点，低32位终点），
+ * 到达时与当前交集做一次归并，始终只保留交集与各份转储的紧凑数组，几十份大转储也能放在内存里。
+ * 线程按线程头中的编号（#n）识别，同名线程在各份转储中的先后顺序变化不会互换身份；
+ * 锁按对象地址识别，两次转储之间GC移动对象会使对应的边从交集中消失：结果偏保守，不会多报。
+ */
+public class ThreadDumpSeries implements ThreadDumpParser.Listener {
+
+    /**
+     * 一份转储的紧凑形式
+     */
+    public static class Snapshot {
+        private final long[] holds;
+        private final long[] waits;
+        private final int threadCount;
+
+        Snapshot(long[] holds, long[] waits, int threadCount) {
+            this.holds = holds;
+            this.waits = waits;
+            this.threadCount = threadCount;
+        }
+
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        public int getWaitCount() {
+            return waits.length;
+        }
+    }
+
+    /**
+     * 在所有转储中都被阻塞的一组线程，根源是一个本身没有在等待的持有者
+     */
+    public static class BlockedChain {
+        private final String blocker;
+        private final List<String> blockedThreads;
+        private final List<String> locks;
+
+        BlockedChain(String blocker, List<String> blockedThreads, List<String> locks) {
+            this.blocker = blocker;
+            this.blockedThreads = blockedThreads;
+            this.locks = locks;
+        }
+
+        public String getBlocker() {
+            return blocker;
+        }
+
+        /**
+         * 直接或间接等待blocker的线程（按距离由近到远）
+         */
+        public List<String> getBlockedThreads() {
+            return blockedThreads;
+        }
+
+        /**
+         * blocker持有、被其他线程等待的锁
+         */
+        public List<String> getLocks() {
+            return locks;
+        }
+    }
+
+    private final IdInterner interner = new IdInterner();
+    private final Map<Integer, LockType> lockTypes = new HashMap<>();
+    private final List<Snapshot> snapshots = new ArrayList<>();
+    // 最后一份转储的完整图，只有一份转储时直接使用
+    private final ThreadDumpImporter latest;
+    private long[] stableHolds;
+    private long[] stableWaits;
+    private LongArray currentHolds = new LongArray();
+    private LongArray currentWaits = new LongArray();
+    private int currentThreads;
+
+    public ThreadDumpSeries() {
+        this(null);
+    }
+
+    public ThreadDumpSeries(ThreadDumpImporter.Progress progress) {
+        this.latest = new ThreadDumpImporter(progress);
+    }
+
+    /**
+     * 按采集顺序加入一个转储文件，文件中可以有多份转储
+     */
+    public void add(Path file) throws IOException {
+        new ThreadDumpParser(this).parse(file);
+    }
+
+    @Override
+    public void dumpStarted(int index) {
+        currentHolds = new LongArray();
+        currentWaits = new LongArray();
+        currentThreads = 0;
+        latest.dumpStarted(snapshots.size());
+    }
+
+    @Override
+    public void threadStarted(String threadId, String name) {
+        currentThreads++;
+        latest.threadStarted(threadId, name);
+    }
+
+    @Override
+    public void lockHeld(String threadId, String resourceId, LockType lockType) {
+        int resource = intern(resourceId, lockType);
+        currentHolds.add(edge(resource, interner.intern(threadId)));
+        latest.lockHeld(threadId, resourceId, lockType);
+    }
+
+    @Override
+    public void lockWaited(String threadId, String resourceId, LockType lockType) {
+        int resource = intern(resourceId, lockType);
+        currentWaits.add(edge(interner.intern(threadId), resource));
+        latest.lockWaited(threadId, resourceId, lockType);
+    }
+
+    @Override
+    public void dumpFinished(int index) {
+        long[] holds = currentHolds.toSortedSet();
+        long[] waits = currentWaits.toSortedSet();
+        snapshots.add(new Snapshot(holds, waits, currentThreads));
+        stableHolds = stableHolds == null ? holds : intersect(stableHolds, holds);
+        stableWaits = stableWaits == null ? waits : intersect(stableWaits, waits);
+        System.out.println("Dump " + snapshots.size() + ": " + waits.length + " waits, "
+                + stableWaits.length + " present in every dump");
+    }
+
+    @Override
+    public void progress(long position, long size) {
+        latest.progress(position, size);
+    }
+
+    public int getSnapshotCount() {
+        return snapshots.size();
+    }
+
+    public List<Snapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    public ThreadDumpImporter getLatest() {
+        return latest;
+    }
+
+    /**
+     * 只由每份转储都出现的边构成的检测器，其中的环是稳定死锁
+     */
+    public DeadlockDetector buildStableDetector() {
+        DeadlockDetector detector = new DeadlockDetector();
+        if (stableHolds == null) {
+            return detector;
+        }
+        for (long hold : stableHolds) {
+            int resource = from(hold);
+            detector.addProcessHoldsResource(interner.idOf(to(hold)), interner.idOf(resource), lockTypes.get(resource));
+        }
+        for (long wait : stableWaits) {
+            int resource = to(wait);
+            detector.addProcessWaitsForResource(interner.idOf(from(wait)), interner.idOf(resource), lockTypes.get(resource));
+        }
+        return detector;
+    }
+
+    /**
+     * 长时间阻塞的链：按根源持有者分组，持有者本身没有稳定的等待（可能在做耗时I/O或死循环）
+     * 成环的线程不在这里报告
+     */
+    public List<BlockedChain> findBlockedChains() {
+        List<BlockedChain> chains = new ArrayList<>();
+        if (stableWaits == null) {
+            return chains;
+        }
+        Map<Integer, List<Integer>> waitersOfResource = new HashMap<>();
+        Map<Integer, Integer> waitingProcesses = new HashMap<>();
+        for (long wait : stableWaits) {
+            waitersOfResource.computeIfAbsent(to(wait), k -> new ArrayList<>()).add(from(wait));
+            waitingProcesses.merge(from(wait), 1, Integer::sum);
+        }
+        Map<Integer, List<Integer>> contendedLocksOfHolder = new LinkedHashMap<>();
+        for (long hold : stableHolds) {
+            if (waitersOfResource.containsKey(from(hold))) {
+                contendedLocksOfHolder.computeIfAbsent(to(hold), k -> new ArrayList<>()).add(from(hold));
+            }
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : contendedLocksOfHolder.entrySet()) {
+            int blocker = entry.getKey();
+            if (waitingProcesses.containsKey(blocker)) {
+                continue;
+            }
+            // 从持有者出发反向遍历：等待它持有的锁的线程，以及等待这些线程持有的锁的线程
+            List<String> blocked = new ArrayList<>();
+            boolean[] visited = new boolean[interner.size()];
+            visited[blocker] = true;
+            Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(blocker);
+            while (!queue.isEmpty()) {
+                int holder = queue.poll();
+                for (int lock : contendedLocksOfHolder.getOrDefault(holder, Collections.emptyList())) {
+                    for (int waiter : waitersOfResource.get(lock)) {
+                        if (!visited[waiter]) {
+                            visited[waiter] = true;
+                            blocked.add(interner.idOf(waiter));
+                            queue.add(waiter);
+                        }
+                    }
+                }
+            }
+            List<String> locks = new ArrayList<>();
+            for (int lock : entry.getValue()) {
+                locks.add(interner.idOf(lock));
+            }
+            chains.add(new BlockedChain(interner.idOf(blocker), blocked, locks));
+        }
+        chains.sort((a, b) -> b.getBlockedThreads().size() - a.getBlockedThreads().size());
+        return chains;
+    }
+
+    /**
+     * 最后一份转储中未在所有转储中出现的等待数（瞬时竞争）
+     */
+    public int getTransientWaitCount() {
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        return snapshots.get(snapshots.size() - 1).getWaitCount() - stableWaits.length;
+    }
+
+    /**
+     * 对比报告：每份转储的规模、稳定等待与长时间阻塞的链
+     */
+    public String formatReport() {
+        StringBuilder report = new StringBuilder(String.format("共 %d 份转储\n", snapshots.size()));
+        for (int i = 0; i < snapshots.size(); i++) {
+            Snapshot snapshot = snapshots.get(i);
+            report.append(String.format("  第 %d 份：%d 个线程，%d 条等待\n", i + 1,
+                    snapshot.getThreadCount(), snapshot.getWaitCount()));
+        }
+        report.append(String.format("\n在所有转储中都存在的等待：%d 条；最后一份中的瞬时竞争：%d 条\n",
+                stableWaits != null ? stableWaits.length : 0, getTransientWaitCount()));
+
+        List<BlockedChain> chains = findBlockedChains();
+        if (!chains.isEmpty()) {
+            report.append("\n长时间阻塞的线程（所有转储中都在等待）：\n");
+            for (BlockedChain chain : chains) {
+                report.append(String.format("  %s 持有 %s，阻塞 %d 个线程：%s\n", chain.getBlocker(),
+                        String.join(", ", chain.getLocks()), chain.getBlockedThreads().size(),
+                        String.join(", ", chain.getBlockedThreads())));
+            }
+        }
+        return report.toString();
+    }
+
+    private int intern(String resourceId, LockType lockType) {
+        int handle = interner.intern(resourceId);
+        lockTypes.putIfAbsent(handle, lockType);
+        return handle;
+    }
+
+    private static long edge(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    private static int from(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    private static int to(long edge) {
+        return (int) edge;
+    }
+
+    /**
+     * 两个有序数组的交集（归并）
+     */
+    private static long[] intersect(long[] first, long[] second) {
+        long[] result = new long[Math.min(first.length, second.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                result[size++] = first[i];
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 可增长的long数组
+     */
+    private static class LongArray {
+        private long[] values = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * 排序并去重
+         */
+        long[] toSortedSet() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, unique);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.deadlock.detector.inspection;
+
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 快速修复：将synchronized块转换为ReentrantLock的lock()/try/finally unlock()
+ * 锁对象为this、类字面量或本类字段，并且该块是这个监视器在本文件中的唯一用法时可用：
+ * 只转换其中一处会让同一监视器上的其他synchronized块、synchronized方法与它失去互斥。
+ */
+public class ConvertToReentrantLockFix implements LocalQuickFix {
+    private static final String LOCK_CLASS = "java.util.concurrent.locks.ReentrantLock";
+
+    @NotNull
+    @Override
+    public String getFamilyName() {
+        return "将synchronized块转换为ReentrantLock";
+    }
+
+    /**
+     * 块内使用wait/notify时不能转换（需改用Condition），锁对象必须能映射为本类字段，
+     * 且同一监视器没有其他用法
+     */
+    public static boolean isApplicable(PsiSynchronizedStatement statement) {
+        PsiCodeBlock body = statement.getBody();
+        if (body == null || resolveLockTarget(statement) == null) {
+            return false;
+        }
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(body, PsiMethodCallExpression.class)) {
+            if (isWaitOrNotify(call)) {
+                return false;
+            }
+        }
+        return isOnlyUseOfMonitor(statement);
+    }
+
+    /**
+     * 检查本文件中同一监视器的其他用法：其他synchronized块、synchronized方法（锁对象为this或类字面量时）、
+     * 对它的wait/notify调用，以及锁字段被传出（作为参数、返回值等）。锁字段必须是private的，
+     * 否则其他文件也可能用它加锁；this与类字面量在其他文件中的加锁无法在这里检查。
+     */
+    private static boolean isOnlyUseOfMonitor(PsiSynchronizedStatement statement) {
+        Monitor monitor = monitorOf(statement.getLockExpression(), statement);
+        if (monitor == null) {
+            return false;
+        }
+        if (monitor.owner instanceof PsiField && !((PsiField) monitor.owner).hasModifierProperty(PsiModifier.PRIVATE)) {
+            return false;
+        }
+        PsiFile file = statement.getContainingFile();
+        for (PsiSynchronizedStatement other : PsiTreeUtil.findChildrenOfType(file, PsiSynchronizedStatement.class)) {
+            if (other != statement && other.getLockExpression() != null
+                    && monitor.sameAs(monitorOf(other.getLockExpression(), other))) {
+                return false;
+            }
+        }
+        for (PsiMethod method : PsiTreeUtil.findChildrenOfType(file, PsiMethod.class)) {
+            if (method.hasModifierProperty(PsiModifier.SYNCHRONIZED) && method.getContainingClass() != null
+                    && monitor.sameAs(new Monitor(method.getContainingClass(), method.hasModifierProperty(PsiModifier.STATIC)))) {
+                return false;
+            }
+        }
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(file, PsiMethodCallExpression.class)) {
+            if (isWaitOrNotify(call)
+                    && monitor.sameAs(monitorOf(call.getMethodExpression().getQualifierExpression(), call))) {
+                return false;
+            }
+        }
+        if (monitor.owner instanceof PsiField) {
+            for (PsiReferenceExpression reference : PsiTreeUtil.findChildrenOfType(file, PsiReferenceExpression.class)) {
+                if (reference.isReferenceTo(monitor.owner) && !isLockOrAssignment(reference)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWaitOrNotify(PsiMethodCallExpression call) {
+        String name = call.getMethodExpression().getReferenceName();
+        return "wait".equals(name) || "notify".equals(name) || "notifyAll".equals(name);
+    }
+
+    /**
+     * 字段引用是synchronized的锁表达式或赋值的左侧
+     */
+    private static boolean isLockOrAssignment(PsiReferenceExpression reference) {
+        PsiElement parent = PsiUtil.skipParenthesizedExprUp(reference.getParent());
+        if (parent instanceof PsiSynchronizedStatement) {
+            return true;
+        }
+        return parent instanceof PsiAssignmentExpression
+                && PsiTreeUtil.isAncestor(((PsiAssignmentExpression) parent).getLExpression(), reference, false);
+    }
+
+    /**
+     * 锁表达式引用的监视器：this/X.this为类的实例监视器，X.class为类监视器，字段引用为该字段（不区分实例）；
+     * 表达式为null时表示省略限定符的wait/notify，作用于所在类的实例。无法确定时返回null
+     */
+    private static Monitor monitorOf(PsiExpression expression, PsiElement context) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (expression == null) {
+            PsiClass enclosing = PsiTreeUtil.getParentOfType(context, PsiClass.class);
+            return enclosing != null ? new Monitor(enclosing, false) : null;
+        }
+        if (expression instanceof PsiThisExpression) {
+            PsiJavaCodeReferenceElement qualifier = ((PsiThisExpression) expression).getQualifier();
+            PsiElement owner = qualifier != null ? qualifier.resolve() : PsiTreeUtil.getParentOfType(expression, PsiClass.class);
+            return owner != null ? new Monitor(owner, false) : null;
+        }
+        if (expression instanceof PsiClassObjectAccessExpression) {
+            PsiType type = ((PsiClassObjectAccessExpression) expression).getOperand().getType();
+            PsiClass lockClass = type instanceof PsiClassType ? ((PsiClassType) type).resolve() : null;
+            return lockClass != null ? new Monitor(lockClass, true) : null;
+        }
+        if (expression instanceof PsiReferenceExpression) {
+            PsiElement resolved = ((PsiReferenceExpression) expression).resolve();
+            return resolved instanceof PsiField ? new Monitor(resolved, false) : null;
+        }
+        return null;
+    }
+
+    /**
+     * 监视器：类的实例（this）、类对象（X.class）或字段
+     */
+    private static class Monitor {
+        final PsiElement owner;
+        final boolean classObject;
+
+        Monitor(PsiElement owner, boolean classObject) {
+            this.owner = owner;
+            this.classObject = classObject;
+        }
+
+        boolean sameAs(Monitor other) {
+            return other != null && owner.equals(other.owner) && classObject == other.classObject;
+        }
+    }
+
+    @Override
+    public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+        PsiSynchronizedStatement statement = PsiTreeUtil.getParentOfType(
+                descriptor.getPsiElement(), PsiSynchronizedStatement.class, false);
+        if (statement == null || !isApplicable(statement)) {
+            return;
+        }
+        LockTarget target = resolveLockTarget(statement);
+        PsiCodeBlock body = statement.getBody();
+        if (target == null || body == null) {
+            return;
+        }
+
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        String fieldName = ensureLockField(target, factory);
+
+        // lock(); try { 原块 } finally { unlock(); }
+        PsiCodeBlock replacement = factory.createCodeBlockFromText(
+                "{\n" + fieldName + ".lock();\n"
+                        + "try " + body.getText() + " finally {\n" + fieldName + ".unlock();\n}\n}", statement);
+        PsiElement parent = statement.getParent();
+        PsiJavaToken lBrace = replacement.getLBrace();
+        PsiJavaToken rBrace = replacement.getRBrace();
+        if (lBrace == null || rBrace == null || lBrace.getNextSibling() == rBrace) {
+            return;
+        }
+        parent.addRangeBefore(lBrace.getNextSibling(), rBrace.getPrevSibling(), statement);
+        statement.delete();
+    }
+
+    /**
+     * 在目标类中查找或创建ReentrantLock字段，返回字段名
+     */
+    private String ensureLockField(LockTarget target, PsiElementFactory factory) {
+        String baseName = target.fieldBaseName;
+        String name = baseName;
+        int suffix = 1;
+        while (true) {
+            PsiField existing = target.targetClass.findFieldByName(name, false);
+            if (existing == null) {
+                break;
+            }
+            if (LOCK_CLASS.equals(existing.getType().getCanonicalText())) {
+                return name;
+            }
+            name = baseName + (++suffix);
+        }
+
+        String modifiers = target.isStatic ? "private static final " : "private final ";
+        PsiField field = factory.createFieldFromText(
+                modifiers + LOCK_CLASS + " " + name + " = new " + LOCK_CLASS + "();", target.targetClass);
+        PsiElement added = target.targetClass.add(field);
+        JavaCodeStyleManager.getInstance(target.targetClass.getProject()).shortenClassReferences(added);
+        return name;
+    }
+
+    /**
+     * 锁对象对应的新字段位置与命名
+     */
+    private static class LockTarget {
+        final PsiClass targetClass;
+        final String fieldBaseName;
+        final boolean isStatic;
+
+        LockTarget(PsiClass targetClass, String fieldBaseName, boolean isStatic) {
+            this.targetClass = targetClass;
+            this.fieldBaseName = fieldBaseName;
+            this.isStatic = isStatic;
+        }
+    }
+
+    private static LockTarget resolveLockTarget(PsiSynchronizedStatement statement) {
+        PsiExpression lockExpr = statement.getLockExpression();
+        PsiClass containingClass = PsiTreeUtil.getParentOfType(statement, PsiClass.class);
+        if (lockExpr == null || containingClass == null) {
+            return null;
+        }
+        if (lockExpr instanceof PsiThisExpression && ((PsiThisExpression) lockExpr).getQualifier() == null) {
+            return new LockTarget(containingClass, "instanceLock", false);
+        }
+        if (lockExpr instanceof PsiClassObjectAccessExpression) {
+            PsiType type = ((PsiClassObjectAccessExpression) lockExpr).getOperand().getType();
+            PsiClass lockClass = type instanceof PsiClassType ? ((PsiClassType) type).resolve() : null;
+            // 新字段是private的，只能加在当前类或其外部类中
+            return lockClass != null && PsiTreeUtil.isAncestor(lockClass, statement, true)
+                    ? new LockTarget(lockClass, "classLock", true) : null;
+        }
+        if (lockExpr instanceof PsiReferenceExpression) {
+            PsiReferenceExpression lockRef = (PsiReferenceExpression) lockExpr;
+            // 其他对象的字段（other.lock）无法用本类字段替代
+            PsiExpression qualifier = lockRef.getQualifierExpression();
+            if (qualifier != null && !(qualifier instanceof PsiThisExpression)
+                    && !(qualifier instanceof PsiReferenceExpression
+                    && ((PsiReferenceExpression) qualifier).resolve() instanceof PsiClass)) {
+                return null;
+            }
+            PsiElement resolved = lockRef.resolve();
+            if (resolved instanceof PsiField && ((PsiField) resolved).getContainingClass() != null
+                    && PsiTreeUtil.isAncestor(((PsiField) resolved).getContainingClass(), statement, true)) {
+                PsiField lockField = (PsiField) resolved;
+                return new LockTarget(lockField.getContainingClass(), lockField.getName() + "Lock",
+                        lockField.hasModifierProperty(PsiModifier.STATIC));
+            }
+        }
+        return null;
+    }
+}
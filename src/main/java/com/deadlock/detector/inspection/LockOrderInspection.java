@@ -0,0 +1,126 @@
+package com.deadlock.detector.inspection;
+
+import com.deadlock.detector.analyzer.LockAnnotations;
+import com.deadlock.detector.analyzer.LockScopeWalker;
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 锁意图注解检查
+ * 只依据&#64;GuardedBy与&#64;LockOrder声明和方法内的锁作用域，不做跨方法分析：
+ * 获取违反声明顺序的锁、未持有守护锁时访问&#64;GuardedBy字段或调用&#64;GuardedBy方法时告警。
+ * 标注&#64;GuardedBy的方法体按已持有守护锁处理，因此被调方法的顺序问题在被调方法内部报告。
+ */
+public class LockOrderInspection extends AbstractBaseJavaLocalInspectionTool {
+
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        LockAnnotations annotations = LockAnnotations.forProject(holder.getProject());
+        return new JavaElementVisitor() {
+            @Override
+            public void visitMethod(PsiMethod method) {
+                if (method.getBody() == null) {
+                    return;
+                }
+                new LockScopeWalker(true).walk(method, new ArrayList<>(), new LockScopeWalker.Callback() {
+                    @Override
+                    public void visitAcquire(LockScopeWalker.HeldMonitor acquired,
+                                             List<LockScopeWalker.HeldMonitor> heldBefore) {
+                        if (!annotations.hasDeclaredOrder() || !isOwnCode(acquired.getOwner(), method)) {
+                            return;
+                        }
+                        LockAnnotations.OrderViolation violation =
+                                annotations.findViolation(lockIds(heldBefore), acquired.getLockId());
+                        if (violation != null) {
+                            holder.registerProblem(highlightTarget(acquired.getOwner()),
+                                    String.format("持有 %s 时获取 %s，违反 @LockOrder 声明的加锁顺序",
+                                            violation.getHeldLock(), violation.getAcquiredLock()),
+                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                        }
+                    }
+
+                    @Override
+                    public void visitCall(PsiMethodCallExpression call, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+                        if (!isOwnCode(call, method)) {
+                            return;
+                        }
+                        PsiMethod callee = call.resolveMethod();
+                        String guard = callee != null ? LockAnnotations.guardOf(callee) : null;
+                        if (guard != null && !isGuardHeld(guard, heldMonitors)) {
+                            PsiElement name = call.getMethodExpression().getReferenceNameElement();
+                            holder.registerProblem(name != null ? name : call,
+                                    String.format("调用 %s() 需要持有 %s（@GuardedBy）", callee.getName(), guard),
+                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                        }
+                    }
+
+                    @Override
+                    public void visitReference(PsiReferenceExpression reference,
+                                               List<LockScopeWalker.HeldMonitor> heldMonitors) {
+                        if (reference.getParent() instanceof PsiMethodCallExpression || !isOwnCode(reference, method)) {
+                            return;
+                        }
+                        PsiElement resolved = reference.resolve();
+                        if (!(resolved instanceof PsiField)) {
+                            return;
+                        }
+                        String guard = LockAnnotations.guardOf((PsiField) resolved);
+                        if (guard != null && !method.isConstructor() && !isGuardHeld(guard, heldMonitors)) {
+                            PsiElement name = reference.getReferenceNameElement();
+                            holder.registerProblem(name != null ? name : reference,
+                                    String.format("访问字段 %s 需要持有 %s（@GuardedBy）",
+                                            ((PsiField) resolved).getName(), guard),
+                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 元素直接属于该方法（不在内部类的方法中，内部类方法会单独检查）
+     */
+    private static boolean isOwnCode(PsiElement element, PsiMethod method) {
+        return element instanceof PsiMethod ? element == method
+                : PsiTreeUtil.getParentOfType(element, PsiMethod.class) == method;
+    }
+
+    private static boolean isGuardHeld(String guard, List<LockScopeWalker.HeldMonitor> heldMonitors) {
+        for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+            if (LockAnnotations.sameLock(held.getLockId(), guard)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> lockIds(List<LockScopeWalker.HeldMonitor> heldMonitors) {
+        List<String> ids = new ArrayList<>();
+        for (LockScopeWalker.HeldMonitor held : heldMonitors) {
+            ids.add(held.getLockId());
+        }
+        return ids;
+    }
+
+    /**
+     * 告警位置：synchronized关键字、方法名或lock()调用
+     */
+    private static PsiElement highlightTarget(PsiElement owner) {
+        if (owner instanceof PsiSynchronizedStatement && owner.getFirstChild() != null) {
+            return owner.getFirstChild();
+        }
+        if (owner instanceof PsiMethod && ((PsiMethod) owner).getNameIdentifier() != null) {
+            return ((PsiMethod) owner).getNameIdentifier();
+        }
+        return owner;
+    }
+}
@@ -0,0 +1,74 @@
+package com.deadlock.detector.inspection;
+
+import com.deadlock.detector.analyzer.BlockingCallClassifier;
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 虚拟线程钉住检查
+ * synchronized块内存在阻塞调用时告警，并提供转换为ReentrantLock的快速修复
+ */
+public class VirtualThreadPinningInspection extends AbstractBaseJavaLocalInspectionTool {
+    private final BlockingCallClassifier classifier = new BlockingCallClassifier();
+
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+            @Override
+            public void visitSynchronizedStatement(PsiSynchronizedStatement statement) {
+                PsiCodeBlock body = statement.getBody();
+                if (body == null || statement.getLockExpression() == null) {
+                    return;
+                }
+                List<PsiMethodCallExpression> blockingCalls = findBlockingCalls(body);
+                if (blockingCalls.isEmpty()) {
+                    return;
+                }
+
+                PsiMethodCallExpression first = blockingCalls.get(0);
+                String message = String.format("synchronized块内存在阻塞调用 %s，会钉住虚拟线程的载体线程",
+                        first.getMethodExpression().getText() + "()");
+                LocalQuickFix[] fixes = ConvertToReentrantLockFix.isApplicable(statement)
+                        ? new LocalQuickFix[]{new ConvertToReentrantLockFix()}
+                        : LocalQuickFix.EMPTY_ARRAY;
+                PsiElement keyword = statement.getFirstChild();
+                holder.registerProblem(keyword != null ? keyword : statement, message,
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING, fixes);
+            }
+        };
+    }
+
+    /**
+     * 查找块内（不含Lambda与内部类）的阻塞调用
+     */
+    private List<PsiMethodCallExpression> findBlockingCalls(PsiCodeBlock body) {
+        List<PsiMethodCallExpression> result = new ArrayList<>();
+        body.accept(new JavaRecursiveElementVisitor() {
+            @Override
+            public void visitLambdaExpression(PsiLambdaExpression expression) {
+            }
+
+            @Override
+            public void visitClass(PsiClass aClass) {
+            }
+
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                BlockingCallClassifier.Category category = classifier.classify(expression);
+                if (category != null && category.isBlocking()) {
+                    result.add(expression);
+                }
+                super.visitMethodCallExpression(expression);
+            }
+        });
+        return result;
+    }
+}
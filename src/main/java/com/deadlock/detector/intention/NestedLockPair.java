@@ -0,0 +1,266 @@
+package com.deadlock.detector.intention;
+
+import com.deadlock.detector.analyzer.LockScopeWalker;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+/**
+ * 两层紧邻的嵌套加锁：外层锁之后、内层锁之前没有其他代码，交换或重排两次获取不会改变其他语句的执行。
+ * 支持两种写法：
+ * synchronized (a) { synchronized (b) { ... } }
+ * a.lock(); try { b.lock(); try { ... } finally { b.unlock(); } } finally { a.unlock(); }
+ * 锁表达式必须稳定（this、类字面量、final字段、未被重新赋值的局部变量/参数及其readLock()/writeLock()），
+ * 提前或重复求值结果不变。
+ */
+class NestedLockPair {
+    private final PsiExpression outerLock;
+    private final PsiExpression innerLock;
+    private final PsiSynchronizedStatement outerStatement;
+    private final PsiSynchronizedStatement innerStatement;
+    // 显式锁写法中的unlock()调用的接收者，与lock()的接收者一起交换
+    private final PsiExpression outerUnlock;
+    private final PsiExpression innerUnlock;
+
+    private NestedLockPair(PsiExpression outerLock, PsiExpression innerLock,
+                           PsiSynchronizedStatement outerStatement, PsiSynchronizedStatement innerStatement,
+                           PsiExpression outerUnlock, PsiExpression innerUnlock) {
+        this.outerLock = outerLock;
+        this.innerLock = innerLock;
+        this.outerStatement = outerStatement;
+        this.innerStatement = innerStatement;
+        this.outerUnlock = outerUnlock;
+        this.innerUnlock = innerUnlock;
+    }
+
+    /**
+     * 光标所在的嵌套加锁；光标须位于两次获取的关键字或锁表达式上，不在内层代码中
+     */
+    static NestedLockPair find(PsiElement element) {
+        PsiSynchronizedStatement statement = PsiTreeUtil.getParentOfType(element, PsiSynchronizedStatement.class, false);
+        if (statement != null && statement.getBody() != null
+                && !PsiTreeUtil.isAncestor(statement.getBody(), element, false)) {
+            NestedLockPair pair = fromSynchronized(statement);
+            if (pair == null && statement.getParent() instanceof PsiCodeBlock
+                    && statement.getParent().getParent() instanceof PsiSynchronizedStatement) {
+                pair = fromSynchronized((PsiSynchronizedStatement) statement.getParent().getParent());
+            }
+            return pair;
+        }
+        PsiExpressionStatement lockStatement = PsiTreeUtil.getParentOfType(element, PsiExpressionStatement.class, false);
+        if (lockStatement == null) {
+            return null;
+        }
+        NestedLockPair pair = fromExplicitLock(lockStatement);
+        if (pair == null && lockStatement.getParent() instanceof PsiCodeBlock
+                && lockStatement.getParent().getParent() instanceof PsiTryStatement) {
+            PsiElement outerTry = lockStatement.getParent().getParent();
+            PsiStatement previous = PsiTreeUtil.getPrevSiblingOfType(outerTry, PsiStatement.class);
+            if (previous instanceof PsiExpressionStatement) {
+                pair = fromExplicitLock((PsiExpressionStatement) previous);
+            }
+        }
+        return pair;
+    }
+
+    private static NestedLockPair fromSynchronized(PsiSynchronizedStatement outer) {
+        PsiCodeBlock body = outer.getBody();
+        if (body == null || body.getStatements().length != 1
+                || !(body.getStatements()[0] instanceof PsiSynchronizedStatement)) {
+            return null;
+        }
+        PsiSynchronizedStatement inner = (PsiSynchronizedStatement) body.getStatements()[0];
+        if (outer.getLockExpression() == null || inner.getLockExpression() == null || inner.getBody() == null) {
+            return null;
+        }
+        return new NestedLockPair(outer.getLockExpression(), inner.getLockExpression(), outer, inner, null, null);
+    }
+
+    /**
+     * lockStatement为外层lock()，后面紧跟只包含内层lock()与try的try语句，两层finally都只有对应的unlock()
+     */
+    private static NestedLockPair fromExplicitLock(PsiExpressionStatement lockStatement) {
+        PsiExpression outerLock = lockCallQualifier(lockStatement, "lock");
+        PsiStatement next = PsiTreeUtil.getNextSiblingOfType(lockStatement, PsiStatement.class);
+        PsiExpression outerUnlock = outerLock != null ? unlockOf(next) : null;
+        if (outerUnlock == null || !sameText(outerLock, outerUnlock)) {
+            return null;
+        }
+        PsiCodeBlock tryBlock = ((PsiTryStatement) next).getTryBlock();
+        PsiStatement[] statements = tryBlock != null ? tryBlock.getStatements() : PsiStatement.EMPTY_ARRAY;
+        if (statements.length != 2 || !(statements[0] instanceof PsiExpressionStatement)) {
+            return null;
+        }
+        PsiExpression innerLock = lockCallQualifier((PsiExpressionStatement) statements[0], "lock");
+        PsiExpression innerUnlock = innerLock != null ? unlockOf(statements[1]) : null;
+        if (innerUnlock == null || !sameText(innerLock, innerUnlock)) {
+            return null;
+        }
+        return new NestedLockPair(outerLock, innerLock, null, null, outerUnlock, innerUnlock);
+    }
+
+    /**
+     * try语句没有catch和资源，finally只有一条 x.unlock()，返回x
+     */
+    private static PsiExpression unlockOf(PsiStatement statement) {
+        if (!(statement instanceof PsiTryStatement)) {
+            return null;
+        }
+        PsiTryStatement tryStatement = (PsiTryStatement) statement;
+        PsiCodeBlock finallyBlock = tryStatement.getFinallyBlock();
+        if (tryStatement.getCatchSections().length > 0 || tryStatement.getResourceList() != null
+                || finallyBlock == null || finallyBlock.getStatements().length != 1
+                || !(finallyBlock.getStatements()[0] instanceof PsiExpressionStatement)) {
+            return null;
+        }
+        return lockCallQualifier((PsiExpressionStatement) finallyBlock.getStatements()[0], "unlock");
+    }
+
+    private static PsiExpression lockCallQualifier(PsiExpressionStatement statement, String methodName) {
+        if (!(statement.getExpression() instanceof PsiMethodCallExpression)) {
+            return null;
+        }
+        PsiMethodCallExpression call = (PsiMethodCallExpression) statement.getExpression();
+        if (!methodName.equals(call.getMethodExpression().getReferenceName())
+                || call.getArgumentList().getExpressions().length > 0) {
+            return null;
+        }
+        return call.getMethodExpression().getQualifierExpression();
+    }
+
+    private static boolean sameText(PsiExpression first, PsiExpression second) {
+        return first.getText().trim().equals(second.getText().trim());
+    }
+
+    boolean isSynchronized() {
+        return outerStatement != null;
+    }
+
+    PsiExpression getOuterLock() {
+        return outerLock;
+    }
+
+    PsiExpression getInnerLock() {
+        return innerLock;
+    }
+
+    PsiSynchronizedStatement getOuterStatement() {
+        return outerStatement;
+    }
+
+    PsiSynchronizedStatement getInnerStatement() {
+        return innerStatement;
+    }
+
+    /**
+     * 锁ID，与分析器的命名一致
+     */
+    String outerLockId() {
+        return lockId(outerLock, outerStatement);
+    }
+
+    String innerLockId() {
+        return lockId(innerLock, innerStatement);
+    }
+
+    private static String lockId(PsiExpression lock, PsiSynchronizedStatement statement) {
+        if (statement != null) {
+            return LockScopeWalker.statementMonitorId(statement);
+        }
+        String text = lock.getText().trim();
+        // rw.readLock() → rw_readLock
+        return text.endsWith(".readLock()") || text.endsWith(".writeLock()")
+                ? text.substring(0, text.lastIndexOf('.')) + "_" + text.substring(text.lastIndexOf('.') + 1, text.length() - 2)
+                : text;
+    }
+
+    /**
+     * 两个锁表达式都稳定，交换或重复求值不改变语义
+     */
+    boolean isStable() {
+        return isStable(outerLock) && isStable(innerLock);
+    }
+
+    /**
+     * 两把锁的身份在整个程序中固定（this、类锁、本类字段），可以按名称排出统一顺序；
+     * 参数和局部变量在不同调用中可能交换身份，只能在运行时排序
+     */
+    boolean hasStaticIdentity() {
+        return hasStaticIdentity(outerLock) && hasStaticIdentity(innerLock);
+    }
+
+    /**
+     * 交换两次获取的锁表达式，两层之间没有代码，其余语句的执行不变
+     */
+    void swap() {
+        PsiExpression outerCopy = (PsiExpression) outerLock.copy();
+        PsiExpression innerCopy = (PsiExpression) innerLock.copy();
+        outerLock.replace(innerCopy);
+        innerLock.replace(outerCopy);
+        if (outerUnlock != null && innerUnlock != null) {
+            PsiExpression outerUnlockCopy = (PsiExpression) outerUnlock.copy();
+            outerUnlock.replace(innerUnlock.copy());
+            innerUnlock.replace(outerUnlockCopy);
+        }
+    }
+
+    private static boolean hasStaticIdentity(PsiExpression expression) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (expression instanceof PsiThisExpression || expression instanceof PsiClassObjectAccessExpression) {
+            return true;
+        }
+        if (expression instanceof PsiMethodCallExpression) {
+            return hasStaticIdentity(((PsiMethodCallExpression) expression).getMethodExpression().getQualifierExpression());
+        }
+        if (expression instanceof PsiReferenceExpression) {
+            PsiExpression qualifier = ((PsiReferenceExpression) expression).getQualifierExpression();
+            return ((PsiReferenceExpression) expression).resolve() instanceof PsiField
+                    && (qualifier == null || qualifier instanceof PsiThisExpression);
+        }
+        return false;
+    }
+
+    private static boolean isStable(PsiExpression expression) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (expression instanceof PsiThisExpression || expression instanceof PsiClassObjectAccessExpression) {
+            return true;
+        }
+        if (expression instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) expression;
+            String name = call.getMethodExpression().getReferenceName();
+            return ("readLock".equals(name) || "writeLock".equals(name))
+                    && call.getArgumentList().getExpressions().length == 0
+                    && isStable(call.getMethodExpression().getQualifierExpression());
+        }
+        if (!(expression instanceof PsiReferenceExpression)) {
+            return false;
+        }
+        PsiReferenceExpression reference = (PsiReferenceExpression) expression;
+        PsiElement resolved = reference.resolve();
+        PsiExpression qualifier = reference.getQualifierExpression();
+        if (resolved instanceof PsiField) {
+            return ((PsiField) resolved).hasModifierProperty(PsiModifier.FINAL)
+                    && (qualifier == null || isStable(qualifier)
+                    || qualifier instanceof PsiReferenceExpression && ((PsiReferenceExpression) qualifier).resolve() instanceof PsiClass);
+        }
+        return (resolved instanceof PsiLocalVariable || resolved instanceof PsiParameter)
+                && isEffectivelyFinal((PsiVariable) resolved);
+    }
+
+    private static boolean isEffectivelyFinal(PsiVariable variable) {
+        if (variable.hasModifierProperty(PsiModifier.FINAL)) {
+            return true;
+        }
+        PsiElement scope = variable instanceof PsiParameter
+                ? ((PsiParameter) variable).getDeclarationScope() : PsiUtil.getVariableCodeBlock(variable, null);
+        if (scope == null) {
+            return false;
+        }
+        for (PsiReferenceExpression reference : PsiTreeUtil.findChildrenOfType(scope, PsiReferenceExpression.class)) {
+            if (PsiUtil.isAccessedForWriting(reference) && reference.resolve() == variable) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+package com.deadlock.detector.intention;
+
+import com.intellij.codeInsight.intention.PsiElementBaseIntentionAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 意图操作：把两层嵌套的synchronized改为按System.identityHashCode排序的加锁
+ * 用于参数、局部变量等运行时才能确定身份的锁（例如 transfer(from, to)）：
+ * 哈希较小的对象先加锁；哈希相同时先获取TIE_LOCK，再按原顺序加锁，所有位置得到一致的顺序。
+ * 整个项目共用一个TIE_LOCK：第一次使用时建在当前最外层类中，之后的位置都引用它；
+ * 已有的TIE_LOCK在当前位置不可访问时不提供该意图，避免不同位置用不同的TIE_LOCK而重新出现顺序反转。
+ * 锁表达式必须稳定，块内不能有wait/notify（等待时会继续持有TIE_LOCK）。
+ */
+public class OrderedLockAcquisitionIntention extends PsiElementBaseIntentionAction {
+    private static final String TIE_LOCK = "TIE_LOCK";
+
+    @NotNull
+    @Override
+    public String getFamilyName() {
+        return "按identityHashCode顺序加锁";
+    }
+
+    @Override
+    public boolean isAvailable(@NotNull Project project, Editor editor, @NotNull PsiElement element) {
+        NestedLockPair pair = NestedLockPair.find(element);
+        // 身份固定的锁可以直接按统一顺序重排
+        if (pair == null || !pair.isSynchronized() || !pair.isStable() || pair.hasStaticIdentity()
+                || !(pair.getOuterStatement().getParent() instanceof PsiCodeBlock)) {
+            return false;
+        }
+        PsiField tieLock = findTieLock(element);
+        if (tieLock != null ? !isReachable(tieLock, element) : tieLockClass(element) == null) {
+            return false;
+        }
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(pair.getInnerStatement().getBody(),
+                PsiMethodCallExpression.class)) {
+            String name = call.getMethodExpression().getReferenceName();
+            if ("wait".equals(name) || "notify".equals(name) || "notifyAll".equals(name)) {
+                return false;
+            }
+        }
+        setText(String.format("按identityHashCode顺序获取 %s 和 %s", pair.getOuterLock().getText(), pair.getInnerLock().getText()));
+        return true;
+    }
+
+    @Override
+    public void invoke(@NotNull Project project, Editor editor, @NotNull PsiElement element)
+            throws IncorrectOperationException {
+        NestedLockPair pair = NestedLockPair.find(element);
+        if (pair == null || !pair.isSynchronized() || !pair.isStable()) {
+            return;
+        }
+        PsiField tieField = findTieLock(element);
+        PsiClass tieClass = tieLockClass(element);
+        if (tieField != null ? !isReachable(tieField, element) : tieClass == null) {
+            return;
+        }
+        PsiSynchronizedStatement outer = pair.getOuterStatement();
+        PsiCodeBlock body = pair.getInnerStatement().getBody();
+        if (body == null || !(outer.getParent() instanceof PsiCodeBlock)) {
+            return;
+        }
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        JavaCodeStyleManager names = JavaCodeStyleManager.getInstance(project);
+        String outerLock = pair.getOuterLock().getText().trim();
+        String innerLock = pair.getInnerLock().getText().trim();
+        String outerHash = names.suggestUniqueVariableName("outerHash", outer, true);
+        String innerHash = names.suggestUniqueVariableName("innerHash", outer, true);
+        String firstLock = names.suggestUniqueVariableName("firstLock", outer, true);
+        String secondLock = names.suggestUniqueVariableName("secondLock", outer, true);
+        if (tieField == null) {
+            tieField = (PsiField) tieClass.add(factory.createFieldFromText(
+                    "public static final Object " + TIE_LOCK + " = new Object();", tieClass));
+        }
+        String tieLock = tieField.getContainingClass().getQualifiedName() + "." + TIE_LOCK;
+
+        String[] declarations = {
+                "int " + outerHash + " = System.identityHashCode(" + outerLock + ");",
+                "int " + innerHash + " = System.identityHashCode(" + innerLock + ");",
+                "Object " + firstLock + " = " + outerHash + " <= " + innerHash + " ? " + outerLock + " : " + innerLock + ";",
+                "Object " + secondLock + " = " + outerHash + " <= " + innerHash + " ? " + innerLock + " : " + outerLock + ";"
+        };
+        PsiElement parent = outer.getParent();
+        for (String declaration : declarations) {
+            parent.addBefore(factory.createStatementFromText(declaration, outer), outer);
+        }
+        // 哈希不同时外层就是firstLock本身（重入），相同时先取TIE_LOCK
+        PsiStatement ordered = factory.createStatementFromText(
+                "synchronized (" + outerHash + " == " + innerHash + " ? " + tieLock + " : " + firstLock + ") {\n"
+                        + "synchronized (" + firstLock + ") {\n"
+                        + "synchronized (" + secondLock + ") " + body.getText() + "\n"
+                        + "}\n}", outer);
+        PsiElement replaced = outer.replace(ordered);
+        replaced = JavaCodeStyleManager.getInstance(project).shortenClassReferences(replaced);
+        CodeStyleManager.getInstance(project).reformat(replaced);
+    }
+
+    /**
+     * 项目中已有的TIE_LOCK（static的Object字段）；有多个时取全限定名最小的类中的那个
+     */
+    private static PsiField findTieLock(PsiElement element) {
+        Project project = element.getProject();
+        PsiField found = null;
+        for (PsiField field : PsiShortNamesCache.getInstance(project)
+                .getFieldsByName(TIE_LOCK, GlobalSearchScope.projectScope(project))) {
+            PsiClass owner = field.getContainingClass();
+            if (owner == null || owner.getQualifiedName() == null || !field.hasModifierProperty(PsiModifier.STATIC)
+                    || !field.getType().equalsToText(CommonClassNames.JAVA_LANG_OBJECT)) {
+                continue;
+            }
+            if (found == null || owner.getQualifiedName().compareTo(found.getContainingClass().getQualifiedName()) < 0) {
+                found = field;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 当前位置能否引用已有的TIE_LOCK：字段可访问，并且所在类在当前模块的依赖范围内
+     */
+    private static boolean isReachable(PsiField tieLock, PsiElement element) {
+        JavaPsiFacade facade = JavaPsiFacade.getInstance(element.getProject());
+        return facade.getResolveHelper().isAccessible(tieLock, element, null)
+                && facade.findClass(tieLock.getContainingClass().getQualifiedName(), element.getResolveScope()) != null;
+    }
+
+    /**
+     * 项目中还没有TIE_LOCK时新建它的类：最外层的非接口类
+     */
+    private static PsiClass tieLockClass(PsiElement element) {
+        PsiClass top = PsiTreeUtil.getTopmostParentOfType(element, PsiClass.class);
+        return top != null && !top.isInterface() && top.getName() != null && top.getQualifiedName() != null ? top : null;
+    }
+}
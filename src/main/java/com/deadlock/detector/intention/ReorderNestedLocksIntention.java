@@ -0,0 +1,48 @@
+package com.deadlock.detector.intention;
+
+import com.deadlock.detector.analyzer.GlobalLockOrder;
+import com.intellij.codeInsight.intention.PsiElementBaseIntentionAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 意图操作：按统一加锁顺序交换紧邻的两层嵌套加锁
+ * 顺序来自GlobalLockOrder（&#64;LockOrder声明优先，其次为文件中的多数顺序），
+ * 只在当前顺序与统一顺序相反、两把锁身份固定且表达式稳定时可用。
+ */
+public class ReorderNestedLocksIntention extends PsiElementBaseIntentionAction {
+
+    @NotNull
+    @Override
+    public String getFamilyName() {
+        return "按统一顺序重排嵌套锁";
+    }
+
+    @Override
+    public boolean isAvailable(@NotNull Project project, Editor editor, @NotNull PsiElement element) {
+        NestedLockPair pair = NestedLockPair.find(element);
+        if (pair == null || !pair.isStable() || !pair.hasStaticIdentity()) {
+            return false;
+        }
+        String outer = pair.outerLockId();
+        String inner = pair.innerLockId();
+        if (outer == null || inner == null
+                || !GlobalLockOrder.forFile(element.getContainingFile()).precedes(inner, outer)) {
+            return false;
+        }
+        setText(String.format("按统一顺序重排嵌套锁：先 %s 后 %s", pair.getInnerLock().getText(), pair.getOuterLock().getText()));
+        return true;
+    }
+
+    @Override
+    public void invoke(@NotNull Project project, Editor editor, @NotNull PsiElement element)
+            throws IncorrectOperationException {
+        NestedLockPair pair = NestedLockPair.find(element);
+        if (pair != null && pair.isStable()) {
+            pair.swap();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.deadlock.detector.model;
+
+/**
+ * 锁的访问模式：共享模式之间互不阻塞（读锁），独占模式与任何模式都冲突
+ */
+public enum AccessMode {
+    SHARED("SHARED"),
+    EXCLUSIVE("EXCLUSIVE");
+
+    private final String mode;
+
+    AccessMode(String mode) {
+        this.mode = mode;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+}
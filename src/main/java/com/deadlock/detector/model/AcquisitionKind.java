@@ -0,0 +1,20 @@
+package com.deadlock.detector.model;
+
+/**
+ * 锁获取方式：阻塞获取会一直等待；带超时的获取在超时后放弃；非阻塞获取立即返回
+ */
+public enum AcquisitionKind {
+    BLOCKING("BLOCKING"),
+    TIMED("TIMED"),
+    NON_BLOCKING("NON_BLOCKING");
+
+    private final String kind;
+
+    AcquisitionKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+}
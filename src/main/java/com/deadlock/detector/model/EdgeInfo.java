@@ -0,0 +1,115 @@
+package com.deadlock.detector.model;
+
+/**
+ * 资源分配图中一条边的附加信息
+ * 持有边（资源→线程）和等待边（线程→资源）都记录以何种模式访问该资源；
+ * 等待边还记录获取方式、超时时长以及获取是否位于重试循环中；两种边都记录产生它的源码位置。
+ * 从运行时记录（JFR）导入的边另外累计观测到的次数与竞争时长；合并静态与运行时图后记录边的来源。
+ */
+public class EdgeInfo {
+    private AccessMode mode;
+    private AcquisitionKind kind;
+    // 超时时长（毫秒），未知时为-1
+    private long timeoutMillis;
+    private boolean retried;
+    // 加锁或等待的源码位置，未知时为null
+    private SourceAnchor site;
+    // 运行时观测到的累计等待时长（纳秒）与次数，静态分析的边为0
+    private long contentionNanos;
+    private long observations;
+    // 合并图中边的来源，未合并时为null
+    private EdgeOrigin origin;
+
+    public EdgeInfo(AccessMode mode) {
+        this(mode, AcquisitionKind.BLOCKING, -1, false);
+    }
+
+    public EdgeInfo(AccessMode mode, AcquisitionKind kind, long timeoutMillis, boolean retried) {
+        this.mode = mode;
+        this.kind = kind;
+        this.timeoutMillis = timeoutMillis;
+        this.retried = retried;
+    }
+
+    public AccessMode getMode() {
+        return mode;
+    }
+
+    public AcquisitionKind getKind() {
+        return kind;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 获取失败后会在循环中重试
+     */
+    public boolean isRetried() {
+        return retried;
+    }
+
+    public SourceAnchor getSite() {
+        return site;
+    }
+
+    /**
+     * 记录源码位置，同一条边只保留第一个位置
+     */
+    public void setSite(SourceAnchor site) {
+        if (this.site == null) {
+            this.site = site;
+        }
+    }
+
+    public long getContentionNanos() {
+        return contentionNanos;
+    }
+
+    public long getObservations() {
+        return observations;
+    }
+
+    /**
+     * 累计运行时观测
+     */
+    public void addContention(long nanos, long count) {
+        contentionNanos += nanos;
+        observations += count;
+    }
+
+    public EdgeOrigin getOrigin() {
+        return origin;
+    }
+
+    /**
+     * 标记来源：静态与运行时两方都有时为运行时确认
+     */
+    public void addOrigin(EdgeOrigin other) {
+        if (other == null || origin == other || origin == EdgeOrigin.RUNTIME_CONFIRMED) {
+            return;
+        }
+        origin = origin == null ? other : EdgeOrigin.RUNTIME_CONFIRMED;
+    }
+
+    /**
+     * 合并同一对节点之间的另一条边：任一条为独占即按独占处理，
+     * 获取方式取阻塞程度较强的一方，超时取较长的一方
+     */
+    public void merge(EdgeInfo other) {
+        if (other.mode == AccessMode.EXCLUSIVE) {
+            mode = AccessMode.EXCLUSIVE;
+        }
+        if (other.kind.ordinal() < kind.ordinal()) {
+            kind = other.kind;
+            timeoutMillis = other.timeoutMillis;
+        } else if (other.kind == kind && timeoutMillis >= 0) {
+            timeoutMillis = other.timeoutMillis < 0 ? -1 : Math.max(timeoutMillis, other.timeoutMillis);
+        }
+        retried |= other.retried;
+        setSite(other.site);
+        addContention(other.contentionNanos, other.observations);
+        addOrigin(other.origin);
+    }
+}
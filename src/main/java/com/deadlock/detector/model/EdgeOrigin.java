@@ -0,0 +1,20 @@
+package com.deadlock.detector.model;
+
+/**
+ * 合并静态分析与运行时观测后边的来源：只由静态分析得出、运行时也观测到、只在运行时观测到
+ */
+public enum EdgeOrigin {
+    STATIC_ONLY("仅静态分析"),
+    RUNTIME_CONFIRMED("运行时确认"),
+    RUNTIME_ONLY("仅运行时");
+
+    private final String label;
+
+    EdgeOrigin(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
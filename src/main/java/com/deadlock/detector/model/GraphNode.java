@@ -1,19 +1,30 @@
 package com.deadlock.detector.model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class GraphNode {
     private final String id;
     private final NodeType type;
     private final List<GraphNode> outgoingEdges;
+    // 出边的附加信息，未记录的边按独占模式处理
+    private final Map<GraphNode, EdgeInfo> edgeInfos;
     private LockType lockType;
+    // 资源容量：普通锁为1，线程池槽位资源为池大小
+    private int capacity = 1;
+    // 线程节点：线程根的源码位置
+    private SourceAnchor anchor;
+    // 显示名称，首次显示时计算
+    private String displayName;
 
     public GraphNode(String id, NodeType type, LockType lockType) {
         this.id = id;
         this.type = type;
         this.lockType = lockType;
         this.outgoingEdges = new ArrayList<>();
+        this.edgeInfos = new HashMap<>();
     }
 
     public GraphNode(String id, NodeType type) {
@@ -24,6 +35,16 @@ public class GraphNode {
         return id;
     }
 
+    /**
+     * 显示用的短名称（去掉包名与重载参数表），延迟计算
+     */
+    public String getDisplayName() {
+        if (displayName == null) {
+            displayName = IdInterner.shorten(id);
+        }
+        return displayName;
+    }
+
     public NodeType getType() {
         return type;
     }
@@ -40,7 +61,71 @@ public class GraphNode {
         outgoingEdges.add(to);
     }
 
+    /**
+     * 添加带附加信息的边，同一对节点之间只保留一条边并合并信息
+     */
+    public void addEdge(GraphNode to, EdgeInfo info) {
+        EdgeInfo existing = edgeInfos.get(to);
+        if (existing != null) {
+            existing.merge(info);
+            return;
+        }
+        if (!outgoingEdges.contains(to)) {
+            outgoingEdges.add(to);
+        }
+        edgeInfos.put(to, info);
+    }
+
+    /**
+     * 删除一条边及其附加信息
+     */
+    public void removeEdge(GraphNode to) {
+        outgoingEdges.remove(to);
+        edgeInfos.remove(to);
+    }
+
+    /**
+     * 为已有的边记录源码位置（未带附加信息添加的边按独占模式补上信息）
+     */
+    public void anchorEdge(GraphNode to, SourceAnchor site) {
+        if (site == null || !outgoingEdges.contains(to)) {
+            return;
+        }
+        edgeInfos.computeIfAbsent(to, k -> new EdgeInfo(AccessMode.EXCLUSIVE)).setSite(site);
+    }
+
+    /**
+     * 为已有的边标记来源
+     */
+    public void markOrigin(GraphNode to, EdgeOrigin origin) {
+        if (!outgoingEdges.contains(to)) {
+            return;
+        }
+        edgeInfos.computeIfAbsent(to, k -> new EdgeInfo(AccessMode.EXCLUSIVE)).addOrigin(origin);
+    }
+
+    public EdgeInfo getEdgeInfo(GraphNode to) {
+        EdgeInfo info = edgeInfos.get(to);
+        return info != null ? info : new EdgeInfo(AccessMode.EXCLUSIVE);
+    }
+
     public void setLockType(LockType lockType) {
         this.lockType = lockType;
     }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public SourceAnchor getAnchor() {
+        return anchor;
+    }
+
+    public void setAnchor(SourceAnchor anchor) {
+        this.anchor = anchor;
+    }
 }
\ No newline at end of file
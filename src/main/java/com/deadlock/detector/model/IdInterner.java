@@ -0,0 +1,45 @@
+package com.deadlock.detector.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ID驻留表：每个不同的ID只保存一份字符串并分配一个int句柄，
+ * 导入器中的大量边可以按句柄保存和比较。
+ */
+public class IdInterner {
+    private final Map<String, Integer> handles = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * 返回ID的句柄，首次出现时分配
+     */
+    public int intern(String id) {
+        Integer handle = handles.get(id);
+        if (handle != null) {
+            return handle;
+        }
+        handle = ids.size();
+        handles.put(id, handle);
+        ids.add(id);
+        return handle;
+    }
+
+    public String idOf(int handle) {
+        return ids.get(handle);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * 去掉全限定名中的包名和重载参数表：Thread_com.bank.Bank#main(String[])$lambda2 → Thread_Bank#main$lambda2
+     */
+    public static String shorten(String id) {
+        return id.replaceAll("\\([^)]*\\)", "")
+                .replaceAll("(?<=[#_$@]|^)(?:[a-z][\\w]*\\.)+(?=[A-Z])", "");
+    }
+}
@@ -7,7 +7,12 @@ public enum LockType {
     READ_LOCK("READ_LOCK"),
     WRITE_LOCK("WRITE_LOCK"),
     LOCK_SUPPORT("LOCK_SUPPORT"),
-    CLASS_LOCK("CLASS_LOCK");
+    CLASS_LOCK("CLASS_LOCK"),
+    POOL_SLOT("POOL_SLOT"),
+    FUTURE("FUTURE"),
+    CONDITION("CONDITION"),
+    STAMPED_READ_LOCK("STAMPED_READ_LOCK"),
+    STAMPED_WRITE_LOCK("STAMPED_WRITE_LOCK");
 
     private final String type;
 
@@ -18,4 +23,11 @@ public enum LockType {
     public String getType() {
         return type;
     }
+
+    /**
+     * 该类型的获取以何种模式访问锁：读锁为共享，其余为独占
+     */
+    public AccessMode getAccessMode() {
+        return this == READ_LOCK || this == STAMPED_READ_LOCK ? AccessMode.SHARED : AccessMode.EXCLUSIVE;
+    }
 }
\ No newline at end of file
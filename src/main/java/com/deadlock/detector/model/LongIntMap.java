@@ -0,0 +1,62 @@
+package com.deadlock.detector.model;
+
+/**
+ * long → int 开放寻址表，不支持删除（值置0表示清除）
+ */
+public final class LongIntMap {
+    private long[] keys = new long[1024];
+    private int[] values = new int[1024];
+    private boolean[] used = new boolean[1024];
+    private int size;
+
+    public int get(long key, int missing) {
+        int mask = keys.length - 1;
+        for (int index = hash(key) & mask; used[index]; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+        }
+        return missing;
+    }
+
+    public void put(long key, int value) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        for (; used[index]; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+        }
+        used[index] = true;
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        key *= 0x9e3779b97f4a7c15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
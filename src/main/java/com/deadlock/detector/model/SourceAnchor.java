@@ -0,0 +1,30 @@
+package com.deadlock.detector.model;
+
+/**
+ * 源码位置：文件编号 + 位置编号（附带分析时的行号用于显示）
+ * 编号由分析器的位置表分配，结果中大量的边只保存这三个整数，导航时再由位置表解析回文件中的当前位置
+ */
+public class SourceAnchor {
+    private final int fileId;
+    private final int siteId;
+    // 从1开始的行号
+    private final int line;
+
+    public SourceAnchor(int fileId, int siteId, int line) {
+        this.fileId = fileId;
+        this.siteId = siteId;
+        this.line = line;
+    }
+
+    public int getFileId() {
+        return fileId;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
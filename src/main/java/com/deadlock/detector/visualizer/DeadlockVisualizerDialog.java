@@ -1,26 +1,68 @@
 package com.deadlock.detector.visualizer;
 
+import com.deadlock.detector.analyzer.SourceAnchors;
 import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.detector.WitnessStep;
 import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.model.SourceAnchor;
 import com.intellij.openapi.ui.DialogWrapper;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DeadlockVisualizerDialog extends DialogWrapper {
     private final DeadlockVisualizerPanel visualizerPanel;
     private final boolean hasDeadlock;
     private final List<List<GraphNode>> cycles;
+    // 附加报告标签页：标题 -> 报告文本
+    private final Map<String, String> reports;
+    // 与cycles一一对应的源码证据链，及解析位置用的文件表
+    private final List<List<WitnessStep>> witnesses;
+    private final SourceAnchors sourceAnchors;
 
     public DeadlockVisualizerDialog(List<GraphNode> allNodes, List<List<GraphNode>> cycles, boolean hasDeadlock) {
+        this(allNodes, cycles, hasDeadlock, (String) null);
+    }
+
+    /**
+     * @param contentionReport 锁竞争热点报告，为null时不显示对应标签页
+     */
+    public DeadlockVisualizerDialog(List<GraphNode> allNodes, List<List<GraphNode>> cycles, boolean hasDeadlock,
+                                    String contentionReport) {
+        this(allNodes, cycles, hasDeadlock, contentionReportTab(contentionReport));
+    }
+
+    /**
+     * @param reports 附加报告，每项显示为一个标签页（按插入顺序）
+     */
+    public DeadlockVisualizerDialog(List<GraphNode> allNodes, List<List<GraphNode>> cycles, boolean hasDeadlock,
+                                    Map<String, String> reports) {
+        this(allNodes, cycles, hasDeadlock, reports, new ArrayList<>(), null);
+    }
+
+    /**
+     * @param witnesses 每个环的源码证据链，显示为可双击跳转的代码位置列表
+     * @param sourceAnchors 解析证据链位置的文件表，为null时不显示代码位置
+     */
+    public DeadlockVisualizerDialog(List<GraphNode> allNodes, List<List<GraphNode>> cycles, boolean hasDeadlock,
+                                    Map<String, String> reports, List<List<WitnessStep>> witnesses,
+                                    SourceAnchors sourceAnchors) {
         super(true); // 使用模态对话框
         this.visualizerPanel = new DeadlockVisualizerPanel(allNodes, cycles);
         this.hasDeadlock = hasDeadlock;
         this.cycles = cycles;
+        this.reports = reports;
+        this.witnesses = witnesses;
+        this.sourceAnchors = sourceAnchors;
         setTitle(hasDeadlock ? "死锁检测结果 - 检测到死锁" : "死锁检测结果 - 未检测到死锁");
         init();
     }
@@ -113,7 +155,7 @@ public class DeadlockVisualizerDialog extends DialogWrapper {
             
             // 生成建议
             DeadlockDetector detector = new DeadlockDetector();
-            String suggestionsText = detector.generateDeadlockSuggestions(cycles);
+            String suggestionsText = detector.generateDeadlockSuggestions(cycles) + formatWitnessLocations();
             
             // 创建样式化的文本区域
             JTextArea suggestionsTextArea = new JTextArea(suggestionsText) {
@@ -147,12 +189,87 @@ public class DeadlockVisualizerDialog extends DialogWrapper {
             tabbedPane.addTab("解决方案建议", suggestionsPanel);
         }
         
+        // 代码位置：双击跳转到环上每一步的加锁/等待位置
+        if (sourceAnchors != null && !witnesses.isEmpty()) {
+            tabbedPane.addTab("代码位置", createWitnessPanel());
+        }
+
+        // 附加报告（锁竞争热点、挂起等待等）
+        for (Map.Entry<String, String> report : reports.entrySet()) {
+            JPanel reportPanel = new JPanel(new BorderLayout());
+            reportPanel.setBackground(new Color(255, 255, 255));
+            reportPanel.setBorder(new EmptyBorder(10, 15, 15, 15));
+            reportPanel.add(ReportDialog.createReportScrollPane(report.getValue()), BorderLayout.CENTER);
+            tabbedPane.addTab(report.getKey(), reportPanel);
+        }
+
         // 添加标签页面板到主面板
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
         
         return mainPanel;
     }
     
+    /**
+     * 证据链列表：每行一步，双击关闭对话框并打开对应代码
+     */
+    private JComponent createWitnessPanel() {
+        DefaultListModel<String> model = new DefaultListModel<>();
+        List<SourceAnchor> anchors = new ArrayList<>();
+        for (int i = 0; i < witnesses.size(); i++) {
+            for (WitnessStep step : witnesses.get(i)) {
+                model.addElement(String.format("死锁循环 %d: %s  (%s)", i + 1, step.describe(),
+                        sourceAnchors.format(step.getSite())));
+                anchors.add(step.getSite());
+            }
+        }
+        JList<String> list = new JList<>(model);
+        list.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (e.getClickCount() == 2 && index >= 0 && anchors.get(index) != null) {
+                    close(CANCEL_EXIT_CODE);
+                    sourceAnchors.navigate(anchors.get(index));
+                }
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(new Color(255, 255, 255));
+        panel.setBorder(new EmptyBorder(10, 15, 15, 15));
+        JLabel hint = new JLabel("双击跳转到对应代码");
+        hint.setBorder(new EmptyBorder(0, 0, 10, 0));
+        panel.add(hint, BorderLayout.NORTH);
+        panel.add(new JScrollPane(list), BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * 建议文本末尾附上每个环的代码位置
+     */
+    private String formatWitnessLocations() {
+        if (sourceAnchors == null || witnesses.isEmpty()) {
+            return "";
+        }
+        StringBuilder locations = new StringBuilder("\n代码位置：\n");
+        for (int i = 0; i < witnesses.size(); i++) {
+            locations.append(String.format("死锁循环 %d:\n", i + 1));
+            for (WitnessStep step : witnesses.get(i)) {
+                locations.append(String.format("  %s — %s\n", step.describe(), sourceAnchors.format(step.getSite())));
+            }
+        }
+        return locations.toString();
+    }
+
+    private static Map<String, String> contentionReportTab(String contentionReport) {
+        Map<String, String> reports = new LinkedHashMap<>();
+        if (contentionReport != null) {
+            reports.put("锁竞争热点", contentionReport);
+        }
+        return reports;
+    }
+
     @Override
     protected void createDefaultActions() {
         super.createDefaultActions();
@@ -1,5 +1,6 @@
 package com.deadlock.detector.visualizer;
 
+import com.deadlock.detector.model.EdgeOrigin;
 import com.deadlock.detector.model.GraphNode;
 import com.deadlock.detector.model.NodeType;
 
@@ -16,8 +17,8 @@ import java.util.List;
 import java.util.Map;
 
 public class DeadlockVisualizerPanel extends JPanel {
-    private final List<GraphNode> allNodes;
-    private final List<List<GraphNode>> cycles;
+    private List<GraphNode> allNodes;
+    private List<List<GraphNode>> cycles;
     private final Map<GraphNode, Point> nodePositions;
     private final int nodeRadius = 35; // 增大节点大小
     private final int lockNodeWidth = 80; // 锁节点宽度
@@ -171,13 +172,15 @@ public class DeadlockVisualizerPanel extends JPanel {
                 // 检查边是否在死锁循环中
                 boolean isInCycle = isEdgeInCycle(node, neighbor);
                 
-                // 设置边的样式
+                // 设置边的样式：合并图中只由静态分析得出、运行时未观测到的边画成虚线
+                boolean staticOnly = node.getEdgeInfo(neighbor).getOrigin() == EdgeOrigin.STATIC_ONLY;
+                float[] dash = staticOnly ? new float[]{8.0f, 6.0f} : null;
                 if (isInCycle) {
                     g2d.setColor(CYCLE_EDGE_COLOR);
-                    g2d.setStroke(new BasicStroke(4.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                    g2d.setStroke(new BasicStroke(4.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 10.0f, dash, 0));
                 } else {
                     g2d.setColor(NORMAL_EDGE_COLOR);
-                    g2d.setStroke(new BasicStroke(2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                    g2d.setStroke(new BasicStroke(2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 10.0f, dash, 0));
                 }
                 
                 // 绘制边
@@ -317,7 +320,7 @@ public class DeadlockVisualizerPanel extends JPanel {
         FontMetrics metrics = g2d.getFontMetrics();
         
         // 处理长标签
-        String label = node.getId();
+        String label = node.getDisplayName();
         if (label.length() > 12) {
             label = label.substring(0, 9) + "...";
         }
@@ -383,6 +386,17 @@ public class DeadlockVisualizerPanel extends JPanel {
     
 
 
+    /**
+     * 替换显示的图并重新布局，实时监控每次图变化时调用
+     */
+    public void setGraph(List<GraphNode> allNodes, List<List<GraphNode>> cycles) {
+        this.allNodes = allNodes != null ? allNodes : new ArrayList<>();
+        this.cycles = cycles != null ? cycles : new ArrayList<>();
+        nodePositions.clear();
+        layoutNodes();
+        repaint();
+    }
+
     public void zoomIn() {
         scale *= 1.1;
         repaint();
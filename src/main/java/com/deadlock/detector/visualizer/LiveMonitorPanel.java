@@ -0,0 +1,165 @@
+package com.deadlock.detector.visualizer;
+
+import com.deadlock.detector.importer.JvmThreadMonitor;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实时监控面板：选择本地JVM附加后，在后台线程按JvmThreadMonitor给出的自适应间隔轮询，
+ * 图变化时把快照交给可视化面板重新绘制
+ */
+public class LiveMonitorPanel extends JPanel implements Disposable {
+    private static final int DEFAULT_INTERVAL = 1000;
+
+    private final JComboBox<String> jvmBox = new JComboBox<>();
+    private final JSpinner intervalSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_INTERVAL, 100, 60000, 100));
+    private final JButton attachButton = new JButton("附加");
+    private final JTextArea statusArea = new JTextArea();
+    private final DeadlockVisualizerPanel visualizerPanel = new DeadlockVisualizerPanel(new ArrayList<>(), new ArrayList<>());
+
+    // 只在事件分发线程中修改
+    private JvmThreadMonitor monitor;
+    private ScheduledFuture<?> pending;
+
+    public LiveMonitorPanel() {
+        super(new BorderLayout());
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+        JButton refreshButton = new JButton("刷新");
+        refreshButton.addActionListener(e -> refreshJvms());
+        attachButton.addActionListener(e -> {
+            if (monitor != null) {
+                detach("已断开");
+            } else {
+                attach();
+            }
+        });
+        intervalSpinner.addChangeListener(e -> {
+            if (monitor != null) {
+                monitor.setIntervalMillis(interval());
+            }
+        });
+        toolbar.add(new JLabel("JVM："));
+        toolbar.add(jvmBox);
+        toolbar.add(refreshButton);
+        toolbar.add(new JLabel("轮询间隔（ms）："));
+        toolbar.add(intervalSpinner);
+        toolbar.add(attachButton);
+        add(toolbar, BorderLayout.NORTH);
+
+        statusArea.setEditable(false);
+        statusArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(visualizerPanel), new JScrollPane(statusArea));
+        split.setResizeWeight(0.75);
+        add(split, BorderLayout.CENTER);
+        refreshJvms();
+    }
+
+    private void refreshJvms() {
+        jvmBox.removeAllItems();
+        for (Map.Entry<String, String> jvm : JvmThreadMonitor.listLocalJvms().entrySet()) {
+            jvmBox.addItem(jvm.getKey() + "  " + jvm.getValue());
+        }
+    }
+
+    private long interval() {
+        return ((Number) intervalSpinner.getValue()).longValue();
+    }
+
+    /**
+     * 附加可能需要几秒（目标JVM要先启动JMX代理），放到后台线程
+     */
+    private void attach() {
+        String selected = (String) jvmBox.getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        String pid = selected.substring(0, selected.indexOf(' '));
+        long interval = interval();
+        attachButton.setEnabled(false);
+        statusArea.setText("正在附加到 " + pid + "……");
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                JvmThreadMonitor attached = JvmThreadMonitor.attach(pid, interval);
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    attachButton.setEnabled(true);
+                    attachButton.setText("断开");
+                    monitor = attached;
+                    schedule(attached, 0);
+                });
+            } catch (IOException | RuntimeException e) {
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    attachButton.setEnabled(true);
+                    statusArea.setText("无法附加到 " + pid + "：" + e.getMessage());
+                });
+            }
+        });
+    }
+
+    private void schedule(JvmThreadMonitor target, long delayMillis) {
+        pending = AppExecutorUtil.getAppScheduledExecutorService()
+                .schedule(() -> poll(target), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在后台线程轮询；连接断开时（JMX代理抛出运行时异常）停止监控
+     */
+    private void poll(JvmThreadMonitor target) {
+        try {
+            boolean changed = target.poll();
+            JvmThreadMonitor.Snapshot snapshot = changed ? target.snapshot() : null;
+            String status = target.formatStatus();
+            long delay = target.nextDelayMillis();
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (monitor != target) {
+                    return;
+                }
+                if (snapshot != null) {
+                    visualizerPanel.setGraph(snapshot.getNodes(), snapshot.getCycles());
+                }
+                statusArea.setText(status);
+                schedule(target, delay);
+            });
+        } catch (RuntimeException e) {
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (monitor == target) {
+                    detach("连接已断开：" + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void detach(String message) {
+        JvmThreadMonitor previous = monitor;
+        monitor = null;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        attachButton.setText("附加");
+        statusArea.setText(message);
+        if (previous != null) {
+            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                try {
+                    previous.close();
+                } catch (IOException e) {
+                    System.out.println("Failed to close JMX connection: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void dispose() {
+        detach("");
+    }
+}
@@ -0,0 +1,68 @@
+package com.deadlock.detector.visualizer;
+
+import com.intellij.openapi.ui.DialogWrapper;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+
+/**
+ * 文本分析报告对话框（钉住分析、竞争热点等）
+ */
+public class ReportDialog extends DialogWrapper {
+    private final String heading;
+    private final String reportText;
+
+    public ReportDialog(String title, String heading, String reportText) {
+        super(true);
+        this.heading = heading;
+        this.reportText = reportText;
+        setTitle(title);
+        init();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setPreferredSize(new Dimension(800, 600));
+        panel.setBackground(new Color(255, 255, 255));
+        panel.setBorder(new EmptyBorder(10, 15, 15, 15));
+
+        JLabel titleLabel = new JLabel(heading);
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        titleLabel.setForeground(new Color(66, 153, 225));
+        titleLabel.setBorder(new EmptyBorder(0, 0, 15, 0));
+        panel.add(titleLabel, BorderLayout.NORTH);
+        panel.add(createReportScrollPane(reportText), BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * 创建与建议面板一致样式的只读文本区域
+     */
+    static JScrollPane createReportScrollPane(String text) {
+        JTextArea textArea = new JTextArea(text);
+        textArea.setEditable(false);
+        textArea.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        textArea.setLineWrap(true);
+        textArea.setWrapStyleWord(true);
+        textArea.setBackground(new Color(248, 249, 250));
+        textArea.setForeground(new Color(49, 53, 59));
+        textArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        textArea.setCaretPosition(0);
+
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        scrollPane.setBorder(BorderFactory.createLineBorder(new Color(222, 226, 230), 1));
+        scrollPane.setBackground(new Color(255, 255, 255));
+        return scrollPane;
+    }
+
+    @Override
+    protected void createDefaultActions() {
+        super.createDefaultActions();
+        myOKAction.setEnabled(false);
+        setCancelButtonText("关闭");
+    }
+}
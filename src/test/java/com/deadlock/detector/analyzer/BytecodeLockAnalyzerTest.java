@@ -0,0 +1,120 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.detector.DeadlockDetectionResult;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BytecodeLockAnalyzerTest {
+
+    /**
+     * 同一个线程先后以两种顺序加锁，不会死锁
+     */
+    static class Sequential {
+        private final Object lockA = new Object();
+        private final Object lockB = new Object();
+
+        void ab() {
+            synchronized (lockA) {
+                synchronized (lockB) {
+                    System.out.println("ab");
+                }
+            }
+        }
+
+        void ba() {
+            synchronized (lockB) {
+                synchronized (lockA) {
+                    System.out.println("ba");
+                }
+            }
+        }
+
+        public static void main(String[] args) {
+            Sequential bank = new Sequential();
+            bank.ab();
+            bank.ba();
+        }
+    }
+
+    /**
+     * 两个线程以相反的顺序加锁：一个是方法引用，一个是lambda
+     */
+    static class TwoThreads {
+        private final Object lockA = new Object();
+        private final Object lockB = new Object();
+
+        void ab() {
+            synchronized (lockA) {
+                synchronized (lockB) {
+                    System.out.println("ab");
+                }
+            }
+        }
+
+        void ba() {
+            synchronized (lockB) {
+                synchronized (lockA) {
+                    System.out.println("ba");
+                }
+            }
+        }
+
+        public static void main(String[] args) {
+            TwoThreads bank = new TwoThreads();
+            new Thread(bank::ab).start();
+            new Thread(() -> bank.ba()).start();
+        }
+    }
+
+    /**
+     * 没有线程入口，ab()与ba()不互相配对
+     */
+    static class NoThreads {
+        private final Object lockA = new Object();
+        private final Object lockB = new Object();
+
+        void ab() {
+            synchronized (lockA) {
+                synchronized (lockB) {
+                    System.out.println("ab");
+                }
+            }
+        }
+
+        void ba() {
+            synchronized (lockB) {
+                synchronized (lockA) {
+                    System.out.println("ba");
+                }
+            }
+        }
+    }
+
+    private static DeadlockDetectionResult analyze(Class<?> fixture) throws Exception {
+        String file = fixture.getName().substring(fixture.getName().lastIndexOf('.') + 1) + ".class";
+        Path path = Paths.get(fixture.getResource(file).toURI());
+        BytecodeLockAnalyzer analyzer = new BytecodeLockAnalyzer(1);
+        analyzer.addPath(path);
+        return analyzer.buildDetector().detectDeadlocks();
+    }
+
+    @Test
+    public void sequentialLockingInMainIsNotADeadlock() throws Exception {
+        assertTrue(analyze(Sequential.class).getHardDeadlockCycles().isEmpty());
+    }
+
+    @Test
+    public void oppositeOrdersInTwoThreadsAreADeadlock() throws Exception {
+        assertEquals(1, analyze(TwoThreads.class).getHardDeadlockCycles().size());
+    }
+
+    @Test
+    public void uncalledMethodsAreNotThreadRoots() throws Exception {
+        assertTrue(analyze(NoThreads.class).getHardDeadlockCycles().isEmpty());
+    }
+}
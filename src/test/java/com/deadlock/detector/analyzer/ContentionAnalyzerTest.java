@@ -0,0 +1,86 @@
+package com.deadlock.detector.analyzer;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.List;
+
+public class ContentionAnalyzerTest extends LightJavaCodeInsightFixtureTestCase {
+
+    public void testSleepRanksAboveLogging() {
+        List<ContentionAnalyzer.ContentionHotspot> hotspots = analyze("class Cache {\n"
+                + "    private final Object a = new Object();\n"
+                + "    private final Object b = new Object();\n"
+                + "    void log() {\n"
+                + "        synchronized (a) {\n"
+                + "            System.out.println(\"refresh\");\n"
+                + "        }\n"
+                + "    }\n"
+                + "    void refresh() throws InterruptedException {\n"
+                + "        synchronized (b) {\n"
+                + "            Thread.sleep(10);\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n");
+        assertEquals(2, hotspots.size());
+        assertEquals(10, hotspots.get(0).getScore());
+        assertTrue(hotspots.get(0).getScope().getText().contains("Thread.sleep"));
+        assertEquals(3, hotspots.get(1).getScore());
+    }
+
+    /**
+     * 内层临界区里的休眠同样拖长外层临界区
+     */
+    public void testOuterScopeIsChargedForNestedSleep() {
+        List<ContentionAnalyzer.ContentionHotspot> hotspots = analyze("class Cache {\n"
+                + "    private final Object a = new Object();\n"
+                + "    private final Object b = new Object();\n"
+                + "    void refresh() throws InterruptedException {\n"
+                + "        synchronized (a) {\n"
+                + "            synchronized (b) {\n"
+                + "                Thread.sleep(10);\n"
+                + "            }\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n");
+        assertEquals(2, hotspots.size());
+        assertEquals(10, hotspots.get(0).getScore());
+        assertEquals(10, hotspots.get(1).getScore());
+    }
+
+    public void testLargeLoopAndLockingCallUnderLock() {
+        List<ContentionAnalyzer.ContentionHotspot> hotspots = analyze("class Cache {\n"
+                + "    private final Object lock = new Object();\n"
+                + "    private int total;\n"
+                + "    void rebuild() {\n"
+                + "        synchronized (lock) {\n"
+                + "            for (int i = 0; i < 5000; i++) {\n"
+                + "                total += i;\n"
+                + "            }\n"
+                + "            record();\n"
+                + "        }\n"
+                + "    }\n"
+                + "    synchronized void record() {\n"
+                + "    }\n"
+                + "}\n");
+        assertEquals(1, hotspots.size());
+        assertEquals(11, hotspots.get(0).getScore());
+        assertTrue(hotspots.get(0).getReasons().get(0).startsWith("大循环"));
+        assertTrue(hotspots.get(0).getReasons().get(1).startsWith("调用加锁方法"));
+    }
+
+    public void testSlowCallsOutsideLocksAreIgnored() {
+        List<ContentionAnalyzer.ContentionHotspot> hotspots = analyze("class Cache {\n"
+                + "    void refresh() throws InterruptedException {\n"
+                + "        Thread.sleep(10);\n"
+                + "        System.out.println(\"done\");\n"
+                + "    }\n"
+                + "}\n");
+        assertEmpty(hotspots);
+    }
+
+    private List<ContentionAnalyzer.ContentionHotspot> analyze(String text) {
+        PsiFile file = myFixture.configureByText("Cache.java", text);
+        return new ContentionAnalyzer().analyze(file);
+    }
+}
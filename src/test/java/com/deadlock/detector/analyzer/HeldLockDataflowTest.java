@@ -0,0 +1,99 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.LockType;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.Collections;
+import java.util.List;
+
+public class HeldLockDataflowTest extends LightJavaCodeInsightFixtureTestCase {
+
+    /**
+     * finally中的unlock在正常和异常路径上都释放a
+     */
+    public void testUnlockInFinallyReleasesLock() {
+        HeldLockDataflow.AcquireSite site = acquireOf("b", "a.lock();\n"
+                + "try {\n"
+                + "    work();\n"
+                + "} finally {\n"
+                + "    a.unlock();\n"
+                + "}\n"
+                + "b.lock();\n"
+                + "b.unlock();\n");
+        assertEmpty(site.getMayHeld());
+        assertEmpty(site.getMustHeld());
+    }
+
+    /**
+     * 只在一个分支上获取的锁：可能持有，但不是必然持有
+     */
+    public void testLockTakenOnOneBranchIsMayHeldOnly() {
+        HeldLockDataflow.AcquireSite site = acquireOf("b", "if (flag) {\n"
+                + "    a.lock();\n"
+                + "}\n"
+                + "b.lock();\n");
+        assertEquals(Collections.singletonList("a"), site.getMayHeld());
+        assertEmpty(site.getMustHeld());
+    }
+
+    /**
+     * 提前返回的分支释放了a，到达b.lock()的路径都持有a
+     */
+    public void testEarlyReturnKeepsLockOnRemainingPath() {
+        HeldLockDataflow.AcquireSite site = acquireOf("b", "a.lock();\n"
+                + "if (flag) {\n"
+                + "    a.unlock();\n"
+                + "    return;\n"
+                + "}\n"
+                + "b.lock();\n");
+        assertEquals(Collections.singletonList("a"), site.getMustHeld());
+    }
+
+    public void testReadWriteLockKeys() {
+        List<LockOperation> operations = operations("rw.readLock().lock();\n"
+                + "rw.writeLock().unlock();\n");
+        assertEquals(2, operations.size());
+        assertEquals("rw_readLock", operations.get(0).getLockKey());
+        assertEquals(LockType.READ_LOCK, operations.get(0).getLockType());
+        assertEquals(LockOperation.Kind.ACQUIRE, operations.get(0).getKind());
+        assertEquals("rw_writeLock", operations.get(1).getLockKey());
+        assertEquals(LockOperation.Kind.RELEASE, operations.get(1).getKind());
+    }
+
+    private HeldLockDataflow.AcquireSite acquireOf(String lockKey, String statements) {
+        PsiCodeBlock body = body(statements);
+        List<HeldLockDataflow.AcquireSite> sites = new HeldLockDataflow().analyze(body, LockOperation.collect(body));
+        assertNotNull(sites);
+        for (HeldLockDataflow.AcquireSite site : sites) {
+            if (site.getOperation().getLockKey().equals(lockKey)) {
+                return site;
+            }
+        }
+        fail("no acquisition of " + lockKey);
+        return null;
+    }
+
+    private List<LockOperation> operations(String statements) {
+        return LockOperation.collect(body(statements));
+    }
+
+    private PsiCodeBlock body(String statements) {
+        PsiJavaFile file = (PsiJavaFile) myFixture.configureByText("Bank.java", "import java.util.concurrent.locks.*;\n"
+                + "class Bank {\n"
+                + "    private final Lock a = new ReentrantLock();\n"
+                + "    private final Lock b = new ReentrantLock();\n"
+                + "    private final ReadWriteLock rw = new ReentrantReadWriteLock();\n"
+                + "    private boolean flag;\n"
+                + "    void work() {\n"
+                + "    }\n"
+                + "    void run() {\n"
+                + statements
+                + "    }\n"
+                + "}\n");
+        PsiClass bank = file.getClasses()[0];
+        return bank.findMethodsByName("run", false)[0].getBody();
+    }
+}
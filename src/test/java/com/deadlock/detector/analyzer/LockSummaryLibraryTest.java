@@ -0,0 +1,101 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.LockType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LockSummaryLibraryTest {
+    private static final String COUNTER = "com/deadlock/detector/analyzer/LockSummaryLibraryTest$Counter";
+
+    /**
+     * 同步方法锁接收者，静态同步方法锁类；内部私有对象的锁调用者看不到，不导出
+     */
+    static class Counter {
+        private final Object lock = new Object();
+        private static int count;
+
+        public synchronized void increment() {
+            count++;
+        }
+
+        public static synchronized void reset() {
+            count = 0;
+        }
+
+        public void touch() {
+            synchronized (lock) {
+                count++;
+            }
+        }
+    }
+
+    @Test
+    public void shippedLibraryCoversJdkMonitors() {
+        LockSummaryLibrary library = LockSummaryLibrary.get();
+        assertTrue(library.getSources().toString(), library.getSources().get(0).startsWith("jdk "));
+
+        LockSummaryLibrary.MethodEffect put = library.lookup("java/util/Hashtable",
+                "put(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+        assertNotNull(put);
+        assertEquals(Collections.singletonList(LockSummaryLibrary.RECEIVER), put.getLockIds());
+
+        LockSummaryLibrary.MethodEffect synchronizedMap = library.lookup("java/util/Collections",
+                "synchronizedMap(Ljava/util/Map;)Ljava/util/Map;");
+        assertNotNull(synchronizedMap);
+        assertTrue(synchronizedMap.isReturnsLockedObject());
+
+        assertNull(library.lookup("java/util/HashMap", "put(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;"));
+    }
+
+    /**
+     * 用main生成摘要文件再读回
+     */
+    @Test
+    public void generatedSummaryRoundTrips() throws Exception {
+        Path output = Files.createTempFile("library", ".dls");
+        output.toFile().deleteOnExit();
+        Path input = Paths.get(Counter.class.getResource("LockSummaryLibraryTest$Counter.class").toURI());
+        LockSummaryLibrary.main(new String[]{output.toString(), input.toString()});
+
+        LockSummaryLibrary library;
+        try (InputStream in = Files.newInputStream(output)) {
+            library = LockSummaryLibrary.read(in);
+        }
+
+        assertEquals(Collections.singletonList("LockSummaryLibraryTest$Counter.class"), library.getSources());
+        LockSummaryLibrary.MethodEffect increment = library.lookup(COUNTER, "increment()V");
+        assertEquals(Collections.singletonList(LockSummaryLibrary.RECEIVER), increment.getLockIds());
+        assertEquals(Collections.singletonList(LockType.SYNCHRONIZED), increment.getLockTypes());
+        LockSummaryLibrary.MethodEffect reset = library.lookup(COUNTER, "reset()V");
+        assertEquals(Collections.singletonList(LockType.CLASS_LOCK), reset.getLockTypes());
+        assertNull(library.lookup(COUNTER, "touch()V"));
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws IOException {
+        Path other = Files.createTempFile("library", ".dls");
+        other.toFile().deleteOnExit();
+        try (GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(other))) {
+            out.write(new byte[]{1, 2, 3, 4, 0, 1});
+        }
+        try (InputStream in = Files.newInputStream(other)) {
+            LockSummaryLibrary.read(in);
+            fail();
+        } catch (IOException e) {
+            assertEquals("不是加锁摘要文件", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.LockType;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.List;
+
+public class MethodLockSummaryTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final String ACCOUNT = "class Account {\n"
+            + "    private final Object audit = new Object();\n"
+            + "    synchronized void deposit() {\n"
+            + "    }\n"
+            + "    static synchronized void reset() {\n"
+            + "    }\n"
+            + "    void transfer(Account other) {\n"
+            + "        synchronized (this) {\n"
+            + "            synchronized (other) {\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "    void record() {\n"
+            + "        synchronized (audit) {\n"
+            + "        }\n"
+            + "    }\n"
+            + "    void refresh() {\n"
+            + "        deposit();\n"
+            + "    }\n"
+            + "}\n";
+
+    public void testSynchronizedMethodLocksReceiver() {
+        List<MethodLockSummary.Acquisition> acquisitions = summarize("a.deposit()");
+        assertEquals(1, acquisitions.size());
+        assertEquals("a", acquisitions.get(0).getLockId());
+        assertEquals(LockType.SYNCHRONIZED, acquisitions.get(0).getLockType());
+        assertFalse(acquisitions.get(0).isNested());
+    }
+
+    public void testStaticSynchronizedMethodLocksClass() {
+        List<MethodLockSummary.Acquisition> acquisitions = summarize("Account.reset()");
+        assertEquals(1, acquisitions.size());
+        assertEquals("CLASS_Account.class", acquisitions.get(0).getLockId());
+        assertEquals(LockType.CLASS_LOCK, acquisitions.get(0).getLockType());
+    }
+
+    /**
+     * a.transfer(b)中this与参数other分别替换为a和b，other在持有this时获取
+     */
+    public void testReceiverAndParameterAreSubstituted() {
+        List<MethodLockSummary.Acquisition> acquisitions = summarize("a.transfer(b)");
+        assertEquals(2, acquisitions.size());
+        assertEquals("a", acquisitions.get(0).getLockId());
+        assertFalse(acquisitions.get(0).isNested());
+        assertEquals("b", acquisitions.get(1).getLockId());
+        assertTrue(acquisitions.get(1).isNested());
+    }
+
+    public void testFieldLockIsQualifiedByReceiver() {
+        List<MethodLockSummary.Acquisition> acquisitions = summarize("a.record()");
+        assertEquals(1, acquisitions.size());
+        assertEquals("a.audit", acquisitions.get(0).getLockId());
+    }
+
+    /**
+     * refresh()经由deposit()传递获取接收者的监视器
+     */
+    public void testTransitiveCallIsSummarized() {
+        List<MethodLockSummary.Acquisition> acquisitions = summarize("b.refresh()");
+        assertEquals(1, acquisitions.size());
+        assertEquals("b", acquisitions.get(0).getLockId());
+    }
+
+    private List<MethodLockSummary.Acquisition> summarize(String callText) {
+        PsiFile file = myFixture.configureByText("Bank.java", ACCOUNT
+                + "class Bank {\n"
+                + "    void run(Account a, Account b) {\n"
+                + "        a.deposit();\n"
+                + "        Account.reset();\n"
+                + "        a.transfer(b);\n"
+                + "        a.record();\n"
+                + "        b.refresh();\n"
+                + "    }\n"
+                + "}\n");
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(file, PsiMethodCallExpression.class)) {
+            if (call.getText().equals(callText)) {
+                return new MethodLockSummary().summarize(call);
+            }
+        }
+        fail("no call " + callText);
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.deadlock.detector.analyzer;
+
+import com.deadlock.detector.model.SourceAnchor;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiSynchronizedStatement;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+public class SourceAnchorsTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final String BANK = "class Bank {\n"
+            + "    void transfer() {\n"
+            + "        synchronized (this) {\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    /**
+     * 在锚点之前插入两行后，位置仍指向原来的synchronized块
+     */
+    public void testAnchorFollowsEditsBeforeSite() {
+        PsiFile file = myFixture.configureByText("Bank.java", BANK);
+        SourceAnchors anchors = new SourceAnchors();
+        SourceAnchor anchor = anchors.anchor(PsiTreeUtil.findChildOfType(file, PsiSynchronizedStatement.class));
+        assertEquals("Bank.java:3", anchors.format(anchor));
+
+        WriteCommandAction.runWriteCommandAction(getProject(),
+                () -> myFixture.getEditor().getDocument().insertString(0, "// header\n\n"));
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+
+        assertEquals("Bank.java:5", anchors.format(anchor));
+        assertTrue(anchors.navigate(anchor));
+        assertEquals(myFixture.getEditor().getDocument().getText().indexOf("synchronized"),
+                myFixture.getEditor().getCaretModel().getOffset());
+    }
+
+    public void testSameSiteSharesOneEntry() {
+        PsiFile file = myFixture.configureByText("Bank.java", BANK);
+        PsiSynchronizedStatement statement = PsiTreeUtil.findChildOfType(file, PsiSynchronizedStatement.class);
+        SourceAnchors anchors = new SourceAnchors();
+        SourceAnchor first = anchors.anchor(statement);
+        SourceAnchor second = anchors.anchor(statement);
+        assertEquals(first.getFileId(), second.getFileId());
+        assertEquals(first.getSiteId(), second.getSiteId());
+    }
+}
@@ -0,0 +1,246 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.AcquisitionKind;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.model.LockType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlockDetectorTest {
+
+    /**
+     * 容量为2的池中一个任务提交子任务并join：子任务还在排队，不占用槽位，池里还有空闲槽位
+     */
+    @Test
+    public void nestedJoinDoesNotStarveLargerPool() {
+        DeadlockDetector detector = nestedJoin(2);
+        assertFalse(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    @Test
+    public void nestedJoinStarvesSingleSlotPool() {
+        DeadlockDetector detector = nestedJoin(1);
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    @Test
+    public void nestedJoinsFromEveryRunningTaskStarvePool() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addThreadPool("Pool_executor", 2);
+        for (String outer : new String[]{"Task_outer1", "Task_outer2"}) {
+            String inner = outer + "_inner";
+            detector.addTaskRunsOnPool(outer, "Pool_executor");
+            detector.addTaskRunsOnPool(inner, "Pool_executor");
+            detector.addTaskJoinsFuture(outer, inner);
+            detector.addTaskQueuedOnPool(inner, "Pool_executor");
+        }
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    /**
+     * 重复提交的任务只等待与池无关的锁，不会占满池；只有等待又回到同一个池的多实例任务才会
+     */
+    @Test
+    public void manyInstanceTaskWaitingElsewhereDoesNotStarvePool() {
+        DeadlockDetector detector = nestedJoin(4);
+        detector.addTaskRunsOnPool("Task_repeated", "Pool_executor");
+        detector.addProcessWaitsForResource("Task_repeated", "L", LockType.SYNCHRONIZED);
+        detector.addProcessHoldsResource("Thread_owner", "L", LockType.SYNCHRONIZED);
+        detector.addManyInstances("Task_repeated", Collections.emptyMap());
+        assertFalse(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    @Test
+    public void manyInstanceNestedJoinStarvesPool() {
+        DeadlockDetector detector = nestedJoin(4);
+        detector.addManyInstances("Task_outer", Collections.emptyMap());
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    /**
+     * 等待者在wait()期间仍持有L；发信号者只有一处notify在L内，另一处不需要L，能从那里唤醒等待者
+     */
+    @Test
+    public void signalProviderWithLockFreeSiteIsNotBlocked() {
+        DeadlockDetector detector = waitHoldingOuterLock();
+        detector.addSignalProvider("Thread_notifier", "Signal_A", Arrays.asList("L", "A"));
+        detector.addSignalProvider("Thread_notifier", "Signal_A", Collections.singletonList("A"));
+        assertFalse(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    @Test
+    public void signalProviderNeedingHeldLockEverywhereIsBlocked() {
+        DeadlockDetector detector = waitHoldingOuterLock();
+        detector.addSignalProvider("Thread_notifier", "Signal_A", Arrays.asList("L", "A"));
+        detector.addSignalProvider("Thread_notifier", "Signal_A", Arrays.asList("A", "L"));
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    private static DeadlockDetector waitHoldingOuterLock() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_waiter", "L", LockType.SYNCHRONIZED);
+        detector.addProcessHoldsResource("Thread_waiter", "A", LockType.SYNCHRONIZED);
+        detector.addSignalWait("Thread_waiter", "Signal_A", "A", Arrays.asList("L", "A"));
+        return detector;
+    }
+
+    @Test
+    public void parkWithoutUnparkHangs() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addPark("Thread_t1", Collections.emptyList());
+        DeadlockDetectionResult result = detector.detectDeadlocks();
+        assertFalse(result.isHasDeadlock());
+        assertEquals(1, result.getHangs().size());
+    }
+
+    @Test
+    public void unparkedThreadDoesNotHang() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addPark("Thread_t1", Collections.emptyList());
+        detector.addUnpark("Thread_t2", "Thread_t1", Collections.emptyList());
+        assertTrue(detector.detectDeadlocks().getHangs().isEmpty());
+    }
+
+    /**
+     * 许可可以预先发给自己：先unpark自己再park的线程不会挂起
+     */
+    @Test
+    public void selfUnparkBeforeParkDoesNotHang() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addUnpark("Thread_t1", "Thread_t1", Collections.emptyList());
+        detector.addPark("Thread_t1", Collections.emptyList());
+        assertTrue(detector.detectDeadlocks().getHangs().isEmpty());
+    }
+
+    /**
+     * park期间不释放锁：唤醒者需要被park线程持有的L时两者互相等待
+     */
+    @Test
+    public void parkHoldingLockNeededByUnparkerDeadlocks() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_t1", "L", LockType.SYNCHRONIZED);
+        detector.addPark("Thread_t1", Collections.singletonList("L"));
+        detector.addUnpark("Thread_t2", "Thread_t1", Collections.singletonList("L"));
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    /**
+     * 唯一的唤醒者自身处于死锁环中，park永远不会返回
+     */
+    @Test
+    public void parkWhoseOnlyWakerIsDeadlockedHangs() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_t1", "A", LockType.SYNCHRONIZED);
+        detector.addProcessWaitsForResource("Thread_t1", "B", LockType.SYNCHRONIZED);
+        detector.addProcessHoldsResource("Thread_t2", "B", LockType.SYNCHRONIZED);
+        detector.addProcessWaitsForResource("Thread_t2", "A", LockType.SYNCHRONIZED);
+        detector.addPark("Thread_parked", Collections.emptyList());
+        detector.addUnpark("Thread_t1", "Thread_parked", Collections.emptyList());
+        List<List<GraphNode>> hangs = detector.detectDeadlocks().getHangs();
+        assertEquals(1, hangs.size());
+        assertEquals("Thread_parked", hangs.get(0).get(0).getId());
+        assertEquals("Thread_t1", hangs.get(0).get(2).getId());
+    }
+
+    /**
+     * 与T1不会同时运行的T0也在等A：T0 -> A -> T1 这一步不成立，但不能因此漏掉 T1/T2 之间的环
+     */
+    @Test
+    public void orderedWaiterDoesNotHideCycle() {
+        DeadlockDetector detector = crossedLocks();
+        detector.addProcessWaitsForResource("Thread_setup", "A", LockType.SYNCHRONIZED);
+        detector.addHappensBefore("Thread_setup", "Thread_t1");
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    /**
+     * T1持有读锁等A，T2持有A等写锁；另一个只等读锁的线程与T1共享读锁不会阻塞，但不能因此漏掉 T1/T2 之间的环
+     */
+    @Test
+    public void unrelatedReaderDoesNotHideWriterCycle() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_t1", "rw_readLock", LockType.READ_LOCK);
+        detector.addProcessWaitsForResource("Thread_t1", "A", LockType.SYNCHRONIZED);
+        detector.addProcessHoldsResource("Thread_t2", "A", LockType.SYNCHRONIZED);
+        detector.addProcessWaitsForResource("Thread_t2", "rw_writeLock", LockType.WRITE_LOCK);
+        detector.addProcessWaitsForResource("Thread_query", "rw_readLock", LockType.READ_LOCK);
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    @Test
+    public void readersSharingLockDoNotDeadlock() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_t1", "rw_readLock", LockType.READ_LOCK);
+        detector.addProcessWaitsForResource("Thread_t1", "A", LockType.SYNCHRONIZED);
+        detector.addProcessHoldsResource("Thread_t2", "A", LockType.SYNCHRONIZED);
+        detector.addProcessWaitsForResource("Thread_t2", "rw_readLock", LockType.READ_LOCK);
+        assertFalse(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    /**
+     * 环上T1带超时获取B，超时后放弃，环最多持续超时时长
+     */
+    @Test
+    public void timedAcquisitionResolvesCycle() {
+        DeadlockDetectionResult result = crossedLocks(AcquisitionKind.TIMED, 500, false).detectDeadlocks();
+        assertFalse(result.isHasDeadlock());
+        assertTrue(result.getHardDeadlockCycles().isEmpty());
+        assertEquals(1, result.getTimedCycles().size());
+        CycleClassification classification = result.getClassification(result.getCycles().indexOf(result.getTimedCycles().get(0)));
+        assertEquals(CycleClassification.Severity.TIMEOUT_RESOLVED, classification.getSeverity());
+        assertEquals(500, classification.getResolveMillis());
+    }
+
+    @Test
+    public void retriedTryLockIsLivelockRisk() {
+        DeadlockDetectionResult result = crossedLocks(AcquisitionKind.NON_BLOCKING, -1, true).detectDeadlocks();
+        assertFalse(result.isHasDeadlock());
+        assertEquals(CycleClassification.Severity.LIVELOCK_RISK, result.getClassification(0).getSeverity());
+        assertEquals(0, result.getClassification(0).getResolveMillis());
+    }
+
+    @Test
+    public void blockingCycleIsHardDeadlock() {
+        DeadlockDetectionResult result = crossedLocks(AcquisitionKind.BLOCKING, -1, false).detectDeadlocks();
+        assertEquals(1, result.getHardDeadlockCycles().size());
+        assertEquals(CycleClassification.Severity.HARD_DEADLOCK, result.getClassification(0).getSeverity());
+    }
+
+    private static DeadlockDetector crossedLocks() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_t1", "A", LockType.SYNCHRONIZED);
+        detector.addProcessWaitsForResource("Thread_t1", "B", LockType.SYNCHRONIZED);
+        detector.addProcessHoldsResource("Thread_t2", "B", LockType.SYNCHRONIZED);
+        detector.addProcessWaitsForResource("Thread_t2", "A", LockType.SYNCHRONIZED);
+        return detector;
+    }
+
+    /**
+     * 与crossedLocks()相同，但T1以kind方式获取B
+     */
+    private static DeadlockDetector crossedLocks(AcquisitionKind kind, long timeoutMillis, boolean retried) {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_t1", "A", LockType.REENTRANT_LOCK);
+        detector.addProcessWaitsForResource("Thread_t1", "B", LockType.REENTRANT_LOCK, kind, timeoutMillis, retried);
+        detector.addProcessHoldsResource("Thread_t2", "B", LockType.REENTRANT_LOCK);
+        detector.addProcessWaitsForResource("Thread_t2", "A", LockType.REENTRANT_LOCK);
+        return detector;
+    }
+
+    private static DeadlockDetector nestedJoin(int capacity) {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addThreadPool("Pool_executor", capacity);
+        detector.addTaskRunsOnPool("Task_outer", "Pool_executor");
+        detector.addTaskRunsOnPool("Task_inner", "Pool_executor");
+        detector.addTaskJoinsFuture("Task_outer", "Task_inner");
+        detector.addTaskQueuedOnPool("Task_inner", "Pool_executor");
+        return detector;
+    }
+}
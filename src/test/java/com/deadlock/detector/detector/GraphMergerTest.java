@@ -0,0 +1,119 @@
+package com.deadlock.detector.detector;
+
+import com.deadlock.detector.model.EdgeOrigin;
+import com.deadlock.detector.model.GraphNode;
+import com.deadlock.detector.model.LockType;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphMergerTest {
+
+    private static DeadlockDetector staticAb() {
+        DeadlockDetector detector = new DeadlockDetector();
+        detector.addProcessHoldsResource("Thread_Bank#ab", "lockA", LockType.SYNCHRONIZED);
+        detector.addProcessWaitsForResource("Thread_Bank#ab", "lockB", LockType.SYNCHRONIZED);
+        return detector;
+    }
+
+    private static EdgeOrigin originOf(DeadlockDetector merged, String from, String to) {
+        Map<String, GraphNode> nodes = merged.getNodes();
+        return nodes.get(from).getEdgeInfo(nodes.get(to)).getOrigin();
+    }
+
+    @Test
+    public void contentionRecordDoesNotConfirmOrderEdge() {
+        // JFR只记录了同一线程在不同时刻的持有与竞争，不是嵌套的加锁
+        DeadlockDetector jfr = new DeadlockDetector();
+        jfr.addObservedHold("Thread_main#1", "lockA", LockType.SYNCHRONIZED, 1);
+        jfr.addObservedWait("Thread_main#1", "lockB", LockType.SYNCHRONIZED, 1000, 1);
+        GraphMerger merger = new GraphMerger();
+        merger.addStatic(staticAb(), site -> null);
+        merger.addRuntime(jfr, "app.jfr");
+
+        DeadlockDetector merged = merger.merge();
+
+        assertEquals(EdgeOrigin.STATIC_ONLY, originOf(merged, "lockA", "Thread_Bank#ab"));
+        assertEquals(EdgeOrigin.RUNTIME_ONLY, originOf(merged, "Thread_main#1（app.jfr）", "lockB"));
+        assertTrue(merger.formatReport(merger.rankCycles(merged.detectDeadlocks().getHardDeadlockCycles()))
+                .contains("其中运行时确认 0 条"));
+    }
+
+    @Test
+    public void singleDumpConfirmsNestedEdge() {
+        DeadlockDetector dump = new DeadlockDetector();
+        dump.addProcessHoldsResource("Thread_main#1", "lockA", LockType.SYNCHRONIZED);
+        dump.addProcessWaitsForResource("Thread_main#1", "lockB", LockType.SYNCHRONIZED);
+        GraphMerger merger = new GraphMerger();
+        merger.addStatic(staticAb(), site -> null);
+        merger.addRuntimeSnapshot(dump, "threads.txt");
+
+        DeadlockDetector merged = merger.merge();
+
+        assertEquals(EdgeOrigin.RUNTIME_CONFIRMED, originOf(merged, "lockA", "Thread_Bank#ab"));
+        assertEquals(EdgeOrigin.RUNTIME_CONFIRMED, originOf(merged, "Thread_main#1（threads.txt）", "lockB"));
+    }
+
+    @Test
+    public void sameThreadNameInDifferentDumpsIsNotMerged() {
+        DeadlockDetector first = new DeadlockDetector();
+        first.addProcessHoldsResource("Thread_main#1", "lockA", LockType.SYNCHRONIZED);
+        DeadlockDetector second = new DeadlockDetector();
+        second.addProcessWaitsForResource("Thread_main#1", "lockB", LockType.SYNCHRONIZED);
+        second.addProcessHoldsResource("Thread_worker#2", "lockB", LockType.SYNCHRONIZED);
+        second.addProcessWaitsForResource("Thread_worker#2", "lockA", LockType.SYNCHRONIZED);
+        GraphMerger merger = new GraphMerger();
+        merger.addRuntimeSnapshot(first, "dump1.txt");
+        merger.addRuntimeSnapshot(second, "dump2.txt");
+
+        DeadlockDetector merged = merger.merge();
+
+        assertTrue(merged.getNodes().containsKey("Thread_main#1（dump1.txt）"));
+        assertTrue(merged.getNodes().containsKey("Thread_main#1（dump2.txt）"));
+        assertTrue(merged.detectDeadlocks().getHardDeadlockCycles().isEmpty());
+    }
+
+    @Test
+    public void loggedOrderEdgeConfirmsStaticEdge() {
+        GraphMerger merger = new GraphMerger();
+        merger.addStatic(staticAb(), site -> null);
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_main#1", "lockA", "lockB", null, null);
+
+        DeadlockDetector merged = merger.merge();
+
+        assertEquals(EdgeOrigin.RUNTIME_CONFIRMED, originOf(merged, "lockA", "Thread_Bank#ab"));
+        assertEquals(EdgeOrigin.RUNTIME_CONFIRMED, originOf(merged, "Thread_main#1#e0（app.dlev）", "lockB"));
+    }
+
+    @Test
+    public void orderEdgesOfOneThreadAreNotCrossed() {
+        // t1先后记录A→B与C→D，t2记录D→A：没有加锁顺序环
+        GraphMerger merger = new GraphMerger();
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_t1", "lockA", "lockB", null, null);
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_t1", "lockC", "lockD", null, null);
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_t2", "lockD", "lockA", null, null);
+
+        assertTrue(merger.merge().detectDeadlocks().getHardDeadlockCycles().isEmpty());
+    }
+
+    @Test
+    public void singleThreadOrderCycleIsNotADeadlock() {
+        GraphMerger merger = new GraphMerger();
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_t1", "lockA", "lockB", null, null);
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_t1", "lockB", "lockA", null, null);
+
+        assertTrue(merger.merge().detectDeadlocks().getHardDeadlockCycles().isEmpty());
+    }
+
+    @Test
+    public void orderEdgesFromTwoThreadsFormACycle() {
+        GraphMerger merger = new GraphMerger();
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_t1", "lockA", "lockB", null, null);
+        merger.addRuntimeOrderEdge("app.dlev", "Thread_t2", "lockB", "lockA", null, null);
+
+        assertEquals(1, merger.merge().detectDeadlocks().getHardDeadlockCycles().size());
+    }
+}
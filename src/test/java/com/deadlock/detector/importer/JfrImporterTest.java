@@ -0,0 +1,79 @@
+package com.deadlock.detector.importer;
+
+import jdk.jfr.Recording;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JfrImporterTest {
+    private final Object lockA = new Object();
+    private final Object lockB = new Object();
+
+    /**
+     * t1等t2持有的A，之后t2等t1持有的B：两次竞争发生在不同时刻，并不是死锁，也不能拼成环
+     */
+    @Test
+    public void contentionAtDifferentTimesDoesNotFormCycle() throws Exception {
+        Path file = Files.createTempFile("contention", ".jfr");
+        file.toFile().deleteOnExit();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            contend(lockA, "t2", "t1");
+            contend(lockB, "t1", "t2");
+            recording.stop();
+            recording.dump(file);
+        }
+
+        JfrImporter importer = new JfrImporter();
+        assertFalse(importer.importRecording(file).detectDeadlocks().isHasDeadlock());
+        String hotspots = importer.formatHotspots(10);
+        assertTrue(hotspots, hotspots.contains("Thread_t1#"));
+        assertTrue(hotspots, hotspots.contains("Thread_t2#"));
+    }
+
+    /**
+     * holder先拿到lock并持有一段时间，waiter在此期间进入同一个监视器
+     */
+    private static void contend(Object lock, String holder, String waiter) throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread holding = new Thread(() -> {
+            synchronized (lock) {
+                locked.countDown();
+                sleep(200);
+            }
+        }, holder);
+        Thread waiting = new Thread(() -> {
+            await(locked);
+            synchronized (lock) {
+                lock.hashCode();
+            }
+        }, waiter);
+        holding.start();
+        waiting.start();
+        holding.join();
+        waiting.join();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.deadlock.detector.importer;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JvmThreadMonitorTest {
+
+    /**
+     * 监视当前JVM：两个线程以相反顺序获取ReentrantLock，可中断地等待，结束后线程退出
+     */
+    @Test
+    public void liveDeadlockIsDetectedAndClearedAfterwards() throws Exception {
+        JvmThreadMonitor monitor = new JvmThreadMonitor(ManagementFactory.getThreadMXBean(), null, 100);
+        ReentrantLock a = new ReentrantLock();
+        ReentrantLock b = new ReentrantLock();
+        CountDownLatch bothHeld = new CountDownLatch(2);
+        Thread t1 = crossing("monitor-test-1", a, b, bothHeld);
+        Thread t2 = crossing("monitor-test-2", b, a, bothHeld);
+        try {
+            t1.start();
+            t2.start();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!monitor.getResult().isHasDeadlock() && System.currentTimeMillis() < deadline) {
+                monitor.poll();
+                Thread.sleep(20);
+            }
+            assertTrue(monitor.getResult().isHasDeadlock());
+            assertEquals(1, monitor.snapshot().getCycles().size());
+            assertTrue(monitor.formatStatus().contains("JVM报告 2 个线程处于死锁"));
+        } finally {
+            t1.interrupt();
+            t2.interrupt();
+            t1.join();
+            t2.join();
+        }
+
+        assertTrue(monitor.poll());
+        assertFalse(monitor.getResult().isHasDeadlock());
+        assertTrue(monitor.snapshot().getNodes().isEmpty());
+    }
+
+    /**
+     * 等待关系没有变化时轮询间隔加倍，重新设置间隔后恢复
+     */
+    @Test
+    public void unchangedPollsBackOff() {
+        JvmThreadMonitor monitor = new JvmThreadMonitor(ManagementFactory.getThreadMXBean(), null, 100);
+        assertFalse(monitor.poll());
+        assertEquals(200, monitor.nextDelayMillis());
+        assertFalse(monitor.poll());
+        assertEquals(400, monitor.nextDelayMillis());
+        monitor.setIntervalMillis(50);
+        assertEquals(50, monitor.nextDelayMillis());
+    }
+
+    private static Thread crossing(String name, ReentrantLock first, ReentrantLock second, CountDownLatch bothHeld) {
+        Thread thread = new Thread(() -> {
+            try {
+                first.lockInterruptibly();
+                try {
+                    bothHeld.countDown();
+                    bothHeld.await();
+                    second.lockInterruptibly();
+                    second.unlock();
+                } finally {
+                    first.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
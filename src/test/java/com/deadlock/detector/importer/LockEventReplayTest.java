@@ -0,0 +1,146 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.detector.DeadlockDetector;
+import com.deadlock.detector.detector.GraphMerger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LockEventReplayTest {
+    private static final int T1 = 1;
+    private static final int T2 = 2;
+    private static final int T3 = 3;
+    private static final int A = 11;
+    private static final int B = 12;
+    private static final int C = 13;
+    private static final int D = 14;
+
+    private Path file;
+    private LockEventWriter writer;
+    private long time;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("locks", ".dlev");
+        file.toFile().deleteOnExit();
+        writer = new LockEventWriter(file, 0, 0);
+        writer.defineThread(T1, "t1");
+        writer.defineThread(T2, "t2");
+        writer.defineThread(T3, "t3");
+        for (int lock : new int[]{A, B, C, D}) {
+            writer.defineLock(lock, "lock" + (char) ('A' + lock - A));
+            writer.defineSite(lock, "Bank.use" + (char) ('A' + lock - A) + ":" + lock);
+        }
+    }
+
+    private void lock(int thread, int lock) throws IOException {
+        writer.acquire(thread, lock, lock, ++time);
+        writer.acquired(thread, lock, lock, ++time);
+    }
+
+    private void unlock(int thread, int lock) throws IOException {
+        writer.release(thread, lock, lock, ++time);
+    }
+
+    /**
+     * thread持有first时获取second，然后依次释放
+     */
+    private void nested(int thread, int first, int second) throws IOException {
+        lock(thread, first);
+        lock(thread, second);
+        unlock(thread, second);
+        unlock(thread, first);
+    }
+
+    private LockEventReplay replay() throws IOException {
+        writer.close();
+        LockEventReplay replay = new LockEventReplay();
+        replay.replay(file);
+        return replay;
+    }
+
+    @Test
+    public void roundTripKeepsNamesSitesAndOrderCycle() throws IOException {
+        nested(T1, A, B);
+        nested(T2, B, A);
+
+        LockEventReplay replay = replay();
+
+        assertEquals(12, replay.getEventCount());
+        assertEquals(2, replay.getThreadCount());
+        assertTrue(replay.getDeadlocks().isEmpty());
+        assertEquals(1, replay.getOrderCycles().size());
+        LockEventReplay.OrderCycle cycle = replay.getOrderCycles().get(0);
+        assertEquals(Arrays.asList("lockB", "lockA"), cycle.getLocks());
+        assertEquals(Arrays.asList("Thread_t2", "Thread_t1"), cycle.getThreads());
+        assertEquals(Arrays.asList("Bank.useB:12", "Bank.useA:11"), cycle.getHeldSites());
+        assertEquals(1, replay.buildDetector().detectDeadlocks().getHardDeadlockCycles().size());
+    }
+
+    @Test
+    public void actualDeadlockIsReplayed() throws IOException {
+        lock(T1, A);
+        lock(T2, B);
+        writer.acquire(T1, B, B, ++time);
+        writer.acquire(T2, A, A, ++time);
+
+        List<LockEventReplay.Deadlock> deadlocks = replay().getDeadlocks();
+
+        assertEquals(1, deadlocks.size());
+        assertEquals(Arrays.asList("Thread_t2", "Thread_t1"), deadlocks.get(0).getThreads());
+        assertEquals(Arrays.asList("lockA", "lockB"), deadlocks.get(0).getLocks());
+    }
+
+    @Test
+    public void cyclesSharingThreadsAreNotCrossed() throws IOException {
+        // 环1：t1 A→B、t2 B→A；环2：t2 C→D、t1 D→C。t1持有A时并没有等待C
+        nested(T1, A, B);
+        nested(T2, B, A);
+        nested(T2, C, D);
+        nested(T1, D, C);
+
+        LockEventReplay replay = replay();
+
+        assertEquals(2, replay.getOrderCycles().size());
+        assertEquals(2, replay.buildDetector().detectDeadlocks().getHardDeadlockCycles().size());
+    }
+
+    @Test
+    public void cycleThroughEarlierReversedEdgeIsFound() throws IOException {
+        // t1自己的A⇄B环不会死锁；之后t2的A→C、C→B与t1的B→A组成A→C→B→A
+        nested(T1, A, B);
+        nested(T1, B, A);
+        nested(T2, A, C);
+        nested(T2, C, B);
+
+        List<LockEventReplay.OrderCycle> cycles = replay().getOrderCycles();
+
+        assertEquals(1, cycles.size());
+        assertEquals(3, cycles.get(0).getLocks().size());
+        assertTrue(cycles.get(0).getThreads().contains("Thread_t1"));
+        assertTrue(cycles.get(0).getThreads().contains("Thread_t2"));
+    }
+
+    @Test
+    public void exportedOrderEdgesReachTheMerger() throws IOException {
+        nested(T1, A, B);
+        nested(T3, B, A);
+        LockEventReplay replay = replay();
+
+        GraphMerger merger = new GraphMerger();
+        replay.exportOrderEdges(merger, "app.dlev");
+        DeadlockDetector merged = merger.merge();
+
+        assertTrue(merged.getNodes().containsKey("Thread_t1#e0（app.dlev）"));
+        assertTrue(merged.getNodes().containsKey("Thread_t3#e1（app.dlev）"));
+        assertEquals(1, merged.detectDeadlocks().getHardDeadlockCycles().size());
+    }
+}
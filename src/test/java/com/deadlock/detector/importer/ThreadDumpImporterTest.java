@@ -0,0 +1,124 @@
+package com.deadlock.detector.importer;
+
+import com.deadlock.detector.detector.DeadlockDetector;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadDumpImporterTest {
+    private static final String HEADER = "Full thread dump OpenJDK 64-Bit Server VM (17.0.9+9 mixed mode):\n\n";
+
+    /**
+     * jstack末尾的死锁报告段重复列出线程栈，不能被当成新的线程
+     */
+    @Test
+    public void monitorDeadlockIsImported() throws IOException {
+        ThreadDumpImporter importer = new ThreadDumpImporter();
+        DeadlockDetector detector = importer.importDump(write(HEADER
+                + monitorThread("t1", 10, "a0000001", "a0000002")
+                + monitorThread("t2", 11, "a0000002", "a0000001")
+                + "Found one Java-level deadlock:\n"
+                + "=============================\n"
+                + "\"t1\":\n"
+                + "  waiting to lock monitor 0x00007f0000009000 (object 0x00000000a0000002, a java.lang.Object),\n"
+                + "  which is held by \"t2\"\n\n"
+                + "Java stack information for the threads listed above:\n"
+                + "===================================================\n"
+                + "\"t1\":\n"
+                + "\tat Bank.transfer(Bank.java:20)\n"
+                + "\t- waiting to lock <0x00000000a0000002> (a java.lang.Object)\n"
+                + "\t- locked <0x00000000a0000001> (a java.lang.Object)\n\n"
+                + "Found 1 deadlock.\n"));
+
+        assertEquals(1, importer.getDumpCount());
+        assertEquals(2, importer.getThreadCount());
+        assertEquals(2, importer.getBlockedCount());
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    /**
+     * Object.wait()期间监视器已释放：栈中wait()之后的"locked"不算持有
+     */
+    @Test
+    public void monitorReleasedByWaitIsNotHeld() throws IOException {
+        ThreadDumpImporter importer = new ThreadDumpImporter();
+        DeadlockDetector detector = importer.importDump(write(HEADER
+                + "\"consumer\" #10 prio=5 os_prio=0 tid=0x00007f0000002010 nid=0x210 in Object.wait()\n"
+                + "   java.lang.Thread.State: WAITING (on object monitor)\n"
+                + "\tat java.lang.Object.wait(java.base@17.0.9/Native Method)\n"
+                + "\t- waiting on <0x00000000a0000001> (a java.lang.Object)\n"
+                + "\tat Queue.take(Queue.java:12)\n"
+                + "\t- locked <0x00000000a0000001> (a java.lang.Object)\n\n"
+                + "\"producer\" #11 prio=5 os_prio=0 tid=0x00007f0000002011 nid=0x211 waiting for monitor entry\n"
+                + "   java.lang.Thread.State: BLOCKED (on object monitor)\n"
+                + "\tat Queue.put(Queue.java:20)\n"
+                + "\t- waiting to lock <0x00000000a0000001> (a java.lang.Object)\n\n"));
+
+        assertEquals(1, importer.getBlockedCount());
+        assertTrue(detector.getNodes().get("Object@0xa0000001").getOutgoingEdges().isEmpty());
+        assertFalse(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    @Test
+    public void ownableSynchronizersAreHeldReentrantLocks() throws IOException {
+        ThreadDumpImporter importer = new ThreadDumpImporter();
+        DeadlockDetector detector = importer.importDump(write(HEADER
+                + parkedThread("t1", 10, "b0000001", "b0000002")
+                + parkedThread("t2", 11, "b0000002", "b0000001")));
+
+        assertEquals(2, importer.getBlockedCount());
+        assertTrue(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    /**
+     * 同一文件中追加的多份转储只使用最后一份
+     */
+    @Test
+    public void lastDumpInFileIsUsed() throws IOException {
+        ThreadDumpImporter importer = new ThreadDumpImporter();
+        DeadlockDetector detector = importer.importDump(write(HEADER
+                + monitorThread("t1", 10, "a0000001", "a0000002")
+                + monitorThread("t2", 11, "a0000002", "a0000001")
+                + HEADER
+                + monitorThread("t1", 10, "a0000001", "a0000003")));
+
+        assertEquals(2, importer.getDumpCount());
+        assertEquals(1, importer.getThreadCount());
+        assertFalse(detector.detectDeadlocks().isHasDeadlock());
+    }
+
+    private static String monitorThread(String name, int number, String held, String waited) {
+        return "\"" + name + "\" #" + number + " prio=5 os_prio=0 tid=0x00007f00000020" + number
+                + " nid=0x2" + number + " waiting for monitor entry\n"
+                + "   java.lang.Thread.State: BLOCKED (on object monitor)\n"
+                + "\tat Bank.transfer(Bank.java:20)\n"
+                + "\t- waiting to lock <0x00000000" + waited + "> (a java.lang.Object)\n"
+                + "\t- locked <0x00000000" + held + "> (a java.lang.Object)\n\n";
+    }
+
+    private static String parkedThread(String name, int number, String held, String waited) {
+        return "\"" + name + "\" #" + number + " prio=5 os_prio=0 tid=0x00007f00000020" + number
+                + " nid=0x2" + number + " waiting on condition\n"
+                + "   java.lang.Thread.State: WAITING (parking)\n"
+                + "\tat jdk.internal.misc.Unsafe.park(java.base@17.0.9/Native Method)\n"
+                + "\t- parking to wait for  <0x00000000" + waited
+                + "> (a java.util.concurrent.locks.ReentrantLock$NonfairSync)\n"
+                + "\tat Bank.transfer(Bank.java:30)\n\n"
+                + "   Locked ownable synchronizers:\n"
+                + "\t- <0x00000000" + held + "> (a java.util.concurrent.locks.ReentrantLock$NonfairSync)\n\n";
+    }
+
+    private static Path write(String text) throws IOException {
+        Path file = Files.createTempFile("dump", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,62 @@
+package com.deadlock.detector.importer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadDumpSeriesTest {
+    private static final String MAIN = "\"main\" #1 prio=5 os_prio=0 tid=0x00007f0000001000 nid=0x101 runnable\n"
+            + "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat Bank.run(Bank.java:10)\n"
+            + "\t- locked <0x00000000a0000001> (a java.lang.Object)\n\n";
+
+    /**
+     * 两个同名线程在两份转储中的先后顺序互换，每个线程只在一份转储中等待：没有稳定的等待
+     */
+    @Test
+    public void sameNamedThreadsKeepTheirIdentityAcrossDumps() throws IOException {
+        ThreadDumpSeries series = new ThreadDumpSeries();
+        series.add(write(dump(MAIN + worker(10, true) + worker(11, false))
+                + dump(MAIN + worker(11, true) + worker(10, false))));
+        assertEquals(2, series.getSnapshotCount());
+        assertTrue(series.findBlockedChains().isEmpty());
+    }
+
+    @Test
+    public void threadWaitingInEveryDumpIsReported() throws IOException {
+        ThreadDumpSeries series = new ThreadDumpSeries();
+        series.add(write(dump(MAIN + worker(10, true) + worker(11, false))
+                + dump(MAIN + worker(11, false) + worker(10, true))));
+        assertEquals(1, series.findBlockedChains().size());
+        assertEquals("Thread_main#1", series.findBlockedChains().get(0).getBlocker());
+        assertEquals("Thread_worker#10", series.findBlockedChains().get(0).getBlockedThreads().get(0));
+    }
+
+    private static String dump(String threads) {
+        return "Full thread dump OpenJDK 64-Bit Server VM (17.0.9+9 mixed mode):\n\n" + threads;
+    }
+
+    private static String worker(int number, boolean blocked) {
+        String header = "\"worker\" #" + number + " prio=5 os_prio=0 tid=0x00007f00000020" + number
+                + " nid=0x2" + number + (blocked ? " waiting for monitor entry\n" : " runnable\n");
+        if (!blocked) {
+            return header + "   java.lang.Thread.State: RUNNABLE\n\tat Bank.idle(Bank.java:30)\n\n";
+        }
+        return header + "   java.lang.Thread.State: BLOCKED (on object monitor)\n"
+                + "\tat Bank.work(Bank.java:20)\n"
+                + "\t- waiting to lock <0x00000000a0000001> (a java.lang.Object)\n\n";
+    }
+
+    private static Path write(String text) throws IOException {
+        Path file = Files.createTempFile("dumps", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,79 @@
+package com.deadlock.detector.inspection;
+
+import com.intellij.codeInsight.intention.IntentionAction;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ConvertToReentrantLockFixTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final String FIX = "将synchronized块转换为ReentrantLock";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.enableInspections(new VirtualThreadPinningInspection());
+    }
+
+    public void testOfferedWhenBlockIsOnlyUseOfMonitor() {
+        myFixture.configureByText("Cache.java", "class Cache {\n"
+                + "    private final Object lock = new Object();\n"
+                + "    void refresh() throws InterruptedException {\n"
+                + "        synchronized (lock) {\n"
+                + "            Thread.sleep(10);\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n");
+        assertEquals(1, fixes().size());
+    }
+
+    public void testNotOfferedWhenAnotherBlockUsesMonitor() {
+        myFixture.configureByText("Cache.java", "class Cache {\n"
+                + "    private final Object lock = new Object();\n"
+                + "    void refresh() throws InterruptedException {\n"
+                + "        synchronized (lock) {\n"
+                + "            Thread.sleep(10);\n"
+                + "        }\n"
+                + "    }\n"
+                + "    void clear() {\n"
+                + "        synchronized (lock) {\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n");
+        assertEmpty(fixes());
+    }
+
+    public void testNotOfferedWhenSynchronizedMethodUsesThis() {
+        myFixture.configureByText("Cache.java", "class Cache {\n"
+                + "    void refresh() throws InterruptedException {\n"
+                + "        synchronized (this) {\n"
+                + "            Thread.sleep(10);\n"
+                + "        }\n"
+                + "    }\n"
+                + "    synchronized void clear() {\n"
+                + "    }\n"
+                + "}\n");
+        assertEmpty(fixes());
+    }
+
+    public void testNotOfferedWhenLockFieldEscapes() {
+        myFixture.configureByText("Cache.java", "class Cache {\n"
+                + "    private final Object lock = new Object();\n"
+                + "    void refresh() throws InterruptedException {\n"
+                + "        synchronized (lock) {\n"
+                + "            Thread.sleep(10);\n"
+                + "        }\n"
+                + "    }\n"
+                + "    Object lock() {\n"
+                + "        return lock;\n"
+                + "    }\n"
+                + "}\n");
+        assertEmpty(fixes());
+    }
+
+    private List<IntentionAction> fixes() {
+        return myFixture.getAllQuickFixes().stream()
+                .filter(action -> FIX.equals(action.getText()))
+                .collect(Collectors.toList());
+    }
+}
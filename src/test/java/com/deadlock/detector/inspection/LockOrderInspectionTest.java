@@ -0,0 +1,82 @@
+package com.deadlock.detector.inspection;
+
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+public class LockOrderInspectionTest extends LightJavaCodeInsightFixtureTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("public @interface LockOrder {\n    String[] value();\n}\n");
+        myFixture.addClass("public @interface GuardedBy {\n    String value();\n}\n");
+        myFixture.enableInspections(new LockOrderInspection());
+    }
+
+    public void testAcquisitionAgainstDeclaredOrder() {
+        myFixture.configureByText("Bank.java", "@LockOrder({\"accountsLock\", \"ledgerLock\"})\n"
+                + "class Bank {\n"
+                + "    private final Object accountsLock = new Object();\n"
+                + "    private final Object ledgerLock = new Object();\n"
+                + "    void post() {\n"
+                + "        synchronized (accountsLock) {\n"
+                + "            synchronized (ledgerLock) {\n"
+                + "            }\n"
+                + "        }\n"
+                + "    }\n"
+                + "    void audit() {\n"
+                + "        synchronized (ledgerLock) {\n"
+                + "            <warning descr=\"持有 ledgerLock 时获取 accountsLock，违反 @LockOrder 声明的加锁顺序\">synchronized</warning> (accountsLock) {\n"
+                + "            }\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n");
+        myFixture.checkHighlighting(true, false, false);
+    }
+
+    /**
+     * &#64;GuardedBy方法体按已持有守护锁处理，调用方需要自己持有
+     */
+    public void testGuardedFieldAndMethodNeedTheirGuard() {
+        myFixture.configureByText("Counter.java", "class Counter {\n"
+                + "    private final Object lock = new Object();\n"
+                + "    @GuardedBy(\"lock\")\n"
+                + "    private int count;\n"
+                + "    void increment() {\n"
+                + "        synchronized (lock) {\n"
+                + "            count++;\n"
+                + "        }\n"
+                + "    }\n"
+                + "    int peek() {\n"
+                + "        return <warning descr=\"访问字段 count 需要持有 lock（@GuardedBy）\">count</warning>;\n"
+                + "    }\n"
+                + "    @GuardedBy(\"lock\")\n"
+                + "    void reset() {\n"
+                + "        count = 0;\n"
+                + "    }\n"
+                + "    void clear() {\n"
+                + "        <warning descr=\"调用 reset() 需要持有 lock（@GuardedBy）\">reset</warning>();\n"
+                + "    }\n"
+                + "}\n");
+        myFixture.checkHighlighting(true, false, false);
+    }
+
+    public void testNothingReportedWithoutDeclarations() {
+        myFixture.configureByText("Bank.java", "class Bank {\n"
+                + "    private final Object a = new Object();\n"
+                + "    private final Object b = new Object();\n"
+                + "    void ab() {\n"
+                + "        synchronized (a) {\n"
+                + "            synchronized (b) {\n"
+                + "            }\n"
+                + "        }\n"
+                + "    }\n"
+                + "    void ba() {\n"
+                + "        synchronized (b) {\n"
+                + "            synchronized (a) {\n"
+                + "            }\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n");
+        myFixture.checkHighlighting(true, false, false);
+    }
+}
@@ -0,0 +1,49 @@
+package com.deadlock.detector.intention;
+
+import com.intellij.codeInsight.intention.IntentionAction;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.List;
+
+public class OrderedLockAcquisitionIntentionTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final String INTENTION = "按identityHashCode顺序获取";
+    private static final String TELLER = "class Teller {\n"
+            + "    void transfer(Object from, Object to) {\n"
+            + "        <caret>synchronized (from) {\n"
+            + "            synchronized (to) {\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    public void testCreatesTieLockWhenProjectHasNone() {
+        myFixture.configureByText("Teller.java", TELLER);
+        myFixture.launchAction(single());
+        assertTrue(myFixture.getFile().getText().contains("public static final Object TIE_LOCK"));
+        assertTrue(myFixture.getFile().getText().contains("Teller.TIE_LOCK"));
+    }
+
+    /**
+     * 另一个类中已有TIE_LOCK时复用它，不再为当前类新建
+     */
+    public void testReusesExistingTieLock() {
+        myFixture.addClass("public class Bank {\n    public static final Object TIE_LOCK = new Object();\n}\n");
+        myFixture.configureByText("Teller.java", TELLER);
+        myFixture.launchAction(single());
+        String text = myFixture.getFile().getText();
+        assertTrue(text.contains("Bank.TIE_LOCK"));
+        assertFalse(text.contains("Object TIE_LOCK"));
+    }
+
+    public void testNotAvailableWhenExistingTieLockIsInaccessible() {
+        myFixture.addClass("public class Bank {\n    private static final Object TIE_LOCK = new Object();\n}\n");
+        myFixture.configureByText("Teller.java", TELLER);
+        assertEmpty(myFixture.filterAvailableIntentions(INTENTION));
+    }
+
+    private IntentionAction single() {
+        List<IntentionAction> actions = myFixture.filterAvailableIntentions(INTENTION);
+        assertEquals(1, actions.size());
+        return actions.get(0);
+    }
+}
@@ -0,0 +1,24 @@
+package com.deadlock.detector.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IdInternerTest {
+
+    @Test
+    public void internReturnsSameHandleForSameId() {
+        IdInterner interner = new IdInterner();
+        int first = interner.intern("Thread_com.bank.Bank#main(String[])$lambda2");
+        int lock = interner.intern("com.bank.Bank.lockA");
+        assertEquals(first, interner.intern("Thread_com.bank.Bank#main(String[])$lambda2"));
+        assertEquals("com.bank.Bank.lockA", interner.idOf(lock));
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    public void shortenDropsPackagesAndParameters() {
+        assertEquals("Thread_Bank#main$lambda2", IdInterner.shorten("Thread_com.bank.Bank#main(String[])$lambda2"));
+        assertEquals("Bank.lockA", IdInterner.shorten("com.bank.Bank.lockA"));
+    }
+}